@@ -0,0 +1,564 @@
+package com.xiaodou.aiapp;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xiaodou.config.AiHandlerProperties;
+import com.xiaodou.exception.AppException;
+import com.xiaodou.model.AiAppRecord;
+import com.xiaodou.model.dto.BatchExecuteDTO;
+import com.xiaodou.model.vo.BatchExecutionVO;
+import com.xiaodou.result.ResultCodeEnum;
+import com.xiaodou.service.AiAppRecordService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.Collectors;
+
+/**
+ * AI 应用批量执行
+ * <p>
+ * 一次请求提交 N 组参数，逐条交给 {@link AiAppExecutor} 执行：同一批次同时在途的条目不超过 concurrency，
+ * 某条完成后才启动下一条，任何线程都不会阻塞等待。条目的启动与结果落地都在公平调度器（workflowTaskExecutor）中
+ * 以用户身份排队，同时提交的大批次按用户轮转出队，不会挤占其他用户。单条失败只影响该条（记录错误信息），
+ * 可选 stopOnError 在首个失败后取消剩余条目；调用 {@link #cancel} 同样取消尚未开始的条目。
+ * </p>
+ * <p>
+ * 批次对应一条父记录（handlerBean = batchExecutor），执行期间各条结果写入 Redis 供查询进度，
+ * 全部结束后汇总写入父记录的 outputResult。工作流等异步执行器的条目返回子记录ID，
+ * 查询进度时按子记录当前状态汇总。
+ * </p>
+ * <p>
+ * 执行中的批次在 Redis 中持有节点租约（定时续期），并记录已启动条目的游标（cursor）。
+ * 节点重启后租约过期，由 WorkflowRecoveryScheduler 调用 {@link #resume} 在任意节点接手：
+ * 条目参数从父记录的输入参数恢复，已结束的条目沿用 Redis 中的结果，游标之后的条目继续执行；
+ * 游标之前未留下结果的条目在宕机时正在执行，无法确定是否已执行，标记为失败而不重复执行。
+ * </p>
+ *
+ * @author xiaodou V=>dddou117
+ * @version V1.0
+ * @since 2025/12/17
+ */
+@Slf4j
+@Component
+public class AiAppBatchExecutor {
+
+    public static final String HANDLER_BEAN = "batchExecutor";
+
+    // 条目状态
+    public static final int ITEM_PENDING = 0;
+    public static final int ITEM_SUCCESS = 1;
+    public static final int ITEM_FAILED = 2;
+    public static final int ITEM_IN_PROGRESS = 3;
+    public static final int ITEM_CANCELLED = 4;
+
+    private static final String STATE_KEY_PREFIX = "aiapp:batch:";
+    private static final String ITEM_FIELD_PREFIX = "item:";
+    private static final String CANCEL_FIELD = "cancelled";
+    private static final String CURSOR_FIELD = "cursor";
+    private static final String LEASE_KEY_PREFIX = "aiapp:batch:lease:";
+    private static final Duration STATE_TTL = Duration.ofDays(1);
+    private static final Duration LEASE_TTL = Duration.ofMinutes(2);     // 续期间隔的数倍，节点宕机后自动过期
+
+    private final AiAppExecutor aiAppExecutor;
+    private final AiAppRecordService aiAppRecordService;
+    private final AiHandlerProperties properties;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final FairTaskScheduler workflowTaskExecutor;
+
+    // 本节点正在执行的批次：key = batchId
+    private final Map<String, BatchRun> runs = new ConcurrentHashMap<>();
+
+    private final String nodeId = UUID.randomUUID()
+        .toString();
+
+    public AiAppBatchExecutor(AiAppExecutor aiAppExecutor, AiAppRecordService aiAppRecordService,
+        AiHandlerProperties properties, RedisTemplate<String, Object> redisTemplate, ObjectMapper objectMapper,
+        @Qualifier("workflowTaskExecutor") FairTaskScheduler workflowTaskExecutor) {
+        this.aiAppExecutor = aiAppExecutor;
+        this.aiAppRecordService = aiAppRecordService;
+        this.properties = properties;
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.workflowTaskExecutor = workflowTaskExecutor;
+    }
+
+    /**
+     * 提交批量执行，立即返回批次ID（父记录ID）
+     *
+     * @param userId 用户ID
+     * @param appId AI应用ID
+     * @param request 批量参数
+     * @return 批次ID
+     */
+    public String submit(String userId, Long appId, BatchExecuteDTO request) {
+        AiHandlerProperties.Batch config = properties.getBatch();
+        List<Map<String, Object>> items = request.getItems();
+        if (items == null || items.isEmpty()) {
+            throw new AppException(ResultCodeEnum.PARAM_MISSING, "批量执行条目不能为空");
+        }
+        if (items.size() > config.getMaxItems()) {
+            throw new AppException(ResultCodeEnum.PARAM_VALID_ERROR, "单次批量执行最多 " + config.getMaxItems() + " 条");
+        }
+        int concurrency = request.getConcurrency() == null ? config.getDefaultConcurrency() : request.getConcurrency();
+        concurrency = Math.max(1, Math.min(concurrency, config.getMaxConcurrency()));
+
+        Map<String, Object> input = new HashMap<>();
+        input.put("items", items);
+        input.put("concurrency", concurrency);
+        input.put("stopOnError", request.isStopOnError());
+        String batchId = aiAppRecordService.createAiAppRecord(userId, String.valueOf(appId), HANDLER_BEAN, input,
+                null)
+            .getId();
+
+        String key = STATE_KEY_PREFIX + batchId;
+        redisTemplate.opsForHash()
+            .putAll(key, Map.of("userId", userId, "total", items.size()));
+        redisTemplate.expire(key, STATE_TTL);
+
+        BatchRun run = new BatchRun(batchId, userId, appId, items, request.isStopOnError(),
+            System.currentTimeMillis(), 0);
+        redisTemplate.opsForValue()
+            .set(LEASE_KEY_PREFIX + batchId, nodeId, LEASE_TTL);
+        runs.put(batchId, run);
+        log.info("提交批量执行 - batchId: {}, appId: {}, userId: {}, 条数: {}, 并发: {}", batchId, appId, userId,
+            items.size(), concurrency);
+
+        // 条目启动在公平调度器中以用户身份排队，大批次不会挤占其他用户
+        for (int i = 0; i < Math.min(concurrency, items.size()); i++) {
+            workflowTaskExecutor.execute(userId, () -> launchNext(run));
+        }
+        return batchId;
+    }
+
+    /**
+     * 接手租约已过期的批次（原节点重启/宕机），从 Redis 中的游标继续执行
+     *
+     * @param parent 进行中的批次父记录
+     * @return 是否已接手；其他节点已持有租约时返回 false
+     */
+    public boolean resume(AiAppRecord parent) throws Exception {
+        String batchId = parent.getId();
+        if (runs.containsKey(batchId) || !Boolean.TRUE.equals(redisTemplate.opsForValue()
+            .setIfAbsent(LEASE_KEY_PREFIX + batchId, nodeId, LEASE_TTL))) {
+            return false;
+        }
+
+        Map<Object, Object> state = redisTemplate.opsForHash()
+            .entries(STATE_KEY_PREFIX + batchId);
+        Map<String, Object> input = readOutput(parent.getInputParams());
+        List<Map<String, Object>> items = castItems(input.get("items"));
+        if (!(state.get("total") instanceof Number total) || total.intValue() != items.size()) {
+            redisTemplate.delete(LEASE_KEY_PREFIX + batchId);
+            aiAppRecordService.updateAiAppFailed(batchId, "批次进度已丢失，无法恢复执行", null);
+            return true;
+        }
+        int concurrency = input.get("concurrency") instanceof Number number ? number.intValue() :
+            properties.getBatch()
+                .getDefaultConcurrency();
+        int cursor = state.get(CURSOR_FIELD) instanceof Number number ? Math.min(number.intValue(), items.size()) : 0;
+        long startTime = parent.getCreatedAt() == null ? System.currentTimeMillis() : parent.getCreatedAt()
+            .atZone(ZoneId.systemDefault())
+            .toInstant()
+            .toEpochMilli();
+
+        BatchRun run = new BatchRun(batchId, parent.getUserId(), Long.valueOf(parent.getAiApplicationId()), items,
+            Boolean.TRUE.equals(input.get("stopOnError")), startTime, cursor);
+        run.cancelled = Boolean.TRUE.equals(state.get(CANCEL_FIELD));
+        runs.put(batchId, run);
+
+        List<Integer> unknown = new ArrayList<>();
+        for (int i = 0; i < cursor; i++) {
+            if (state.get(ITEM_FIELD_PREFIX + i) instanceof Map<?, ?> item) {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> finished = new LinkedHashMap<>((Map<String, Object>)item);
+                run.results.set(i, finished);
+                run.remaining.decrementAndGet();
+            } else {
+                unknown.add(i);
+            }
+        }
+        log.info("恢复批量执行 - batchId: {}, 条数: {}, 游标: {}, 状态未知: {}", batchId, items.size(), cursor,
+            unknown.size());
+
+        for (int index : unknown) {
+            finishItem(run, index, item(index, ITEM_FAILED, null, "节点重启，条目执行状态未知"));
+        }
+        if (run.remaining.get() == 0) {
+            if (runs.containsKey(batchId)) {
+                complete(run);
+            }
+            return true;
+        }
+        for (int i = 0; i < Math.min(Math.max(1, concurrency), items.size() - cursor); i++) {
+            workflowTaskExecutor.execute(run.userId, () -> launchNext(run));
+        }
+        return true;
+    }
+
+    /**
+     * 批次是否有节点持有租约
+     */
+    public boolean hasLease(String batchId) {
+        return Boolean.TRUE.equals(redisTemplate.hasKey(LEASE_KEY_PREFIX + batchId));
+    }
+
+    /**
+     * 续期本节点正在执行的批次租约（由 WorkflowRecoveryScheduler 定时调用）
+     */
+    public void renewLeases() {
+        for (String batchId : runs.keySet()) {
+            try {
+                redisTemplate.opsForValue()
+                    .set(LEASE_KEY_PREFIX + batchId, nodeId, LEASE_TTL);
+            } catch (Exception e) {
+                log.warn("续期批次租约失败 - batchId: {}, error: {}", batchId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 取消批次：尚未开始的条目不再执行（已在执行的条目照常完成）
+     *
+     * @return 批次是否存在（属于该用户）
+     */
+    public boolean cancel(String batchId, String userId) {
+        String key = STATE_KEY_PREFIX + batchId;
+        Object owner = redisTemplate.opsForHash()
+            .get(key, "userId");
+        if (owner == null || !owner.equals(userId)) {
+            return false;
+        }
+        redisTemplate.opsForHash()
+            .put(key, CANCEL_FIELD, true);
+        BatchRun run = runs.get(batchId);
+        if (run != null) {
+            run.cancelled = true;
+        }
+        log.info("取消批量执行 - batchId: {}, userId: {}", batchId, userId);
+        return true;
+    }
+
+    /**
+     * 查询批次进度
+     *
+     * @throws AppException 批次不存在或不属于该用户
+     */
+    public BatchExecutionVO progress(String batchId, String userId) {
+        AiAppRecord parent = aiAppRecordService.getById(batchId);
+        if (parent == null || !HANDLER_BEAN.equals(parent.getHandlerBean()) || !userId.equals(parent.getUserId())) {
+            throw new AppException(ResultCodeEnum.DATA_NOT_FOUND, "批次不存在");
+        }
+
+        BatchExecutionVO vo = new BatchExecutionVO();
+        vo.setBatchId(batchId);
+        vo.setAiApplicationId(parent.getAiApplicationId());
+        vo.setStatus(parent.getStatus());
+
+        List<Map<String, Object>> items;
+        if (Integer.valueOf(3)
+            .equals(parent.getStatus())) {
+            Map<Object, Object> state = redisTemplate.opsForHash()
+                .entries(STATE_KEY_PREFIX + batchId);
+            vo.setCancelled(Boolean.TRUE.equals(state.get(CANCEL_FIELD)));
+            vo.setTotal(state.get("total") instanceof Number total ? total.intValue() : 0);
+            items = itemsFromState(state, vo.getTotal());
+        } else {
+            Map<String, Object> output = readOutput(parent.getOutputResult());
+            vo.setCancelled(Boolean.TRUE.equals(output.get(CANCEL_FIELD)));
+            items = castItems(output.get("items"));
+            vo.setTotal(items.size());
+        }
+
+        refreshChildren(items);
+        vo.setItems(items);
+        for (Map<String, Object> item : items) {
+            switch (statusOf(item)) {
+                case ITEM_SUCCESS -> vo.setSucceeded(vo.getSucceeded() + 1);
+                case ITEM_FAILED -> vo.setFailed(vo.getFailed() + 1);
+                case ITEM_IN_PROGRESS -> vo.setInProgress(vo.getInProgress() + 1);
+                case ITEM_CANCELLED -> vo.setCancelledItems(vo.getCancelledItems() + 1);
+                default -> vo.setPending(vo.getPending() + 1);
+            }
+        }
+        return vo;
+    }
+
+    /**
+     * 启动下一条；批次已取消时把剩余条目逐条标记为已取消
+     */
+    private void launchNext(BatchRun run) {
+        while (true) {
+            int index = run.next.getAndIncrement();
+            if (index >= run.items.size()) {
+                return;
+            }
+            advanceCursor(run);
+            if (isCancelled(run)) {
+                finishItem(run, index, item(index, ITEM_CANCELLED, null, "已取消"));
+                continue;
+            }
+            aiAppExecutor.executeAsync(run.userId, run.appId, run.items.get(index))
+                .whenComplete((result, error) ->
+                    // 结果落地与后续调度在公平调度器中执行，不占用 HTTP 客户端回调线程
+                    workflowTaskExecutor.execute(run.userId, () -> {
+                        finishItem(run, index, toItem(index, result, error));
+                        launchNext(run);
+                    }));
+            return;
+        }
+    }
+
+    /**
+     * 已启动条目数 + 1（条目按序号顺序启动），恢复时游标之前未留下结果的条目视为执行中丢失
+     */
+    private void advanceCursor(BatchRun run) {
+        try {
+            redisTemplate.opsForHash()
+                .increment(STATE_KEY_PREFIX + run.id, CURSOR_FIELD, 1);
+        } catch (Exception e) {
+            log.warn("写入批次游标失败 - batchId: {}, error: {}", run.id, e.getMessage());
+        }
+    }
+
+    private boolean isCancelled(BatchRun run) {
+        if (run.cancelled) {
+            return true;
+        }
+        try {
+            if (Boolean.TRUE.equals(redisTemplate.opsForHash()
+                .get(STATE_KEY_PREFIX + run.id, CANCEL_FIELD))) {
+                run.cancelled = true;
+            }
+        } catch (Exception e) {
+            log.warn("读取批次取消标记失败 - batchId: {}, error: {}", run.id, e.getMessage());
+        }
+        return run.cancelled;
+    }
+
+    private void finishItem(BatchRun run, int index, Map<String, Object> item) {
+        run.results.set(index, item);
+        try {
+            redisTemplate.opsForHash()
+                .put(STATE_KEY_PREFIX + run.id, ITEM_FIELD_PREFIX + index, item);
+        } catch (Exception e) {
+            log.warn("写入批次进度失败 - batchId: {}, index: {}, error: {}", run.id, index, e.getMessage());
+        }
+        if (run.stopOnError && statusOf(item) == ITEM_FAILED) {
+            run.cancelled = true;
+        }
+        if (run.remaining.decrementAndGet() == 0) {
+            complete(run);
+        }
+    }
+
+    /**
+     * 全部条目结束：汇总写入父记录
+     */
+    private void complete(BatchRun run) {
+        runs.remove(run.id);
+        try {
+            redisTemplate.delete(LEASE_KEY_PREFIX + run.id);
+        } catch (Exception e) {
+            log.warn("释放批次租约失败 - batchId: {}, error: {}", run.id, e.getMessage());
+        }
+        List<Map<String, Object>> items = new ArrayList<>(run.items.size());
+        int succeeded = 0;
+        int failed = 0;
+        int inProgress = 0;
+        for (int i = 0; i < run.results.length(); i++) {
+            Map<String, Object> item = run.results.get(i);
+            items.add(item);
+            switch (statusOf(item)) {
+                case ITEM_SUCCESS -> succeeded++;
+                case ITEM_FAILED -> failed++;
+                case ITEM_IN_PROGRESS -> inProgress++;
+                default -> {
+                }
+            }
+        }
+        int cancelled = items.size() - succeeded - failed - inProgress;
+        long executionTime = System.currentTimeMillis() - run.startTime;
+
+        Map<String, Object> output = new LinkedHashMap<>();
+        output.put("total", items.size());
+        output.put("succeeded", succeeded);
+        output.put("failed", failed);
+        output.put("inProgress", inProgress);
+        output.put("cancelledItems", cancelled);
+        output.put(CANCEL_FIELD, run.cancelled);
+        output.put("items", items);
+        try {
+            if (succeeded + inProgress > 0) {
+                aiAppRecordService.updateAiAppSuccess(run.id, output, executionTime);
+            } else {
+                aiAppRecordService.updateAiAppFailed(run.id,
+                    "批量执行无成功条目 - 失败: " + failed + ", 取消: " + cancelled, executionTime);
+            }
+        } catch (Exception e) {
+            log.error("更新批次父记录失败 - batchId: {}, error: {}", run.id, e.getMessage(), e);
+        }
+        log.info("批量执行结束 - batchId: {}, 成功: {}, 失败: {}, 进行中: {}, 取消: {}, executionTime: {}ms", run.id,
+            succeeded, failed, inProgress, cancelled, executionTime);
+    }
+
+    /**
+     * 按执行结果确定条目状态：异常或失败结果为失败；返回进行中的子记录为已提交
+     */
+    private static Map<String, Object> toItem(int index, Object result, Throwable error) {
+        if (error != null) {
+            return item(index, ITEM_FAILED, null, AiAppExecutor.unwrap(error)
+                .getMessage());
+        }
+        int status = ITEM_SUCCESS;
+        Map<String, Object> item = item(index, status, result, null);
+        if (result instanceof Map<?, ?> map) {
+            if (map.get("aiAppRecordId") instanceof String recordId) {
+                item.put("aiAppRecordId", recordId);
+            }
+            Object resultStatus = map.get("status");
+            Object statusCode = map.get("statusCode");
+            if (Integer.valueOf(2)
+                .equals(resultStatus) || statusCode instanceof Integer code && (code < 200 || code >= 300)) {
+                status = ITEM_FAILED;
+            } else if (Integer.valueOf(3)
+                .equals(resultStatus) && item.containsKey("aiAppRecordId")) {
+                status = ITEM_IN_PROGRESS;
+            }
+        }
+        item.put("status", status);
+        return item;
+    }
+
+    private static Map<String, Object> item(int index, int status, Object result, String error) {
+        Map<String, Object> item = new LinkedHashMap<>();
+        item.put("index", index);
+        item.put("status", status);
+        if (result != null) {
+            item.put("result", result);
+        }
+        if (error != null) {
+            item.put("error", error);
+        }
+        return item;
+    }
+
+    private static int statusOf(Map<String, Object> item) {
+        return item != null && item.get("status") instanceof Number status ? status.intValue() : ITEM_PENDING;
+    }
+
+    /**
+     * 从 Redis 进度中取出各条目，未结束的条目补为等待中
+     */
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> itemsFromState(Map<Object, Object> state, int total) {
+        List<Map<String, Object>> items = new ArrayList<>(total);
+        for (int i = 0; i < total; i++) {
+            Object item = state.get(ITEM_FIELD_PREFIX + i);
+            items.add(item instanceof Map<?, ?> map ? new LinkedHashMap<>((Map<String, Object>)map) :
+                item(i, ITEM_PENDING, null, null));
+        }
+        return items;
+    }
+
+    /**
+     * 已提交的条目按子记录当前状态更新（不修改已保存的结果）
+     */
+    private void refreshChildren(List<Map<String, Object>> items) {
+        Set<String> childIds = items.stream()
+            .filter(item -> statusOf(item) == ITEM_IN_PROGRESS && item.get("aiAppRecordId") != null)
+            .map(item -> item.get("aiAppRecordId")
+                .toString())
+            .collect(Collectors.toSet());
+        if (childIds.isEmpty()) {
+            return;
+        }
+        Map<String, AiAppRecord> children = aiAppRecordService.listByIds(childIds)
+            .stream()
+            .collect(Collectors.toMap(AiAppRecord::getId, record -> record));
+        for (Map<String, Object> item : items) {
+            AiAppRecord child = item.get("aiAppRecordId") == null ? null : children.get(item.get("aiAppRecordId")
+                .toString());
+            if (child == null || statusOf(item) != ITEM_IN_PROGRESS) {
+                continue;
+            }
+            if (Integer.valueOf(1)
+                .equals(child.getStatus())) {
+                item.put("status", ITEM_SUCCESS);
+            } else if (Integer.valueOf(2)
+                .equals(child.getStatus())) {
+                item.put("status", ITEM_FAILED);
+                item.put("error", child.getErrorMessage());
+            }
+        }
+    }
+
+    private Map<String, Object> readOutput(String outputResult) {
+        if (outputResult == null || outputResult.isBlank()) {
+            return new HashMap<>();
+        }
+        try {
+            return objectMapper.readValue(outputResult, new TypeReference<Map<String, Object>>() {});
+        } catch (Exception e) {
+            log.warn("批次父记录结果无法解析 - error: {}", e.getMessage());
+            return new HashMap<>();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> castItems(Object items) {
+        if (!(items instanceof List<?> list)) {
+            return new ArrayList<>();
+        }
+        List<Map<String, Object>> result = new ArrayList<>(list.size());
+        for (Object item : list) {
+            if (item instanceof Map<?, ?> map) {
+                result.add((Map<String, Object>)map);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 单个批次的执行状态
+     */
+    private static final class BatchRun {
+        private final String id;
+        private final String userId;
+        private final Long appId;
+        private final List<Map<String, Object>> items;
+        private final boolean stopOnError;
+        private final long startTime;
+        private final AtomicInteger next;
+        private final AtomicInteger remaining;
+        private final AtomicReferenceArray<Map<String, Object>> results;
+        private volatile boolean cancelled;
+
+        private BatchRun(String id, String userId, Long appId, List<Map<String, Object>> items,
+            boolean stopOnError, long startTime, int next) {
+            this.id = id;
+            this.userId = userId;
+            this.appId = appId;
+            this.items = items;
+            this.stopOnError = stopOnError;
+            this.startTime = startTime;
+            this.next = new AtomicInteger(next);
+            this.remaining = new AtomicInteger(items.size());
+            this.results = new AtomicReferenceArray<>(items.size());
+        }
+    }
+}
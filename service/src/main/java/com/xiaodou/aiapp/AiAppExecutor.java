@@ -1,7 +1,8 @@
 package com.xiaodou.aiapp;
 
-import com.xiaodou.aiapp.handler.AiApplicationHandler;
+import com.xiaodou.aiapp.credit.CreditWallet;
 import com.xiaodou.aiapp.model.AiAppExecutionContext;
+import com.xiaodou.aiapp.model.Deadline;
 import com.xiaodou.mapper.UserMapper;
 import com.xiaodou.model.AiApplication;
 import com.xiaodou.service.AiApplicationService;
@@ -10,6 +11,10 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
 
 /**
  * 核心执行器
@@ -24,42 +29,87 @@ import java.util.Map;
 public class AiAppExecutor {
     private final AiApplicationService aiApplicationService;
     private final AiApplicationHandlerFactory handlerFactory;
+    private final AppSchemaRegistry appSchemaRegistry;
+    private final ExecutionCoalescer executionCoalescer;
+    private final CreditWallet creditWallet;
     private final UserMapper userMapper;
-    // protected PointAssignService pointAssignService;
-
-    // 可选：积分服务、权限服务等
-    // @Autowired
-    // private PointService pointService;
 
     /**
-     * 同步执行 AI 应用（主入口）
+     * 非阻塞执行 AI 应用（主入口）
+     * <p>
+     * 参数校验在调用线程完成，执行器返回的 Future 在上游响应后完成，期间不占用调用线程。
+     * 校验失败等异常同样以失败的 Future 返回。
+     * </p>
      */
-    public Object execute(String userId, Long appId, Map<String, Object> inputParams) throws Exception {
-        // 1. 获取应用配置
-        AiApplication app = aiApplicationService.getById(appId);
+    public CompletableFuture<Object> executeAsync(String userId, Long appId, Map<String, Object> inputParams) {
+        AiAppExecutionContext context;
+        try {
+            // 1. 获取应用配置
+            AiApplication app = aiApplicationService.getById(appId);
 
-        // 2. 权限与积分校验（可扩展为校验链）
-        // if (!checkPermission(userId, appId, app)) {
-        //     throw new SecurityException("用户无权限执行该 AI 应用");
-        // }
+            // 2. 权限校验（可扩展为校验链；积分在执行前由 CreditWallet 预扣）
+            // if (!checkPermission(userId, appId, app)) {
+            //     throw new SecurityException("用户无权限执行该 AI 应用");
+            // }
 
-        // 3. 冻结积分（预留，可后续实现）
-        // freezePoints(userId, app.getCostPoints());
+            // 按 (应用ID, 版本) 取预编译 Schema 校验，热路径不再解析 Schema 文本
+            Map<String, Object> params =
+                JsonSchemaUtils.validateAndApplyDefaults(inputParams, appSchemaRegistry.get(app));
 
-        Map<String, Object> params = JsonSchemaUtils.validateAndApplyDefaults(inputParams, app.getParamSchema());
+            // 3. 构建上下文（执行时限从此刻起算，随上下文传给执行器及其每一次上游调用）
+            context = new AiAppExecutionContext();
+            context.setUserId(userId);
+            context.setAppId(appId);
+            context.setInputParams(params);
+            context.setAiApplication(app);
+            context.setDeadline(Deadline.after(app.getTimeoutMs()));
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
 
-        // 4. 构建上下文
-        AiAppExecutionContext context = new AiAppExecutionContext();
-        context.setUserId(userId);
-        context.setAppId(appId);
-        context.setInputParams(inputParams);
-        context.setAiApplication(app);
+        // 4. 合并相同请求后预扣积分（同一用户的重复提交只扣一次，付费应用不跨用户合并），
+        //    在执行器舱壁内非阻塞执行（舱壁饱和时快速失败）
+        return executionCoalescer.execute(context, () -> creditWallet.execute(context,
+                () -> handlerFactory.executeAsync(context.getAiApplication()
+                    .getHandlerBean(), context)))
+            .thenApply(result -> {
+                context.setResult(result);
+                return result;
+            });
+    }
 
-        // 5. 获取 Handler 并执行
-        AiApplicationHandler handler = handlerFactory.getHandler(app.getHandlerBean());
-        Object result = handler.execute(params);
+    /**
+     * 同步执行 AI 应用（阻塞等待 {@link #executeAsync} 的结果）
+     */
+    public Object execute(String userId, Long appId, Map<String, Object> inputParams) throws Exception {
+        return await(executeAsync(userId, appId, inputParams));
+    }
 
-        context.setResult(result);
-        return result;
+    /**
+     * 阻塞等待异步结果，并抛出原始异常（供仍需同步返回的调用方及执行器的 execute 复用）
+     */
+    public static <T> T await(CompletionStage<T> stage) throws Exception {
+        try {
+            return stage.toCompletableFuture()
+                .get();
+        } catch (ExecutionException e) {
+            Throwable cause = unwrap(e);
+            if (cause instanceof Exception exception) {
+                throw exception;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 剥离 Future 链路包装的 CompletionException / ExecutionException，取得原始异常
+     */
+    public static Throwable unwrap(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException)
+            && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
     }
 }
@@ -1,22 +1,58 @@
 package com.xiaodou.aiapp;
 
 import com.xiaodou.aiapp.handler.AiApplicationHandler;
-import lombok.RequiredArgsConstructor;
-import org.springframework.context.ApplicationContext;
+import com.xiaodou.aiapp.model.AiAppExecutionContext;
+import com.xiaodou.config.AiHandlerProperties;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
 /**
- * 工厂类 —— 从 Spring 获取 Handler Bean
+ * 工厂类 —— 执行器注册表
+ * <p>
+ * 启动时一次性收集所有 {@link AiApplicationHandler} Bean（key 为 Bean 名称，与 AiApplication.handlerBean 一致），
+ * 并为每个执行器创建独立的 {@link HandlerBulkhead}。请求期间只做 Map 查找，不再逐次 getBean。
+ * </p>
+ * <p>
+ * 舱壁指标（tag: handler）：
+ * aiapp.handler.in.flight / aiapp.handler.queue.depth（Gauge），
+ * aiapp.handler.rejected（Counter，tag: reason=queue_full|timeout）。
+ * </p>
  *
  * @author xiaodou V=>dddou117
  * @version V1.0
  * @since 2025/10/29
  */
-@RequiredArgsConstructor
+@Slf4j
 @Component
 public class AiApplicationHandlerFactory {
 
-    private final ApplicationContext applicationContext;
+    private final Map<String, AiApplicationHandler> handlers;
+    private final Map<String, HandlerBulkhead> bulkheads;
+
+    public AiApplicationHandlerFactory(Map<String, AiApplicationHandler> handlers,
+        AiHandlerProperties aiHandlerProperties, MeterRegistry meterRegistry) {
+        this.handlers = Collections.unmodifiableMap(new HashMap<>(handlers));
+
+        Map<String, HandlerBulkhead> created = new HashMap<>();
+        handlers.keySet()
+            .forEach(name -> {
+                AiHandlerProperties.Bulkhead config = aiHandlerProperties.resolve(name);
+                HandlerBulkhead bulkhead = new HandlerBulkhead(name, config);
+                bindMetrics(bulkhead, meterRegistry);
+                created.put(name, bulkhead);
+                log.info("注册AI应用执行器 - handlerBean: {}, maxConcurrent: {}, maxWaiting: {}, maxWaitMs: {}", name,
+                    config.getMaxConcurrent(), config.getMaxWaiting(), config.getMaxWaitMs());
+            });
+        this.bulkheads = Collections.unmodifiableMap(created);
+    }
 
     /**
      * 根据 handlerBean 名称获取对应的 AiApplicationHandler 实例
@@ -26,10 +62,71 @@ public class AiApplicationHandlerFactory {
             .isEmpty()) {
             throw new IllegalArgumentException("handlerBeanName 不能为空");
         }
+        AiApplicationHandler handler = handlers.get(handlerBeanName);
+        if (handler == null) {
+            throw new RuntimeException("无法找到名为 '" + handlerBeanName + "' 的 AiApplicationHandler Bean");
+        }
+        return handler;
+    }
+
+    /**
+     * 在执行器舱壁内非阻塞执行：获得许可后调用 {@link AiApplicationHandler#executeAsync}，结束后归还许可
+     * <p>
+     * 排队等待许可期间执行时限已耗尽的请求不再调用执行器，直接以 AI_TIMEOUT 失败。
+     * </p>
+     *
+     * @param handlerBeanName 执行器 Bean 名称
+     * @param context 执行上下文
+     * @return 执行结果；舱壁饱和时以 AI_HANDLER_BUSY 失败
+     */
+    public CompletableFuture<Object> executeAsync(String handlerBeanName, AiAppExecutionContext context) {
+        AiApplicationHandler handler;
         try {
-            return applicationContext.getBean(handlerBeanName, AiApplicationHandler.class);
-        } catch (Exception e) {
-            throw new RuntimeException("无法找到名为 '" + handlerBeanName + "' 的 AiApplicationHandler Bean", e);
+            handler = getHandler(handlerBeanName);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
         }
+        HandlerBulkhead bulkhead = bulkheads.get(handlerBeanName);
+
+        return bulkhead.acquire()
+            .thenCompose(permit -> {
+                CompletableFuture<Object> execution;
+                try {
+                    context.getDeadline()
+                        .check(handlerBeanName);
+                    execution = handler.executeAsync(context)
+                        .toCompletableFuture();
+                } catch (RuntimeException e) {
+                    execution = CompletableFuture.failedFuture(e);
+                }
+                return execution.whenComplete((result, error) -> bulkhead.release());
+            });
+    }
+
+    /**
+     * 获取指定执行器的舱壁（用于监控查询）
+     */
+    public HandlerBulkhead getBulkhead(String handlerBeanName) {
+        return bulkheads.get(handlerBeanName);
+    }
+
+    private void bindMetrics(HandlerBulkhead bulkhead, MeterRegistry meterRegistry) {
+        String name = bulkhead.getHandlerBean();
+        Gauge.builder("aiapp.handler.in.flight", bulkhead, HandlerBulkhead::getInFlight)
+            .tag("handler", name)
+            .description("执行器在途请求数")
+            .register(meterRegistry);
+        Gauge.builder("aiapp.handler.queue.depth", bulkhead, HandlerBulkhead::getQueueDepth)
+            .tag("handler", name)
+            .description("执行器等待队列长度")
+            .register(meterRegistry);
+        FunctionCounter.builder("aiapp.handler.rejected", bulkhead, HandlerBulkhead::getRejectedQueueFull)
+            .tags("handler", name, "reason", "queue_full")
+            .description("执行器因队列已满拒绝的请求数")
+            .register(meterRegistry);
+        FunctionCounter.builder("aiapp.handler.rejected", bulkhead, HandlerBulkhead::getRejectedTimeout)
+            .tags("handler", name, "reason", "timeout")
+            .description("执行器因排队超时拒绝的请求数")
+            .register(meterRegistry);
     }
 }
@@ -0,0 +1,88 @@
+package com.xiaodou.aiapp;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.xiaodou.model.AiApplication;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 应用入参 Schema 注册表
+ * <p>
+ * 以 (应用ID, 版本) 为键缓存 {@link CompiledAppSchema}，每个应用版本只解析、编译一次，
+ * 校验热路径不再以整段 Schema 文本作为缓存键做哈希与比较。
+ * </p>
+ * <p>
+ * 失效策略：
+ * - 管理端更新/删除应用时调用 {@link #invalidate(String)} 立即失效本节点缓存；
+ * - 其他节点依靠缓存条目记录的 updatedAt 比对，发现应用已更新即重新编译。
+ * </p>
+ *
+ * @author xiaodou V=>dddou117
+ * @version V1.0
+ * @since 2025/12/11
+ */
+@Slf4j
+@Component
+public class AppSchemaRegistry {
+
+    private final Cache<String, Entry> cache = Caffeine.newBuilder()
+        .maximumSize(2000)
+        .expireAfterAccess(12, TimeUnit.HOURS)
+        .build();
+
+    /**
+     * 获取应用的预编译 Schema（必要时编译）
+     *
+     * @param app AI 应用
+     * @return 预编译 Schema
+     * @throws IllegalArgumentException 当 Schema 解析失败时抛出
+     */
+    public CompiledAppSchema get(AiApplication app) {
+        String key = cacheKey(app.getId(), app.getVersion());
+        Entry entry = cache.getIfPresent(key);
+        if (entry != null && Objects.equals(entry.updatedAt, app.getUpdatedAt())) {
+            return entry.schema;
+        }
+
+        // 未命中或应用已更新：重新编译（编译失败不缓存，异常直接抛给调用方）
+        Entry compiled = cache.asMap()
+            .compute(key, (k, current) -> current != null && Objects.equals(current.updatedAt, app.getUpdatedAt()) ?
+                current : compile(app));
+        return compiled.schema;
+    }
+
+    private Entry compile(AiApplication app) {
+        CompiledAppSchema schema = JsonSchemaUtils.compile(app.getParamSchema());
+        log.info("编译应用入参 Schema - appId: {}, version: {}, fastPath: {}", app.getId(), app.getVersion(),
+            schema.isFastPathSupported());
+        return new Entry(app.getUpdatedAt(), schema);
+    }
+
+    /**
+     * 失效指定应用所有版本的预编译 Schema
+     *
+     * @param appId 应用ID
+     */
+    public void invalidate(String appId) {
+        if (appId == null) {
+            return;
+        }
+        String prefix = appId + ":";
+        cache.asMap()
+            .keySet()
+            .removeIf(key -> key.startsWith(prefix));
+        log.info("失效应用入参 Schema 缓存 - appId: {}", appId);
+    }
+
+    private static String cacheKey(String appId, String version) {
+        return appId + ":" + (version == null ? "" : version);
+    }
+
+    private record Entry(LocalDateTime updatedAt, CompiledAppSchema schema) {
+    }
+}
@@ -0,0 +1,67 @@
+package com.xiaodou.aiapp;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.networknt.schema.JsonSchema;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 预编译的应用入参 Schema
+ * <p>
+ * 由 {@link JsonSchemaUtils#compile(String)} 一次性解析生成：Schema 节点、校验器实例、必填字段集合、
+ * 用于前端表单渲染的字段元数据，以及常用子集的快速校验器（Schema 超出子集时为 null）。
+ * 实例不可变，可在请求间安全共享。
+ * </p>
+ *
+ * @author xiaodou V=>dddou117
+ * @version V1.0
+ * @since 2025/12/11
+ */
+public final class CompiledAppSchema {
+
+    private final JsonNode schemaNode;
+    private final JsonSchema schema;
+    private final Set<String> requiredFields;
+    private final List<PropertyMetadata> metadata;
+    private final FastSchemaValidator fastValidator;
+
+    CompiledAppSchema(JsonNode schemaNode, JsonSchema schema, Set<String> requiredFields,
+        List<PropertyMetadata> metadata, FastSchemaValidator fastValidator) {
+        this.schemaNode = schemaNode;
+        this.schema = schema;
+        this.requiredFields = Set.copyOf(requiredFields);
+        this.metadata = List.copyOf(metadata);
+        this.fastValidator = fastValidator;
+    }
+
+    JsonNode getSchemaNode() {
+        return schemaNode;
+    }
+
+    JsonSchema getSchema() {
+        return schema;
+    }
+
+    Set<String> getRequiredFields() {
+        return requiredFields;
+    }
+
+    FastSchemaValidator getFastValidator() {
+        return fastValidator;
+    }
+
+    /**
+     * 是否可走快速校验路径
+     */
+    public boolean isFastPathSupported() {
+        return fastValidator != null;
+    }
+
+    /**
+     * 字段元数据（只读）
+     */
+    public List<PropertyMetadata> getMetadata() {
+        return metadata;
+    }
+}
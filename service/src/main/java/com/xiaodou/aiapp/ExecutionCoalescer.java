@@ -0,0 +1,271 @@
+package com.xiaodou.aiapp;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.xiaodou.aiapp.model.AiAppExecutionContext;
+import com.xiaodou.config.AiHandlerProperties;
+import com.xiaodou.config.CreditProperties;
+import com.xiaodou.model.AiApplication;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 相同请求合并
+ * <p>
+ * 以 (应用ID, 版本, 校验后参数的规范化摘要) 为键合并执行：同键请求在执行中或刚完成的短窗口内到达时，
+ * 直接复用首个请求（leader）的 Future，不再重复调用执行器、重复创建 AiAppRecord，
+ * 同一用户的跟随者拿到与 leader 相同的结果（含 aiAppRecordId）。
+ * </p>
+ * <p>
+ * 非确定性应用的合并键额外包含 userId，只合并同一用户的重复提交（连点）；
+ * 在 AiApplication.config 中声明确定性的应用跨用户合并，并可复用最近一次成功结果。
+ * AiAppRecord 属于 leader 所在用户，跨用户只共享不含 aiAppRecordId 的结果：
+ * leader 的结果带有记录时，其他用户的跟随者自行执行并创建自己的记录，带记录的结果也不写入最近结果缓存。
+ * <pre>
+ * {"coalesce": {"deterministic": true, "resultTtlSeconds": 300}}
+ * </pre>
+ * 积分预扣在合并之内，只由 leader 执行一次；因此启用积分时付费应用（price > 0）忽略确定性声明，
+ * 只合并同一用户的重复提交，避免其他用户不扣积分即拿到结果。
+ * </p>
+ *
+ * @author xiaodou V=>dddou117
+ * @version V1.0
+ * @since 2025/12/14
+ */
+@Slf4j
+@Component
+public class ExecutionCoalescer {
+
+    private static final String RESULT_KEY_PREFIX = "aiapp:coalesce:result:";
+
+    private final AiHandlerProperties properties;
+    private final CreditProperties creditProperties;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final ObjectMapper canonicalMapper;
+
+    private final ConcurrentMap<String, InFlight> inFlight = new ConcurrentHashMap<>();
+    private final Cache<String, Policy> policyCache = Caffeine.newBuilder()
+        .maximumSize(1_000)
+        .build();
+
+    private final Counter inFlightHits;
+    private final Counter recentHits;
+
+    public ExecutionCoalescer(AiHandlerProperties properties, CreditProperties creditProperties,
+        RedisTemplate<String, Object> redisTemplate, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.creditProperties = creditProperties;
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        // 规范化序列化：Map 键排序，保证相同参数得到相同摘要
+        this.canonicalMapper = objectMapper.copy()
+            .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+        this.inFlightHits = Counter.builder("aiapp.execution.coalesced")
+            .description("被合并的AI应用执行请求数")
+            .tag("source", "in_flight")
+            .register(meterRegistry);
+        this.recentHits = Counter.builder("aiapp.execution.coalesced")
+            .description("被合并的AI应用执行请求数")
+            .tag("source", "recent_result")
+            .register(meterRegistry);
+    }
+
+    /**
+     * 合并执行
+     *
+     * @param context 执行上下文（参数已校验）
+     * @param runner 实际执行
+     * @return 结果 Future（leader 与跟随者共享同一结果）
+     */
+    public CompletableFuture<Object> execute(AiAppExecutionContext context,
+        Supplier<CompletableFuture<Object>> runner) {
+        AiHandlerProperties.Coalesce config = properties.getCoalesce();
+        if (!config.isEnabled()) {
+            return runner.get();
+        }
+
+        String key;
+        Policy policy;
+        try {
+            policy = policyOf(context.getAiApplication());
+            key = coalesceKey(context, policy);
+        } catch (Exception e) {
+            log.warn("生成合并键失败，直接执行 - appId: {}, error: {}", context.getAppId(), e.getMessage());
+            return runner.get();
+        }
+
+        CompletableFuture<Object> promise = new CompletableFuture<>();
+        InFlight entry = new InFlight(context.getUserId(), promise);
+        InFlight existing = inFlight.putIfAbsent(key, entry);
+        if (existing != null) {
+            inFlightHits.increment();
+            log.info("合并相同请求 - appId: {}, userId: {}", context.getAppId(), context.getUserId());
+            if (Objects.equals(existing.userId(), context.getUserId())) {
+                return existing.promise()
+                    .copy();
+            }
+            // 其他用户的 leader：结果带记录时不共享，自行执行
+            return existing.promise()
+                .thenCompose(result -> hasRecord(result) ? runner.get() : CompletableFuture.completedFuture(result));
+        }
+
+        promise.whenComplete((result, error) -> {
+            // 失败立即移除以便重试；成功结果在短窗口内继续供重复提交复用
+            if (error != null || config.getWindowMs() <= 0) {
+                inFlight.remove(key, entry);
+            } else {
+                CompletableFuture.delayedExecutor(config.getWindowMs(), TimeUnit.MILLISECONDS)
+                    .execute(() -> inFlight.remove(key, entry));
+            }
+        });
+
+        try {
+            Object recent = policy.reusesResults() ? readRecentResult(key) : null;
+            if (recent != null && !hasRecord(recent)) {
+                recentHits.increment();
+                promise.complete(recent);
+            } else {
+                runner.get()
+                    .whenComplete((result, error) -> {
+                        if (error != null) {
+                            promise.completeExceptionally(error);
+                            return;
+                        }
+                        if (policy.reusesResults() && isReusable(result)) {
+                            writeRecentResult(key, result, policy.resultTtlSeconds());
+                        }
+                        promise.complete(result);
+                    });
+            }
+        } catch (RuntimeException e) {
+            promise.completeExceptionally(e);
+        }
+        return promise.copy();
+    }
+
+    /**
+     * 合并键：appId:version:参数摘要[:userId]
+     */
+    private String coalesceKey(AiAppExecutionContext context, Policy policy) throws Exception {
+        byte[] canonical = canonicalMapper.writeValueAsBytes(context.getInputParams());
+        String digest = DigestUtils.md5DigestAsHex(canonical);
+        AiApplication app = context.getAiApplication();
+        String key = app.getId() + ":" + app.getVersion() + ":" + digest;
+        return policy.deterministic() ? key : key + ":" + context.getUserId();
+    }
+
+    /**
+     * 解析应用配置中的合并策略（按配置文本缓存）；扣积分的应用只按用户合并
+     */
+    private Policy policyOf(AiApplication app) {
+        if (creditProperties.isEnabled() && app.getPrice() != null && app.getPrice() > 0) {
+            return Policy.DEFAULT;
+        }
+        String config = app.getConfig();
+        if (config == null || config.isBlank()) {
+            return Policy.DEFAULT;
+        }
+        return policyCache.get(config, text -> {
+            try {
+                JsonNode node = objectMapper.readTree(text)
+                    .path("coalesce");
+                return new Policy(node.path("deterministic")
+                    .asBoolean(false), node.path("resultTtlSeconds")
+                    .asLong(0));
+            } catch (Exception e) {
+                log.warn("应用配置不是合法JSON，使用默认合并策略 - appId: {}", app.getId());
+                return Policy.DEFAULT;
+            }
+        });
+    }
+
+    private Object readRecentResult(String key) {
+        try {
+            return redisTemplate.opsForValue()
+                .get(RESULT_KEY_PREFIX + key);
+        } catch (Exception e) {
+            log.warn("读取最近结果失败 - key: {}, error: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeRecentResult(String key, Object result, long ttlSeconds) {
+        try {
+            redisTemplate.opsForValue()
+                .set(RESULT_KEY_PREFIX + key, result, ttlSeconds, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            log.warn("写入最近结果失败 - key: {}, error: {}", key, e.getMessage());
+        }
+    }
+
+    /**
+     * 只复用明确成功的结果：status 为进行中/失败、HTTP 非 2xx、已降级为后台执行或带有 AiAppRecord 的结果不复用
+     */
+    private static boolean isReusable(Object result) {
+        if (result == null) {
+            return false;
+        }
+        if (!(result instanceof Map<?, ?> map)) {
+            return true;
+        }
+        if (hasRecord(map)) {
+            return false;
+        }
+        Object status = map.get("status");
+        if (status != null && !Integer.valueOf(1)
+            .equals(status)) {
+            return false;
+        }
+        Object statusCode = map.get("statusCode");
+        if (statusCode instanceof Integer code && (code < 200 || code >= 300)) {
+            return false;
+        }
+        return !Boolean.TRUE.equals(map.get("downgraded"));
+    }
+
+    /**
+     * 结果是否关联了 AiAppRecord（记录归属 leader 所在用户）
+     */
+    private static boolean hasRecord(Object result) {
+        return result instanceof Map<?, ?> map && map.get("aiAppRecordId") != null;
+    }
+
+    /**
+     * 执行中的合并项
+     *
+     * @param userId leader 所在用户
+     * @param promise leader 的结果
+     */
+    private record InFlight(String userId, CompletableFuture<Object> promise) {
+    }
+
+    /**
+     * 合并策略
+     *
+     * @param deterministic 相同输入是否产生相同结果（跨用户合并）
+     * @param resultTtlSeconds 最近成功结果的复用时长（秒），0 表示不复用
+     */
+    private record Policy(boolean deterministic, long resultTtlSeconds) {
+        private static final Policy DEFAULT = new Policy(false, 0);
+
+        private boolean reusesResults() {
+            return deterministic && resultTtlSeconds > 0;
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.xiaodou.aiapp;
+
+import com.xiaodou.config.FairSchedulerProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 按用户公平调度的任务执行器（替代原 FIFO 线程池 workflowTaskExecutor）
+ * <p>
+ * 每个用户一个队列，活跃队列组成环，按加权差额轮转（Deficit Round Robin）出队：
+ * 每轮每个用户可出队的任务数等于其通道权重，单个用户批量提交的任务不会挡住其他用户。
+ * 同时限制单个用户同时执行的任务数，达到上限的用户在本轮被跳过。
+ * </p>
+ * <p>
+ * 通道（lane）由 userId 经 laneResolver 解析（如按租户区分 default / paid），
+ * 排队等待时间按通道记录到 aiapp.scheduler.queue.wait。未指定用户的任务进入 system 通道。
+ * 全局排队达到上限时由提交线程直接执行，与原 CallerRunsPolicy 一致，保证任务不丢失。
+ * </p>
+ * <p>
+ * 以用户身份提交的任务：工作流作业的处理（WorkflowJobListener）、批量执行的条目启动与结果落地
+ * （AiAppBatchExecutor）、流水线节点的启动与记录写入（PipelineHandler）、工作流结果落地（WorkflowPollScheduler）。
+ * </p>
+ *
+ * @author xiaodou V=>dddou117
+ * @version V1.0
+ * @since 2025/12/15
+ */
+@Slf4j
+public class FairTaskScheduler implements Executor, DisposableBean {
+
+    public static final String SYSTEM_LANE = "system";
+    private static final String SYSTEM_USER = "__system__";
+
+    private final FairSchedulerProperties properties;
+    private final Function<String, String> laneResolver;
+    private final MeterRegistry meterRegistry;
+    private final List<Thread> workers = new ArrayList<>();
+    private final Map<String, Timer> waitTimers = new ConcurrentHashMap<>();
+
+    // 以下状态均由 this 锁保护
+    private final Map<String, UserQueue> queues = new HashMap<>();
+    private final ArrayDeque<UserQueue> ring = new ArrayDeque<>();
+    private int queued;
+    private boolean shutdown;
+
+    public FairTaskScheduler(FairSchedulerProperties properties, Function<String, String> laneResolver,
+        MeterRegistry meterRegistry, String threadNamePrefix) {
+        this.properties = properties;
+        this.laneResolver = laneResolver;
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("aiapp.scheduler.queued", this, FairTaskScheduler::queuedCount)
+            .description("公平调度器排队任务数")
+            .register(meterRegistry);
+        Gauge.builder("aiapp.scheduler.active.users", this, FairTaskScheduler::activeUserCount)
+            .description("公平调度器中有任务的用户数")
+            .register(meterRegistry);
+
+        for (int i = 0; i < properties.getWorkers(); i++) {
+            Thread worker = Thread.ofPlatform()
+                .name(threadNamePrefix + i)
+                .daemon(true)
+                .unstarted(this::workLoop);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    /**
+     * 提交系统任务（system 通道）
+     */
+    @Override
+    public void execute(Runnable task) {
+        execute(null, task);
+    }
+
+    /**
+     * 以用户身份提交任务
+     *
+     * @param userId 用户ID，为空时进入 system 通道
+     * @param task 任务
+     */
+    public void execute(String userId, Runnable task) {
+        String user = userId == null ? SYSTEM_USER : userId;
+        String lane = userId == null ? SYSTEM_LANE : resolveLane(userId);
+        QueuedTask queuedTask = new QueuedTask(task, lane, System.nanoTime());
+
+        synchronized (this) {
+            if (!shutdown && queued < properties.getMaxQueued()) {
+                UserQueue queue = queues.computeIfAbsent(user, k -> new UserQueue(k, lane));
+                queue.tasks.addLast(queuedTask);
+                queued++;
+                if (!queue.inRing) {
+                    queue.inRing = true;
+                    ring.addLast(queue);
+                }
+                notify();
+                return;
+            }
+        }
+
+        // 排队已满或正在关闭：由提交线程直接执行
+        log.warn("公平调度器排队已满，由提交线程执行 - userId: {}, queued: {}", userId, queued);
+        runTask(queuedTask);
+    }
+
+    /**
+     * 以用户身份提交任务的 Executor，便于作为 CompletableFuture 的异步执行器
+     */
+    public Executor forUser(String userId) {
+        return task -> execute(userId, task);
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        synchronized (this) {
+            shutdown = true;
+            notifyAll();
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(properties.getAwaitTerminationSeconds());
+        for (Thread worker : workers) {
+            long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remainingMs > 0) {
+                worker.join(remainingMs);
+            }
+        }
+    }
+
+    private void workLoop() {
+        while (true) {
+            Dispatch dispatch;
+            try {
+                dispatch = take();
+            } catch (InterruptedException e) {
+                Thread.currentThread()
+                    .interrupt();
+                return;
+            }
+            if (dispatch == null) {
+                return;
+            }
+            try {
+                runTask(dispatch.task);
+            } finally {
+                release(dispatch.queue);
+            }
+        }
+    }
+
+    /**
+     * 按 DRR 取下一个任务；关闭且队列清空后返回 null
+     */
+    private synchronized Dispatch take() throws InterruptedException {
+        while (true) {
+            int candidates = ring.size();
+            for (int i = 0; i < candidates; i++) {
+                UserQueue queue = ring.pollFirst();
+                if (queue.inFlight >= properties.getPerUserMaxInFlight()) {
+                    // 该用户已达并发上限，本轮跳过
+                    ring.addLast(queue);
+                    continue;
+                }
+                if (queue.deficit <= 0) {
+                    queue.deficit += properties.weightOf(queue.lane);
+                }
+                QueuedTask task = queue.tasks.pollFirst();
+                queue.deficit--;
+                queue.inFlight++;
+                queued--;
+
+                if (queue.tasks.isEmpty()) {
+                    queue.inRing = false;
+                    queue.deficit = 0;
+                } else if (queue.deficit > 0) {
+                    // 本轮额度未用完，继续排在队首
+                    ring.addFirst(queue);
+                } else {
+                    ring.addLast(queue);
+                }
+                return new Dispatch(queue, task);
+            }
+            if (shutdown && queued == 0) {
+                return null;
+            }
+            wait();
+        }
+    }
+
+    private synchronized void release(UserQueue queue) {
+        queue.inFlight--;
+        if (queue.tasks.isEmpty() && queue.inFlight == 0) {
+            queues.remove(queue.userId, queue);
+        }
+        if (!ring.isEmpty() || shutdown) {
+            notifyAll();
+        }
+    }
+
+    private void runTask(QueuedTask task) {
+        waitTimer(task.lane).record(System.nanoTime() - task.enqueuedAt, TimeUnit.NANOSECONDS);
+        try {
+            task.runnable.run();
+        } catch (Throwable e) {
+            log.error("公平调度器任务执行异常 - lane: {}", task.lane, e);
+        }
+    }
+
+    private String resolveLane(String userId) {
+        try {
+            String lane = laneResolver.apply(userId);
+            return lane == null ? UserLaneResolver.DEFAULT_LANE : lane;
+        } catch (Exception e) {
+            return UserLaneResolver.DEFAULT_LANE;
+        }
+    }
+
+    private Timer waitTimer(String lane) {
+        return waitTimers.computeIfAbsent(lane, l -> Timer.builder("aiapp.scheduler.queue.wait")
+            .description("公平调度器任务排队等待时间")
+            .tag("lane", l)
+            .register(meterRegistry));
+    }
+
+    private synchronized int queuedCount() {
+        return queued;
+    }
+
+    private synchronized int activeUserCount() {
+        return queues.size();
+    }
+
+    /**
+     * 单个用户的任务队列
+     */
+    private static final class UserQueue {
+        private final String userId;
+        private final String lane;
+        private final ArrayDeque<QueuedTask> tasks = new ArrayDeque<>();
+        private int deficit;
+        private int inFlight;
+        private boolean inRing;
+
+        private UserQueue(String userId, String lane) {
+            this.userId = userId;
+            this.lane = lane;
+        }
+    }
+
+    private record QueuedTask(Runnable runnable, String lane, long enqueuedAt) {
+    }
+
+    private record Dispatch(UserQueue queue, QueuedTask task) {
+    }
+}
@@ -0,0 +1,371 @@
+package com.xiaodou.aiapp;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.*;
+
+/**
+ * 预编译的快速校验器（仅覆盖常用 Schema 子集）
+ * <p>
+ * 将 Schema 编译为一棵“校验 + 默认值填充” lambda 树，直接作用于输入 Map，
+ * 不再经过 Map -> JsonNode 转换和 networknt 的通用关键字图遍历。
+ * </p>
+ * <p>
+ * 支持的关键字：type（单一类型）、properties、required、default（标量）、enum（字符串）、
+ * minimum/maximum、minLength/maxLength、items（单一 Schema）、minItems/maxItems，
+ * 以及 title/description 等纯注解关键字。含其他关键字的 Schema 不生成快速校验器，整体走通用路径。
+ * </p>
+ * <p>
+ * 快速路径只负责“判定通过”：任一检查未通过即返回 null，由调用方回落到通用路径，
+ * 以保证错误提示与原逻辑完全一致。
+ * </p>
+ *
+ * @author xiaodou V=>dddou117
+ * @version V1.0
+ * @since 2025/12/11
+ */
+final class FastSchemaValidator {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    // 校验未通过的哨兵值
+    private static final Object INVALID = new Object();
+
+    private static final Set<String> SUPPORTED_KEYWORDS =
+        Set.of("type", "properties", "required", "default", "enum", "minimum", "maximum", "minLength", "maxLength",
+            "items", "minItems", "maxItems");
+
+    private static final Set<String> ANNOTATION_KEYWORDS =
+        Set.of("$schema", "$id", "$comment", "title", "description", "examples", "readOnly", "writeOnly");
+
+    /**
+     * 单个 Schema 节点编译后的校验函数：返回（可能已填充默认值的）值，未通过返回 {@link #INVALID}
+     */
+    @FunctionalInterface
+    private interface Node {
+        Object apply(Object value);
+    }
+
+    private final Node root;
+
+    private FastSchemaValidator(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * 编译 Schema；包含不支持的关键字时返回 null
+     *
+     * @param schemaNode Schema 节点
+     * @return 快速校验器，不支持时为 null
+     */
+    static FastSchemaValidator compile(JsonNode schemaNode) {
+        Node root = compileNode(schemaNode);
+        return root == null ? null : new FastSchemaValidator(root);
+    }
+
+    /**
+     * 校验输入并填充默认值
+     *
+     * @param input 输入参数
+     * @return 填充后的新 Map；校验未通过返回 null
+     */
+    Map<String, Object> validate(Map<String, Object> input) {
+        Object result = root.apply(input);
+        if (result == INVALID) {
+            return null;
+        }
+        if (result == input) {
+            return new LinkedHashMap<>(input);
+        }
+        @SuppressWarnings("unchecked") Map<String, Object> map = (Map<String, Object>)result;
+        return map;
+    }
+
+    // ========== 编译 ==========
+
+    private static Node compileNode(JsonNode schema) {
+        if (schema == null || !schema.isObject()) {
+            return null;
+        }
+        Iterator<String> names = schema.fieldNames();
+        while (names.hasNext()) {
+            String name = names.next();
+            if (!SUPPORTED_KEYWORDS.contains(name) && !ANNOTATION_KEYWORDS.contains(name)) {
+                return null;
+            }
+        }
+
+        List<Node> checks = new ArrayList<>();
+
+        if (schema.has("type")) {
+            Node typeCheck = compileType(schema.get("type"));
+            if (typeCheck == null) {
+                return null;
+            }
+            checks.add(typeCheck);
+        }
+        if (schema.has("enum")) {
+            Node enumCheck = compileEnum(schema.get("enum"));
+            if (enumCheck == null) {
+                return null;
+            }
+            checks.add(enumCheck);
+        }
+        if (schema.has("minimum") || schema.has("maximum")) {
+            Node rangeCheck = compileRange(schema.get("minimum"), schema.get("maximum"));
+            if (rangeCheck == null) {
+                return null;
+            }
+            checks.add(rangeCheck);
+        }
+        if (schema.has("minLength") || schema.has("maxLength")) {
+            Node lengthCheck = compileLength(schema.get("minLength"), schema.get("maxLength"));
+            if (lengthCheck == null) {
+                return null;
+            }
+            checks.add(lengthCheck);
+        }
+        if (schema.has("items") || schema.has("minItems") || schema.has("maxItems")) {
+            Node arrayCheck = compileArray(schema.get("items"), schema.get("minItems"), schema.get("maxItems"));
+            if (arrayCheck == null) {
+                return null;
+            }
+            checks.add(arrayCheck);
+        }
+        if (schema.has("properties") || schema.has("required")) {
+            Node objectCheck = compileObject(schema.get("properties"), schema.get("required"));
+            if (objectCheck == null) {
+                return null;
+            }
+            checks.add(objectCheck);
+        }
+
+        return chain(checks);
+    }
+
+    private static Node chain(List<Node> checks) {
+        if (checks.isEmpty()) {
+            return value -> value;
+        }
+        if (checks.size() == 1) {
+            return checks.get(0);
+        }
+        Node[] nodes = checks.toArray(new Node[0]);
+        return value -> {
+            Object current = value;
+            for (Node node : nodes) {
+                current = node.apply(current);
+                if (current == INVALID) {
+                    return INVALID;
+                }
+            }
+            return current;
+        };
+    }
+
+    /**
+     * 类型检查；无法确定与 networknt 判定一致的值（如大数、小数形式的整数）按未通过处理，交由通用路径裁决
+     */
+    private static Node compileType(JsonNode typeNode) {
+        if (!typeNode.isTextual()) {
+            return null;
+        }
+        return switch (typeNode.asText()) {
+            case "string" -> value -> value instanceof String ? value : INVALID;
+            case "integer" -> value -> isIntegral(value) ? value : INVALID;
+            case "number" -> value -> isIntegral(value) || value instanceof Double || value instanceof Float ?
+                value : INVALID;
+            case "boolean" -> value -> value instanceof Boolean ? value : INVALID;
+            case "object" -> value -> value instanceof Map ? value : INVALID;
+            case "array" -> value -> value instanceof List ? value : INVALID;
+            case "null" -> value -> value == null ? null : INVALID;
+            default -> null;
+        };
+    }
+
+    private static Node compileEnum(JsonNode enumNode) {
+        if (!enumNode.isArray() || enumNode.isEmpty()) {
+            return null;
+        }
+        Set<String> allowed = new HashSet<>();
+        for (JsonNode item : enumNode) {
+            if (!item.isTextual()) {
+                return null;
+            }
+            allowed.add(item.asText());
+        }
+        return value -> value instanceof String text && allowed.contains(text) ? value : INVALID;
+    }
+
+    private static Node compileRange(JsonNode minNode, JsonNode maxNode) {
+        if ((minNode != null && !minNode.isNumber()) || (maxNode != null && !maxNode.isNumber())) {
+            return null;
+        }
+        double min = minNode == null ? Double.NEGATIVE_INFINITY : minNode.asDouble();
+        double max = maxNode == null ? Double.POSITIVE_INFINITY : maxNode.asDouble();
+        return value -> {
+            if (!(value instanceof Number number)) {
+                return value;
+            }
+            if (number instanceof BigInteger || number instanceof BigDecimal) {
+                return INVALID;
+            }
+            double d = number.doubleValue();
+            return d >= min && d <= max ? value : INVALID;
+        };
+    }
+
+    private static Node compileLength(JsonNode minNode, JsonNode maxNode) {
+        if ((minNode != null && !minNode.canConvertToInt()) || (maxNode != null && !maxNode.canConvertToInt())) {
+            return null;
+        }
+        int min = minNode == null ? 0 : minNode.asInt();
+        int max = maxNode == null ? Integer.MAX_VALUE : maxNode.asInt();
+        return value -> {
+            if (!(value instanceof String text)) {
+                return value;
+            }
+            // 与 networknt 一致按码点计数
+            int length = text.codePointCount(0, text.length());
+            return length >= min && length <= max ? value : INVALID;
+        };
+    }
+
+    private static Node compileArray(JsonNode itemsNode, JsonNode minNode, JsonNode maxNode) {
+        if ((minNode != null && !minNode.canConvertToInt()) || (maxNode != null && !maxNode.canConvertToInt())) {
+            return null;
+        }
+        Node item;
+        if (itemsNode == null) {
+            item = null;
+        } else {
+            item = compileNode(itemsNode);
+            if (item == null) {
+                return null;
+            }
+        }
+        int min = minNode == null ? 0 : minNode.asInt();
+        int max = maxNode == null ? Integer.MAX_VALUE : maxNode.asInt();
+        return value -> {
+            if (!(value instanceof List<?> list)) {
+                return value;
+            }
+            if (list.size() < min || list.size() > max) {
+                return INVALID;
+            }
+            if (item == null) {
+                return value;
+            }
+            List<Object> filled = null;
+            for (int i = 0; i < list.size(); i++) {
+                Object element = list.get(i);
+                Object out = item.apply(element);
+                if (out == INVALID) {
+                    return INVALID;
+                }
+                if (out != element && filled == null) {
+                    filled = new ArrayList<>(list);
+                }
+                if (filled != null) {
+                    filled.set(i, out);
+                }
+            }
+            return filled == null ? value : filled;
+        };
+    }
+
+    private static Node compileObject(JsonNode propertiesNode, JsonNode requiredNode) {
+        if (propertiesNode != null && !propertiesNode.isObject()) {
+            return null;
+        }
+        Set<String> required = new HashSet<>();
+        if (requiredNode != null) {
+            if (!requiredNode.isArray()) {
+                return null;
+            }
+            for (JsonNode item : requiredNode) {
+                if (!item.isTextual()) {
+                    return null;
+                }
+                required.add(item.asText());
+            }
+        }
+
+        List<PropertyRule> rules = new ArrayList<>();
+        if (propertiesNode != null) {
+            Iterator<Map.Entry<String, JsonNode>> fields = propertiesNode.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> entry = fields.next();
+                PropertyRule rule = compileProperty(entry.getKey(), entry.getValue(), required.contains(entry.getKey()));
+                if (rule == null) {
+                    return null;
+                }
+                rules.add(rule);
+            }
+        }
+        PropertyRule[] ruleArray = rules.toArray(new PropertyRule[0]);
+        String[] requiredOnly = required.stream()
+            .filter(name -> propertiesNode == null || !propertiesNode.has(name))
+            .toArray(String[]::new);
+
+        return value -> {
+            if (!(value instanceof Map<?, ?> raw)) {
+                return value;
+            }
+            @SuppressWarnings("unchecked") Map<String, Object> input = (Map<String, Object>)raw;
+            Map<String, Object> result = new LinkedHashMap<>(input);
+            for (PropertyRule rule : ruleArray) {
+                Object current = input.get(rule.name);
+                if (current == null) {
+                    if (rule.required && rule.hasDefault) {
+                        // 与 applyDefaults 一致：必填且有默认值时，缺失或显式 null 均填充默认值
+                        current = rule.defaultValue;
+                        result.put(rule.name, current);
+                    } else if (!input.containsKey(rule.name)) {
+                        if (rule.required) {
+                            return INVALID;
+                        }
+                        continue;
+                    }
+                }
+                Object out = rule.node.apply(current);
+                if (out == INVALID) {
+                    return INVALID;
+                }
+                if (out != current) {
+                    result.put(rule.name, out);
+                }
+            }
+            for (String name : requiredOnly) {
+                if (!input.containsKey(name)) {
+                    return INVALID;
+                }
+            }
+            return result;
+        };
+    }
+
+    private static PropertyRule compileProperty(String name, JsonNode schema, boolean required) {
+        Node node = compileNode(schema);
+        if (node == null) {
+            return null;
+        }
+        JsonNode defaultNode = schema.get("default");
+        if (defaultNode != null && defaultNode.isContainerNode()) {
+            // 对象/数组默认值需每次深拷贝，且原逻辑不会对其递归填充，统一交给通用路径
+            return null;
+        }
+        Object defaultValue = defaultNode == null ? null : MAPPER.convertValue(defaultNode, Object.class);
+        return new PropertyRule(name, node, required, defaultNode != null && !defaultNode.isNull(), defaultValue);
+    }
+
+    private static boolean isIntegral(Object value) {
+        return value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte;
+    }
+
+    private record PropertyRule(String name, Node node, boolean required, boolean hasDefault, Object defaultValue) {
+    }
+}
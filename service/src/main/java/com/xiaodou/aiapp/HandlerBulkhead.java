@@ -0,0 +1,130 @@
+package com.xiaodou.aiapp;
+
+import com.xiaodou.config.AiHandlerProperties;
+import com.xiaodou.exception.AppException;
+import com.xiaodou.result.ResultCodeEnum;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单个执行器的异步舱壁（并发上限 + 有界等待队列）
+ * <p>
+ * 获取许可不阻塞线程：有空闲许可时立即完成；否则进入等待队列，由释放许可的一方唤醒；
+ * 队列已满立即拒绝，排队超时同样拒绝，均抛出 {@link ResultCodeEnum#AI_HANDLER_BUSY}。
+ * </p>
+ *
+ * @author xiaodou V=>dddou117
+ * @version V1.0
+ * @since 2025/12/12
+ */
+public class HandlerBulkhead {
+
+    private final String handlerBean;
+    private final int maxConcurrent;
+    private final int maxWaiting;
+    private final long maxWaitMs;
+
+    // inFlight 与 waiters 由 this 锁保护；唤醒等待者在锁外进行，避免在锁内执行下游逻辑
+    private int inFlight;
+    private final Deque<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+
+    private final AtomicLong rejectedQueueFull = new AtomicLong();
+    private final AtomicLong rejectedTimeout = new AtomicLong();
+
+    public HandlerBulkhead(String handlerBean, AiHandlerProperties.Bulkhead config) {
+        this.handlerBean = handlerBean;
+        this.maxConcurrent = Math.max(1, config.getMaxConcurrent());
+        this.maxWaiting = Math.max(0, config.getMaxWaiting());
+        this.maxWaitMs = Math.max(1, config.getMaxWaitMs());
+    }
+
+    /**
+     * 获取一个执行许可
+     *
+     * @return 获得许可时完成的 Future；被拒绝时以 {@link AppException} 失败
+     */
+    public CompletableFuture<Void> acquire() {
+        CompletableFuture<Void> waiter;
+        synchronized (this) {
+            if (inFlight < maxConcurrent) {
+                inFlight++;
+                return CompletableFuture.completedFuture(null);
+            }
+            if (waiters.size() >= maxWaiting) {
+                rejectedQueueFull.incrementAndGet();
+                return CompletableFuture.failedFuture(busy("排队已满"));
+            }
+            waiter = new CompletableFuture<>();
+            waiters.addLast(waiter);
+        }
+
+        CompletableFuture<Void> granted = new CompletableFuture<>();
+        waiter.orTimeout(maxWaitMs, TimeUnit.MILLISECONDS)
+            .whenComplete((v, error) -> {
+                if (error == null) {
+                    granted.complete(null);
+                    return;
+                }
+                synchronized (this) {
+                    waiters.remove(waiter);
+                }
+                if (error instanceof TimeoutException) {
+                    rejectedTimeout.incrementAndGet();
+                    granted.completeExceptionally(busy("排队超时"));
+                } else {
+                    granted.completeExceptionally(error);
+                }
+            });
+        return granted;
+    }
+
+    /**
+     * 归还许可：优先直接移交给队首等待者，没有等待者时才减少在途数
+     */
+    public void release() {
+        while (true) {
+            CompletableFuture<Void> next;
+            synchronized (this) {
+                next = waiters.pollFirst();
+                if (next == null) {
+                    inFlight--;
+                    return;
+                }
+            }
+            // 等待者可能刚好超时，移交失败则继续尝试下一个
+            if (next.complete(null)) {
+                return;
+            }
+        }
+    }
+
+    public String getHandlerBean() {
+        return handlerBean;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getQueueDepth() {
+        return waiters.size();
+    }
+
+    public long getRejectedQueueFull() {
+        return rejectedQueueFull.get();
+    }
+
+    public long getRejectedTimeout() {
+        return rejectedTimeout.get();
+    }
+
+    private AppException busy(String reason) {
+        return new AppException(ResultCodeEnum.AI_HANDLER_BUSY,
+            ResultCodeEnum.AI_HANDLER_BUSY.getMessage() + "（" + handlerBean + " " + reason + "）");
+    }
+}
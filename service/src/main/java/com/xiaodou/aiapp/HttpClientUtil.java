@@ -1,20 +1,37 @@
 package com.xiaodou.aiapp;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.xiaodou.aiapp.handler.HttpResponseData;
+import com.xiaodou.aiapp.model.Deadline;
+import org.springframework.util.StreamUtils;
 
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URLEncoder;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
 import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.UnaryOperator;
 
 /**
  * 高性能HTTP客户端工具类（单例模式）
@@ -23,11 +40,14 @@ import java.util.StringJoiner;
  * <ul>
  *   <li>单例HTTP客户端实例，复用连接池</li>
  *   <li>支持HTTP/2协议</li>
- *   <li>完善的超时和重定向处理</li>
+ *   <li>完善的超时和重定向处理：每个请求都设置 HttpRequest.timeout，传入 {@link Deadline} 时取剩余时限，
+ *   响应体读取同样受剩余时限约束，未传时限的异步请求其响应体读取以 requestTimeout 约束</li>
+ *   <li>响应体以 InputStream 流式读取并限制最大字节数；2xx 的 JSON 响应由 Jackson 直接从流中解析，
+ *   不先读成字节数组</li>
  * </ul>
  *
  * @author luoxiaodou
- * @version 1.3
+ * @version 1.4
  * @since JDK 21
  */
 public final class HttpClientUtil {
@@ -48,6 +68,38 @@ public final class HttpClientUtil {
         .followRedirects(HttpClient.Redirect.NORMAL)
         .build();
 
+    /**
+     * 默认响应体最大字节数（10MB），可通过 aiapp.http.max-response-bytes 配置
+     */
+    public static final long DEFAULT_MAX_RESPONSE_BYTES = 10L * 1024 * 1024;
+
+    /**
+     * 默认单次请求超时（60秒），可通过 aiapp.http.request-timeout-ms 配置；带时限的请求取剩余时限与该值中较小者
+     */
+    public static final long DEFAULT_REQUEST_TIMEOUT_MS = 60_000;
+
+    /**
+     * 异步响应体读取线程（虚拟线程）：InputStream 读取是阻塞的，不能占用 HttpClient 自身的执行线程
+     */
+    private static final ExecutorService BODY_READER = Executors.newThreadPerTaskExecutor(Thread.ofVirtual()
+        .name("http-body-", 0)
+        .factory());
+
+    /**
+     * JSON 解析失败时可回退为原文的最大已读字节数（解析期间最多额外缓冲这么多字节）
+     */
+    private static final int RAW_FALLBACK_BYTES = 64 * 1024;
+    private static final int SNIFF_BYTES = 1024;
+
+    private static volatile long maxResponseBytes = DEFAULT_MAX_RESPONSE_BYTES;
+    private static volatile Duration requestTimeout = Duration.ofMillis(DEFAULT_REQUEST_TIMEOUT_MS);
+
+    /**
+     * 录制/回放钩子（仅 replay-record / replay profile 设置，默认无）
+     */
+    private static volatile ExchangeListener exchangeListener;
+    private static volatile UnaryOperator<String> urlRewriter = UnaryOperator.identity();
+
     /**
      * 私有构造函数防止实例化
      */
@@ -72,6 +124,97 @@ public final class HttpClientUtil {
         return sendRequestFull("POST", url, headers, null, body, true);
     }
 
+    /**
+     * 异步发送 GET 请求并返回完整响应数据
+     * <p>基于 {@link HttpClient#sendAsync}，不占用调用线程等待响应</p>
+     */
+    public static CompletableFuture<HttpResponseData> sendGetFullAsync(String url, Map<String, String> headers,
+        Map<String, String> params) {
+        return sendRequestFullAsync("GET", url, headers, params, null, false, Deadline.none());
+    }
+
+    /**
+     * 在时限内异步发送 GET 请求：请求超时取剩余时限，时限已耗尽时不发出请求，超时以 DeadlineExceededException 失败
+     */
+    public static CompletableFuture<HttpResponseData> sendGetFullAsync(String url, Map<String, String> headers,
+        Map<String, String> params, Deadline deadline) {
+        return sendRequestFullAsync("GET", url, headers, params, null, false, deadline);
+    }
+
+    /**
+     * 异步发送 POST 请求并返回完整响应数据
+     */
+    public static CompletableFuture<HttpResponseData> sendPostFullAsync(String url, Map<String, String> headers,
+        String body) {
+        return sendRequestFullAsync("POST", url, headers, null, body, true, Deadline.none());
+    }
+
+    /**
+     * 在时限内异步发送 POST 请求（同 {@link #sendGetFullAsync(String, Map, Map, Deadline)}）
+     */
+    public static CompletableFuture<HttpResponseData> sendPostFullAsync(String url, Map<String, String> headers,
+        String body, Deadline deadline) {
+        return sendRequestFullAsync("POST", url, headers, null, body, true, deadline);
+    }
+
+    /**
+     * 异步发送 GET 请求，并将 JSON 响应体直接绑定为目标类型
+     * <p>非 2xx 状态码、非 JSON 响应或超过大小上限时返回异常完成的 Future</p>
+     */
+    public static <T> CompletableFuture<T> sendGetJsonAsync(String url, Map<String, String> headers,
+        Map<String, String> params, Class<T> type) {
+        return sendRequestJsonAsync("GET", url, headers, params, null, objectMapper.constructType(type));
+    }
+
+    /**
+     * 异步发送 POST 请求，并将 JSON 响应体直接绑定为目标类型
+     */
+    public static <T> CompletableFuture<T> sendPostJsonAsync(String url, Map<String, String> headers, String body,
+        Class<T> type) {
+        return sendRequestJsonAsync("POST", url, headers, null, body, objectMapper.constructType(type));
+    }
+
+    /**
+     * 设置响应体最大字节数（超出时请求以 IOException 失败）
+     */
+    public static void setMaxResponseBytes(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxResponseBytes 必须大于 0");
+        }
+        maxResponseBytes = maxBytes;
+    }
+
+    /**
+     * 设置默认单次请求超时
+     */
+    public static void setRequestTimeoutMs(long timeoutMs) {
+        if (timeoutMs <= 0) {
+            throw new IllegalArgumentException("requestTimeoutMs 必须大于 0");
+        }
+        requestTimeout = Duration.ofMillis(timeoutMs);
+    }
+
+    /**
+     * 设置响应监听器（录制上游响应），传 null 取消
+     */
+    public static void setExchangeListener(ExchangeListener listener) {
+        exchangeListener = listener;
+    }
+
+    /**
+     * 设置请求地址改写（回放时把上游地址指向本地回放服务），传 null 恢复原样
+     */
+    public static void setUrlRewriter(UnaryOperator<String> rewriter) {
+        urlRewriter = rewriter == null ? UnaryOperator.identity() : rewriter;
+    }
+
+    /**
+     * 当前响应体最大字节数
+     */
+    public static long getMaxResponseBytes() {
+        return maxResponseBytes;
+    }
+
     /**
      * 统一的请求处理方法
      */
@@ -79,6 +222,130 @@ public final class HttpClientUtil {
         Map<String, String> params, String body, boolean isJsonBody)
         throws URISyntaxException, IOException, InterruptedException {
 
+        HttpRequest request = buildRequest(method, url, headers, params, body, isJsonBody, requestTimeout);
+        long startNanos = System.nanoTime();
+        HttpResponse<InputStream> response = HTTP_CLIENT.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        return notifyExchange(request, toResponseData(response), startNanos);
+    }
+
+    /**
+     * 统一的异步请求处理方法
+     * <p>请求构建失败（如URL格式错误）时返回异常完成的 Future，而不是直接抛出</p>
+     */
+    private static CompletableFuture<HttpResponseData> sendRequestFullAsync(String method, String url,
+        Map<String, String> headers, Map<String, String> params, String body, boolean isJsonBody,
+        Deadline deadline) {
+        HttpRequest request;
+        try {
+            deadline.check(method + " " + url);
+            request = buildRequest(method, url, headers, params, body, isJsonBody, deadline.timeout(requestTimeout));
+        } catch (URISyntaxException | RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        long startNanos = System.nanoTime();
+        CompletableFuture<HttpResponseData> future = HTTP_CLIENT.sendAsync(request,
+                HttpResponse.BodyHandlers.ofInputStream())
+            .thenCompose(response -> readBodyAsync(request, response, startNanos, deadline));
+        if (!deadline.isBounded()) {
+            return future;
+        }
+        // 请求超时或响应体读取超时由时限截断时，改报时限耗尽（注明环节与已用时间）
+        return future.exceptionally(error -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() :
+                error;
+            if ((cause instanceof HttpTimeoutException || cause instanceof TimeoutException) && deadline.isExpired()) {
+                throw deadline.exceeded(method + " " + request.uri()
+                    .getHost());
+            }
+            throw error instanceof CompletionException completion ? completion : new CompletionException(error);
+        });
+    }
+
+    /**
+     * 在 BODY_READER 中读取响应体
+     * <p>
+     * HttpRequest.timeout 只约束到收到响应头为止，响应体读取另以时限的剩余时间约束；
+     * 未设时限的调用以 requestTimeout 约束，中途停滞的上游不会让返回的 future 永不完成。
+     * 到期时关闭响应流，阻塞中的读取随之以 IOException 结束，不会一直占用读取线程。
+     * </p>
+     */
+    private static CompletableFuture<HttpResponseData> readBodyAsync(HttpRequest request,
+        HttpResponse<InputStream> response, long startNanos, Deadline deadline) {
+        CompletableFuture<HttpResponseData> read = CompletableFuture.supplyAsync(() -> {
+            try {
+                return notifyExchange(request, toResponseData(response), startNanos);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, BODY_READER);
+        long budgetMs = deadline.isBounded() ? deadline.remainingMs() : requestTimeout.toMillis();
+        return boundBodyRead(read, response, budgetMs);
+    }
+
+    /**
+     * 以给定预算约束响应体读取：超时关闭响应流
+     * <p>
+     * 未设时限时超时改报 HttpTimeoutException，与响应头超时一致；设了时限时由调用方换成时限耗尽。
+     * </p>
+     */
+    private static <T> CompletableFuture<T> boundBodyRead(CompletableFuture<T> read,
+        HttpResponse<InputStream> response, long budgetMs) {
+        CompletableFuture<T> bounded = new CompletableFuture<>();
+        read.orTimeout(Math.max(1, budgetMs), TimeUnit.MILLISECONDS)
+            .whenComplete((data, error) -> {
+                if (error == null) {
+                    bounded.complete(data);
+                    return;
+                }
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ?
+                    error.getCause() : error;
+                if (cause instanceof TimeoutException) {
+                    closeQuietly(response.body());
+                    HttpTimeoutException timeout = new HttpTimeoutException("读取响应体超时: " + budgetMs + "ms");
+                    timeout.initCause(cause);
+                    bounded.completeExceptionally(timeout);
+                } else {
+                    bounded.completeExceptionally(cause);
+                }
+            });
+        return bounded;
+    }
+
+    private static void closeQuietly(InputStream in) {
+        try {
+            in.close();
+        } catch (IOException ignored) {
+            // 关闭失败不影响超时结果
+        }
+    }
+
+    /**
+     * 异步请求并将 JSON 响应体绑定为目标类型
+     */
+    private static <T> CompletableFuture<T> sendRequestJsonAsync(String method, String url,
+        Map<String, String> headers, Map<String, String> params, String body, JavaType type) {
+        HttpRequest request;
+        try {
+            request = buildRequest(method, url, headers, params, body, true, requestTimeout);
+        } catch (URISyntaxException | RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return HTTP_CLIENT.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream())
+            .thenCompose(response -> boundBodyRead(CompletableFuture.supplyAsync(() -> {
+                try {
+                    return readJsonBody(response, type);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            }, BODY_READER), response, requestTimeout.toMillis()));
+    }
+
+    /**
+     * 构建请求（同步与异步共用）
+     */
+    private static HttpRequest buildRequest(String method, String url, Map<String, String> headers,
+        Map<String, String> params, String body, boolean isJsonBody, Duration timeout) throws URISyntaxException {
+
         // 处理查询参数（GET请求）
         if (params != null && !params.isEmpty() && "GET".equalsIgnoreCase(method)) {
             StringJoiner joiner = new StringJoiner("&");
@@ -91,7 +358,8 @@ public final class HttpClientUtil {
         }
 
         HttpRequest.Builder builder = HttpRequest.newBuilder()
-            .uri(new URI(url));
+            .uri(new URI(urlRewriter.apply(url)))
+            .timeout(timeout);
 
         // 设置请求方法和body
         switch (method.toUpperCase()) {
@@ -113,29 +381,145 @@ public final class HttpClientUtil {
         }
 
         addHeaders(builder, headers);
-        HttpRequest request = builder.build();
+        return builder.build();
+    }
 
-        HttpResponse<String> response = HTTP_CLIENT.send(request, HttpResponse.BodyHandlers.ofString());
+    /**
+     * 通知响应监听器，监听器异常不影响请求结果
+     */
+    private static HttpResponseData notifyExchange(HttpRequest request, HttpResponseData data, long startNanos) {
+        ExchangeListener listener = exchangeListener;
+        if (listener != null) {
+            try {
+                listener.onExchange(request.method(), request.uri(), data,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+            } catch (RuntimeException ignored) {
+                // 录制失败不影响业务请求
+            }
+        }
+        return data;
+    }
 
+    /**
+     * 将原始响应转换为 {@link HttpResponseData}
+     * <p>
+     * 2xx 的 JSON 响应（Content-Type 为 JSON，未声明时按首个非空白字符是否为 '{' / '[' 判断）
+     * 直接从限长输入流解析为对象，不先读成字节数组，内存中只有解析后的对象。
+     * 解析失败（如空响应体、网关返回的错误页）时，若已读取部分仍在 {@link #RAW_FALLBACK_BYTES} 标记范围内，
+     * 回退为原文文本，不丢失上游的错误信息。非 JSON 响应与错误响应按字符集解码为文本，错误响应为 JSON 时再解析为对象。
+     * </p>
+     */
+    private static HttpResponseData toResponseData(HttpResponse<InputStream> response) throws IOException {
         // 提取响应头
         Map<String, String> responseHeaders = extractHeaders(response);
+        String contentType = response.headers()
+            .firstValue("Content-Type")
+            .orElse(null);
+        int status = response.statusCode();
+
+        // 外层缓冲只用于标记回退，不影响内层的累计限长
+        try (BufferedInputStream in = new BufferedInputStream(limitedBody(response))) {
+            if (status >= 200 && status < 300) {
+                if (isJsonContentType(contentType) || contentType == null && startsLikeJson(in)) {
+                    in.mark(RAW_FALLBACK_BYTES);
+                    try {
+                        Object bodyObject = objectMapper.readValue(StreamUtils.nonClosing(in), Object.class);
+                        return new HttpResponseData(status, null, bodyObject, responseHeaders);
+                    } catch (JsonProcessingException e) {
+                        if (!resetQuietly(in)) {
+                            return new HttpResponseData(status, "响应体不是合法 JSON: " + e.getOriginalMessage(),
+                                null, responseHeaders);
+                        }
+                    }
+                }
+                return new HttpResponseData(status, new String(in.readAllBytes(), charsetOf(contentType)), null,
+                    responseHeaders);
+            }
+
+            byte[] bytes = in.readAllBytes();
+            if (isJsonContentType(contentType) || contentType == null && looksLikeJson(bytes)) {
+                Object bodyObject = tryParseJsonBody(bytes);
+                if (bodyObject != null) {
+                    return new HttpResponseData(status, null, bodyObject, responseHeaders);
+                }
+            }
+            return new HttpResponseData(status, new String(bytes, charsetOf(contentType)), null, responseHeaders);
+        }
+    }
 
-        // 尝试解析JSON响应体为对象
-        Object bodyObject = tryParseJsonBody(response.body(), responseHeaders);
+    /**
+     * 查看首个非空白字符是否为 '{' / '['（读取后回到原位置）
+     */
+    private static boolean startsLikeJson(BufferedInputStream in) throws IOException {
+        in.mark(SNIFF_BYTES);
+        try {
+            for (int i = 0; i < SNIFF_BYTES; i++) {
+                int b = in.read();
+                if (b == -1) {
+                    return false;
+                }
+                if (!Character.isWhitespace(b)) {
+                    return b == '{' || b == '[';
+                }
+            }
+            return false;
+        } finally {
+            in.reset();
+        }
+    }
 
-        return new HttpResponseData(response.statusCode(), response.body(), bodyObject, responseHeaders);
+    /**
+     * 回到标记位置，已读取的字节超过标记范围时返回 false
+     */
+    private static boolean resetQuietly(BufferedInputStream in) {
+        try {
+            in.reset();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
     }
 
     /**
-     * 尝试将响应体解析为JSON对象
+     * 读取 JSON 响应体并绑定为目标类型
      */
-    private static Object tryParseJsonBody(String body, Map<String, String> headers) {
-        if (body == null || body.trim()
-            .isEmpty()) {
-            return null;
+    private static <T> T readJsonBody(HttpResponse<InputStream> response, JavaType type) throws IOException {
+        String contentType = response.headers()
+            .firstValue("Content-Type")
+            .orElse(null);
+        try (InputStream in = limitedBody(response)) {
+            int status = response.statusCode();
+            if (status < 200 || status >= 300) {
+                throw new IOException("HTTP 状态码异常: " + status);
+            }
+            if (contentType != null && !isJsonContentType(contentType)) {
+                throw new IOException("响应不是 JSON: " + contentType);
+            }
+            return objectMapper.readValue(in, type);
         }
+    }
+
+    /**
+     * 包装响应输入流：声明的 Content-Length 超限时直接拒绝，读取过程中累计超限时抛出 IOException
+     */
+    private static InputStream limitedBody(HttpResponse<InputStream> response) throws IOException {
+        long limit = maxResponseBytes;
+        InputStream body = response.body();
+        long declared = response.headers()
+            .firstValueAsLong("Content-Length")
+            .orElse(-1L);
+        if (declared > limit) {
+            // 关闭流即取消订阅，不再读取剩余数据
+            body.close();
+            throw new IOException("响应体超过上限: " + declared + " > " + limit + " 字节");
+        }
+        return new LimitedInputStream(new BufferedInputStream(body), limit);
+    }
 
-        // 检查Content-Type是否包含json
+    /**
+     * 尝试将响应体解析为JSON对象
+     */
+    private static Object tryParseJsonBody(byte[] body) {
         try {
             return objectMapper.readValue(body, Object.class);
         } catch (Exception e) {
@@ -144,10 +528,45 @@ public final class HttpClientUtil {
         }
     }
 
+    private static boolean isJsonContentType(String contentType) {
+        return contentType != null && contentType.toLowerCase(Locale.ROOT)
+            .contains("json");
+    }
+
+    private static boolean looksLikeJson(byte[] bytes) {
+        for (byte b : bytes) {
+            if (!Character.isWhitespace(b)) {
+                return b == '{' || b == '[';
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 从 Content-Type 中解析字符集，缺省 UTF-8
+     */
+    private static Charset charsetOf(String contentType) {
+        if (contentType != null) {
+            for (String part : contentType.split(";")) {
+                String param = part.trim();
+                if (param.regionMatches(true, 0, "charset=", 0, 8)) {
+                    try {
+                        return Charset.forName(param.substring(8)
+                            .replace("\"", "")
+                            .trim());
+                    } catch (Exception e) {
+                        break;
+                    }
+                }
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
     /**
      * 提取响应头
      */
-    private static Map<String, String> extractHeaders(HttpResponse<String> response) {
+    private static Map<String, String> extractHeaders(HttpResponse<?> response) {
         Map<String, String> responseHeaders = new HashMap<>();
         response.headers()
             .map()
@@ -201,6 +620,7 @@ public final class HttpClientUtil {
 
         HttpRequest.Builder builder = HttpRequest.newBuilder()
             .uri(new URI(url))
+            .timeout(requestTimeout)
             .GET();
 
         addHeaders(builder, headers);
@@ -228,6 +648,7 @@ public final class HttpClientUtil {
 
         HttpRequest.Builder builder = HttpRequest.newBuilder()
             .uri(new URI(url))
+            .timeout(requestTimeout)
             .POST(body != null ? HttpRequest.BodyPublishers.ofString(body) : HttpRequest.BodyPublishers.noBody())
             .header("Content-Type", "application/json");
 
@@ -256,6 +677,7 @@ public final class HttpClientUtil {
 
         HttpRequest.Builder builder = HttpRequest.newBuilder()
             .uri(new URI(url))
+            .timeout(requestTimeout)
             .PUT(body != null ? HttpRequest.BodyPublishers.ofString(body) : HttpRequest.BodyPublishers.noBody())
             .header("Content-Type", "application/json");
 
@@ -283,6 +705,7 @@ public final class HttpClientUtil {
 
         HttpRequest.Builder builder = HttpRequest.newBuilder()
             .uri(new URI(url))
+            .timeout(requestTimeout)
             .DELETE();
 
         addHeaders(builder, headers);
@@ -318,4 +741,70 @@ public final class HttpClientUtil {
     public static HttpClient getHttpClient() {
         return HTTP_CLIENT;
     }
+
+    /**
+     * 限制可读取字节数的输入流
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+        private final long limit;
+        private long count;
+
+        private LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                advance(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                advance(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            advance(skipped);
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void advance(long n) throws IOException {
+            count += n;
+            if (count > limit) {
+                throw new IOException("响应体超过上限: " + limit + " 字节");
+            }
+        }
+    }
+
+    /**
+     * 上游响应监听器
+     */
+    @FunctionalInterface
+    public interface ExchangeListener {
+        /**
+         * 收到完整响应后回调（在响应体读取线程中执行，应尽快返回）
+         *
+         * @param method 请求方法
+         * @param uri 实际请求地址
+         * @param response 响应数据
+         * @param latencyMs 请求耗时（含读取响应体）
+         */
+        void onExchange(String method, URI uri, HttpResponseData response, long latencyMs);
+    }
 }
@@ -21,6 +21,7 @@ import java.util.stream.Collectors;
  * - 生成中文友好错误提示
  * - 提取字段元信息（用于前端展示、文档生成）
  * - 缓存已解析的 Schema（Caffeine）
+ * - 预编译 Schema，常用关键字子集直接在 Map 上校验（见 {@link FastSchemaValidator}）
  * <p>
  * 注意：本工具类不负责“从元数据生成 Schema”，因为系统已统一使用标准 JSON Schema。
  *
@@ -74,6 +75,57 @@ public final class JsonSchemaUtils {
         return validateAndApplyDefaultsInternal(inputData, schemaId, schemaJson);
     }
 
+    /**
+     * 使用预编译 Schema 校验输入数据并应用默认值（热路径，不再解析 Schema 文本）
+     *
+     * @param inputData 输入数据，可以是 Map 或 JSON 字符串
+     * @param compiled 预编译 Schema，见 {@link #compile(String)}
+     * @return 校验并填充默认值后的数据 Map
+     * @throws IllegalArgumentException 当数据校验失败时抛出
+     */
+    public static Map<String, Object> validateAndApplyDefaults(Object inputData, CompiledAppSchema compiled)
+        throws IllegalArgumentException {
+        // 快速路径：直接在 Map 上校验并填充默认值；未通过时回落通用路径，以生成一致的中文错误提示
+        FastSchemaValidator fastValidator = compiled.getFastValidator();
+        if (fastValidator != null && inputData instanceof Map<?, ?> map) {
+            @SuppressWarnings("unchecked") Map<String, Object> result =
+                fastValidator.validate((Map<String, Object>)map);
+            if (result != null) {
+                return result;
+            }
+        }
+
+        JsonNode inputNode = parseInputNode(inputData);
+        JsonNode filledNode = applyDefaults(inputNode, compiled.getSchemaNode(), compiled.getRequiredFields());
+
+        validateSchema(compiled.getSchema(), filledNode, compiled.getSchemaNode());
+
+        @SuppressWarnings("unchecked") Map<String, Object> resultMap = MAPPER.convertValue(filledNode, Map.class);
+        return resultMap;
+    }
+
+    /**
+     * 预编译 JSON Schema：一次性解析出 Schema 节点、校验器、必填字段、字段元数据及常用子集的快速校验器
+     * <p>
+     * 结果不进入本类的 SCHEMA_CACHE，由调用方（如 {@link AppSchemaRegistry}）按业务键持有。
+     * </p>
+     *
+     * @param schemaJson JSON Schema 字符串
+     * @return 预编译 Schema
+     * @throws IllegalArgumentException 当 Schema 解析失败时抛出
+     */
+    public static CompiledAppSchema compile(String schemaJson) throws IllegalArgumentException {
+        JsonNode schemaNode = parseSchemaNode(schemaJson);
+        List<PropertyMetadata> metadata;
+        try {
+            metadata = schemaNodeToMetadata(schemaNode);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("无法解析 Schema 以提取元数据: " + e.getMessage(), e);
+        }
+        return new CompiledAppSchema(schemaNode, buildSchema(schemaNode), parseRequiredSet(schemaNode), metadata,
+            FastSchemaValidator.compile(schemaNode));
+    }
+
     /**
      * 从 JSON Schema 提取字段元数据信息
      *
@@ -83,29 +135,7 @@ public final class JsonSchemaUtils {
      */
     public static List<PropertyMetadata> schemaToMetadata(String schemaJson) throws IllegalArgumentException {
         try {
-            JsonNode schemaNode = MAPPER.readTree(schemaJson);
-            JsonNode properties = schemaNode.get("properties");
-
-            if (properties == null || !properties.isObject()) {
-                return Collections.emptyList();
-            }
-
-            Set<String> requiredSet = parseRequiredSet(schemaNode);
-
-            // 修复：使用迭代器而不是 StreamSupport
-            List<PropertyMetadata> result = new ArrayList<>();
-            Iterator<Map.Entry<String, JsonNode>> fields = properties.fields();
-            while (fields.hasNext()) {
-                Map.Entry<String, JsonNode> entry = fields.next();
-                PropertyMetadata meta =
-                    parseProperty(entry.getKey(), entry.getValue(), requiredSet.contains(entry.getKey()));
-                if (meta.getName() != null && !meta.getName()
-                    .isEmpty()) {
-                    result.add(meta);
-                }
-            }
-            return result;
-
+            return schemaNodeToMetadata(MAPPER.readTree(schemaJson));
         } catch (Exception e) {
             throw new IllegalArgumentException("无法解析 Schema 以提取元数据: " + e.getMessage(), e);
         }
@@ -169,6 +199,35 @@ public final class JsonSchemaUtils {
     }
     // ========== 核心私有方法 ==========
 
+    /**
+     * 从已解析的 Schema 节点提取字段元数据
+     *
+     * @param schemaNode Schema 节点
+     * @return 字段元数据列表
+     */
+    private static List<PropertyMetadata> schemaNodeToMetadata(JsonNode schemaNode) {
+        JsonNode properties = schemaNode.get("properties");
+        if (properties == null || !properties.isObject()) {
+            return Collections.emptyList();
+        }
+
+        Set<String> requiredSet = parseRequiredSet(schemaNode);
+
+        // 修复：使用迭代器而不是 StreamSupport
+        List<PropertyMetadata> result = new ArrayList<>();
+        Iterator<Map.Entry<String, JsonNode>> fields = properties.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> entry = fields.next();
+            PropertyMetadata meta =
+                parseProperty(entry.getKey(), entry.getValue(), requiredSet.contains(entry.getKey()));
+            if (meta.getName() != null && !meta.getName()
+                .isEmpty()) {
+                result.add(meta);
+            }
+        }
+        return result;
+    }
+
     /**
      * 校验和应用默认值的核心实现
      *
@@ -379,11 +438,19 @@ public final class JsonSchemaUtils {
      * @return JsonSchema 实例
      */
     private static JsonSchema getOrBuildSchema(String cacheKey, JsonNode schemaNode) {
-        return SCHEMA_CACHE.get(cacheKey, key -> {
-            SchemaValidatorsConfig config = new SchemaValidatorsConfig();
-            config.setApplyDefaultsStrategy(new ApplyDefaultsStrategy(false, false, false));
-            return FACTORY.getSchema(schemaNode, config);
-        });
+        return SCHEMA_CACHE.get(cacheKey, key -> buildSchema(schemaNode));
+    }
+
+    /**
+     * 构建 JsonSchema 实例（默认值由 applyDefaults 处理，校验器不再填充）
+     *
+     * @param schemaNode Schema 节点
+     * @return JsonSchema 实例
+     */
+    private static JsonSchema buildSchema(JsonNode schemaNode) {
+        SchemaValidatorsConfig config = new SchemaValidatorsConfig();
+        config.setApplyDefaultsStrategy(new ApplyDefaultsStrategy(false, false, false));
+        return FACTORY.getSchema(schemaNode, config);
     }
 
     // ========== 错误处理相关方法 ==========
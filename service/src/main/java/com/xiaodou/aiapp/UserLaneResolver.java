@@ -0,0 +1,64 @@
+package com.xiaodou.aiapp;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.xiaodou.config.FairSchedulerProperties;
+import com.xiaodou.mapper.UserMapper;
+import com.xiaodou.model.User;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 用户调度通道解析
+ * <p>
+ * userId → 所属租户 → 通道（aiapp.scheduler.tenant-lanes），租户未配置或用户不在后台用户表中
+ * （如小程序用户）时使用 default 通道。租户查询结果本地缓存，不在调度热路径上访问数据库；
+ * 查询失败不缓存，只影响本次解析，避免一次数据库抖动让付费租户在缓存有效期内都落到 default 通道。
+ * </p>
+ *
+ * @author xiaodou V=>dddou117
+ * @version V1.0
+ * @since 2025/12/15
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class UserLaneResolver implements Function<String, String> {
+
+    public static final String DEFAULT_LANE = "default";
+
+    private final UserMapper userMapper;
+    private final FairSchedulerProperties properties;
+
+    private final Cache<String, Optional<String>> tenantCache = Caffeine.newBuilder()
+        .maximumSize(10_000)
+        .expireAfterWrite(10, TimeUnit.MINUTES)
+        .build();
+
+    @Override
+    public String apply(String userId) {
+        // 查询失败时 loader 返回 null，Caffeine 不缓存该结果，本次使用默认通道，下次重新查询
+        Optional<String> tenant = tenantCache.get(userId, this::loadTenantId);
+        String tenantId = tenant == null ? null : tenant.orElse(null);
+        if (tenantId == null) {
+            return DEFAULT_LANE;
+        }
+        return properties.getTenantLanes()
+            .getOrDefault(tenantId, DEFAULT_LANE);
+    }
+
+    private Optional<String> loadTenantId(String userId) {
+        try {
+            User user = userMapper.selectById(userId);
+            return Optional.ofNullable(user == null ? null : user.getTenantId());
+        } catch (Exception e) {
+            log.warn("查询用户租户失败，本次使用默认通道 - userId: {}, error: {}", userId, e.getMessage());
+            return null;
+        }
+    }
+}
@@ -1,17 +1,24 @@
 package com.xiaodou.aiapp;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.xiaodou.aiapp.handler.HttpResponseData;
+import com.xiaodou.aiapp.model.Deadline;
+import com.xiaodou.config.WorkflowProperties;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 牛马网站工作流 API 客户端
  * 封装运行工作流和查询结果的公共逻辑
+ * <p>
+ * 上游地址由 {@link WorkflowEndpointPool} 选择：运行工作流按节点延迟路由，查询结果固定发往受理该任务的节点。
+ * </p>
  *
  * @author xiaodou V=>dddou117
  * @version V1.0
@@ -23,12 +30,11 @@ import java.util.Map;
 public class WorkflowApiClient {
 
     private final ObjectMapper objectMapper;
-
-    // 牛马网站 API 基础地址
-    private static final String BASE_URL = "https://team-agent.luoxiaodou.cn/ai-team/api";
+    private final WorkflowProperties workflowProperties;
+    private final WorkflowEndpointPool workflowEndpointPool;
 
     /**
-     * 运行工作流
+     * 运行工作流（时限取 workflow.run-budget-ms）
      *
      * @param workflowId 工作流ID
      * @param apiKey API密钥
@@ -38,29 +44,67 @@ public class WorkflowApiClient {
      */
     public Map<String, Object> runWorkflow(String workflowId, String apiKey, Map<String, Object> params)
             throws Exception {
-        // 构建请求 URL
-        String url = BASE_URL + "/workflow/v2/run/" + workflowId;
+        return AiAppExecutor.await(runWorkflowAsync(workflowId, apiKey, params));
+    }
 
+    /**
+     * 异步运行工作流
+     * <p>
+     * 基于 HttpClient.sendAsync，不阻塞调用线程；时限取 workflow.run-budget-ms，
+     * 上游在响应体中途停滞时 future 也会按时结束
+     * </p>
+     *
+     * @param workflowId 工作流ID
+     * @param apiKey API密钥
+     * @param params 工作流参数
+     * @return 包含 taskId 的响应 Future
+     */
+    public CompletableFuture<Map<String, Object>> runWorkflowAsync(String workflowId, String apiKey,
+            Map<String, Object> params) {
+        return runWorkflowAsync(workflowId, apiKey, params, defaultDeadline());
+    }
+
+    /**
+     * 在时限内异步运行工作流（请求超时取剩余时限）
+     *
+     * @param deadline 执行时限
+     */
+    public CompletableFuture<Map<String, Object>> runWorkflowAsync(String workflowId, String apiKey,
+            Map<String, Object> params, Deadline deadline) {
         // 构建请求头
         Map<String, String> headers = new HashMap<>();
         headers.put("Authorization", apiKey);
         headers.put("X-Client-Type", "fs-filed");
         headers.put("Content-Type", "application/json");
 
-        // 将 params 转换为 JSON 字符串
-        String body = objectMapper.writeValueAsString(params);
-
-        log.info("运行工作流 - workflowId: {}, url: {}", workflowId, url);
+        // 启用回调时告知上游回调地址，任务完成后由上游主动推送结果
+        WorkflowProperties.Callback callback = workflowProperties.getCallback();
+        if (callback.isEnabled() && callback.getUrl() != null) {
+            headers.put(WorkflowCallbackSigner.HEADER_CALLBACK_URL, callback.getUrl());
+        }
 
-        // 发送 POST 请求
-        HttpResponseData response = HttpClientUtil.sendPostFull(url, headers, body);
+        // 将 params 转换为 JSON 字符串
+        String body;
+        try {
+            body = objectMapper.writeValueAsString(params);
+        } catch (JsonProcessingException e) {
+            return CompletableFuture.failedFuture(e);
+        }
 
-        // 解析响应
-        return parseRunWorkflowResponse(response);
+        // 选择节点发送 POST 请求，解析响应后记录 taskId 的受理节点
+        return workflowEndpointPool.submit(baseUrl -> {
+            String url = baseUrl + "/workflow/v2/run/" + workflowId;
+            log.info("运行工作流 - workflowId: {}, url: {}", workflowId, url);
+            return HttpClientUtil.sendPostFullAsync(url, headers, body, deadline);
+        }).thenApply(routed -> {
+            Map<String, Object> result = parseRunWorkflowResponse(routed.response());
+            workflowEndpointPool.pin((String) result.get("taskId"), routed.endpoint());
+            return result;
+        });
     }
 
     /**
-     * 查询任务结果
+     * 查询任务结果（时限取 workflow.run-budget-ms）
      *
      * @param taskId 任务ID
      * @param apiKey API密钥
@@ -69,21 +113,45 @@ public class WorkflowApiClient {
      */
     public Map<String, Object> queryTaskResult(String taskId, String apiKey)
             throws Exception {
-        // 构建请求 URL
-        String url = BASE_URL + "/task-record/result/" + taskId;
+        return AiAppExecutor.await(queryTaskResultAsync(taskId, apiKey));
+    }
+
+    /**
+     * 异步查询任务结果（时限取 workflow.run-budget-ms）
+     *
+     * @param taskId 任务ID
+     * @param apiKey API密钥
+     * @return 包含任务状态和结果的响应 Future
+     */
+    public CompletableFuture<Map<String, Object>> queryTaskResultAsync(String taskId, String apiKey) {
+        return queryTaskResultAsync(taskId, apiKey, defaultDeadline());
+    }
 
+    /**
+     * 在时限内异步查询任务结果
+     * <p>
+     * 基于 HttpClient.sendAsync，不阻塞调用线程，供轮询调度器使用；时限同时约束响应体读取
+     * </p>
+     *
+     * @param deadline 查询时限
+     */
+    public CompletableFuture<Map<String, Object>> queryTaskResultAsync(String taskId, String apiKey,
+            Deadline deadline) {
         // 构建请求头
         Map<String, String> headers = new HashMap<>();
         headers.put("Authorization", apiKey);
         headers.put("X-Client-Type", "fs-filed");
 
-        log.debug("查询任务结果 - taskId: {}, url: {}", taskId, url);
-
-        // 发送 GET 请求
-        HttpResponseData response = HttpClientUtil.sendGetFull(url, headers, null);
+        // 发往受理该任务的节点
+        return workflowEndpointPool.sendPinned(taskId, baseUrl -> {
+            String url = baseUrl + "/task-record/result/" + taskId;
+            log.debug("异步查询任务结果 - taskId: {}, url: {}", taskId, url);
+            return HttpClientUtil.sendGetFullAsync(url, headers, null, deadline);
+        }).thenApply(this::parseQueryTaskResponse);
+    }
 
-        // 解析响应
-        return parseQueryTaskResponse(response);
+    private Deadline defaultDeadline() {
+        return Deadline.after(workflowProperties.getRunBudgetMs());
     }
 
     /**
@@ -92,7 +160,9 @@ public class WorkflowApiClient {
     private Map<String, Object> parseRunWorkflowResponse(HttpResponseData response) {
         Map<String, Object> result = new HashMap<>();
         result.put("statusCode", response.getStatusCode());
-        result.put("rawBody", response.getBody());
+        if (response.hasRawBody()) {
+            result.put("rawBody", response.getBody());
+        }
 
         // 尝试解析 bodyObject
         Object bodyObject = response.getBodyObject();
@@ -130,7 +200,9 @@ public class WorkflowApiClient {
     private Map<String, Object> parseQueryTaskResponse(HttpResponseData response) {
         Map<String, Object> result = new HashMap<>();
         result.put("statusCode", response.getStatusCode());
-        result.put("rawBody", response.getBody());
+        if (response.hasRawBody()) {
+            result.put("rawBody", response.getBody());
+        }
 
         // 尝试解析 bodyObject
         Object bodyObject = response.getBodyObject();
@@ -0,0 +1,63 @@
+package com.xiaodou.aiapp;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xiaodou.model.AiAppRecord;
+import com.xiaodou.model.AiApplication;
+import com.xiaodou.service.AiApplicationService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * 工作流作业的 API 密钥解析
+ * <p>
+ * 作业消息只携带记录ID与工作流ID，消费时再取密钥，密钥不进入持久化队列及其死信队列：
+ * 优先使用 AiApplication.config 中配置的 {"apiKey": "..."}，未配置时取记录输入参数中的 apiKey。
+ * </p>
+ *
+ * @author xiaodou V=>dddou117
+ * @version V1.0
+ * @since 2025/12/20
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class WorkflowApiKeyResolver {
+
+    private final AiApplicationService aiApplicationService;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * 解析记录对应的 API 密钥
+     *
+     * @return 未配置时返回 null
+     */
+    public String resolve(AiAppRecord record) {
+        String apiKey = fromApplication(record.getAiApplicationId());
+        return apiKey != null ? apiKey : textField(record.getInputParams());
+    }
+
+    private String fromApplication(String aiApplicationId) {
+        if (aiApplicationId == null) {
+            return null;
+        }
+        AiApplication app = aiApplicationService.getById(aiApplicationId);
+        return app == null ? null : textField(app.getConfig());
+    }
+
+    private String textField(String json) {
+        if (json == null || json.isBlank()) {
+            return null;
+        }
+        try {
+            JsonNode value = objectMapper.readTree(json)
+                .path("apiKey");
+            return value.isTextual() && !value.asText()
+                .isBlank() ? value.asText() : null;
+        } catch (Exception e) {
+            log.warn("解析 apiKey 失败 - error: {}", e.getMessage());
+            return null;
+        }
+    }
+}
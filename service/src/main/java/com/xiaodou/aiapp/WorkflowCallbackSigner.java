@@ -0,0 +1,69 @@
+package com.xiaodou.aiapp;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+/**
+ * 工作流回调签名工具
+ * <p>
+ * 签名算法：hex(HMAC-SHA256(secret, timestamp + "." + body))，
+ * 通过请求头 X-Timestamp / X-Signature 传递。
+ * </p>
+ *
+ * @author xiaodou V=>dddou117
+ * @version V1.0
+ * @since 2025/12/9
+ */
+public final class WorkflowCallbackSigner {
+
+    public static final String HEADER_TIMESTAMP = "X-Timestamp";
+    public static final String HEADER_SIGNATURE = "X-Signature";
+    public static final String HEADER_CALLBACK_URL = "X-Callback-Url";
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private WorkflowCallbackSigner() {
+    }
+
+    /**
+     * 计算签名
+     *
+     * @param secret 签名密钥
+     * @param timestamp 时间戳（毫秒）
+     * @param body 原始请求体
+     * @return 十六进制签名
+     */
+    public static String sign(String secret, long timestamp, String body) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM));
+            byte[] digest = mac.doFinal((timestamp + "." + body).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of()
+                .formatHex(digest);
+        } catch (Exception e) {
+            throw new IllegalStateException("计算回调签名失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 校验签名（常量时间比较）
+     *
+     * @param secret 签名密钥
+     * @param timestamp 时间戳（毫秒）
+     * @param body 原始请求体
+     * @param signature 待校验的签名
+     * @return 签名是否有效
+     */
+    public static boolean verify(String secret, long timestamp, String body, String signature) {
+        if (secret == null || secret.isEmpty() || signature == null) {
+            return false;
+        }
+        byte[] expected = sign(secret, timestamp, body).getBytes(StandardCharsets.UTF_8);
+        byte[] actual = signature.toLowerCase()
+            .getBytes(StandardCharsets.UTF_8);
+        return MessageDigest.isEqual(expected, actual);
+    }
+}
@@ -0,0 +1,310 @@
+package com.xiaodou.aiapp;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.xiaodou.aiapp.handler.HttpResponseData;
+import com.xiaodou.config.WorkflowProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 工作流节点池：多个上游地址之间按延迟路由
+ * <p>
+ * 每个节点维护时间衰减的 peak-EWMA 延迟（新样本高于均值时直接取新样本，尽快反映变慢）和在途请求数，
+ * 运行工作流时随机取两个可用节点，选 EWMA × (在途 + 1) 较小者（power-of-two-choices），
+ * 既避开慢节点，又不会让所有节点同时涌向同一个"最快"节点。
+ * </p>
+ * <p>
+ * 熔断：连续失败（网络异常或 5xx）达到 failureThreshold 次后节点进入熔断，不再参与选择；
+ * openMs 到期后放行一个探测请求，成功则恢复，失败则重新熔断。全部节点熔断时退化为在全部节点中选择，
+ * 避免单节点部署因熔断拒绝所有请求。
+ * </p>
+ * <p>
+ * 任务只能在受理它的节点上查询：运行成功后 taskId → 节点地址写入 Redis（本地 Caffeine 缓存一份，轮询时不必每次访问 Redis），
+ * 查询时按绑定关系路由，无论该节点是否熔断；找不到绑定时（如升级前创建的任务）使用第一个节点。
+ * 只配置一个节点时不写绑定。
+ * </p>
+ *
+ * @author xiaodou V=>dddou117
+ * @version V1.0
+ * @since 2025/12/18
+ */
+@Slf4j
+@Component
+public class WorkflowEndpointPool {
+
+    private static final String PIN_KEY_PREFIX = "workflow:task:endpoint:";
+
+    private final List<Endpoint> endpoints;
+    private final WorkflowProperties.Routing routing;
+    private final StringRedisTemplate redisTemplate;
+
+    // taskId -> 节点地址
+    private final Cache<String, String> pins = Caffeine.newBuilder()
+        .maximumSize(100_000)
+        .expireAfterWrite(1, TimeUnit.HOURS)
+        .build();
+
+    public WorkflowEndpointPool(WorkflowProperties workflowProperties, StringRedisTemplate redisTemplate,
+        MeterRegistry meterRegistry) {
+        this.routing = workflowProperties.getRouting();
+        this.redisTemplate = redisTemplate;
+
+        Set<String> urls = new LinkedHashSet<>(workflowProperties.getEndpoints());
+        if (urls.isEmpty()) {
+            urls.add(workflowProperties.getBaseUrl());
+        }
+        List<Endpoint> created = new ArrayList<>();
+        for (String url : urls) {
+            Endpoint endpoint = new Endpoint(url);
+            Gauge.builder("aiapp.workflow.endpoint.latency", endpoint, e -> e.ewmaMs)
+                .tag("endpoint", url)
+                .description("工作流节点 EWMA 延迟（毫秒）")
+                .register(meterRegistry);
+            Gauge.builder("aiapp.workflow.endpoint.open", endpoint, e -> e.state == State.CLOSED ? 0 : 1)
+                .tag("endpoint", url)
+                .description("工作流节点是否处于熔断（1 熔断/探测中）")
+                .register(meterRegistry);
+            created.add(endpoint);
+        }
+        this.endpoints = Collections.unmodifiableList(created);
+        log.info("工作流节点池初始化 - 节点: {}", urls);
+    }
+
+    /**
+     * 选择节点发出运行请求，并记录该节点的延迟与成败
+     *
+     * @param request 以节点基础地址发出请求
+     * @return 响应及受理节点
+     */
+    public CompletableFuture<Routed> submit(Function<String, CompletableFuture<HttpResponseData>> request) {
+        Endpoint endpoint = choose();
+        return send(endpoint, request).thenApply(response -> new Routed(endpoint.baseUrl, response));
+    }
+
+    /**
+     * 向受理任务的节点发出请求（查询结果等）
+     *
+     * @param taskId 任务ID
+     * @param request 以节点基础地址发出请求
+     */
+    public CompletableFuture<HttpResponseData> sendPinned(String taskId,
+        Function<String, CompletableFuture<HttpResponseData>> request) {
+        return send(pinned(taskId), request);
+    }
+
+    /**
+     * 记录 taskId 与受理节点的绑定关系
+     */
+    public void pin(String taskId, String baseUrl) {
+        if (endpoints.size() == 1 || taskId == null) {
+            return;
+        }
+        pins.put(taskId, baseUrl);
+        try {
+            redisTemplate.opsForValue()
+                .set(PIN_KEY_PREFIX + taskId, baseUrl, Duration.ofHours(routing.getPinTtlHours()));
+        } catch (Exception e) {
+            // 仅本节点可按绑定查询，其他节点回落到第一个节点
+            log.warn("写入任务节点绑定失败 - taskId: {}, endpoint: {}, error: {}", taskId, baseUrl, e.getMessage());
+        }
+    }
+
+    private Endpoint pinned(String taskId) {
+        Endpoint fallback = endpoints.get(0);
+        if (endpoints.size() == 1) {
+            return fallback;
+        }
+        String baseUrl = pins.getIfPresent(taskId);
+        if (baseUrl == null) {
+            try {
+                baseUrl = redisTemplate.opsForValue()
+                    .get(PIN_KEY_PREFIX + taskId);
+            } catch (Exception e) {
+                log.warn("读取任务节点绑定失败 - taskId: {}, error: {}", taskId, e.getMessage());
+            }
+            if (baseUrl == null) {
+                return fallback;
+            }
+            pins.put(taskId, baseUrl);
+        }
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.baseUrl.equals(baseUrl)) {
+                return endpoint;
+            }
+        }
+        // 节点已从配置中移除：仍按原地址查询
+        return new Endpoint(baseUrl);
+    }
+
+    /**
+     * power-of-two-choices：可用节点中随机取两个，选负载分数较低者
+     */
+    private Endpoint choose() {
+        if (endpoints.size() == 1) {
+            return endpoints.get(0);
+        }
+        long now = System.nanoTime();
+        List<Endpoint> candidates = new ArrayList<>(endpoints.size());
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.isAvailable(now)) {
+                candidates.add(endpoint);
+            }
+        }
+
+        while (!candidates.isEmpty()) {
+            Endpoint picked = candidates.get(0);
+            if (candidates.size() > 1) {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                int first = random.nextInt(candidates.size());
+                int second = random.nextInt(candidates.size() - 1);
+                if (second >= first) {
+                    second++;
+                }
+                Endpoint a = candidates.get(first);
+                Endpoint b = candidates.get(second);
+                picked = a.score(now) <= b.score(now) ? a : b;
+            }
+            // 熔断到期的节点只放行一个探测请求，并发竞争失败时换一个
+            if (picked.admit(now)) {
+                return picked;
+            }
+            candidates.remove(picked);
+        }
+
+        Endpoint a = endpoints.get(ThreadLocalRandom.current()
+            .nextInt(endpoints.size()));
+        Endpoint b = endpoints.get(ThreadLocalRandom.current()
+            .nextInt(endpoints.size()));
+        return a.score(now) <= b.score(now) ? a : b;
+    }
+
+    private CompletableFuture<HttpResponseData> send(Endpoint endpoint,
+        Function<String, CompletableFuture<HttpResponseData>> request) {
+        long startNanos = System.nanoTime();
+        endpoint.inFlight.incrementAndGet();
+        CompletableFuture<HttpResponseData> future;
+        try {
+            future = request.apply(endpoint.baseUrl);
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        return future.whenComplete((response, error) -> {
+            endpoint.inFlight.decrementAndGet();
+            boolean success = error == null && response.getStatusCode() < 500;
+            endpoint.record(System.nanoTime() - startNanos, success);
+        });
+    }
+
+    /**
+     * 运行请求的响应及受理节点
+     *
+     * @param endpoint 节点基础地址
+     * @param response 响应
+     */
+    public record Routed(String endpoint, HttpResponseData response) {
+    }
+
+    private enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * 单个节点的延迟统计与熔断状态
+     */
+    private final class Endpoint {
+        final String baseUrl;
+        final AtomicInteger inFlight = new AtomicInteger();
+
+        volatile double ewmaMs;
+        volatile State state = State.CLOSED;
+        private long lastSampleNanos = System.nanoTime();
+        private volatile long openedAtNanos;
+        private int consecutiveFailures;
+
+        Endpoint(String baseUrl) {
+            this.baseUrl = baseUrl;
+        }
+
+        /**
+         * 是否可参与选择：未熔断，或熔断已到期且没有探测请求在途
+         */
+        boolean isAvailable(long now) {
+            State current = state;
+            return current == State.CLOSED || current == State.OPEN && now - openedAtNanos >= openNanos();
+        }
+
+        /**
+         * 选中后确认放行；熔断到期的节点转为探测状态，只放行一个请求
+         */
+        synchronized boolean admit(long now) {
+            if (state == State.CLOSED) {
+                return true;
+            }
+            if (state == State.OPEN && now - openedAtNanos >= openNanos()) {
+                state = State.HALF_OPEN;
+                log.info("工作流节点熔断到期，放行探测请求 - endpoint: {}", baseUrl);
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * 负载分数：衰减后的 EWMA 延迟 × (在途请求数 + 1)
+         */
+        synchronized double score(long now) {
+            return decayed(now) * (inFlight.get() + 1);
+        }
+
+        synchronized void record(long latencyNanos, boolean success) {
+            long now = System.nanoTime();
+            double latencyMs = latencyNanos / 1_000_000.0;
+            double weight = Math.exp(-(now - lastSampleNanos) / (routing.getDecayMs() * 1_000_000.0));
+            ewmaMs = latencyMs > ewmaMs ? latencyMs : ewmaMs * weight + latencyMs * (1 - weight);
+            lastSampleNanos = now;
+
+            if (success) {
+                if (state != State.CLOSED) {
+                    log.info("工作流节点恢复 - endpoint: {}", baseUrl);
+                }
+                state = State.CLOSED;
+                consecutiveFailures = 0;
+                return;
+            }
+            consecutiveFailures++;
+            if (state == State.HALF_OPEN || state == State.CLOSED
+                && consecutiveFailures >= routing.getFailureThreshold()) {
+                state = State.OPEN;
+                openedAtNanos = now;
+                log.warn("工作流节点熔断 - endpoint: {}, 连续失败: {}, 熔断时长: {}ms", baseUrl, consecutiveFailures,
+                    routing.getOpenMs());
+            }
+        }
+
+        /**
+         * 距上次采样越久，EWMA 越向 0 衰减，让长时间未被选中的节点有机会重新参与
+         */
+        private double decayed(long now) {
+            return ewmaMs * Math.exp(-(now - lastSampleNanos) / (routing.getDecayMs() * 1_000_000.0));
+        }
+
+        private long openNanos() {
+            return TimeUnit.MILLISECONDS.toNanos(routing.getOpenMs());
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.xiaodou.aiapp;
+
+import com.xiaodou.config.rabbitmq.WorkflowJobRabbitMQConfig;
+import com.xiaodou.model.dto.workflow.WorkflowJobMessage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * 工作流作业投递
+ * <p>
+ * 将 RUN / POLL 作业写入持久化队列，由 {@link com.xiaodou.listener.WorkflowJobListener} 在任意节点消费。
+ * 作业不再只存在于本节点内存中，重启或宕机后仍可由其他节点继续处理。
+ * </p>
+ *
+ * @author xiaodou V=>dddou117
+ * @version V1.0
+ * @since 2025/12/11
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class WorkflowJobPublisher {
+
+    private final RabbitTemplate rabbitTemplate;
+
+    /**
+     * 投递运行作业
+     *
+     * @param aiAppRecordId AI应用记录ID（已创建，状态为进行中）
+     * @param workflowId 工作流ID
+     * @param params 工作流参数
+     */
+    public void publishRun(String aiAppRecordId, String workflowId, Map<String, Object> params) {
+        send(WorkflowJobMessage.run(aiAppRecordId, workflowId, params));
+    }
+
+    /**
+     * 投递轮询作业
+     *
+     * @param aiAppRecordId AI应用记录ID
+     * @param workflowId 工作流ID
+     * @param taskId 牛马网站的任务ID
+     */
+    public void publishPoll(String aiAppRecordId, String workflowId, String taskId) {
+        send(WorkflowJobMessage.poll(aiAppRecordId, workflowId, taskId));
+    }
+
+    private void send(WorkflowJobMessage message) {
+        rabbitTemplate.convertAndSend(WorkflowJobRabbitMQConfig.EXCHANGE_NAME, WorkflowJobRabbitMQConfig.ROUTING_KEY,
+            message);
+        log.info("投递工作流作业 - type: {}, aiAppRecordId: {}, taskId: {}", message.getType(),
+            message.getAiAppRecordId(), message.getTaskId());
+    }
+}
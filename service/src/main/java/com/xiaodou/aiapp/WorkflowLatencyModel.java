@@ -0,0 +1,185 @@
+package com.xiaodou.aiapp;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xiaodou.model.AiAppRecord;
+import com.xiaodou.service.AiAppRecordService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 工作流耗时模型（按 workflowId）
+ * <p>
+ * 基于 {@link AiAppRecord#getExecutionTime()} 维护每个工作流的耗时 EWMA 及平均偏差，
+ * 据此生成轮询计划：首轮查询在预期完成时间附近触发，之后按指数退避拉长间隔，
+ * 避免对长耗时工作流每 2 秒空查一次，同时让短耗时工作流尽快拿到结果。
+ * </p>
+ * <p>
+ * 启动时从最近的成功记录预热，运行中每个成功任务实时更新模型。
+ * 没有历史数据的工作流沿用原固定间隔（2 秒）。
+ * </p>
+ *
+ * @author xiaodou V=>dddou117
+ * @version V1.0
+ * @since 2025/12/10
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class WorkflowLatencyModel {
+
+    private static final double ALPHA = 0.2;                  // EWMA 平滑系数
+    private static final int MIN_SAMPLES = 3;                 // 样本数达到后才使用模型
+    private static final int WARMUP_RECORDS = 2000;           // 启动预热读取的记录数
+    private static final long DEFAULT_INTERVAL_MS = 2000;     // 无模型时的固定间隔
+    private static final long MIN_FIRST_DELAY_MS = 1000;      // 首轮查询最短延迟
+    private static final long MAX_FIRST_DELAY_MS = 30_000;    // 首轮查询最长延迟
+    private static final long BACKOFF_BASE_MS = 1000;         // 退避起始间隔
+    private static final double BACKOFF_FACTOR = 1.5;         // 退避倍数
+    private static final long BACKOFF_MAX_MS = 10_000;        // 退避最大间隔
+    private static final double WAIT_WINDOW_FACTOR = 3.0;     // 等待窗口 = max(默认窗口, 均值 * 倍数)
+
+    private final AiAppRecordService aiAppRecordService;
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, LatencyStats> statsByWorkflow = new ConcurrentHashMap<>();
+
+    /**
+     * 启动后从历史成功记录预热（由旧到新依次折叠进 EWMA）
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        try {
+            LambdaQueryWrapper<AiAppRecord> query = new LambdaQueryWrapper<>();
+            query.select(AiAppRecord::getInputParams, AiAppRecord::getExecutionTime)
+                .eq(AiAppRecord::getStatus, 1)
+                .in(AiAppRecord::getHandlerBean, "syncWorkflowHandler", "asyncWorkflowHandler")
+                .isNotNull(AiAppRecord::getExecutionTime)
+                .orderByDesc(AiAppRecord::getCreatedAt)
+                .last("LIMIT " + WARMUP_RECORDS);
+            List<AiAppRecord> records = aiAppRecordService.list(query);
+
+            for (int i = records.size() - 1; i >= 0; i--) {
+                AiAppRecord record = records.get(i);
+                String workflowId = extractWorkflowId(record.getInputParams());
+                if (workflowId != null) {
+                    record(workflowId, record.getExecutionTime());
+                }
+            }
+            log.info("工作流耗时模型预热完成 - 记录数: {}, 工作流数: {}", records.size(), statsByWorkflow.size());
+        } catch (Exception e) {
+            log.warn("工作流耗时模型预热失败，使用默认轮询间隔: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 记录一次成功执行的耗时
+     *
+     * @param workflowId 工作流ID
+     * @param executionTimeMs 执行耗时（毫秒）
+     */
+    public void record(String workflowId, long executionTimeMs) {
+        if (workflowId == null || executionTimeMs <= 0) {
+            return;
+        }
+        statsByWorkflow.computeIfAbsent(workflowId, k -> new LatencyStats())
+            .update(executionTimeMs);
+    }
+
+    /**
+     * 首轮查询延迟：预期完成时间略提前（均值 - 半个偏差），并限制在合理区间
+     *
+     * @param workflowId 工作流ID
+     * @return 延迟毫秒数
+     */
+    public long firstDelayMs(String workflowId) {
+        LatencyStats stats = usableStats(workflowId);
+        if (stats == null) {
+            return 0;
+        }
+        long expected = (long)(stats.mean - stats.deviation / 2);
+        return Math.max(MIN_FIRST_DELAY_MS, Math.min(MAX_FIRST_DELAY_MS, expected));
+    }
+
+    /**
+     * 第 n 次查询（n 从 1 开始，即首轮之后）之后的等待间隔：指数退避
+     *
+     * @param workflowId 工作流ID
+     * @param retryCount 已完成的查询次数
+     * @return 间隔毫秒数
+     */
+    public long nextDelayMs(String workflowId, int retryCount) {
+        if (usableStats(workflowId) == null) {
+            return DEFAULT_INTERVAL_MS;
+        }
+        double delay = BACKOFF_BASE_MS * Math.pow(BACKOFF_FACTOR, Math.max(0, retryCount - 1));
+        return (long)Math.min(BACKOFF_MAX_MS, delay);
+    }
+
+    /**
+     * 最大等待时长：慢工作流按均值放宽，避免在正常耗时内被判超时
+     *
+     * @param workflowId 工作流ID
+     * @param defaultWaitMs 默认等待窗口
+     * @return 等待窗口毫秒数
+     */
+    public long maxWaitMs(String workflowId, long defaultWaitMs) {
+        LatencyStats stats = usableStats(workflowId);
+        if (stats == null) {
+            return defaultWaitMs;
+        }
+        return Math.max(defaultWaitMs, (long)(stats.mean * WAIT_WINDOW_FACTOR));
+    }
+
+    private LatencyStats usableStats(String workflowId) {
+        if (workflowId == null) {
+            return null;
+        }
+        LatencyStats stats = statsByWorkflow.get(workflowId);
+        return stats != null && stats.samples >= MIN_SAMPLES ? stats : null;
+    }
+
+    /**
+     * 从记录的输入参数中提取 workflowId
+     */
+    private String extractWorkflowId(String inputParams) {
+        if (inputParams == null || inputParams.isEmpty()) {
+            return null;
+        }
+        try {
+            JsonNode node = objectMapper.readTree(inputParams)
+                .get("workflowId");
+            return node != null && node.isTextual() ? node.asText() : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * 单个工作流的耗时统计（EWMA 均值 + EWMA 平均绝对偏差）
+     */
+    private static final class LatencyStats {
+        private volatile double mean;
+        private volatile double deviation;
+        private volatile long samples;
+
+        private synchronized void update(long value) {
+            if (samples == 0) {
+                mean = value;
+                deviation = value / 2.0;
+            } else {
+                deviation = (1 - ALPHA) * deviation + ALPHA * Math.abs(value - mean);
+                mean = (1 - ALPHA) * mean + ALPHA * value;
+            }
+            samples++;
+        }
+    }
+}
@@ -0,0 +1,391 @@
+package com.xiaodou.aiapp;
+
+import com.xiaodou.aiapp.model.Deadline;
+import com.xiaodou.config.WorkflowProperties;
+import com.xiaodou.model.AiAppRecord;
+import com.xiaodou.service.AiAppRecordService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 工作流任务轮询调度器（牛马网站专用）
+ * <p>
+ * 集中管理所有进行中的 taskId：少量调度线程负责按间隔触发查询，查询本身通过
+ * {@link WorkflowApiClient#queryTaskResultAsync} 异步发出，任何线程都不会在两次轮询之间 sleep。
+ * 因此同时在途的工作流数量不再受线程池大小限制，可轻松跟踪数千个任务。
+ * </p>
+ * <p>
+ * 任务结束（成功/失败/超时）后，通过 {@link AiAppRecordService} 更新 AI 应用记录，
+ * 数据库写入在 workflowTaskExecutor（{@link FairTaskScheduler}）中以任务所属用户的身份执行，
+ * 避免占用 HTTP 客户端回调线程，也避免单个用户的大量任务挤占其他用户的记录更新。
+ * </p>
+ * <p>
+ * 轮询节奏由 {@link WorkflowLatencyModel} 按工作流历史耗时决定：首轮在预期完成时间附近触发，之后指数退避。
+ * 启用回调（workflow.callback.enabled）时，结果主要由上游推送并通过 {@link #complete} 结束任务，
+ * 轮询仅作为丢失回调时的兜底，间隔拉长为 fallbackPollIntervalMs。
+ * </p>
+ * <p>
+ * 每次调度都会在 Redis 中续期任务租约；节点宕机后租约过期，由 WorkflowRecoveryScheduler
+ * 将任务重新投递为 POLL 作业，交给集群中其他节点继续轮询。
+ * </p>
+ *
+ * @author xiaodou V=>dddou117
+ * @version V1.0
+ * @since 2025/12/8
+ */
+@Slf4j
+@Component
+public class WorkflowPollScheduler {
+
+    // 牛马网站工作流配置（固化在代码中）
+    private static final long MAX_WAIT_MS = 60_000;       // 无历史耗时时的默认最大等待时长（毫秒，原 30 次 × 2 秒）
+    private static final int SCHEDULER_THREADS = 2;       // 调度线程数（只负责触发，不做阻塞IO）
+    private static final String LEASE_KEY_PREFIX = "workflow:poll:lease:"; // 轮询租约，恢复扫描据此判断任务是否有节点在跟踪
+    private static final long LEASE_GRACE_MS = 60_000;    // 租约在下次轮询时间之外的宽限时长
+    private static final long MIN_QUERY_BUDGET_MS = 5_000; // 单次查询的最短时限，最大等待时长将尽时仍留出最后一次查询的时间
+
+    private final WorkflowApiClient workflowApiClient;
+    private final WorkflowLatencyModel workflowLatencyModel;
+    private final AiAppRecordService aiAppRecordService;
+    private final WorkflowProperties workflowProperties;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final FairTaskScheduler workflowTaskExecutor;
+
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(SCHEDULER_THREADS,
+        Thread.ofPlatform()
+            .name("workflow-poll-", 0)
+            .daemon(true)
+            .factory());
+
+    // 进行中的轮询任务：key = taskId
+    private final Map<String, PollTask> pendingTasks = new ConcurrentHashMap<>();
+
+    public WorkflowPollScheduler(WorkflowApiClient workflowApiClient, WorkflowLatencyModel workflowLatencyModel,
+        AiAppRecordService aiAppRecordService, WorkflowProperties workflowProperties,
+        RedisTemplate<String, Object> redisTemplate, @Qualifier("workflowTaskExecutor") FairTaskScheduler workflowTaskExecutor) {
+        this.workflowApiClient = workflowApiClient;
+        this.workflowLatencyModel = workflowLatencyModel;
+        this.aiAppRecordService = aiAppRecordService;
+        this.workflowProperties = workflowProperties;
+        this.redisTemplate = redisTemplate;
+        this.workflowTaskExecutor = workflowTaskExecutor;
+    }
+
+    /**
+     * 登记一个待轮询的工作流任务（不区分用户，结束后的记录更新进入 system 通道）
+     *
+     * @see #submit(String, String, String, String, String)
+     */
+    public CompletableFuture<Map<String, Object>> submit(String aiAppRecordId, String workflowId, String taskId,
+        String apiKey) {
+        return submit(null, aiAppRecordId, workflowId, taskId, apiKey);
+    }
+
+    /**
+     * 登记一个待轮询的工作流任务，立即返回
+     *
+     * @param userId 任务所属用户ID（用于公平调度结束后的记录更新，可为空）
+     * @param aiAppRecordId AI应用记录ID
+     * @param workflowId 工作流ID（用于按历史耗时安排轮询）
+     * @param taskId 牛马网站的任务ID
+     * @param apiKey API密钥
+     * @return 任务最终结果的 Future（记录已更新后才完成）
+     */
+    public CompletableFuture<Map<String, Object>> submit(String userId, String aiAppRecordId, String workflowId,
+        String taskId, String apiKey) {
+        PollTask task = new PollTask(userId, aiAppRecordId, workflowId, taskId, apiKey, System.currentTimeMillis(),
+            workflowLatencyModel.maxWaitMs(workflowId, MAX_WAIT_MS));
+        PollTask existing = pendingTasks.putIfAbsent(taskId, task);
+        if (existing != null) {
+            log.warn("任务已在轮询中，忽略重复提交 - taskId: {}, aiAppRecordId: {}", taskId, existing.aiAppRecordId);
+            return existing.future;
+        }
+
+        log.info("登记异步轮询任务 - aiAppRecordId: {}, taskId: {}, 在途任务数: {}", aiAppRecordId, taskId,
+            pendingTasks.size());
+        schedulePoll(task, firstDelayMs(task));
+        return task.future;
+    }
+
+    /**
+     * 直接以上游推送的结果结束任务（回调入口）
+     * <p>
+     * 任务在本节点登记时，移出在途集合并取消后续轮询；否则（其他节点登记或服务重启后）
+     * 按 executeId 找到记录直接落库。记录已结束时忽略。
+     * </p>
+     *
+     * @param taskId 牛马网站的任务ID
+     * @param finalResult 任务结果（需包含 status，1成功 2失败）
+     * @return 是否被接受（找到仍在进行中的任务）
+     */
+    public boolean complete(String taskId, Map<String, Object> finalResult) {
+        PollTask task = pendingTasks.get(taskId);
+        if (task != null) {
+            log.info("收到任务回调，结束轮询 - taskId: {}, retryCount: {}", taskId, task.retryCount);
+            finish(task, finalResult);
+            return true;
+        }
+
+        AiAppRecord record = aiAppRecordService.getByExecuteId(taskId);
+        if (record == null || !Integer.valueOf(3).equals(record.getStatus())) {
+            log.info("回调对应的记录不存在或已结束 - taskId: {}", taskId);
+            return false;
+        }
+        long executionTime = record.getCreatedAt() == null ? 0L :
+            Duration.between(record.getCreatedAt(), LocalDateTime.now()).toMillis();
+        return persistResult(record.getId(), finalResult, executionTime);
+    }
+
+    /**
+     * 续期任务的轮询租约
+     * <p>
+     * 租约存在表示有节点正在跟踪该任务（或轮询作业已入队），恢复扫描不会重复投递。
+     * Redis 不可用时只记录警告，不影响轮询本身。
+     * </p>
+     *
+     * @param taskId 牛马网站的任务ID
+     * @param ttlMs 租约有效期（毫秒）
+     */
+    public void renewLease(String taskId, long ttlMs) {
+        try {
+            redisTemplate.opsForValue()
+                .set(LEASE_KEY_PREFIX + taskId, System.currentTimeMillis(), ttlMs, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            log.warn("续期轮询租约失败 - taskId: {}, error: {}", taskId, e.getMessage());
+        }
+    }
+
+    /**
+     * 任务是否持有有效的轮询租约
+     */
+    public boolean hasLease(String taskId) {
+        return Boolean.TRUE.equals(redisTemplate.hasKey(LEASE_KEY_PREFIX + taskId));
+    }
+
+    /**
+     * 当前在途的轮询任务数
+     */
+    public int getPendingCount() {
+        return pendingTasks.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        log.info("关闭工作流轮询调度器 - 未完成任务数: {}", pendingTasks.size());
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 延迟触发一次轮询
+     */
+    private void schedulePoll(PollTask task, long delayMs) {
+        renewLease(task.taskId, delayMs + LEASE_GRACE_MS);
+        try {
+            scheduler.schedule(() -> poll(task), delayMs, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            // 调度器已关闭（应用停止中），记录保持进行中状态
+            log.warn("轮询调度失败 - taskId: {}, error: {}", task.taskId, e.getMessage());
+        }
+    }
+
+    /**
+     * 发出一次异步查询，结果在回调中处理
+     * <p>
+     * 查询时限取剩余最大等待时长（不少于 MIN_QUERY_BUDGET_MS），上游停滞时查询也会按时失败，
+     * 保证 onPollResult 一定执行，任务最终能被判定为超时结束。
+     * </p>
+     */
+    private void poll(PollTask task) {
+        if (!isActive(task)) {
+            return;
+        }
+        task.retryCount++;
+        long remainingMs = task.maxWaitMs - (System.currentTimeMillis() - task.startTime);
+        Deadline deadline = Deadline.after(Math.max(remainingMs, MIN_QUERY_BUDGET_MS));
+        workflowApiClient.queryTaskResultAsync(task.taskId, task.apiKey, deadline)
+            .whenComplete((queryResult, error) -> onPollResult(task, queryResult, error));
+    }
+
+    /**
+     * 处理单次查询结果：完成则落库，否则按间隔重新调度
+     */
+    private void onPollResult(PollTask task, Map<String, Object> queryResult, Throwable error) {
+        if (!isActive(task)) {
+            // 轮询期间已被回调结束
+            return;
+        }
+        if (error != null) {
+            log.warn("查询任务结果失败 - taskId: {}, retryCount: {}, error: {}", task.taskId, task.retryCount,
+                error.getMessage());
+            // 已达最大等待时长，按执行异常处理
+            if (isExhausted(task)) {
+                finish(task, failedResult(task, "后台执行异常: " + error.getMessage()));
+                return;
+            }
+            schedulePoll(task, nextDelayMs(task));
+            return;
+        }
+
+        Integer status = (Integer)queryResult.get("status");
+        queryResult.put("retryCount", task.retryCount);
+
+        // 检查是否完成
+        if (workflowApiClient.isTaskFinished(status)) {
+            log.info("异步任务完成 - taskId: {}, status: {}, retryCount: {}", task.taskId, status, task.retryCount);
+            finish(task, queryResult);
+            return;
+        }
+
+        if (isExhausted(task)) {
+            // 超过最大等待时长
+            finish(task, failedResult(task, "任务执行超时，已达最大等待时长: " + task.maxWaitMs + "ms"));
+            return;
+        }
+
+        log.debug("异步任务进行中 - taskId: {}, status: {}, retryCount: {}, maxWaitMs: {}", task.taskId, status,
+            task.retryCount, task.maxWaitMs);
+        schedulePoll(task, nextDelayMs(task));
+    }
+
+    /**
+     * 任务结束：移出在途集合，并在 workflowTaskExecutor 中更新AI应用记录
+     */
+    private void finish(PollTask task, Map<String, Object> finalResult) {
+        if (!pendingTasks.remove(task.taskId, task)) {
+            return;
+        }
+        workflowTaskExecutor.execute(task.userId, () -> {
+            long executionTime = System.currentTimeMillis() - task.startTime;
+            releaseLease(task.taskId);
+            try {
+                persistResult(task.aiAppRecordId, finalResult, executionTime);
+                if (workflowApiClient.isTaskSuccess((Integer)finalResult.get("status"))) {
+                    workflowLatencyModel.record(task.workflowId, executionTime);
+                }
+                finalResult.put("executionTime", executionTime);
+                task.future.complete(finalResult);
+            } catch (Exception e) {
+                log.error("更新AI应用记录失败 - aiAppRecordId: {}, error: {}", task.aiAppRecordId, e.getMessage(), e);
+                task.future.completeExceptionally(e);
+            }
+        });
+    }
+
+    private void releaseLease(String taskId) {
+        try {
+            redisTemplate.delete(LEASE_KEY_PREFIX + taskId);
+        } catch (Exception e) {
+            log.warn("释放轮询租约失败 - taskId: {}, error: {}", taskId, e.getMessage());
+        }
+    }
+
+    /**
+     * 按结果状态更新AI应用记录
+     *
+     * @return 是否实际更新了记录（记录已结束时为 false）
+     */
+    private boolean persistResult(String aiAppRecordId, Map<String, Object> finalResult, long executionTime) {
+        Integer status = (Integer)finalResult.get("status");
+        if (workflowApiClient.isTaskSuccess(status)) {
+            // 成功
+            log.info("异步任务执行成功 - aiAppRecordId: {}, executionTime: {}ms", aiAppRecordId, executionTime);
+            return aiAppRecordService.updateAiAppSuccess(aiAppRecordId, finalResult, executionTime);
+        }
+        // 失败或超时
+        String errorMessage = (String)finalResult.getOrDefault("message", "任务执行失败");
+        log.warn("异步任务执行失败 - aiAppRecordId: {}, error: {}", aiAppRecordId, errorMessage);
+        return aiAppRecordService.updateAiAppFailed(aiAppRecordId, errorMessage, executionTime);
+    }
+
+    /**
+     * 任务是否仍在本调度器中进行
+     */
+    private boolean isActive(PollTask task) {
+        return pendingTasks.get(task.taskId) == task;
+    }
+
+    /**
+     * 是否已用尽等待时长（按历史耗时学习的 maxWaitMs）
+     */
+    private boolean isExhausted(PollTask task) {
+        return System.currentTimeMillis() - task.startTime >= task.maxWaitMs;
+    }
+
+    private boolean isCallbackEnabled() {
+        return workflowProperties.getCallback()
+            .isEnabled();
+    }
+
+    /**
+     * 首轮查询延迟：按历史耗时在预期完成时间附近触发；启用回调时至少推迟到兜底间隔之后
+     */
+    private long firstDelayMs(PollTask task) {
+        long modelDelay = workflowLatencyModel.firstDelayMs(task.workflowId);
+        return isCallbackEnabled() ? Math.max(modelDelay, fallbackIntervalMs()) : modelDelay;
+    }
+
+    /**
+     * 后续查询间隔：按历史耗时指数退避；启用回调时轮询只作为兜底，使用固定的长间隔
+     */
+    private long nextDelayMs(PollTask task) {
+        return isCallbackEnabled() ? fallbackIntervalMs() :
+            workflowLatencyModel.nextDelayMs(task.workflowId, task.retryCount);
+    }
+
+    private long fallbackIntervalMs() {
+        return workflowProperties.getCallback()
+            .getFallbackPollIntervalMs();
+    }
+
+    /**
+     * 构造失败结果
+     */
+    private Map<String, Object> failedResult(PollTask task, String message) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("taskId", task.taskId);
+        result.put("status", 2); // 失败
+        result.put("message", message);
+        result.put("retryCount", task.retryCount);
+        return result;
+    }
+
+    /**
+     * 单个在途轮询任务的状态
+     */
+    private static final class PollTask {
+        private final String userId;
+        private final String aiAppRecordId;
+        private final String workflowId;
+        private final String taskId;
+        private final String apiKey;
+        private final long startTime;
+        private final long maxWaitMs;
+        private final CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
+        // 同一任务的查询严格串行（上一次回调后才调度下一次），无需同步
+        private volatile int retryCount;
+
+        private PollTask(String userId, String aiAppRecordId, String workflowId, String taskId, String apiKey,
+            long startTime, long maxWaitMs) {
+            this.userId = userId;
+            this.aiAppRecordId = aiAppRecordId;
+            this.workflowId = workflowId;
+            this.taskId = taskId;
+            this.apiKey = apiKey;
+            this.startTime = startTime;
+            this.maxWaitMs = maxWaitMs;
+        }
+    }
+}
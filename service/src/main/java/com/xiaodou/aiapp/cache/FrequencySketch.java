@@ -0,0 +1,98 @@
+package com.xiaodou.aiapp.cache;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 访问频率估计（Count-Min Sketch，4 行）
+ * <p>
+ * 每个 key 映射到 4 个计数器，估计值取最小者；累计写入达到采样上限后所有计数减半，
+ * 让热度随时间衰减，旧热点逐步让位于新热点。计数更新不加锁，结果为近似值，仅用于挑选热点 key。
+ * </p>
+ *
+ * @author xiaodou V=>dddou117
+ * @version V1.0
+ * @since 2025/12/14
+ */
+final class FrequencySketch {
+
+    private static final long[] SEEDS =
+        {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private static final int MAX_COUNT = 1 << 20;
+
+    private final int[][] table;
+    private final int mask;
+    private final int sampleSize;
+    private final AtomicInteger additions = new AtomicInteger();
+
+    /**
+     * @param expectedKeys 预计跟踪的 key 数量
+     */
+    FrequencySketch(int expectedKeys) {
+        int width = Integer.highestOneBit(Math.max(expectedKeys, 64) * 2 - 1);
+        this.table = new int[SEEDS.length][width];
+        this.mask = width - 1;
+        this.sampleSize = width * 10;
+    }
+
+    /**
+     * 记录一次访问
+     *
+     * @return 记录后的估计频率
+     */
+    int increment(String key) {
+        int hash = spread(key.hashCode());
+        int estimate = Integer.MAX_VALUE;
+        for (int i = 0; i < SEEDS.length; i++) {
+            int index = indexOf(hash, i);
+            int count = table[i][index];
+            if (count < MAX_COUNT) {
+                count++;
+                table[i][index] = count;
+            }
+            estimate = Math.min(estimate, count);
+        }
+        if (additions.incrementAndGet() >= sampleSize) {
+            age();
+        }
+        return estimate;
+    }
+
+    /**
+     * 估计访问频率
+     */
+    int frequency(String key) {
+        int hash = spread(key.hashCode());
+        int estimate = Integer.MAX_VALUE;
+        for (int i = 0; i < SEEDS.length; i++) {
+            estimate = Math.min(estimate, table[i][indexOf(hash, i)]);
+        }
+        return estimate;
+    }
+
+    /**
+     * 衰减：所有计数减半
+     */
+    private synchronized void age() {
+        if (additions.get() < sampleSize) {
+            return;
+        }
+        for (int[] row : table) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] >>>= 1;
+            }
+        }
+        additions.set(0);
+    }
+
+    private int indexOf(int hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        h += h >>> 32;
+        return (int)h & mask;
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
@@ -0,0 +1,456 @@
+package com.xiaodou.aiapp.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.xiaodou.config.ResultCacheProperties;
+import com.xiaodou.utils.RedisLockUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 两级结果缓存（本地 Caffeine L1 + Redis L2），防缓存击穿
+ * <p>
+ * 查询顺序：L1 -> 本节点在途请求 -> L2 -> 回源。
+ * - 同一 key 在本节点只有一个在途加载（共享 Future），其余调用方直接复用；
+ * - 跨节点通过 Redis 租约（SET NX PX，Lua 比较后删除）保证同一时刻只有一个节点回源，
+ *   未拿到租约的节点轮询 L2 等待结果，租约释放或等待超时后再自行回源；
+ * - L2 中的值为 1 字节格式头 + 8 字节软过期时间 + JSON，超过阈值时 gzip 压缩，
+ *   绕过 RedisTemplate 的 JSON 序列化器直接读写字节。
+ * </p>
+ * <p>
+ * 过期策略：
+ * - 软过期（softTtlMs）早于 Redis 硬过期（ttlMs）。命中已软过期的数据时立即返回旧值，
+ *   同时在后台发起一次刷新（同样受租约保护，集群内只刷新一次）；
+ * - 以频率草图（{@link FrequencySketch}）跟踪访问热度，{@link #refreshAhead()} 定期在热点 key
+ *   软过期之前主动刷新，避免热点集中到期。只有调用方声明可提前刷新的 key 才会保留回源函数，
+ *   携带调用方凭证的回源函数不在缓存中长期保留。
+ * </p>
+ * 缓存读写失败只记录日志并按未命中处理，不影响正常回源。
+ *
+ * @author xiaodou V=>dddou117
+ * @version V1.0
+ * @since 2025/12/13
+ */
+@Slf4j
+public class TwoTierResultCache {
+
+    private static final byte FORMAT_JSON = 0;          // 旧格式：无软过期时间
+    private static final byte FORMAT_GZIP = 1;          // 旧格式：无软过期时间
+    private static final byte FORMAT_JSON_V2 = 2;
+    private static final byte FORMAT_GZIP_V2 = 3;
+    private static final long MAX_PEER_POLL_INTERVAL_MS = 1_000;
+
+    /**
+     * 等待其他节点结果时的轮询线程（虚拟线程，Redis 读取为阻塞调用）
+     */
+    private static final Executor PEER_WAITER = Executors.newThreadPerTaskExecutor(Thread.ofVirtual()
+        .name("result-cache-wait-", 0)
+        .factory());
+
+    private final String name;
+    private final ResultCacheProperties.Spec spec;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final Cache<String, Entry> local;
+    private final ConcurrentMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Boolean> refreshing = new ConcurrentHashMap<>();
+    private final FrequencySketch sketch;
+    private final Cache<String, Supplier<CompletableFuture<Object>>> tracked;
+    private final String nodeId = UUID.randomUUID()
+        .toString();
+
+    private final Counter localHits;
+    private final Counter remoteHits;
+    private final Counter peerHits;
+    private final Counter coalesced;
+    private final Counter misses;
+    private final Counter staleHits;
+    private final Counter refreshes;
+
+    public TwoTierResultCache(String name, ResultCacheProperties.Spec spec, RedisTemplate<String, Object> redisTemplate,
+        ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.spec = spec;
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.local = Caffeine.newBuilder()
+            .maximumSize(spec.getLocalMaxSize())
+            .expireAfterWrite(spec.getLocalTtlMs(), TimeUnit.MILLISECONDS)
+            .build();
+        this.sketch = new FrequencySketch(spec.getTrackedKeys());
+        this.tracked = Caffeine.newBuilder()
+            .maximumSize(spec.getTrackedKeys())
+            .expireAfterWrite(1, TimeUnit.HOURS)
+            .build();
+        this.localHits = counter(meterRegistry, "l1_hit");
+        this.remoteHits = counter(meterRegistry, "l2_hit");
+        this.peerHits = counter(meterRegistry, "peer_hit");
+        this.coalesced = counter(meterRegistry, "coalesced");
+        this.misses = counter(meterRegistry, "miss");
+        this.staleHits = counter(meterRegistry, "stale_hit");
+        this.refreshes = counter(meterRegistry, "refresh");
+    }
+
+    /**
+     * 获取缓存结果，未命中时调用 loader 回源并写入两级缓存
+     *
+     * @param key 缓存键（不含前缀，调用方保证已做摘要）
+     * @param loader 回源函数
+     * @param refreshAhead 是否参与热点提前刷新。参与时缓存会持有 loader（至多 1 小时），
+     *     loader 捕获了调用方凭证（如请求头中的令牌）时应传 false，软过期后仍可由命中的调用方触发刷新
+     * @return 结果 Future
+     */
+    public CompletableFuture<Object> get(String key, Supplier<CompletableFuture<Object>> loader,
+        boolean refreshAhead) {
+        sketch.increment(key);
+        if (refreshAhead) {
+            tracked.asMap()
+                .putIfAbsent(key, loader);
+        }
+
+        Entry cached = local.getIfPresent(key);
+        if (cached != null) {
+            localHits.increment();
+            return CompletableFuture.completedFuture(serve(key, cached, loader));
+        }
+
+        CompletableFuture<Object> promise = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, promise);
+        if (existing != null) {
+            coalesced.increment();
+            return existing.copy();
+        }
+        promise.whenComplete((value, error) -> inFlight.remove(key, promise));
+
+        try {
+            load(key, loader, promise);
+        } catch (RuntimeException e) {
+            promise.completeExceptionally(e);
+        }
+        return promise.copy();
+    }
+
+    /**
+     * 删除指定 key 的两级缓存
+     */
+    public void evict(String key) {
+        local.invalidate(key);
+        try {
+            redisTemplate.delete(dataKey(key));
+        } catch (Exception e) {
+            log.warn("删除结果缓存失败 - cache: {}, key: {}, error: {}", name, key, e.getMessage());
+        }
+    }
+
+    /**
+     * 热点 key 提前刷新：按访问频率取前 N 个，软过期时间落在提前量窗口内的在后台刷新
+     *
+     * @return 本次发起的刷新数
+     */
+    public int refreshAhead() {
+        int topN = spec.getRefreshAheadTopN();
+        if (topN <= 0) {
+            return 0;
+        }
+        long now = System.currentTimeMillis();
+        long horizon = now + spec.getRefreshAheadWindowMs();
+        List<Map.Entry<String, Supplier<CompletableFuture<Object>>>> hottest = tracked.asMap()
+            .entrySet()
+            .stream()
+            .sorted(Comparator.comparingInt(
+                    (Map.Entry<String, Supplier<CompletableFuture<Object>>> e) -> sketch.frequency(e.getKey()))
+                .reversed())
+            .limit(topN)
+            .toList();
+
+        int triggered = 0;
+        for (Map.Entry<String, Supplier<CompletableFuture<Object>>> candidate : hottest) {
+            Entry cached = local.getIfPresent(candidate.getKey());
+            if (cached != null && cached.softExpireAt <= horizon
+                && refreshInBackground(candidate.getKey(), candidate.getValue(), horizon)) {
+                triggered++;
+            }
+        }
+        if (triggered > 0) {
+            log.info("热点缓存提前刷新 - cache: {}, 候选: {}, 发起: {}", name, hottest.size(), triggered);
+        }
+        return triggered;
+    }
+
+    /**
+     * 返回命中的值；已软过期时先返回旧值，再在后台刷新一次
+     */
+    private Object serve(String key, Entry entry, Supplier<CompletableFuture<Object>> loader) {
+        long now = System.currentTimeMillis();
+        if (entry.softExpireAt <= now) {
+            staleHits.increment();
+            refreshInBackground(key, loader, now);
+        }
+        return entry.value;
+    }
+
+    /**
+     * 后台刷新：本节点同一 key 只有一个刷新任务，集群内由租约保证只有一个节点回源。
+     * 拿到租约后先复查 L2，若其他节点已刷新到 freshUntil 之后则只同步到本地。
+     *
+     * @return 是否发起了刷新任务
+     */
+    private boolean refreshInBackground(String key, Supplier<CompletableFuture<Object>> loader, long freshUntil) {
+        if (refreshing.putIfAbsent(key, Boolean.TRUE) != null) {
+            return false;
+        }
+        CompletableFuture<Object> done = new CompletableFuture<>();
+        done.whenComplete((value, error) -> {
+            refreshing.remove(key);
+            if (error != null) {
+                log.warn("后台刷新缓存失败，继续使用旧值 - cache: {}, key: {}, error: {}", name, key,
+                    error.getMessage());
+            }
+        });
+        CompletableFuture.runAsync(() -> {
+            try {
+                if (!tryAcquireLease(key)) {
+                    done.complete(null);
+                    return;
+                }
+                Entry remote = readRemote(key);
+                if (remote != null && remote.softExpireAt > freshUntil) {
+                    releaseLease(key);
+                    local.put(key, remote);
+                    done.complete(remote.value);
+                    return;
+                }
+                refreshes.increment();
+                loadAndStore(key, loader, done, true);
+            } catch (RuntimeException e) {
+                done.completeExceptionally(e);
+            }
+        }, PEER_WAITER);
+        return true;
+    }
+
+    private void load(String key, Supplier<CompletableFuture<Object>> loader, CompletableFuture<Object> promise) {
+        Entry remote = readRemote(key);
+        if (remote != null) {
+            remoteHits.increment();
+            local.put(key, remote);
+            promise.complete(serve(key, remote, loader));
+            return;
+        }
+
+        if (tryAcquireLease(key)) {
+            misses.increment();
+            loadAndStore(key, loader, promise, true);
+            return;
+        }
+
+        // 其他节点正在回源：等待其写入 L2
+        waitForPeer(key, loader, promise, System.currentTimeMillis() + spec.getPeerWaitMs(),
+            spec.getPeerPollIntervalMs());
+    }
+
+    private void loadAndStore(String key, Supplier<CompletableFuture<Object>> loader,
+        CompletableFuture<Object> promise, boolean leased) {
+        CompletableFuture<Object> upstream;
+        try {
+            upstream = loader.get();
+        } catch (RuntimeException e) {
+            if (leased) {
+                releaseLease(key);
+            }
+            promise.completeExceptionally(e);
+            return;
+        }
+
+        upstream.whenComplete((value, error) -> {
+            try {
+                if (error == null && value != null) {
+                    Entry entry = new Entry(value, System.currentTimeMillis() + spec.getSoftTtlMs());
+                    local.put(key, entry);
+                    writeRemote(key, entry);
+                }
+            } finally {
+                if (leased) {
+                    releaseLease(key);
+                }
+            }
+            if (error != null) {
+                promise.completeExceptionally(error);
+            } else {
+                promise.complete(value);
+            }
+        });
+    }
+
+    /**
+     * 轮询 L2 等待持有租约的节点写入结果；租约提前释放（对方回源失败）或等待超时则由本节点回源
+     */
+    private void waitForPeer(String key, Supplier<CompletableFuture<Object>> loader,
+        CompletableFuture<Object> promise, long deadline, long intervalMs) {
+        CompletableFuture.runAsync(() -> {
+            try {
+                Entry remote = readRemote(key);
+                if (remote != null) {
+                    peerHits.increment();
+                    local.put(key, remote);
+                    promise.complete(remote.value);
+                    return;
+                }
+                boolean leased = tryAcquireLease(key);
+                if (leased || System.currentTimeMillis() >= deadline) {
+                    misses.increment();
+                    loadAndStore(key, loader, promise, leased);
+                    return;
+                }
+                waitForPeer(key, loader, promise, deadline, Math.min(intervalMs * 2, MAX_PEER_POLL_INTERVAL_MS));
+            } catch (RuntimeException e) {
+                promise.completeExceptionally(e);
+            }
+        }, CompletableFuture.delayedExecutor(intervalMs, TimeUnit.MILLISECONDS, PEER_WAITER));
+    }
+
+    // ========== Redis 读写 ==========
+
+    private Entry readRemote(String key) {
+        try {
+            byte[] raw = redisTemplate.execute((RedisCallback<byte[]>)connection -> connection.stringCommands()
+                .get(bytes(dataKey(key))));
+            return raw == null ? null : decode(raw);
+        } catch (Exception e) {
+            log.warn("读取结果缓存失败，按未命中处理 - cache: {}, key: {}, error: {}", name, key, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeRemote(String key, Entry entry) {
+        try {
+            byte[] encoded = encode(entry);
+            redisTemplate.execute((RedisCallback<Boolean>)connection -> connection.stringCommands()
+                .set(bytes(dataKey(key)), encoded, Expiration.milliseconds(spec.getTtlMs()),
+                    RedisStringCommands.SetOption.upsert()));
+        } catch (Exception e) {
+            log.warn("写入结果缓存失败 - cache: {}, key: {}, error: {}", name, key, e.getMessage());
+        }
+    }
+
+    private boolean tryAcquireLease(String key) {
+        try {
+            return Boolean.TRUE.equals(redisTemplate.opsForValue()
+                .setIfAbsent(leaseKey(key), nodeId, Duration.ofMillis(spec.getLeaseMs())));
+        } catch (Exception e) {
+            // Redis 不可用时不阻塞回源
+            log.warn("获取回源租约失败，直接回源 - cache: {}, key: {}, error: {}", name, key, e.getMessage());
+            return true;
+        }
+    }
+
+    private void releaseLease(String key) {
+        try {
+            // 仅当租约仍由本节点持有时删除，不会误删租约过期后其他节点的新租约
+            RedisLockUtils.release(redisTemplate, leaseKey(key), nodeId);
+        } catch (Exception e) {
+            log.warn("释放回源租约失败 - cache: {}, key: {}, error: {}", name, key, e.getMessage());
+        }
+    }
+
+    // ========== 编解码 ==========
+
+    private byte[] encode(Entry entry) throws IOException {
+        byte[] json = objectMapper.writeValueAsBytes(entry.value);
+        boolean compress = json.length >= spec.getCompressMinBytes();
+        ByteArrayOutputStream out = new ByteArrayOutputStream((compress ? json.length / 4 : json.length) + 16);
+        out.write(compress ? FORMAT_GZIP_V2 : FORMAT_JSON_V2);
+        out.write(ByteBuffer.allocate(Long.BYTES)
+            .putLong(entry.softExpireAt)
+            .array());
+        if (!compress) {
+            out.write(json);
+            return out.toByteArray();
+        }
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(json);
+        }
+        return out.toByteArray();
+    }
+
+    private Entry decode(byte[] raw) throws IOException {
+        if (raw.length < 2) {
+            return null;
+        }
+        byte format = raw[0];
+        int offset = 1;
+        // 旧格式没有软过期时间，视为已软过期，命中后触发一次刷新
+        long softExpireAt = 0;
+        if (format == FORMAT_JSON_V2 || format == FORMAT_GZIP_V2) {
+            if (raw.length < 1 + Long.BYTES + 1) {
+                return null;
+            }
+            softExpireAt = ByteBuffer.wrap(raw, 1, Long.BYTES)
+                .getLong();
+            offset += Long.BYTES;
+        } else if (format != FORMAT_JSON && format != FORMAT_GZIP) {
+            throw new IOException("未知的缓存格式: " + format);
+        }
+
+        InputStream in = new ByteArrayInputStream(raw, offset, raw.length - offset);
+        if (format == FORMAT_GZIP || format == FORMAT_GZIP_V2) {
+            in = new GZIPInputStream(in);
+        }
+        try (InputStream body = in) {
+            return new Entry(objectMapper.readValue(body, Object.class), softExpireAt);
+        }
+    }
+
+    private String dataKey(String key) {
+        return name + ":response:" + key;
+    }
+
+    private String leaseKey(String key) {
+        return name + ":lease:" + key;
+    }
+
+    private static byte[] bytes(String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private Counter counter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("aiapp.cache.requests")
+            .description("AI应用结果缓存请求数")
+            .tag("cache", name)
+            .tag("result", result)
+            .register(meterRegistry);
+    }
+
+    /**
+     * 缓存条目：值 + 软过期时间（毫秒时间戳）
+     */
+    private record Entry(Object value, long softExpireAt) {
+    }
+}
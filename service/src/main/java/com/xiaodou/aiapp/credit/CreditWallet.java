@@ -0,0 +1,540 @@
+package com.xiaodou.aiapp.credit;
+
+import com.xiaodou.aiapp.AiAppExecutor;
+import com.xiaodou.aiapp.model.AiAppExecutionContext;
+import com.xiaodou.config.CreditProperties;
+import com.xiaodou.exception.AppException;
+import com.xiaodou.mapper.CreditLedgerMapper;
+import com.xiaodou.model.AiApplication;
+import com.xiaodou.result.ResultCodeEnum;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * 积分钱包（Redis 侧）
+ * <p>
+ * 余额保存在 Redis（credit:balance:{userId}），每次执行先用 Lua 脚本原子预扣，
+ * 执行成功后确认、失败后退回；余额变动与流水追加在同一脚本内完成，流水进入 credit:ledger 列表，
+ * 由 CreditLedgerFlushScheduler 批量写入 MySQL。热路径不锁任何数据库行，MySQL 中只有只追加的流水表。
+ * 追加流水的同时在 credit:pending 哈希中累加该用户尚未刷盘的流水合计，刷盘移除流水时同步扣减，供对账直接读取。
+ * </p>
+ * <p>
+ * 创建 AI 应用记录的执行器（工作流）返回进行中状态时，预扣与记录绑定，
+ * 由 {@link #settleRecord} 在记录结束时确认或退回；记录先于绑定结束时留下结果标记，绑定时直接结算。
+ * </p>
+ *
+ * @author xiaodou V=>dddou117
+ * @version V1.0
+ * @since 2025/12/16
+ */
+@Slf4j
+@Component
+public class CreditWallet {
+
+    public static final String LEDGER_KEY = "credit:ledger";
+    public static final String HOLDS_KEY = "credit:holds";
+    public static final String PENDING_KEY = "credit:pending";
+    public static final String LEDGER_DEAD_KEY = "credit:ledger:dead";
+    public static final String BALANCE_KEY_PREFIX = "credit:balance:";
+    private static final String RESERVATION_KEY_PREFIX = "credit:rsv:";
+    private static final String RECORD_KEY_PREFIX = "credit:record:";
+
+    private static final String COMMIT = "C";
+    private static final String REFUND = "F";
+    private static final long NOT_LOADED = -2L;
+
+    private static final Duration HOLD_TTL = Duration.ofDays(2);       // 预扣最长保留时间（兜底，正常由对账任务处理）
+    private static final Duration SETTLED_TTL = Duration.ofDays(1);    // 结算后保留预扣状态，保证重复结算幂等
+    private static final Duration BINDING_TTL = Duration.ofDays(1);    // 记录绑定，需长于工作流最长存活时间
+    private static final Duration MARKER_TTL = Duration.ofMinutes(10); // 记录先于绑定结束时的结果标记
+
+    /**
+     * 结算预扣（公共函数，拼接在各脚本前）：state 必须为 R，退回时加回余额，追加流水
+     */
+    private static final String SETTLE_FUNCTION = """
+        local function settle(rid, outcome, recordId, now, keepSec)
+          local rsvKey = 'credit:rsv:' .. rid
+          local hold = redis.call('HMGET', rsvKey, 'state', 'user', 'amount', 'app', 'record')
+          if hold[1] ~= 'R' then return 0 end
+          local user, amount = hold[2], tonumber(hold[3])
+          local record = recordId
+          if record == '' then record = hold[5] or '' end
+          local balanceKey = 'credit:balance:' .. user
+          local delta, balance, entryType = 0, 0, 'COMMIT'
+          if outcome == 'F' then
+            delta, entryType = amount, 'REFUND'
+            balance = redis.call('INCRBY', balanceKey, amount)
+          else
+            balance = tonumber(redis.call('GET', balanceKey) or '0')
+          end
+          redis.call('HSET', rsvKey, 'state', outcome, 'record', record)
+          redis.call('EXPIRE', rsvKey, keepSec)
+          redis.call('ZREM', KEYS[2], rid)
+          if delta ~= 0 then redis.call('HINCRBY', 'credit:pending', user, delta) end
+          redis.call('RPUSH', KEYS[1], cjson.encode({id = rid .. ':' .. entryType, user = user, type = entryType,
+            amount = delta, rsv = rid, app = hold[4] or '', record = record, balance = balance, ts = tonumber(now)}))
+          return 1
+        end
+        """;
+
+    /**
+     * 预扣：KEYS = ledger, holds, balance, rsv；ARGV = amount, user, rid, app, now, holdTtlSec
+     * 返回预扣后余额；-1 余额不足；-2 余额未加载
+     */
+    private static final RedisScript<Long> RESERVE_SCRIPT = new DefaultRedisScript<>("""
+        local balance = redis.call('GET', KEYS[3])
+        if not balance then return -2 end
+        local amount = tonumber(ARGV[1])
+        if tonumber(balance) < amount then return -1 end
+        balance = redis.call('DECRBY', KEYS[3], amount)
+        redis.call('HSET', KEYS[4], 'state', 'R', 'user', ARGV[2], 'amount', amount, 'app', ARGV[4], 'ts', ARGV[5])
+        redis.call('EXPIRE', KEYS[4], ARGV[6])
+        redis.call('ZADD', KEYS[2], ARGV[5], ARGV[3])
+        redis.call('HINCRBY', 'credit:pending', ARGV[2], -amount)
+        redis.call('RPUSH', KEYS[1], cjson.encode({id = ARGV[3] .. ':RESERVE', user = ARGV[2], type = 'RESERVE',
+          amount = -amount, rsv = ARGV[3], app = ARGV[4], balance = balance, ts = tonumber(ARGV[5])}))
+        return balance
+        """, Long.class);
+
+    /**
+     * 结算：KEYS = ledger, holds；ARGV = rid, outcome, recordId, now, keepSec
+     */
+    private static final RedisScript<Long> SETTLE_SCRIPT = new DefaultRedisScript<>(SETTLE_FUNCTION + """
+        return settle(ARGV[1], ARGV[2], ARGV[3], ARGV[4], ARGV[5])
+        """, Long.class);
+
+    /**
+     * 绑定记录：KEYS = ledger, holds, binding；ARGV = rid, recordId, now, keepSec, bindTtlSec
+     * 返回 1 已绑定；2 记录已结束，已直接结算；0 预扣已结算
+     */
+    private static final RedisScript<Long> BIND_SCRIPT = new DefaultRedisScript<>(SETTLE_FUNCTION + """
+        local outcome = redis.call('GET', KEYS[3])
+        if outcome == 'C' or outcome == 'F' then
+          redis.call('DEL', KEYS[3])
+          return settle(ARGV[1], outcome, ARGV[2], ARGV[3], ARGV[4]) * 2
+        end
+        local rsvKey = 'credit:rsv:' .. ARGV[1]
+        if redis.call('HGET', rsvKey, 'state') ~= 'R' then return 0 end
+        redis.call('HSET', rsvKey, 'record', ARGV[2])
+        redis.call('SET', KEYS[3], ARGV[1], 'EX', ARGV[5])
+        return 1
+        """, Long.class);
+
+    /**
+     * 记录结束：KEYS = ledger, holds, binding；ARGV = outcome, recordId, now, keepSec, markerTtlSec
+     * 未绑定时留下结果标记并返回 0
+     */
+    private static final RedisScript<Long> SETTLE_RECORD_SCRIPT = new DefaultRedisScript<>(SETTLE_FUNCTION + """
+        local rid = redis.call('GET', KEYS[3])
+        if not rid then
+          redis.call('SET', KEYS[3], ARGV[1], 'EX', ARGV[5])
+          return 0
+        end
+        if rid == 'C' or rid == 'F' then return 0 end
+        redis.call('DEL', KEYS[3])
+        return settle(rid, ARGV[1], ARGV[2], ARGV[3], ARGV[4])
+        """, Long.class);
+
+    /**
+     * 发放/扣减：KEYS = ledger, balance；ARGV = amount(有符号), user, entryId, remark, now
+     * 返回变动后余额；-1 扣减后为负；-2 余额未加载
+     */
+    private static final RedisScript<Long> GRANT_SCRIPT = new DefaultRedisScript<>("""
+        local balance = redis.call('GET', KEYS[2])
+        if not balance then return -2 end
+        local amount = tonumber(ARGV[1])
+        if tonumber(balance) + amount < 0 then return -1 end
+        balance = redis.call('INCRBY', KEYS[2], amount)
+        redis.call('HINCRBY', 'credit:pending', ARGV[2], amount)
+        redis.call('RPUSH', KEYS[1], cjson.encode({id = ARGV[3], user = ARGV[2], type = 'GRANT', amount = amount,
+          remark = ARGV[4], balance = balance, ts = tonumber(ARGV[5])}))
+        return balance
+        """, Long.class);
+
+    /**
+     * 对账快照：KEYS = pending；ARGV = userIds
+     * 原子读取每个用户的 Redis 余额及尚未刷入 MySQL 的流水合计，返回 [balance1, pending1, balance2, pending2, ...]
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> SNAPSHOT_SCRIPT = new DefaultRedisScript<>("""
+        local pending = redis.call('HMGET', KEYS[1], unpack(ARGV))
+        local out = {}
+        for i, user in ipairs(ARGV) do
+          out[#out + 1] = redis.call('GET', 'credit:balance:' .. user) or false
+          out[#out + 1] = pending[i] or '0'
+        end
+        return out
+        """, List.class);
+
+    /**
+     * 移除已刷盘流水：KEYS = ledger, pending, dead；ARGV = count, n, dead1..deadN, user1, amount1, user2, amount2, ...
+     * 无法解析的 n 条原文移入死信列表；从未刷盘合计中扣减已写入的流水，合计归零的用户从哈希中移除
+     */
+    private static final RedisScript<Long> TRIM_SCRIPT = new DefaultRedisScript<>("""
+        redis.call('LTRIM', KEYS[1], tonumber(ARGV[1]), -1)
+        local dead = tonumber(ARGV[2])
+        for i = 3, 2 + dead do
+          redis.call('RPUSH', KEYS[3], ARGV[i])
+        end
+        for i = 3 + dead, #ARGV, 2 do
+          if redis.call('HINCRBY', KEYS[2], ARGV[i], -tonumber(ARGV[i + 1])) == 0 then
+            redis.call('HDEL', KEYS[2], ARGV[i])
+          end
+        end
+        return 1
+        """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final CreditLedgerMapper creditLedgerMapper;
+    private final CreditProperties properties;
+
+    private final Counter reserved;
+    private final Counter rejected;
+    private final Counter committed;
+    private final Counter refunded;
+
+    public CreditWallet(StringRedisTemplate redisTemplate, CreditLedgerMapper creditLedgerMapper,
+        CreditProperties properties, MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.creditLedgerMapper = creditLedgerMapper;
+        this.properties = properties;
+        this.reserved = operationCounter(meterRegistry, "reserve");
+        this.rejected = operationCounter(meterRegistry, "reject");
+        this.committed = operationCounter(meterRegistry, "commit");
+        this.refunded = operationCounter(meterRegistry, "refund");
+    }
+
+    /**
+     * 带积分预扣地执行（AiAppExecutor 入口）
+     * <p>
+     * 免费应用或未启用积分时直接执行；否则先预扣，执行结果决定确认、退回或与记录绑定。
+     * </p>
+     *
+     * @param context 执行上下文
+     * @param execution 实际执行
+     * @return 执行结果；余额不足时以 AI_CREDIT_INSUFFICIENT 失败
+     */
+    public CompletableFuture<Object> execute(AiAppExecutionContext context,
+        Supplier<CompletableFuture<Object>> execution) {
+        AiApplication app = context.getAiApplication();
+        int price = app.getPrice() == null ? 0 : app.getPrice();
+        if (!properties.isEnabled() || price <= 0) {
+            return execution.get();
+        }
+
+        String userId = context.getUserId();
+        String reservationId;
+        try {
+            reservationId = reserve(userId, app.getId(), price);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        CompletableFuture<Object> future;
+        try {
+            future = execution.get();
+        } catch (RuntimeException e) {
+            refund(reservationId, null);
+            return CompletableFuture.failedFuture(e);
+        }
+        return future.whenComplete((result, error) -> settleByResult(reservationId, result, error));
+    }
+
+    /**
+     * 原子预扣积分
+     *
+     * @return 预扣ID
+     * @throws AppException 余额不足
+     */
+    public String reserve(String userId, String appId, long amount) {
+        String reservationId = UUID.randomUUID()
+            .toString();
+        List<String> keys =
+            List.of(LEDGER_KEY, HOLDS_KEY, BALANCE_KEY_PREFIX + userId, RESERVATION_KEY_PREFIX + reservationId);
+        Long balance = NOT_LOADED;
+        for (int attempt = 0; attempt < 2 && balance != null && balance == NOT_LOADED; attempt++) {
+            if (attempt > 0) {
+                loadBalance(userId);
+            }
+            balance = redisTemplate.execute(RESERVE_SCRIPT, keys, String.valueOf(amount), userId, reservationId, appId,
+                String.valueOf(System.currentTimeMillis()), String.valueOf(HOLD_TTL.toSeconds()));
+        }
+        if (balance == null || balance < 0) {
+            rejected.increment();
+            log.info("积分不足 - userId: {}, appId: {}, price: {}", userId, appId, amount);
+            throw new AppException(ResultCodeEnum.AI_CREDIT_INSUFFICIENT,
+                ResultCodeEnum.AI_CREDIT_INSUFFICIENT.getMessage() + "（需要 " + amount + "）");
+        }
+        reserved.increment();
+        log.debug("预扣积分 - userId: {}, reservationId: {}, amount: {}, balance: {}", userId, reservationId, amount,
+            balance);
+        return reservationId;
+    }
+
+    /**
+     * 确认预扣（幂等）
+     */
+    public boolean commit(String reservationId, String aiAppRecordId) {
+        boolean settled = settle(reservationId, COMMIT, aiAppRecordId);
+        if (settled) {
+            committed.increment();
+        }
+        return settled;
+    }
+
+    /**
+     * 退回预扣（幂等）
+     */
+    public boolean refund(String reservationId, String aiAppRecordId) {
+        boolean settled = settle(reservationId, REFUND, aiAppRecordId);
+        if (settled) {
+            refunded.increment();
+        }
+        return settled;
+    }
+
+    /**
+     * 将预扣绑定到进行中的AI应用记录，记录结束时结算
+     */
+    public void bindRecord(String reservationId, String aiAppRecordId) {
+        try {
+            Long bound = redisTemplate.execute(BIND_SCRIPT, List.of(LEDGER_KEY, HOLDS_KEY,
+                    RECORD_KEY_PREFIX + aiAppRecordId), reservationId, aiAppRecordId,
+                String.valueOf(System.currentTimeMillis()), String.valueOf(SETTLED_TTL.toSeconds()),
+                String.valueOf(BINDING_TTL.toSeconds()));
+            log.debug("预扣绑定记录 - reservationId: {}, aiAppRecordId: {}, result: {}", reservationId, aiAppRecordId,
+                bound);
+        } catch (Exception e) {
+            // 绑定失败时预扣由对账任务按记录状态处理
+            log.warn("预扣绑定记录失败 - reservationId: {}, aiAppRecordId: {}, error: {}", reservationId,
+                aiAppRecordId, e.getMessage());
+        }
+    }
+
+    /**
+     * AI应用记录结束时结算绑定的预扣（由 AiAppRecordService 在记录终态提交后调用）
+     *
+     * @param aiAppRecordId AI应用记录ID
+     * @param success 记录是否成功
+     */
+    public void settleRecord(String aiAppRecordId, boolean success) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        try {
+            Long settled = redisTemplate.execute(SETTLE_RECORD_SCRIPT, List.of(LEDGER_KEY, HOLDS_KEY,
+                    RECORD_KEY_PREFIX + aiAppRecordId), success ? COMMIT : REFUND, aiAppRecordId,
+                String.valueOf(System.currentTimeMillis()), String.valueOf(SETTLED_TTL.toSeconds()),
+                String.valueOf(MARKER_TTL.toSeconds()));
+            if (settled != null && settled == 1) {
+                (success ? committed : refunded).increment();
+                log.info("记录结束，结算积分 - aiAppRecordId: {}, success: {}", aiAppRecordId, success);
+            }
+        } catch (Exception e) {
+            log.warn("记录结算积分失败 - aiAppRecordId: {}, error: {}", aiAppRecordId, e.getMessage());
+        }
+    }
+
+    /**
+     * 发放（amount > 0）或扣减（amount < 0）积分
+     *
+     * @return 变动后余额
+     */
+    public long grant(String userId, long amount, String remark) {
+        if (amount == 0) {
+            throw new AppException(ResultCodeEnum.PARAM_VALID_ERROR, "积分变动不能为 0");
+        }
+        String entryId = "GRANT:" + UUID.randomUUID();
+        List<String> keys = List.of(LEDGER_KEY, BALANCE_KEY_PREFIX + userId);
+        Long balance = NOT_LOADED;
+        for (int attempt = 0; attempt < 2 && balance != null && balance == NOT_LOADED; attempt++) {
+            if (attempt > 0) {
+                loadBalance(userId);
+            }
+            balance = redisTemplate.execute(GRANT_SCRIPT, keys, String.valueOf(amount), userId, entryId,
+                remark == null ? "" : remark, String.valueOf(System.currentTimeMillis()));
+        }
+        if (balance == null || balance < 0) {
+            throw new AppException(ResultCodeEnum.AI_CREDIT_INSUFFICIENT, "扣减后余额不能为负数");
+        }
+        log.info("积分变动 - userId: {}, amount: {}, balance: {}, remark: {}", userId, amount, balance, remark);
+        return balance;
+    }
+
+    /**
+     * 查询可用余额（未加载时从流水加载）
+     */
+    public long balance(String userId) {
+        String value = redisTemplate.opsForValue()
+            .get(BALANCE_KEY_PREFIX + userId);
+        if (value == null) {
+            loadBalance(userId);
+            value = redisTemplate.opsForValue()
+                .get(BALANCE_KEY_PREFIX + userId);
+        }
+        return value == null ? 0L : Long.parseLong(value);
+    }
+
+    /**
+     * 超时未结算的预扣ID（按预扣时间升序）
+     */
+    public Set<String> staleHolds(long olderThanMs, int limit) {
+        return redisTemplate.opsForZSet()
+            .rangeByScore(HOLDS_KEY, 0, System.currentTimeMillis() - olderThanMs, 0, limit);
+    }
+
+    /**
+     * 预扣绑定的AI应用记录ID；预扣不存在返回 null，未绑定返回空串
+     */
+    public String holdRecordId(String reservationId) {
+        List<Object> values = redisTemplate.opsForHash()
+            .multiGet(RESERVATION_KEY_PREFIX + reservationId, List.<Object>of("state", "record"));
+        if (values.get(0) == null) {
+            return null;
+        }
+        return values.get(1) == null ? "" : (String)values.get(1);
+    }
+
+    /**
+     * 移除已失效的预扣索引（预扣哈希已过期）
+     */
+    public void dropHold(String reservationId) {
+        redisTemplate.opsForZSet()
+            .remove(HOLDS_KEY, reservationId);
+    }
+
+    /**
+     * 对账快照：原子读取 Redis 余额与未刷盘流水合计
+     *
+     * @return userId -> [Redis余额(未加载为 null), 未刷盘流水合计]
+     */
+    public Map<String, Long[]> snapshot(List<String> userIds) {
+        @SuppressWarnings("unchecked")
+        List<String> values = redisTemplate.execute(SNAPSHOT_SCRIPT, List.of(PENDING_KEY), userIds.toArray());
+        Map<String, Long[]> snapshot = new HashMap<>();
+        for (int i = 0; i < userIds.size(); i++) {
+            String balance = values.get(i * 2);
+            snapshot.put(userIds.get(i),
+                new Long[] {balance == null ? null : Long.parseLong(balance), Long.parseLong(values.get(i * 2 + 1))});
+        }
+        return snapshot;
+    }
+
+    /**
+     * 修正 Redis 余额（对账发现偏差时，以 MySQL 流水为准）
+     */
+    public long adjustBalance(String userId, long delta) {
+        Long balance = redisTemplate.opsForValue()
+            .increment(BALANCE_KEY_PREFIX + userId, delta);
+        return balance == null ? 0L : balance;
+    }
+
+    /**
+     * 批量取出待刷盘流水（不移除）
+     */
+    public List<String> peekLedger(int count) {
+        List<String> entries = redisTemplate.opsForList()
+            .range(LEDGER_KEY, 0, count - 1L);
+        return entries == null ? new ArrayList<>() : entries;
+    }
+
+    /**
+     * 移除已刷盘的流水，并从未刷盘合计中扣减
+     * <p>
+     * 无法解析的流水原文移入 {@link #LEDGER_DEAD_KEY}，其金额仍计在未刷盘合计中，对账不会因此误报偏差；
+     * 人工补录到 credit_ledger 后需同步扣减 credit:pending 中对应用户的合计。
+     * </p>
+     *
+     * @param count 移除的条数（含无法解析的流水）
+     * @param flushedByUser 已写入的流水按用户的金额合计
+     * @param deadLetters 无法解析的流水原文
+     */
+    public void trimLedger(int count, Map<String, Long> flushedByUser, List<String> deadLetters) {
+        List<String> args = new ArrayList<>(2 + deadLetters.size() + flushedByUser.size() * 2);
+        args.add(String.valueOf(count));
+        args.add(String.valueOf(deadLetters.size()));
+        args.addAll(deadLetters);
+        flushedByUser.forEach((userId, amount) -> {
+            if (amount != 0) {
+                args.add(userId);
+                args.add(String.valueOf(amount));
+            }
+        });
+        redisTemplate.execute(TRIM_SCRIPT, List.of(LEDGER_KEY, PENDING_KEY, LEDGER_DEAD_KEY), args.toArray());
+    }
+
+    /**
+     * 按执行结果结算：失败退回；记录进行中则绑定记录；其余确认
+     */
+    private void settleByResult(String reservationId, Object result, Throwable error) {
+        if (error != null) {
+            log.info("执行失败，退回积分 - reservationId: {}, error: {}", reservationId,
+                AiAppExecutor.unwrap(error)
+                    .getMessage());
+            refund(reservationId, null);
+            return;
+        }
+        if (!(result instanceof Map<?, ?> map)) {
+            commit(reservationId, null);
+            return;
+        }
+        String recordId = map.get("aiAppRecordId") instanceof String id ? id : null;
+        Object status = map.get("status");
+        Object statusCode = map.get("statusCode");
+        if (Integer.valueOf(2)
+            .equals(status) || statusCode instanceof Integer code && (code < 200 || code >= 300)) {
+            refund(reservationId, recordId);
+        } else if (Integer.valueOf(3)
+            .equals(status) && recordId != null) {
+            bindRecord(reservationId, recordId);
+        } else {
+            commit(reservationId, recordId);
+        }
+    }
+
+    private boolean settle(String reservationId, String outcome, String aiAppRecordId) {
+        try {
+            Long settled = redisTemplate.execute(SETTLE_SCRIPT, List.of(LEDGER_KEY, HOLDS_KEY), reservationId,
+                outcome, aiAppRecordId == null ? "" : aiAppRecordId, String.valueOf(System.currentTimeMillis()),
+                String.valueOf(SETTLED_TTL.toSeconds()));
+            return settled != null && settled == 1;
+        } catch (Exception e) {
+            // 结算失败时预扣保留在 holds 中，由对账任务补偿
+            log.warn("结算积分失败 - reservationId: {}, outcome: {}, error: {}", reservationId, outcome,
+                e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 从 MySQL 流水加载余额到 Redis（仅在 Redis 中不存在时写入）
+     */
+    private void loadBalance(String userId) {
+        long balance = creditLedgerMapper.sumAmountByUser(userId);
+        redisTemplate.opsForValue()
+            .setIfAbsent(BALANCE_KEY_PREFIX + userId, String.valueOf(balance));
+        log.info("加载积分余额 - userId: {}, balance: {}", userId, balance);
+    }
+
+    private static Counter operationCounter(MeterRegistry meterRegistry, String operation) {
+        return Counter.builder("aiapp.credit.operations")
+            .description("积分预扣/结算次数")
+            .tag("operation", operation)
+            .register(meterRegistry);
+    }
+}
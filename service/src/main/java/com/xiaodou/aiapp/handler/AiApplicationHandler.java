@@ -1,13 +1,20 @@
 package com.xiaodou.aiapp.handler;
 
+import com.xiaodou.aiapp.model.AiAppExecutionContext;
 import com.xiaodou.model.AiApplication;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 /**
  * AI 应用执行器接口
  * 所有具体的 AI 应用逻辑必须实现此接口，并注册为 Spring Bean。
  * 系统通过 {@link AiApplication#getHandlerBean()} 动态获取对应 Bean 并执行。
+ * <p>
+ * 调用方统一走 {@link #executeAsync}：涉及远程调用的执行器应覆盖该方法，基于 HttpClient.sendAsync 返回未完成的 Future，
+ * 使请求线程在等待上游期间可以服务其他请求；仅实现 {@link #execute} 的执行器由默认实现包装为已完成的 Future。
+ * </p>
  *
  * @author xiaodou V=>dddou117
  * @version V1.0
@@ -25,4 +32,21 @@ public interface AiApplicationHandler {
      * @throws Exception 执行过程中抛出的任何异常将被全局捕获并返回错误响应
      */
     Object execute(Map<String, Object> input) throws Exception;
+
+    /**
+     * 非阻塞执行 AI 应用
+     * <p>
+     * 默认实现在调用线程中执行 {@link #execute}，异常以失败的 Future 返回。
+     * </p>
+     *
+     * @param context 执行上下文，{@link AiAppExecutionContext#getInputParams()} 为已校验并填充默认值的参数
+     * @return 执行结果的 CompletionStage，结果结构同 {@link #execute}
+     */
+    default CompletionStage<Object> executeAsync(AiAppExecutionContext context) {
+        try {
+            return CompletableFuture.completedFuture(execute(context.getInputParams()));
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
 }
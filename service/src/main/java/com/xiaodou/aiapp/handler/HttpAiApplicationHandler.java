@@ -1,12 +1,17 @@
 package com.xiaodou.aiapp.handler;
 
+import com.xiaodou.aiapp.AiAppExecutor;
 import com.xiaodou.aiapp.HttpClientUtil;
+import com.xiaodou.aiapp.model.AiAppExecutionContext;
+import com.xiaodou.aiapp.model.Deadline;
+import com.xiaodou.exception.DeadlineExceededException;
 import org.springframework.stereotype.Component;
 
-import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 /**
  * 基础 HTTP 请求 AI 应用执行器
@@ -24,7 +29,8 @@ import java.util.Map;
  * 输出结果示例：
  * {
  * "status": 200,
- * "body": "...",
+ * "body": "...",                       // 响应体文本；JSON 响应为 bodyObject 的序列化结果（空白格式可能与原文不同）
+ * "bodyObject": { ... },               // JSON 响应解析后的对象
  * "headers": { ... }
  * }
  *
@@ -37,6 +43,24 @@ public class HttpAiApplicationHandler implements AiApplicationHandler {
 
     @Override
     public Object execute(Map<String, Object> input) throws Exception {
+        return AiAppExecutor.await(sendAsync(input, Deadline.none()));
+    }
+
+    @Override
+    public CompletionStage<Object> executeAsync(AiAppExecutionContext context) {
+        try {
+            return sendAsync(context.getInputParams(), context.getDeadline());
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * 基于 HttpClient.sendAsync 发出请求，响应到达后在 HTTP 客户端线程中组装结果
+     *
+     * @param deadline 执行时限，请求超时取剩余时限
+     */
+    private CompletableFuture<Object> sendAsync(Map<String, Object> input, Deadline deadline) {
         // 参数校验
         String method = getString(input, "method", true);
         String url = getString(input, "url", true);
@@ -49,28 +73,35 @@ public class HttpAiApplicationHandler implements AiApplicationHandler {
         @SuppressWarnings("unchecked") Map<String, String> params = (Map<String, String>)input.get("params");
         String body = getString(input, "body", false);
 
-        try {
-            HttpResponseData response;
-            if ("GET".equalsIgnoreCase(method)) {
-                response = HttpClientUtil.sendGetFull(url, headers, params);
-            } else { // POST
-                response = HttpClientUtil.sendPostFull(url, headers, body);
+        CompletableFuture<HttpResponseData> responseFuture;
+        if ("GET".equalsIgnoreCase(method)) {
+            responseFuture = HttpClientUtil.sendGetFullAsync(url, headers, params, deadline);
+        } else { // POST
+            responseFuture = HttpClientUtil.sendPostFullAsync(url, headers, body, deadline);
+        }
+
+        return responseFuture.handle((response, error) -> {
+            if (error != null) {
+                Throwable cause = AiAppExecutor.unwrap(error);
+                if (cause instanceof URISyntaxException) {
+                    throw new IllegalArgumentException("URL 格式错误: " + cause.getMessage(), cause);
+                }
+                if (cause instanceof DeadlineExceededException exceeded) {
+                    throw exceeded;
+                }
+                throw new RuntimeException("HTTP 请求失败: " + cause.getMessage(), cause);
             }
 
             // 构造标准响应（你也可以根据实际需求调整结构）
             Map<String, Object> result = new HashMap<>();
             result.put("statusCode", response.getStatusCode());
-            result.put("body", response.getBody());
+            // 始终返回 body；JSON 响应的 body 在输出序列化时才由 bodyObject 生成，内存中不再持有原文副本
+            result.put("body", response.outputBody());
             result.put("bodyObject", response.getBodyObject()); // 解析后的对象（如果是JSON）
             result.put("headers", response.getHeaders());
 
             return result;
-
-        } catch (URISyntaxException e) {
-            throw new IllegalArgumentException("URL 格式错误: " + e.getMessage(), e);
-        } catch (IOException | InterruptedException e) {
-            throw new RuntimeException("HTTP 请求失败: " + e.getMessage(), e);
-        }
+        });
     }
 
     /**
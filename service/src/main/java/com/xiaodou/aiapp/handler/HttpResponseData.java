@@ -1,11 +1,19 @@
 package com.xiaodou.aiapp.handler;
 
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AccessLevel;
 import lombok.Getter;
 
 import java.util.Map;
 
 /**
  * HTTP 响应数据封装类
+ * <p>
+ * JSON 响应只保留解析后的 bodyObject，不再同时持有原文字符串；
+ * 确需文本时 {@link #getBody()} 按需由 bodyObject 序列化生成（语义一致，空白格式可能与原文不同）。
+ * 执行器输出中的 "body" 使用 {@link #outputBody()}，JSON 响应的文本在输出序列化时才生成，不与对象同时常驻内存。
+ * </p>
  *
  * @author luoxiaodou
  * @author xiaodou V=>dddou117
@@ -14,8 +22,11 @@ import java.util.Map;
  */
 @Getter
 public class HttpResponseData {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
     private final int statusCode;
-    private final String body;
+    @Getter(AccessLevel.NONE)
+    private volatile String body;
     private final Object bodyObject;
     private final Map<String, String> headers;
 
@@ -32,4 +43,61 @@ public class HttpResponseData {
         this.bodyObject = bodyObject;
         this.headers = headers;
     }
-}
\ No newline at end of file
+
+    /**
+     * 是否保留了原始文本（非 JSON 响应或 JSON 解析失败）
+     */
+    public boolean hasRawBody() {
+        return body != null;
+    }
+
+    /**
+     * 响应体文本
+     */
+    public String getBody() {
+        String text = body;
+        if (text == null && bodyObject != null) {
+            try {
+                text = MAPPER.writeValueAsString(bodyObject);
+                body = text;
+            } catch (Exception e) {
+                return null;
+            }
+        }
+        return text;
+    }
+
+    /**
+     * 执行器输出中的 "body" 字段：原文存在时返回原文，JSON 响应返回按需序列化的 {@link LazyJsonText}
+     */
+    public Object outputBody() {
+        String text = body;
+        return text != null || bodyObject == null ? text : new LazyJsonText(bodyObject);
+    }
+
+    /**
+     * 由 JSON 对象按需生成的文本：序列化输出（写入记录、缓存或返回前端）时输出为字符串，
+     * 每次调用重新生成、不缓存结果，内存中只保留对象本身
+     */
+    public static final class LazyJsonText {
+        private final Object value;
+
+        private LazyJsonText(Object value) {
+            this.value = value;
+        }
+
+        @JsonValue
+        public String text() {
+            try {
+                return MAPPER.writeValueAsString(value);
+            } catch (Exception e) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return text();
+        }
+    }
+}
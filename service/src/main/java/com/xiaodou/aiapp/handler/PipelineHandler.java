@@ -0,0 +1,473 @@
+package com.xiaodou.aiapp.handler;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.xiaodou.aiapp.AiAppExecutor;
+import com.xiaodou.aiapp.AiApplicationHandlerFactory;
+import com.xiaodou.aiapp.AppSchemaRegistry;
+import com.xiaodou.aiapp.FairTaskScheduler;
+import com.xiaodou.aiapp.JsonSchemaUtils;
+import com.xiaodou.aiapp.model.AiAppExecutionContext;
+import com.xiaodou.aiapp.model.Deadline;
+import com.xiaodou.aiapp.pipeline.PipelineDefinition;
+import com.xiaodou.model.AiApplication;
+import com.xiaodou.service.AiAppRecordService;
+import com.xiaodou.service.AiApplicationService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 流水线执行器：把多个 AI 应用编排为 DAG 执行
+ * <p>
+ * DAG 声明在流水线应用的 config 中（格式见 {@link PipelineDefinition}）。每个节点等待其依赖完成后，
+ * 按 inputs 映射组装入参、以子应用的 Schema 校验，再经 {@link AiApplicationHandlerFactory} 在子应用执行器的舱壁内执行；
+ * 没有依赖关系的节点并发执行，整个过程不阻塞任何线程。
+ * </p>
+ * <p>
+ * 节点结果 status = 2、statusCode 非 2xx 或执行异常视为失败；status = 3（工作流超出时限转为后台执行）视为未完成，
+ * 同样按失败处理。必选节点失败时依赖它的节点直接跳过，流水线整体失败；optional 节点失败时结果记为 null，下游照常执行。
+ * </p>
+ * <p>
+ * 每次执行对应一条 AI 应用记录（handlerBean = pipelineHandler），结束时写入输出与各节点耗时
+ * （startOffsetMs：依赖全部完成、节点开始执行的时刻，相对流水线开始；durationMs：节点自身耗时），
+ * 同时记录 aiapp.pipeline.node 指标（tag: app、node）。子应用不经过 {@link AiAppExecutor}，
+ * 积分只在流水线层面按流水线应用的价格预扣一次，也不参与请求合并。
+ * 节点启动（组装入参、校验、提交到子应用执行器）与记录写入（以及随结果完成触发的积分结算）
+ * 在 workflowTaskExecutor 中以用户身份排队执行，按用户公平出队，也不占用 HTTP 客户端回调线程。
+ * </p>
+ * <p>
+ * 执行中的流水线在 Redis 中持有租约（由 WorkflowRecoveryScheduler 定时续期）。DAG 状态只在内存中，
+ * 节点重启后无法续跑，租约过期的进行中记录由恢复扫描置为失败。
+ * </p>
+ *
+ * 输出示例：
+ * {
+ *   "aiAppRecordId": "record_789",
+ *   "status": 1,                       // 1 成功，2 失败
+ *   "data": { ... },                   // 按 output 映射组装的结果
+ *   "nodes": {
+ *     "video": {"status": "success", "startOffsetMs": 2, "durationMs": 830},
+ *     "rewriteA": {"status": "success", "startOffsetMs": 835, "durationMs": 5120}
+ *   },
+ *   "executionTime": 5960
+ * }
+ *
+ * @author xiaodou V=>dddou117
+ * @version V1.0
+ * @since 2025/12/18
+ */
+@Slf4j
+@Component("pipelineHandler")
+public class PipelineHandler implements AiApplicationHandler {
+
+    public static final String HANDLER_BEAN = "pipelineHandler";
+
+    private static final String NODE_SUCCESS = "success";
+    private static final String NODE_FAILED = "failed";
+    private static final String NODE_SKIPPED = "skipped";
+    private static final String LEASE_KEY_PREFIX = "aiapp:pipeline:lease:";
+    private static final Duration LEASE_TTL = Duration.ofMinutes(2);     // 续期间隔的数倍，节点宕机后自动过期
+
+    private final AiApplicationHandlerFactory handlerFactory;
+    private final AiApplicationService aiApplicationService;
+    private final AppSchemaRegistry appSchemaRegistry;
+    private final AiAppRecordService aiAppRecordService;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final FairTaskScheduler workflowTaskExecutor;
+
+    // 本节点正在执行的流水线记录ID
+    private final Set<String> running = ConcurrentHashMap.newKeySet();
+
+    // 编译后的 DAG，按 config 文本缓存，应用更新后自然换键
+    private final Cache<String, PipelineDefinition> definitions = Caffeine.newBuilder()
+        .maximumSize(500)
+        .build();
+
+    /**
+     * 工厂收集所有执行器（包括本执行器），这里延迟注入以避免循环依赖
+     */
+    public PipelineHandler(@Lazy AiApplicationHandlerFactory handlerFactory,
+        AiApplicationService aiApplicationService, AppSchemaRegistry appSchemaRegistry,
+        AiAppRecordService aiAppRecordService, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+        RedisTemplate<String, Object> redisTemplate,
+        @Qualifier("workflowTaskExecutor") FairTaskScheduler workflowTaskExecutor) {
+        this.handlerFactory = handlerFactory;
+        this.aiApplicationService = aiApplicationService;
+        this.appSchemaRegistry = appSchemaRegistry;
+        this.aiAppRecordService = aiAppRecordService;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.redisTemplate = redisTemplate;
+        this.workflowTaskExecutor = workflowTaskExecutor;
+    }
+
+    /**
+     * 同步执行：按 input 中的 userId / aiApplicationId 构建上下文，阻塞等待 {@link #executeAsync}
+     */
+    @Override
+    public Object execute(Map<String, Object> input) throws Exception {
+        Object userId = input.get("userId");
+        Object aiApplicationId = input.get("aiApplicationId");
+        if (userId == null || aiApplicationId == null) {
+            throw new IllegalArgumentException("缺少必填参数: userId / aiApplicationId");
+        }
+        AiApplication app = aiApplicationService.getById(aiApplicationId.toString());
+        if (app == null) {
+            throw new IllegalArgumentException("流水线应用不存在: " + aiApplicationId);
+        }
+
+        AiAppExecutionContext context = new AiAppExecutionContext();
+        context.setUserId(userId.toString());
+        context.setAiApplication(app);
+        context.setInputParams(input);
+        context.setDeadline(Deadline.after(app.getTimeoutMs()));
+        return AiAppExecutor.await(executeAsync(context));
+    }
+
+    @Override
+    public CompletionStage<Object> executeAsync(AiAppExecutionContext context) {
+        PipelineRun run;
+        try {
+            run = prepare(context);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        log.info("开始执行流水线 - aiAppRecordId: {}, appId: {}, userId: {}, 节点数: {}", run.recordId,
+            run.pipelineApp.getId(), run.userId, run.definition.getNodes()
+                .size());
+
+        // 节点按拓扑顺序创建，依赖的 Future 必然已存在
+        Map<String, CompletableFuture<Object>> futures = new LinkedHashMap<>();
+        for (PipelineDefinition.Node node : run.definition.getNodes()) {
+            futures.put(node.id(), schedule(run, node, futures));
+        }
+
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        CompletableFuture.allOf(futures.values()
+                .toArray(new CompletableFuture[0]))
+            .whenComplete((ignored, error) ->
+                // 记录写入在公平调度器中执行，不占用 HTTP 客户端回调线程
+                workflowTaskExecutor.execute(run.userId, () -> {
+                    try {
+                        result.complete(finish(run, futures, error));
+                    } catch (RuntimeException e) {
+                        result.completeExceptionally(e);
+                    }
+                }));
+        return result;
+    }
+
+    /**
+     * 流水线记录是否有节点持有租约
+     */
+    public boolean hasLease(String aiAppRecordId) {
+        return Boolean.TRUE.equals(redisTemplate.hasKey(LEASE_KEY_PREFIX + aiAppRecordId));
+    }
+
+    /**
+     * 续期本节点正在执行的流水线租约（由 WorkflowRecoveryScheduler 定时调用）
+     */
+    public void renewLeases() {
+        for (String recordId : running) {
+            try {
+                redisTemplate.opsForValue()
+                    .set(LEASE_KEY_PREFIX + recordId, System.currentTimeMillis(), LEASE_TTL);
+            } catch (Exception e) {
+                log.warn("续期流水线租约失败 - aiAppRecordId: {}, error: {}", recordId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 解析 DAG、加载子应用并创建流水线记录（在调用线程完成）
+     */
+    private PipelineRun prepare(AiAppExecutionContext context) {
+        AiApplication pipelineApp = context.getAiApplication();
+        PipelineDefinition definition = definition(pipelineApp);
+
+        Map<String, AiApplication> apps = aiApplicationService.listByIds(definition.getNodes()
+                .stream()
+                .map(PipelineDefinition.Node::appId)
+                .collect(Collectors.toSet()))
+            .stream()
+            .collect(Collectors.toMap(AiApplication::getId, Function.identity()));
+        for (PipelineDefinition.Node node : definition.getNodes()) {
+            AiApplication app = apps.get(node.appId());
+            if (app == null || app.getEnabled() == null || app.getEnabled() != 1) {
+                throw new IllegalArgumentException("流水线节点 " + node.id() + " 的应用不存在或已禁用: " + node.appId());
+            }
+            if (HANDLER_BEAN.equals(app.getHandlerBean())) {
+                throw new IllegalArgumentException("流水线节点不能嵌套流水线应用: " + node.id());
+            }
+        }
+
+        String recordId = aiAppRecordService.createAiAppRecord(context.getUserId(), pipelineApp.getId(), HANDLER_BEAN,
+                context.getInputParams(), null)
+            .getId();
+        running.add(recordId);
+        try {
+            redisTemplate.opsForValue()
+                .set(LEASE_KEY_PREFIX + recordId, System.currentTimeMillis(), LEASE_TTL);
+        } catch (Exception e) {
+            log.warn("写入流水线租约失败 - aiAppRecordId: {}, error: {}", recordId, e.getMessage());
+        }
+
+        Map<String, Object> contextScope = new HashMap<>();
+        contextScope.put("userId", context.getUserId());
+        contextScope.put("appId", pipelineApp.getId());
+        contextScope.put("aiAppRecordId", recordId);
+        return new PipelineRun(recordId, context.getUserId(), pipelineApp, definition, apps,
+            context.getInputParams(), contextScope, context.getDeadline());
+    }
+
+    private PipelineDefinition definition(AiApplication app) {
+        String config = app.getConfig();
+        if (config == null || config.isBlank()) {
+            throw new IllegalArgumentException("流水线应用缺少 config 配置: " + app.getId());
+        }
+        return definitions.get(config, text -> {
+            try {
+                JsonNode pipeline = objectMapper.readTree(text)
+                    .path("pipeline");
+                if (!pipeline.isObject()) {
+                    throw new IllegalArgumentException("config 中缺少 pipeline 定义");
+                }
+                return PipelineDefinition.parse(pipeline, objectMapper);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("流水线定义不合法（appId: " + app.getId() + "）: " + e.getMessage(), e);
+            } catch (Exception e) {
+                throw new IllegalArgumentException("流水线 config 解析失败（appId: " + app.getId() + "）: " + e.getMessage(),
+                    e);
+            }
+        });
+    }
+
+    /**
+     * 等待依赖完成后执行节点；optional 节点的失败在这里转为 null 结果
+     */
+    private CompletableFuture<Object> schedule(PipelineRun run, PipelineDefinition.Node node,
+        Map<String, CompletableFuture<Object>> futures) {
+        CompletableFuture<?>[] dependencies = node.dependsOn()
+            .stream()
+            .map(futures::get)
+            .toArray(CompletableFuture[]::new);
+
+        CompletableFuture<Object> execution = CompletableFuture.allOf(dependencies)
+            .handle((ignored, error) -> error)
+            .thenComposeAsync(error -> {
+                if (error != null) {
+                    run.timings.put(node.id(), timing(NODE_SKIPPED, run.elapsedMs(), null, "上游节点失败"));
+                    return CompletableFuture.failedFuture(AiAppExecutor.unwrap(error));
+                }
+                return runNode(run, node, futures);
+            }, workflowTaskExecutor.forUser(run.userId));
+        return node.optional() ? execution.exceptionally(error -> null) : execution;
+    }
+
+    private CompletableFuture<Object> runNode(PipelineRun run, PipelineDefinition.Node node,
+        Map<String, CompletableFuture<Object>> futures) {
+        long readyOffset = run.elapsedMs();
+        long startNanos = System.nanoTime();
+        AiApplication app = run.apps.get(node.appId());
+
+        AiAppExecutionContext childContext = new AiAppExecutionContext();
+        CompletableFuture<Object> execution;
+        try {
+            Map<String, Object> scope = run.scope();
+            node.dependsOn()
+                .forEach(dep -> scope.put(dep, futures.get(dep)
+                    .join()));
+            Map<String, Object> input = PipelineDefinition.assemble(node.inputs(), scope);
+
+            childContext.setUserId(run.userId);
+            childContext.setAiApplication(app);
+            // 子应用时限不超过流水线剩余时限
+            childContext.setDeadline(run.deadline.min(app.getTimeoutMs()));
+            childContext.setInputParams(JsonSchemaUtils.validateAndApplyDefaults(input, appSchemaRegistry.get(app)));
+            execution = handlerFactory.executeAsync(app.getHandlerBean(), childContext);
+        } catch (RuntimeException e) {
+            execution = CompletableFuture.failedFuture(e);
+        }
+
+        return execution.thenApply(result -> {
+                String failure = failureOf(result);
+                if (failure != null) {
+                    throw new CompletionException(new IllegalStateException(failure));
+                }
+                childContext.setResult(result);
+                return result;
+            })
+            .whenComplete((result, error) -> {
+                long durationNanos = System.nanoTime() - startNanos;
+                nodeTimer(run, node).record(durationNanos, TimeUnit.NANOSECONDS);
+                String message = error == null ? null : AiAppExecutor.unwrap(error)
+                    .getMessage();
+                run.timings.put(node.id(), timing(error == null ? NODE_SUCCESS : NODE_FAILED, readyOffset,
+                    TimeUnit.NANOSECONDS.toMillis(durationNanos), message));
+                if (error != null) {
+                    log.warn("流水线节点执行失败 - aiAppRecordId: {}, node: {}, appId: {}, optional: {}, error: {}",
+                        run.recordId, node.id(), node.appId(), node.optional(), message);
+                }
+            });
+    }
+
+    /**
+     * 汇总结果并写入流水线记录
+     */
+    private Object finish(PipelineRun run, Map<String, CompletableFuture<Object>> futures, Throwable error) {
+        long executionTime = run.elapsedMs();
+        running.remove(run.recordId);
+        try {
+            redisTemplate.delete(LEASE_KEY_PREFIX + run.recordId);
+        } catch (Exception e) {
+            log.warn("释放流水线租约失败 - aiAppRecordId: {}, error: {}", run.recordId, e.getMessage());
+        }
+        Map<String, Object> nodes = new LinkedHashMap<>();
+        run.definition.getNodes()
+            .forEach(node -> nodes.put(node.id(), run.timings.get(node.id())));
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("aiAppRecordId", run.recordId);
+        if (error != null) {
+            String message = "流水线执行失败: " + AiAppExecutor.unwrap(error)
+                .getMessage();
+            aiAppRecordService.updateAiAppFailed(run.recordId, message, executionTime);
+            result.put("status", 2);
+            result.put("message", message);
+        } else {
+            Map<String, Object> scope = run.scope();
+            futures.forEach((id, future) -> scope.put(id, future.join()));
+            Map<String, Object> data;
+            if (run.definition.getOutput()
+                .isEmpty()) {
+                // 未声明 output 时输出全部节点结果
+                data = new LinkedHashMap<>();
+                futures.keySet()
+                    .forEach(id -> data.put(id, scope.get(id)));
+            } else {
+                data = PipelineDefinition.assemble(run.definition.getOutput(), scope);
+            }
+
+            Map<String, Object> output = new LinkedHashMap<>();
+            output.put("data", data);
+            output.put("nodes", nodes);
+            aiAppRecordService.updateAiAppSuccess(run.recordId, output, executionTime);
+            result.put("status", 1);
+            result.put("data", data);
+        }
+        result.put("nodes", nodes);
+        result.put("executionTime", executionTime);
+
+        log.info("流水线执行完成 - aiAppRecordId: {}, status: {}, executionTime: {}ms", run.recordId,
+            result.get("status"), executionTime);
+        return result;
+    }
+
+    /**
+     * 判定节点结果是否失败（与积分结算的判定口径一致）
+     *
+     * @return 失败原因，成功时返回 null
+     */
+    private static String failureOf(Object result) {
+        if (!(result instanceof Map<?, ?> map)) {
+            return null;
+        }
+        Object status = map.get("status");
+        Object statusCode = map.get("statusCode");
+        if (Integer.valueOf(2)
+            .equals(status)) {
+            return String.valueOf(map.get("message"));
+        }
+        if (Integer.valueOf(3)
+            .equals(status)) {
+            return "节点未在时限内完成（aiAppRecordId: " + map.get("aiAppRecordId") + "）";
+        }
+        if (statusCode instanceof Integer code && (code < 200 || code >= 300)) {
+            return "上游返回状态码 " + code;
+        }
+        return null;
+    }
+
+    private Timer nodeTimer(PipelineRun run, PipelineDefinition.Node node) {
+        return Timer.builder("aiapp.pipeline.node")
+            .description("流水线节点执行耗时")
+            .tag("app", run.pipelineApp.getId())
+            .tag("node", node.id())
+            .register(meterRegistry);
+    }
+
+    private static Map<String, Object> timing(String status, long startOffsetMs, Long durationMs, String error) {
+        Map<String, Object> timing = new LinkedHashMap<>();
+        timing.put("status", status);
+        timing.put("startOffsetMs", startOffsetMs);
+        timing.put("durationMs", durationMs);
+        timing.put("error", error);
+        return timing;
+    }
+
+    /**
+     * 单次流水线执行的状态
+     */
+    private static final class PipelineRun {
+        final String recordId;
+        final String userId;
+        final AiApplication pipelineApp;
+        final PipelineDefinition definition;
+        final Map<String, AiApplication> apps;
+        final Map<String, Object> input;
+        final Map<String, Object> context;
+        final Deadline deadline;
+        final Map<String, Map<String, Object>> timings = new ConcurrentHashMap<>();
+        final long startNanos = System.nanoTime();
+
+        PipelineRun(String recordId, String userId, AiApplication pipelineApp, PipelineDefinition definition,
+            Map<String, AiApplication> apps, Map<String, Object> input, Map<String, Object> context,
+            Deadline deadline) {
+            this.recordId = recordId;
+            this.userId = userId;
+            this.pipelineApp = pipelineApp;
+            this.definition = definition;
+            this.apps = apps;
+            this.input = input;
+            this.context = context;
+            this.deadline = deadline;
+        }
+
+        long elapsedMs() {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        }
+
+        /**
+         * 新的根作用域（节点结果由调用方按需放入）
+         */
+        Map<String, Object> scope() {
+            Map<String, Object> scope = new HashMap<>();
+            scope.put(PipelineDefinition.ROOT_INPUT, input);
+            scope.put(PipelineDefinition.ROOT_CONTEXT, context);
+            return scope;
+        }
+    }
+}
@@ -1,6 +1,12 @@
 package com.xiaodou.aiapp.handler;
 
+import com.xiaodou.aiapp.AiAppExecutor;
 import com.xiaodou.aiapp.WorkflowApiClient;
+import com.xiaodou.aiapp.WorkflowPollScheduler;
+import com.xiaodou.aiapp.model.AiAppExecutionContext;
+import com.xiaodou.aiapp.model.Deadline;
+import com.xiaodou.config.WorkflowProperties;
+import com.xiaodou.model.AiApplication;
 import com.xiaodou.service.AiAppRecordService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -8,11 +14,17 @@ import org.springframework.stereotype.Component;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 同步工作流执行器（牛马网站专用）
  * <p>
  * 同步模式：执行工作流 → 轮询查询结果 → 返回最终结果 → 保存到数据库
+ * 调用方拿到的是任务结束时才完成的 Future，轮询交给 {@link WorkflowPollScheduler}，等待期间不占用请求线程。
+ * 等待时长受执行时限（{@link AiAppExecutionContext#getDeadline()}，按应用 {@link AiApplication#getTimeoutMs()} 创建）限制，
+ * 超出后返回进行中状态（与异步模式一致），剩余轮询转入后台。
  * </p>
  *
  * 输入参数示例：
@@ -38,6 +50,15 @@ import java.util.Map;
  *   "retryCount": 3                    // 实际轮询次数
  * }
  *
+ * 超出时限时的输出示例：
+ * {
+ *   "aiAppRecordId": "record_789",
+ *   "taskId": "task_456",
+ *   "status": 3,                       // 进行中，后台继续轮询
+ *   "downgraded": true,
+ *   "message": "任务执行超过 30000ms，已转为后台执行，请稍后通过 aiAppRecordId 查询结果"
+ * }
+ *
  * @author xiaodou V=>dddou117
  * @version V1.0
  * @since 2025/11/27
@@ -48,15 +69,36 @@ import java.util.Map;
 public class SyncWorkflowHandler implements AiApplicationHandler {
 
     private final WorkflowApiClient workflowApiClient;
+    private final WorkflowPollScheduler workflowPollScheduler;
     private final AiAppRecordService aiAppRecordService;
-
-    // 牛马网站工作流配置（固化在代码中）
-    private static final int MAX_RETRY_TIMES = 30;        // 最大轮询次数
-    private static final long RETRY_INTERVAL_MS = 2000;   // 轮询间隔（毫秒）
+    private final WorkflowProperties workflowProperties;
 
     @Override
     public Object execute(Map<String, Object> input) throws Exception {
+        return AiAppExecutor.await(runAsync(input, Deadline.after(workflowProperties.getDefaultSyncBudgetMs())));
+    }
+
+    @Override
+    public CompletionStage<Object> executeAsync(AiAppExecutionContext context) {
+        try {
+            return runAsync(context.getInputParams(), resolveDeadline(context));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * 异步运行工作流，并以 {@link WorkflowPollScheduler} 的结果 Future 作为最终结果
+     * <p>
+     * 轮询节奏、超时判定与记录更新均由调度器负责，等待期间不占用任何线程。
+     * 超出时限后立即返回进行中状态，调度器继续在后台轮询并更新记录，调用方可凭 aiAppRecordId 查询结果。
+     * </p>
+     *
+     * @param deadline 时限（含启动工作流的耗时），启动请求的超时同样取剩余时限
+     */
+    private CompletableFuture<Object> runAsync(Map<String, Object> input, Deadline deadline) {
         long startTime = System.currentTimeMillis();
+        long budgetMs = deadline.budgetMs();
 
         // 1. 参数校验
         String userId = getString(input, "userId", true);
@@ -71,98 +113,73 @@ public class SyncWorkflowHandler implements AiApplicationHandler {
         }
 
         // 2. 运行工作流
-        log.info("同步执行工作流 - workflowId: {}, userId: {}, aiApplicationId: {}",
-                workflowId, userId, aiApplicationId);
-
-        Map<String, Object> runResult = workflowApiClient.runWorkflow(workflowId, apiKey, params);
-        String taskId = (String) runResult.get("taskId");
+        log.info("同步执行工作流 - workflowId: {}, userId: {}, aiApplicationId: {}, budget: {}ms",
+                workflowId, userId, aiApplicationId, budgetMs);
 
-        if (taskId == null || taskId.trim().isEmpty()) {
-            throw new RuntimeException("工作流启动失败，未返回 taskId: " + runResult.get("message"));
-        }
+        return workflowApiClient.runWorkflowAsync(workflowId, apiKey, params, deadline).thenCompose(runResult -> {
+            String taskId = (String) runResult.get("taskId");
 
-        // 3. 创建AI应用记录（状态：进行中）
-        String aiAppRecordId = aiAppRecordService.createAiAppRecord(
-                userId, aiApplicationId, "syncWorkflowHandler", input, taskId
-        ).getId();
-
-        // 4. 轮询查询结果
-        Map<String, Object> finalResult = pollTaskResult(taskId, apiKey);
-
-        // 5. 更新AI应用记录
-        long executionTime = System.currentTimeMillis() - startTime;
-        Integer status = (Integer) finalResult.get("status");
-
-        if (workflowApiClient.isTaskSuccess(status)) {
-            // 成功
-            aiAppRecordService.updateAiAppSuccess(aiAppRecordId, finalResult, executionTime);
-        } else {
-            // 失败或超时
-            String errorMessage = (String) finalResult.getOrDefault("message", "任务执行失败");
-            aiAppRecordService.updateAiAppFailed(aiAppRecordId, errorMessage, executionTime);
-        }
-
-        // 6. 构造返回结果
-        Map<String, Object> result = new HashMap<>(finalResult);
-        result.put("aiAppRecordId", aiAppRecordId);
-        result.put("executionTime", executionTime);
+            if (taskId == null || taskId.trim().isEmpty()) {
+                throw new RuntimeException("工作流启动失败，未返回 taskId: " + runResult.get("message"));
+            }
 
-        log.info("同步工作流执行完成 - aiAppRecordId: {}, status: {}, executionTime: {}ms",
-                aiAppRecordId, status, executionTime);
+            // 3. 创建AI应用记录（状态：进行中）
+            String aiAppRecordId = aiAppRecordService.createAiAppRecord(
+                    userId, aiApplicationId, "syncWorkflowHandler", input, taskId
+            ).getId();
+
+            // 4. 登记轮询，任务结束后调度器更新AI应用记录
+            CompletableFuture<Object> resultFuture = workflowPollScheduler.submit(userId, aiAppRecordId, workflowId,
+                    taskId, apiKey).thenApply(finalResult -> {
+                        // 5. 构造返回结果
+                        long executionTime = System.currentTimeMillis() - startTime;
+                        Map<String, Object> result = new HashMap<>(finalResult);
+                        result.put("aiAppRecordId", aiAppRecordId);
+                        result.put("executionTime", executionTime);
+
+                        log.info("同步工作流执行完成 - aiAppRecordId: {}, status: {}, executionTime: {}ms",
+                                aiAppRecordId, finalResult.get("status"), executionTime);
+
+                        return result;
+                    });
+            if (!deadline.isBounded()) {
+                return resultFuture;
+            }
 
-        return result;
+            // 6. 超出时限则降级为异步：只结束本次调用的 Future，调度器中的轮询不受影响
+            Map<String, Object> downgraded = downgradedResult(aiAppRecordId, taskId, budgetMs);
+            return resultFuture.completeOnTimeout(downgraded, deadline.remainingMs(), TimeUnit.MILLISECONDS)
+                    .whenComplete((result, error) -> {
+                        if (result == downgraded) {
+                            log.info("同步工作流超出时限，转为后台执行 - aiAppRecordId: {}, taskId: {}, budget: {}ms",
+                                    aiAppRecordId, taskId, budgetMs);
+                        }
+                    });
+        });
     }
 
     /**
-     * 轮询查询任务结果
+     * 本次调用的时限：优先使用上下文中的执行时限（按应用 timeoutMs 创建，已扣除排队等耗时），未配置时使用默认值
      */
-    private Map<String, Object> pollTaskResult(String taskId, String apiKey) throws Exception {
-        int retryCount = 0;
-
-        while (retryCount < MAX_RETRY_TIMES) {
-            try {
-                // 等待一段时间后再查询
-                if (retryCount > 0) {
-                    Thread.sleep(RETRY_INTERVAL_MS);
-                }
-
-                // 查询任务状态
-                Map<String, Object> queryResult = workflowApiClient.queryTaskResult(taskId, apiKey);
-                Integer status = (Integer) queryResult.get("status");
-
-                retryCount++;
-                queryResult.put("retryCount", retryCount);
-
-                // 检查是否完成
-                if (workflowApiClient.isTaskFinished(status)) {
-                    log.info("任务执行完成 - taskId: {}, status: {}, retryCount: {}", taskId, status, retryCount);
-                    return queryResult;
-                }
-
-                log.debug("任务进行中 - taskId: {}, status: {}, retryCount: {}/{}",
-                        taskId, status, retryCount, MAX_RETRY_TIMES);
-
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                throw new RuntimeException("轮询任务被中断", e);
-            } catch (Exception e) {
-                log.warn("查询任务结果失败 - taskId: {}, retryCount: {}, error: {}",
-                        taskId, retryCount, e.getMessage());
-                // 如果是最后一次尝试，抛出异常
-                if (retryCount >= MAX_RETRY_TIMES) {
-                    throw e;
-                }
-            }
+    private Deadline resolveDeadline(AiAppExecutionContext context) {
+        Deadline deadline = context.getDeadline();
+        if (deadline != null && deadline.isBounded()) {
+            return deadline;
         }
+        return Deadline.after(workflowProperties.getDefaultSyncBudgetMs());
+    }
 
-        // 超过最大轮询次数
-        Map<String, Object> timeoutResult = new HashMap<>();
-        timeoutResult.put("taskId", taskId);
-        timeoutResult.put("status", 2); // 失败
-        timeoutResult.put("message", "任务执行超时，已达最大轮询次数: " + MAX_RETRY_TIMES);
-        timeoutResult.put("retryCount", retryCount);
-
-        return timeoutResult;
+    /**
+     * 降级结果，结构与异步工作流执行器的立即返回一致
+     */
+    private Map<String, Object> downgradedResult(String aiAppRecordId, String taskId, long budgetMs) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("aiAppRecordId", aiAppRecordId);
+        result.put("taskId", taskId);
+        result.put("status", 3); // 3-进行中
+        result.put("downgraded", true);
+        result.put("message", "任务执行超过 " + budgetMs + "ms，已转为后台执行，请稍后通过 aiAppRecordId 查询结果");
+        return result;
     }
 
     /**
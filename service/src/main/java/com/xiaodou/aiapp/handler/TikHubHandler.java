@@ -1,20 +1,31 @@
 package com.xiaodou.aiapp.handler;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xiaodou.aiapp.AiAppExecutor;
 import com.xiaodou.aiapp.HttpClientUtil;
+import com.xiaodou.aiapp.cache.TwoTierResultCache;
+import com.xiaodou.aiapp.model.AiAppExecutionContext;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Component;
 import org.springframework.util.DigestUtils;
 
-import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 /**
+ * TikHub 接口代理（结果经两级缓存）
+ *
+ * 输出结果示例：
+ * {
+ * "statusCode": 200,
+ * "body": "...",                       // 响应体文本；JSON 响应为 bodyObject 的序列化结果（空白格式可能与原文不同）
+ * "bodyObject": { ... },               // JSON 响应解析后的对象
+ * "headers": { ... }
+ * }
  *
  * @author xiaodou V=>dddou117
  * @version V1.0
@@ -24,28 +35,47 @@ import java.util.concurrent.TimeUnit;
 @Component("tikHubHandler")
 @RequiredArgsConstructor
 public class TikHubHandler implements AiApplicationHandler {
-    private final RedisTemplate<String, Object> redisTemplate;
+    // 两级结果缓存（过期时间等见 aiapp.cache.tik-hub）
+    private final TwoTierResultCache tikHubResultCache;
 
     // 需要注入ObjectMapper
     private final ObjectMapper objectMapper;
 
-    // 缓存过期时间，根据业务需求调整
-    private static final long CACHE_EXPIRE_HOURS = 12; // 12小时
-
     @Override
     public Object execute(Map<String, Object> input) throws Exception {
-        // 生成缓存key
-        String cacheKey = generateCacheKey(input);
+        return AiAppExecutor.await(sendAsync(input));
+    }
 
-        // 先尝试从缓存获取
-        Object cachedResult = redisTemplate.opsForValue()
-            .get(cacheKey);
-        if (cachedResult != null) {
-            log.info("get cache result from cache key: {}", cacheKey);
-            return cachedResult;
+    @Override
+    public CompletionStage<Object> executeAsync(AiAppExecutionContext context) {
+        try {
+            // 回源请求可能被多个调用方共享，不受单个调用方时限约束；时限只约束本次等待
+            return context.getDeadline()
+                .bound(sendAsync(context.getInputParams()), "tikHubHandler");
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
         }
+    }
 
-        // 缓存未命中，执行原有逻辑
+    /**
+     * 经两级缓存（L1 本地 + L2 Redis）获取结果，未命中时集群内只有一个调用回源
+     */
+    private CompletableFuture<Object> sendAsync(Map<String, Object> input) {
+        // 生成缓存key
+        String cacheKey = generateCacheKey(input);
+        // 带请求头（可能含调用方凭证）的请求不参与提前刷新，缓存不长期持有其输入
+        boolean refreshAhead = !(input.get("headers") instanceof Map<?, ?> headers) || headers.isEmpty();
+        return tikHubResultCache.get(cacheKey, () -> requestUpstream(input), refreshAhead);
+    }
+
+    /**
+     * 回源：通过 HttpClient.sendAsync 发出请求
+     * <p>
+     * 回源被多个调用方共享，不取单个调用方的时限；响应头与响应体读取各由 requestTimeout 约束，
+     * 上游在响应体中途停滞时回源也会按时失败，缓存中的在途回源不会一直挂起。
+     * </p>
+     */
+    private CompletableFuture<Object> requestUpstream(Map<String, Object> input) {
         String method = getString(input, "method", true);
         String url = getString(input, "url", true);
 
@@ -57,31 +87,30 @@ public class TikHubHandler implements AiApplicationHandler {
         @SuppressWarnings("unchecked") Map<String, String> params = (Map<String, String>)input.get("params");
         String body = getString(input, "body", false);
 
-        try {
-            HttpResponseData response;
-            if ("GET".equalsIgnoreCase(method)) {
-                response = HttpClientUtil.sendGetFull(url, headers, params);
-            } else { // POST
-                response = HttpClientUtil.sendPostFull(url, headers, body);
+        CompletableFuture<HttpResponseData> responseFuture;
+        if ("GET".equalsIgnoreCase(method)) {
+            responseFuture = HttpClientUtil.sendGetFullAsync(url, headers, params);
+        } else { // POST
+            responseFuture = HttpClientUtil.sendPostFullAsync(url, headers, body);
+        }
+
+        return responseFuture.handle((response, error) -> {
+            if (error != null) {
+                Throwable cause = AiAppExecutor.unwrap(error);
+                if (cause instanceof URISyntaxException) {
+                    throw new IllegalArgumentException("URL 格式错误: " + cause.getMessage(), cause);
+                }
+                throw new RuntimeException("HTTP 请求失败: " + cause.getMessage(), cause);
             }
 
             Map<String, Object> result = new HashMap<>();
             result.put("statusCode", response.getStatusCode());
-            result.put("body", response.getBody());
+            // 始终返回 body；JSON 响应的 body 在输出序列化时才由 bodyObject 生成，内存中不再持有原文副本
+            result.put("body", response.outputBody());
             result.put("bodyObject", response.getBodyObject());
             result.put("headers", response.getHeaders());
-
-            // 将结果存入缓存
-            redisTemplate.opsForValue()
-                .set(cacheKey, result, CACHE_EXPIRE_HOURS, TimeUnit.HOURS);
-
             return result;
-
-        } catch (URISyntaxException e) {
-            throw new IllegalArgumentException("URL 格式错误: " + e.getMessage(), e);
-        } catch (IOException | InterruptedException e) {
-            throw new RuntimeException("HTTP 请求失败: " + e.getMessage(), e);
-        }
+        });
     }
 
     /**
@@ -92,7 +121,7 @@ public class TikHubHandler implements AiApplicationHandler {
             // 方法1: 使用JSON序列化后计算MD5
             String jsonString = objectMapper.writeValueAsString(input);
             String md5 = DigestUtils.md5DigestAsHex(jsonString.getBytes());
-            return "tikHub:request:" + md5;
+            return md5;
 
         } catch (Exception e) {
             // 方法2: 手动构建key（备选方案）
@@ -146,7 +175,7 @@ public class TikHubHandler implements AiApplicationHandler {
 
         // 计算hash避免key过长
         String keyString = keyBuilder.toString();
-        return "tikHub:request:" + DigestUtils.md5DigestAsHex(keyString.getBytes());
+        return DigestUtils.md5DigestAsHex(keyString.getBytes());
     }
 
     private String getString(Map<String, Object> input, String key, boolean required) {
@@ -1,15 +1,20 @@
 package com.xiaodou.aiapp.handler;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xiaodou.aiapp.AiAppExecutor;
 import com.xiaodou.aiapp.HttpClientUtil;
+import com.xiaodou.aiapp.WorkflowEndpointPool;
+import com.xiaodou.aiapp.model.AiAppExecutionContext;
+import com.xiaodou.aiapp.model.Deadline;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
-import java.io.IOException;
-import java.net.URISyntaxException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 /**
  * 牛马网站工作流 AI 应用执行器
@@ -51,21 +56,35 @@ import java.util.Map;
 public class WorkflowAiApplicationHandler implements AiApplicationHandler {
 
     private final ObjectMapper objectMapper;
-
-    // 牛马网站 API 基础地址
-    private static final String BASE_URL = "https://team-agent.luoxiaodou.cn/ai-team/api";
+    private final WorkflowEndpointPool workflowEndpointPool;
 
     @Override
     public Object execute(Map<String, Object> input) throws Exception {
+        return AiAppExecutor.await(dispatchAsync(input, Deadline.none()));
+    }
+
+    @Override
+    public CompletionStage<Object> executeAsync(AiAppExecutionContext context) {
+        try {
+            return dispatchAsync(context.getInputParams(), context.getDeadline());
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * 根据 action 发出对应的异步请求（请求超时取执行时限的剩余时间）
+     */
+    private CompletableFuture<Object> dispatchAsync(Map<String, Object> input, Deadline deadline) {
         // 参数校验
         String action = getString(input, "action", true);
         String apiKey = getString(input, "apiKey", true);
 
         // 根据 action 执行不同的操作
         if ("run".equalsIgnoreCase(action)) {
-            return runWorkflow(input, apiKey);
+            return runWorkflow(input, apiKey, deadline);
         } else if ("query".equalsIgnoreCase(action)) {
-            return queryTaskResult(input, apiKey);
+            return queryTaskResult(input, apiKey, deadline);
         } else {
             throw new IllegalArgumentException("action 参数必须是 'run' 或 'query'");
         }
@@ -74,8 +93,7 @@ public class WorkflowAiApplicationHandler implements AiApplicationHandler {
     /**
      * 运行工作流
      */
-    private Object runWorkflow(Map<String, Object> input, String apiKey)
-            throws URISyntaxException, IOException, InterruptedException {
+    private CompletableFuture<Object> runWorkflow(Map<String, Object> input, String apiKey, Deadline deadline) {
         // 获取必要参数
         String workflowId = getString(input, "workflowId", true);
         Object paramsObj = input.get("params");
@@ -84,9 +102,6 @@ public class WorkflowAiApplicationHandler implements AiApplicationHandler {
             throw new IllegalArgumentException("缺少必填参数: params");
         }
 
-        // 构建请求 URL
-        String url = BASE_URL + "/workflow/v2/run/" + workflowId;
-
         // 构建请求头
         Map<String, String> headers = new HashMap<>();
         headers.put("Authorization", apiKey);
@@ -94,40 +109,43 @@ public class WorkflowAiApplicationHandler implements AiApplicationHandler {
         headers.put("Content-Type", "application/json");
 
         // 将 params 转换为 JSON 字符串
-        String body = objectMapper.writeValueAsString(paramsObj);
-
-        log.info("运行工作流 - workflowId: {}, url: {}", workflowId, url);
-
-        // 发送 POST 请求
-        HttpResponseData response = HttpClientUtil.sendPostFull(url, headers, body);
+        String body;
+        try {
+            body = objectMapper.writeValueAsString(paramsObj);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("params 无法序列化为 JSON: " + e.getMessage(), e);
+        }
 
-        // 解析响应
-        return parseRunWorkflowResponse(response);
+        // 选择节点发送 POST 请求，解析响应后记录 taskId 的受理节点
+        return workflowEndpointPool.submit(baseUrl -> {
+            String url = baseUrl + "/workflow/v2/run/" + workflowId;
+            log.info("运行工作流 - workflowId: {}, url: {}", workflowId, url);
+            return HttpClientUtil.sendPostFullAsync(url, headers, body, deadline);
+        }).thenApply(routed -> {
+            Map<String, Object> result = parseRunWorkflowResponse(routed.response());
+            workflowEndpointPool.pin((String) result.get("taskId"), routed.endpoint());
+            return result;
+        });
     }
 
     /**
      * 查询任务结果
      */
-    private Object queryTaskResult(Map<String, Object> input, String apiKey)
-            throws URISyntaxException, IOException, InterruptedException {
+    private CompletableFuture<Object> queryTaskResult(Map<String, Object> input, String apiKey, Deadline deadline) {
         // 获取必要参数
         String taskId = getString(input, "taskId", true);
 
-        // 构建请求 URL
-        String url = BASE_URL + "/task-record/result/" + taskId;
-
         // 构建请求头
         Map<String, String> headers = new HashMap<>();
         headers.put("Authorization", apiKey);
         headers.put("X-Client-Type", "fs-filed");
 
-        log.info("查询任务结果 - taskId: {}, url: {}", taskId, url);
-
-        // 发送 GET 请求
-        HttpResponseData response = HttpClientUtil.sendGetFull(url, headers, null);
-
-        // 解析响应
-        return parseQueryTaskResponse(response);
+        // 发往受理该任务的节点
+        return workflowEndpointPool.sendPinned(taskId, baseUrl -> {
+            String url = baseUrl + "/task-record/result/" + taskId;
+            log.info("查询任务结果 - taskId: {}, url: {}", taskId, url);
+            return HttpClientUtil.sendGetFullAsync(url, headers, null, deadline);
+        }).thenApply(this::parseQueryTaskResponse);
     }
 
     /**
@@ -136,7 +154,9 @@ public class WorkflowAiApplicationHandler implements AiApplicationHandler {
     private Map<String, Object> parseRunWorkflowResponse(HttpResponseData response) {
         Map<String, Object> result = new HashMap<>();
         result.put("statusCode", response.getStatusCode());
-        result.put("rawBody", response.getBody());
+        if (response.hasRawBody()) {
+            result.put("rawBody", response.getBody());
+        }
 
         // 尝试解析 bodyObject
         Object bodyObject = response.getBodyObject();
@@ -168,7 +188,9 @@ public class WorkflowAiApplicationHandler implements AiApplicationHandler {
     private Map<String, Object> parseQueryTaskResponse(HttpResponseData response) {
         Map<String, Object> result = new HashMap<>();
         result.put("statusCode", response.getStatusCode());
-        result.put("rawBody", response.getBody());
+        if (response.hasRawBody()) {
+            result.put("rawBody", response.getBody());
+        }
 
         // 尝试解析 bodyObject
         Object bodyObject = response.getBodyObject();
@@ -19,5 +19,6 @@ public class AiAppExecutionContext {
     private Long appId;
     private Map<String, Object> inputParams;
     private AiApplication aiApplication;
+    private Deadline deadline = Deadline.none(); // 执行时限，按应用 timeoutMs 创建，传入各次上游调用
     private Object result; // 执行结果
 }
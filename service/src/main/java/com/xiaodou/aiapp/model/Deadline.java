@@ -0,0 +1,149 @@
+package com.xiaodou.aiapp.model;
+
+import com.xiaodou.exception.DeadlineExceededException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 执行时限（绝对截止时间）
+ * <p>
+ * 在 AiAppExecutor 入口按 {@link com.xiaodou.model.AiApplication#getTimeoutMs()} 创建，随
+ * {@link AiAppExecutionContext} 传给执行器，再传入每一次 HTTP 调用与等待：各环节以剩余时间作为自己的超时，
+ * 而不是各自从头计时，整条调用链的总耗时因此不会超过应用时限。不可变，可在线程间共享。
+ * </p>
+ *
+ * @author xiaodou V=>dddou117
+ * @version V1.0
+ * @since 2025/12/18
+ */
+public final class Deadline {
+
+    private static final Deadline NONE = new Deadline(0, 0);
+
+    private final long startNanos;
+    private final long budgetNanos;
+
+    private Deadline(long startNanos, long budgetNanos) {
+        this.startNanos = startNanos;
+        this.budgetNanos = budgetNanos;
+    }
+
+    /**
+     * 不限时
+     */
+    public static Deadline none() {
+        return NONE;
+    }
+
+    /**
+     * 从现在起 timeoutMs 毫秒后截止；timeoutMs 为空或不大于 0 时不限时
+     */
+    public static Deadline after(Integer timeoutMs) {
+        return timeoutMs == null ? NONE : after(timeoutMs.longValue());
+    }
+
+    /**
+     * 从现在起 timeoutMs 毫秒后截止；timeoutMs 不大于 0 时不限时
+     */
+    public static Deadline after(long timeoutMs) {
+        return timeoutMs <= 0 ? NONE : new Deadline(System.nanoTime(), TimeUnit.MILLISECONDS.toNanos(timeoutMs));
+    }
+
+    /**
+     * 取本时限与从现在起 timeoutMs 毫秒后两者中较早的一个（子调用有自己的时限时使用）
+     */
+    public Deadline min(Integer timeoutMs) {
+        Deadline other = after(timeoutMs);
+        if (!other.isBounded()) {
+            return this;
+        }
+        return !isBounded() || other.remainingNanos() < remainingNanos() ? other : this;
+    }
+
+    /**
+     * 总时限（毫秒），不限时为 0
+     */
+    public long budgetMs() {
+        return TimeUnit.NANOSECONDS.toMillis(budgetNanos);
+    }
+
+    public boolean isBounded() {
+        return budgetNanos > 0;
+    }
+
+    /**
+     * 剩余毫秒数，不限时返回 Long.MAX_VALUE，已超时返回 0
+     */
+    public long remainingMs() {
+        return isBounded() ? Math.max(0, TimeUnit.NANOSECONDS.toMillis(remainingNanos())) : Long.MAX_VALUE;
+    }
+
+    public boolean isExpired() {
+        return isBounded() && remainingNanos() <= 0;
+    }
+
+    /**
+     * 单次调用的超时：剩余时间与 cap 中较小者
+     */
+    public Duration timeout(Duration cap) {
+        return isBounded() && remainingMs() < cap.toMillis() ? Duration.ofMillis(Math.max(1, remainingMs())) : cap;
+    }
+
+    /**
+     * 进入某个环节前检查，已超时则抛出
+     *
+     * @param stage 环节名称，写入错误信息
+     * @throws DeadlineExceededException 时限已耗尽
+     */
+    public void check(String stage) {
+        if (isExpired()) {
+            throw exceeded(stage);
+        }
+    }
+
+    /**
+     * 生成超时异常，错误信息包含总时限与已用时间
+     */
+    public DeadlineExceededException exceeded(String stage) {
+        return new DeadlineExceededException(stage, budgetMs(),
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    }
+
+    /**
+     * 以剩余时间约束等待：到期时返回的 Future 以 {@link DeadlineExceededException} 失败
+     * <p>
+     * 约束作用在副本上，原 Future（可能被多个调用方共享，如合并回源）不受影响。
+     * </p>
+     */
+    public <T> CompletableFuture<T> bound(CompletableFuture<T> future, String stage) {
+        if (!isBounded()) {
+            return future;
+        }
+        if (isExpired()) {
+            return CompletableFuture.failedFuture(exceeded(stage));
+        }
+        return future.copy()
+            .orTimeout(remainingNanos(), TimeUnit.NANOSECONDS)
+            .exceptionally(error -> {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ?
+                    error.getCause() : error;
+                if (cause instanceof TimeoutException) {
+                    throw exceeded(stage);
+                }
+                throw error instanceof CompletionException completion ? completion : new CompletionException(error);
+            });
+    }
+
+    private long remainingNanos() {
+        return budgetNanos - (System.nanoTime() - startNanos);
+    }
+
+    @Override
+    public String toString() {
+        return isBounded() ? "Deadline[remaining=" + remainingMs() + "ms]" : "Deadline[none]";
+    }
+}
@@ -0,0 +1,232 @@
+package com.xiaodou.aiapp.pipeline;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 流水线定义（编译后的 DAG）
+ * <p>
+ * 来自流水线应用 AiApplication.config 的 pipeline 节点：
+ * <pre>
+ * {"pipeline": {
+ *   "nodes": [
+ *     {"id": "video",    "appId": "a1", "inputs": {"url": "$.input.url", "method": "GET"}},
+ *     {"id": "rewriteA", "appId": "a2", "inputs": {"params.text": "$.video.bodyObject.data.desc"}},
+ *     {"id": "rewriteB", "appId": "a3", "inputs": {"params.text": "$.video.bodyObject.data.desc"}, "optional": true}
+ *   ],
+ *   "output": {"video": "$.video.bodyObject.data", "a": "$.rewriteA", "b": "$.rewriteB"}
+ * }}
+ * </pre>
+ * inputs / output 的键为目标路径（点号分隔，逐级创建对象），值以 "$." 开头时为来源路径，否则为字面量。
+ * 来源路径的根：input（流水线入参）、context（userId、appId、aiAppRecordId）或任一节点 id（该节点的结果）。
+ * 引用其他节点即构成依赖（也可用 dependsOn 显式声明），没有依赖关系的节点并发执行。
+ * </p>
+ *
+ * @author xiaodou V=>dddou117
+ * @version V1.0
+ * @since 2025/12/18
+ */
+public final class PipelineDefinition {
+
+    public static final String ROOT_INPUT = "input";
+    public static final String ROOT_CONTEXT = "context";
+
+    private final List<Node> nodes;
+    private final Map<String, Object> output;
+
+    private PipelineDefinition(List<Node> nodes, Map<String, Object> output) {
+        this.nodes = nodes;
+        this.output = output;
+    }
+
+    /**
+     * 按拓扑顺序排列的节点
+     */
+    public List<Node> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * 输出映射（目标路径 -> 来源），为空时输出全部节点结果
+     */
+    public Map<String, Object> getOutput() {
+        return output;
+    }
+
+    /**
+     * 解析并校验流水线定义
+     *
+     * @param pipeline config 中的 pipeline 节点
+     * @param objectMapper 用于转换字面量
+     * @throws IllegalArgumentException 定义不合法（缺字段、重复 id、引用不存在的节点、存在环）
+     */
+    public static PipelineDefinition parse(JsonNode pipeline, ObjectMapper objectMapper) {
+        JsonNode nodesNode = pipeline.path("nodes");
+        if (!nodesNode.isArray() || nodesNode.isEmpty()) {
+            throw new IllegalArgumentException("流水线至少需要一个节点");
+        }
+
+        Map<String, Node> byId = new LinkedHashMap<>();
+        for (JsonNode nodeDef : nodesNode) {
+            String id = nodeDef.path("id")
+                .asText("");
+            if (id.isEmpty() || ROOT_INPUT.equals(id) || ROOT_CONTEXT.equals(id)) {
+                throw new IllegalArgumentException("流水线节点 id 为空或使用了保留名: " + id);
+            }
+            String appId = nodeDef.path("appId")
+                .asText("");
+            if (appId.isEmpty()) {
+                throw new IllegalArgumentException("流水线节点缺少 appId: " + id);
+            }
+            Map<String, Object> inputs = compileMappings(nodeDef.path("inputs"), objectMapper);
+            Set<String> dependsOn = new LinkedHashSet<>(referencedRoots(inputs));
+            nodeDef.path("dependsOn")
+                .forEach(dep -> dependsOn.add(dep.asText()));
+            dependsOn.remove(ROOT_INPUT);
+            dependsOn.remove(ROOT_CONTEXT);
+
+            Node node = new Node(id, appId, inputs, Collections.unmodifiableSet(dependsOn), nodeDef.path("optional")
+                .asBoolean(false));
+            if (byId.put(id, node) != null) {
+                throw new IllegalArgumentException("流水线节点 id 重复: " + id);
+            }
+        }
+
+        for (Node node : byId.values()) {
+            for (String dep : node.dependsOn()) {
+                if (!byId.containsKey(dep)) {
+                    throw new IllegalArgumentException("流水线节点 " + node.id() + " 引用了不存在的节点: " + dep);
+                }
+            }
+        }
+
+        Map<String, Object> output = compileMappings(pipeline.path("output"), objectMapper);
+        for (String root : referencedRoots(output)) {
+            if (!byId.containsKey(root) && !ROOT_INPUT.equals(root) && !ROOT_CONTEXT.equals(root)) {
+                throw new IllegalArgumentException("流水线输出引用了不存在的节点: " + root);
+            }
+        }
+        return new PipelineDefinition(topologicalOrder(byId), output);
+    }
+
+    /**
+     * 按映射组装对象：来源路径从 scope 中取值，字面量原样写入
+     *
+     * @param mappings 目标路径 -> 来源
+     * @param scope 根作用域（input、context 及已完成节点的结果）
+     */
+    public static Map<String, Object> assemble(Map<String, Object> mappings, Map<String, Object> scope) {
+        Map<String, Object> target = new LinkedHashMap<>();
+        mappings.forEach((targetPath, source) -> {
+            Object value = source instanceof PipelinePath path ? path.resolve(scope) : source;
+            put(target, targetPath, value);
+        });
+        return target;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void put(Map<String, Object> target, String targetPath, Object value) {
+        String[] keys = targetPath.split("\\.");
+        Map<String, Object> current = target;
+        for (int i = 0; i < keys.length - 1; i++) {
+            Object child = current.get(keys[i]);
+            if (!(child instanceof Map)) {
+                child = new LinkedHashMap<String, Object>();
+                current.put(keys[i], child);
+            }
+            current = (Map<String, Object>)child;
+        }
+        current.put(keys[keys.length - 1], value);
+    }
+
+    private static Map<String, Object> compileMappings(JsonNode mappings, ObjectMapper objectMapper) {
+        Map<String, Object> compiled = new LinkedHashMap<>();
+        if (!mappings.isObject()) {
+            return compiled;
+        }
+        Iterator<Map.Entry<String, JsonNode>> fields = mappings.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            JsonNode source = field.getValue();
+            if (source.isTextual() && source.asText()
+                .startsWith("$.")) {
+                compiled.put(field.getKey(), PipelinePath.compile(source.asText()));
+            } else {
+                compiled.put(field.getKey(), objectMapper.convertValue(source, Object.class));
+            }
+        }
+        return Collections.unmodifiableMap(compiled);
+    }
+
+    private static Set<String> referencedRoots(Map<String, Object> mappings) {
+        Set<String> roots = new LinkedHashSet<>();
+        mappings.values()
+            .forEach(source -> {
+                if (source instanceof PipelinePath path) {
+                    roots.add(path.getRoot());
+                }
+            });
+        return roots;
+    }
+
+    /**
+     * Kahn 拓扑排序，存在环时抛出异常
+     */
+    private static List<Node> topologicalOrder(Map<String, Node> byId) {
+        Map<String, Integer> indegree = new HashMap<>();
+        Map<String, List<Node>> dependents = new HashMap<>();
+        for (Node node : byId.values()) {
+            indegree.put(node.id(), node.dependsOn()
+                .size());
+            for (String dep : node.dependsOn()) {
+                dependents.computeIfAbsent(dep, k -> new ArrayList<>())
+                    .add(node);
+            }
+        }
+
+        Deque<Node> ready = new ArrayDeque<>();
+        byId.values()
+            .stream()
+            .filter(node -> node.dependsOn()
+                .isEmpty())
+            .forEach(ready::add);
+        List<Node> ordered = new ArrayList<>(byId.size());
+        while (!ready.isEmpty()) {
+            Node node = ready.poll();
+            ordered.add(node);
+            for (Node dependent : dependents.getOrDefault(node.id(), List.of())) {
+                if (indegree.merge(dependent.id(), -1, Integer::sum) == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+        if (ordered.size() != byId.size()) {
+            throw new IllegalArgumentException("流水线节点存在循环依赖");
+        }
+        return Collections.unmodifiableList(ordered);
+    }
+
+    /**
+     * 流水线节点
+     *
+     * @param id 节点 id
+     * @param appId 要执行的 AI 应用
+     * @param inputs 入参映射（目标路径 -> 来源）
+     * @param dependsOn 依赖的节点 id
+     * @param optional 失败时是否继续（结果记为 null）
+     */
+    public record Node(String id, String appId, Map<String, Object> inputs, Set<String> dependsOn, boolean optional) {
+    }
+}
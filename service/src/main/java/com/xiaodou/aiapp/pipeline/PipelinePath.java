@@ -0,0 +1,97 @@
+package com.xiaodou.aiapp.pipeline;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 流水线取值路径（JSONPath 子集）
+ * <p>
+ * 支持 $.root.a.b[0].c 形式：点号取对象字段，[n] 取数组元素。路径中途为空或类型不符时结果为 null。
+ * </p>
+ *
+ * @author xiaodou V=>dddou117
+ * @version V1.0
+ * @since 2025/12/18
+ */
+public final class PipelinePath {
+
+    private final String expression;
+    private final List<Object> segments;
+
+    private PipelinePath(String expression, List<Object> segments) {
+        this.expression = expression;
+        this.segments = segments;
+    }
+
+    /**
+     * 编译路径表达式
+     *
+     * @throws IllegalArgumentException 表达式格式错误
+     */
+    public static PipelinePath compile(String expression) {
+        if (!expression.startsWith("$.") || expression.length() == 2) {
+            throw new IllegalArgumentException("路径必须以 $. 开头: " + expression);
+        }
+        List<Object> segments = new ArrayList<>();
+        for (String part : expression.substring(2)
+            .split("\\.")) {
+            int bracket = part.indexOf('[');
+            String name = bracket < 0 ? part : part.substring(0, bracket);
+            if (!name.isEmpty()) {
+                segments.add(name);
+            } else if (segments.isEmpty()) {
+                throw new IllegalArgumentException("路径缺少根节点: " + expression);
+            }
+            while (bracket >= 0) {
+                int close = part.indexOf(']', bracket);
+                if (close < 0) {
+                    throw new IllegalArgumentException("路径括号不匹配: " + expression);
+                }
+                try {
+                    segments.add(Integer.parseInt(part.substring(bracket + 1, close)));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("路径数组下标必须为数字: " + expression);
+                }
+                bracket = part.indexOf('[', close);
+            }
+        }
+        if (!(segments.get(0) instanceof String)) {
+            throw new IllegalArgumentException("路径缺少根节点: " + expression);
+        }
+        return new PipelinePath(expression, Collections.unmodifiableList(segments));
+    }
+
+    /**
+     * 路径的根（input、context 或节点 id）
+     */
+    public String getRoot() {
+        return (String)segments.get(0);
+    }
+
+    /**
+     * 在作用域中取值
+     */
+    public Object resolve(Map<String, Object> scope) {
+        Object current = scope;
+        for (Object segment : segments) {
+            if (current == null) {
+                return null;
+            }
+            if (segment instanceof String key) {
+                current = current instanceof Map<?, ?> map ? map.get(key) : null;
+            } else {
+                int index = (Integer)segment;
+                current = current instanceof List<?> list && index >= 0 && index < list.size() ? list.get(index) :
+                    null;
+            }
+        }
+        return current;
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+}
@@ -0,0 +1,49 @@
+package com.xiaodou.aiapp.replay;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 回放压测管理接口（仅 replay profile 启用）
+ * <p>
+ * 压测会以任意 userId 发起执行，不能放在插件白名单（/api/plugin/**）下；
+ * 这里的接口需要登录且为超级管理员。回放的上游响应仍由 {@link ReplayController} 提供。
+ * </p>
+ *
+ * @author xiaodou V=>dddou117
+ * @version V1.0
+ * @since 2025/12/20
+ */
+@Profile("replay")
+@RestController
+@RequestMapping("/admin/replay")
+@RequiredArgsConstructor
+public class ReplayAdminController {
+
+    private final ReplayController replayController;
+    private final ReplayLoadRunner replayLoadRunner;
+
+    /**
+     * 发起一轮压测（见 {@link ReplayLoadRunner}）
+     */
+    @PostMapping("/load")
+    @PreAuthorize("hasRole('SUPER_ADMIN')")
+    public CompletableFuture<ReplayLoadRunner.Report> load(@RequestBody ReplayLoadRunner.Scenario scenario) {
+        return replayLoadRunner.run(scenario);
+    }
+
+    @GetMapping("/stats")
+    @PreAuthorize("hasRole('SUPER_ADMIN')")
+    public Map<String, Object> stats() {
+        return replayController.stats();
+    }
+}
@@ -0,0 +1,258 @@
+package com.xiaodou.aiapp.replay;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xiaodou.aiapp.HttpClientUtil;
+import com.xiaodou.config.ReplayProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * 上游回放服务（仅 replay profile 启用）
+ * <p>
+ * 启动时加载 {@link ReplayRecorder} 录制的 {dir}/{host}.jsonl，并通过 {@link HttpClientUtil#setUrlRewriter}
+ * 把所有出站请求改写到本服务（{baseUrl}/{host}/{原路径}），整条执行链路无需修改即可完全离线运行。
+ * 按"方法 + 路径 + 查询串"精确匹配录制响应，找不到时按末段路径通配匹配（taskId 等每次不同的 ID），
+ * 同一键的多条录制轮流返回。
+ * </p>
+ * <p>
+ * 延迟按配置的分布（录制耗时 / 固定 / 均匀 / 对数正态）采样，由调度线程到期后完成响应，不占用请求线程；
+ * 按 errorRate 随机返回 errorStatus，用于验证熔断、重试与失败处理路径。
+ * </p>
+ * 使用方式：先以 replay-record profile 对真实上游跑一遍业务流量完成录制，再以 replay profile 启动
+ * （见 application-replay.yml），由管理员通过 {@link ReplayAdminController} 发起压测。
+ * 回放会改写全部出站请求，与 prod profile 同时启用时拒绝启动。
+ *
+ * @author xiaodou V=>dddou117
+ * @version V1.0
+ * @since 2025/12/19
+ */
+@Slf4j
+@Profile("replay")
+@RestController
+@RequestMapping("/api/plugin/replay")
+public class ReplayController {
+
+    private static final String PATH_PREFIX = "/api/plugin/replay/";
+    private static final double Z_99 = 2.326;
+
+    private final ReplayProperties replayProperties;
+    private final ObjectMapper objectMapper;
+    private final Environment environment;
+
+    // host -> 匹配键 -> 录制
+    private final Map<String, Map<String, Bucket>> recordings = new HashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2, Thread.ofPlatform()
+        .name("replay-server-", 0)
+        .daemon(true)
+        .factory());
+
+    private final AtomicLong served = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+    private final AtomicLong missed = new AtomicLong();
+
+    public ReplayController(ReplayProperties replayProperties, ObjectMapper objectMapper, Environment environment) {
+        this.replayProperties = replayProperties;
+        this.objectMapper = objectMapper;
+        this.environment = environment;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (environment.acceptsProfiles(Profiles.of("prod"))) {
+            throw new IllegalStateException("replay profile 不能与 prod 同时启用");
+        }
+        Path dir = Path.of(replayProperties.getDir());
+        int total = 0;
+        if (Files.isDirectory(dir)) {
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path file : files.filter(f -> f.toString()
+                        .endsWith(".jsonl"))
+                    .toList()) {
+                    total += load(file);
+                }
+            }
+        }
+        HttpClientUtil.setUrlRewriter(this::rewrite);
+        log.info("上游回放服务已启动 - dir: {}, 主机: {}, 录制: {}, 延迟分布: {}, errorRate: {}", dir.toAbsolutePath(),
+            recordings.keySet(), total, replayProperties.getLatency()
+                .getDistribution(), replayProperties.getErrorRate());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        HttpClientUtil.setUrlRewriter(null);
+        scheduler.shutdownNow();
+    }
+
+    @RequestMapping("/{host}/**")
+    public CompletableFuture<ResponseEntity<String>> replay(@PathVariable String host, HttpServletRequest request) {
+        String path = request.getRequestURI()
+            .substring(request.getContextPath()
+                .length() + PATH_PREFIX.length() + host.length());
+        if (request.getQueryString() != null) {
+            path += "?" + request.getQueryString();
+        }
+
+        ReplayRecording recording = match(host, request.getMethod(), path);
+        if (recording == null) {
+            missed.incrementAndGet();
+            return CompletableFuture.completedFuture(ResponseEntity.status(404)
+                .body("{\"success\":false,\"message\":\"没有匹配的录制: " + request.getMethod() + " " + path + "\"}"));
+        }
+
+        ResponseEntity<String> response;
+        if (ThreadLocalRandom.current()
+            .nextDouble() < replayProperties.getErrorRate()) {
+            injectedErrors.incrementAndGet();
+            response = ResponseEntity.status(replayProperties.getErrorStatus())
+                .header(HttpHeaders.CONTENT_TYPE, "application/json")
+                .body("{\"success\":false,\"message\":\"回放注入错误\"}");
+        } else {
+            served.incrementAndGet();
+            ResponseEntity.BodyBuilder builder = ResponseEntity.status(recording.getStatus());
+            if (recording.getContentType() != null) {
+                builder.header(HttpHeaders.CONTENT_TYPE, recording.getContentType());
+            }
+            response = builder.body(recording.getBody());
+        }
+
+        long delayMs = sampleLatency(recording);
+        if (delayMs <= 0) {
+            return CompletableFuture.completedFuture(response);
+        }
+        CompletableFuture<ResponseEntity<String>> future = new CompletableFuture<>();
+        ResponseEntity<String> delayed = response;
+        scheduler.schedule(() -> future.complete(delayed), delayMs, TimeUnit.MILLISECONDS);
+        return future;
+    }
+
+    /**
+     * 回放统计（由 {@link ReplayAdminController} 对外提供）
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("hosts", recordings.keySet());
+        stats.put("served", served.get());
+        stats.put("injectedErrors", injectedErrors.get());
+        stats.put("missed", missed.get());
+        return stats;
+    }
+
+    private int load(Path file) throws IOException {
+        String fileName = file.getFileName()
+            .toString();
+        String host = fileName.substring(0, fileName.length() - ".jsonl".length());
+        Map<String, List<ReplayRecording>> byKey = new HashMap<>();
+        int count = 0;
+        for (String line : Files.readAllLines(file)) {
+            if (line.isBlank()) {
+                continue;
+            }
+            ReplayRecording recording = objectMapper.readValue(line, ReplayRecording.class);
+            byKey.computeIfAbsent(ReplayRecording.exactKey(recording.getMethod(), recording.getPath()),
+                    k -> new ArrayList<>())
+                .add(recording);
+            byKey.computeIfAbsent(ReplayRecording.templateKey(recording.getMethod(), recording.getPath()),
+                    k -> new ArrayList<>())
+                .add(recording);
+            count++;
+        }
+        Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+        byKey.forEach((key, list) -> buckets.put(key, new Bucket(List.copyOf(list))));
+        recordings.put(host, buckets);
+        return count;
+    }
+
+    private ReplayRecording match(String host, String method, String path) {
+        Map<String, Bucket> buckets = recordings.get(host);
+        if (buckets == null) {
+            return null;
+        }
+        Bucket bucket = buckets.get(ReplayRecording.exactKey(method, path));
+        if (bucket == null) {
+            bucket = buckets.get(ReplayRecording.templateKey(method, path));
+        }
+        return bucket == null ? null : bucket.next();
+    }
+
+    private long sampleLatency(ReplayRecording recording) {
+        ReplayProperties.Latency latency = replayProperties.getLatency();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return switch (latency.getDistribution()) {
+            case RECORDED -> recording.getLatencyMs();
+            case FIXED -> latency.getMinMs();
+            case UNIFORM -> latency.getMaxMs() > latency.getMinMs() ?
+                latency.getMinMs() + random.nextLong(latency.getMaxMs() - latency.getMinMs()) : latency.getMinMs();
+            case LOG_NORMAL -> {
+                double mu = Math.log(Math.max(1, latency.getMedianMs()));
+                double sigma = Math.max(0, (Math.log(Math.max(1, latency.getP99Ms())) - mu) / Z_99);
+                yield Math.round(Math.exp(mu + sigma * random.nextGaussian()));
+            }
+        };
+    }
+
+    /**
+     * 出站地址改写：https://host/path → {baseUrl}/{host}/path；已指向回放服务的地址保持不变
+     */
+    private String rewrite(String url) {
+        String baseUrl = replayProperties.getBaseUrl();
+        if (url.startsWith(baseUrl)) {
+            return url;
+        }
+        try {
+            URI uri = new URI(url);
+            if (uri.getHost() == null) {
+                return url;
+            }
+            String path = uri.getRawPath() == null ? "" : uri.getRawPath();
+            return baseUrl + "/" + ReplayRecording.hostKey(uri) + path + (uri.getRawQuery() == null ? "" :
+                "?" + uri.getRawQuery());
+        } catch (Exception e) {
+            return url;
+        }
+    }
+
+    /**
+     * 同一匹配键的录制，轮流返回
+     */
+    private static final class Bucket {
+        private final List<ReplayRecording> recordings;
+        private final AtomicInteger cursor = new AtomicInteger();
+
+        Bucket(List<ReplayRecording> recordings) {
+            this.recordings = recordings;
+        }
+
+        ReplayRecording next() {
+            return recordings.get(Math.floorMod(cursor.getAndIncrement(), recordings.size()));
+        }
+    }
+}
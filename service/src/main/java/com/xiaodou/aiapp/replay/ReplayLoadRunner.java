@@ -0,0 +1,183 @@
+package com.xiaodou.aiapp.replay;
+
+import com.xiaodou.aiapp.AiAppExecutor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 回放压测执行器（仅 replay profile 启用）
+ * <p>
+ * 以指定用户对指定应用发起 executions 次 {@link AiAppExecutor#executeAsync}，同时在途不超过 concurrency
+ * （默认全部同时发出，即 1k 并发场景），某次完成后再发出下一次，发起方不阻塞。
+ * 结束后报告吞吐、延迟分位、失败分类，以及压测期间 JVM 平台线程数的基线与峰值（虚拟线程不计入），
+ * 用于确认异步链路下线程数不随并发增长。上游由 {@link ReplayController} 回放，全程离线。
+ * </p>
+ *
+ * @author xiaodou V=>dddou117
+ * @version V1.0
+ * @since 2025/12/19
+ */
+@Slf4j
+@Component
+@Profile("replay")
+public class ReplayLoadRunner {
+
+    private static final int DEFAULT_EXECUTIONS = 1000;
+
+    private final AiAppExecutor aiAppExecutor;
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+    public ReplayLoadRunner(AiAppExecutor aiAppExecutor) {
+        this.aiAppExecutor = aiAppExecutor;
+    }
+
+    /**
+     * 执行一轮压测
+     *
+     * @param scenario 压测场景
+     * @return 压测报告（全部执行结束后完成）
+     */
+    public CompletableFuture<Report> run(Scenario scenario) {
+        int executions = scenario.executions() == null ? DEFAULT_EXECUTIONS : scenario.executions();
+        int concurrency = scenario.concurrency() == null ? executions : Math.min(scenario.concurrency(), executions);
+        if (executions <= 0 || concurrency <= 0) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("executions、concurrency 必须大于 0"));
+        }
+
+        Run run = new Run(scenario, executions);
+        log.info("开始回放压测 - appId: {}, executions: {}, concurrency: {}, 基线线程数: {}", scenario.appId(),
+            executions, concurrency, run.baselineThreads);
+        for (int i = 0; i < concurrency; i++) {
+            launchNext(run);
+        }
+        return run.done;
+    }
+
+    private void launchNext(Run run) {
+        int index = run.launched.getAndIncrement();
+        if (index >= run.latencies.length) {
+            return;
+        }
+        long startNanos = System.nanoTime();
+        CompletableFuture<Object> execution;
+        try {
+            execution = aiAppExecutor.executeAsync(run.scenario.userId(), run.scenario.appId(),
+                run.scenario.params() == null ? Map.of() : run.scenario.params());
+        } catch (RuntimeException e) {
+            execution = CompletableFuture.failedFuture(e);
+        }
+        execution.whenComplete((result, error) -> {
+            run.latencies[index] = System.nanoTime() - startNanos;
+            String failure = error != null ? AiAppExecutor.unwrap(error)
+                .getClass()
+                .getSimpleName() : failureOf(result);
+            if (failure == null) {
+                run.succeeded.increment();
+            } else {
+                run.errors.computeIfAbsent(failure, k -> new LongAdder())
+                    .increment();
+            }
+            if (run.completed.incrementAndGet() == run.latencies.length) {
+                run.done.complete(report(run));
+            } else {
+                launchNext(run);
+            }
+        });
+    }
+
+    private Report report(Run run) {
+        long durationNanos = System.nanoTime() - run.startNanos;
+        long[] sorted = run.latencies.clone();
+        Arrays.sort(sorted);
+        Map<String, Long> errors = new TreeMap<>();
+        run.errors.forEach((key, count) -> errors.put(key, count.sum()));
+
+        Report report = new Report(sorted.length, run.succeeded.sum(), sorted.length - run.succeeded.sum(), errors,
+            TimeUnit.NANOSECONDS.toMillis(durationNanos), sorted.length * 1_000_000_000.0 / durationNanos,
+            percentileMs(sorted, 0.50), percentileMs(sorted, 0.90), percentileMs(sorted, 0.99),
+            TimeUnit.NANOSECONDS.toMillis(sorted[sorted.length - 1]), run.baselineThreads,
+            threadMXBean.getPeakThreadCount());
+        log.info("回放压测完成 - {}", report);
+        return report;
+    }
+
+    private static long percentileMs(long[] sorted, double percentile) {
+        int index = (int)Math.ceil(percentile * sorted.length) - 1;
+        return TimeUnit.NANOSECONDS.toMillis(sorted[Math.max(0, Math.min(index, sorted.length - 1))]);
+    }
+
+    /**
+     * 与积分结算一致的失败判定：status = 2 或 statusCode 非 2xx
+     */
+    private static String failureOf(Object result) {
+        if (result instanceof Map<?, ?> map) {
+            if (Integer.valueOf(2)
+                .equals(map.get("status"))) {
+                return "status=2";
+            }
+            if (map.get("statusCode") instanceof Integer code && (code < 200 || code >= 300)) {
+                return "statusCode=" + code;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 压测场景
+     *
+     * @param appId 应用ID
+     * @param userId 执行用户
+     * @param params 应用入参（每次执行相同）
+     * @param executions 执行总次数，默认 1000
+     * @param concurrency 同时在途上限，默认等于 executions
+     */
+    public record Scenario(Long appId, String userId, Map<String, Object> params, Integer executions,
+                           Integer concurrency) {
+    }
+
+    /**
+     * 压测报告
+     *
+     * @param baselineThreads 开始时的平台线程数
+     * @param peakThreads 压测期间的平台线程峰值
+     */
+    public record Report(int executions, long succeeded, long failed, Map<String, Long> errors, long durationMs,
+                         double throughputPerSec, long p50Ms, long p90Ms, long p99Ms, long maxMs, int baselineThreads,
+                         int peakThreads) {
+    }
+
+    /**
+     * 单轮压测状态
+     */
+    private final class Run {
+        final Scenario scenario;
+        final long[] latencies;
+        final AtomicInteger launched = new AtomicInteger();
+        final AtomicInteger completed = new AtomicInteger();
+        final LongAdder succeeded = new LongAdder();
+        final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+        final CompletableFuture<Report> done = new CompletableFuture<>();
+        final int baselineThreads;
+        final long startNanos;
+
+        Run(Scenario scenario, int executions) {
+            this.scenario = scenario;
+            this.latencies = new long[executions];
+            threadMXBean.resetPeakThreadCount();
+            this.baselineThreads = threadMXBean.getThreadCount();
+            this.startNanos = System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.xiaodou.aiapp.replay;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xiaodou.aiapp.HttpClientUtil;
+import com.xiaodou.aiapp.handler.HttpResponseData;
+import com.xiaodou.config.ReplayProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 上游响应录制器（仅 replay-record profile 启用）
+ * <p>
+ * 通过 {@link HttpClientUtil#setExchangeListener} 截获所有经 HttpClientUtil 发出的请求的完整响应
+ * （WorkflowApiClient、TikHubHandler、HttpAiApplicationHandler 均走这条路径），按上游主机追加写入
+ * {dir}/{host}.jsonl。写文件由单独的后台线程完成，响应体读取线程只做入队；队列满时丢弃并计数。
+ * 只录制响应，不录制请求头（避免 API 密钥落盘）。
+ * </p>
+ *
+ * @author xiaodou V=>dddou117
+ * @version V1.0
+ * @since 2025/12/19
+ */
+@Slf4j
+@Component
+@Profile("replay-record")
+public class ReplayRecorder {
+
+    private static final int QUEUE_CAPACITY = 10_000;
+
+    private final ReplayProperties replayProperties;
+    private final ObjectMapper objectMapper;
+
+    private final BlockingQueue<Entry> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Map<String, BufferedWriter> writers = new HashMap<>();
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean running = true;
+    private Thread writerThread;
+
+    public ReplayRecorder(ReplayProperties replayProperties, ObjectMapper objectMapper) {
+        this.replayProperties = replayProperties;
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        Files.createDirectories(Path.of(replayProperties.getDir()));
+        writerThread = Thread.ofPlatform()
+            .name("replay-recorder")
+            .daemon(true)
+            .start(this::drain);
+        HttpClientUtil.setExchangeListener(this::onExchange);
+        log.info("上游响应录制已开启 - dir: {}", Path.of(replayProperties.getDir())
+            .toAbsolutePath());
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        HttpClientUtil.setExchangeListener(null);
+        running = false;
+        writerThread.join(TimeUnit.SECONDS.toMillis(5));
+        log.info("上游响应录制结束 - 录制: {}, 丢弃: {}", recorded.get(), dropped.get());
+    }
+
+    private void onExchange(String method, URI uri, HttpResponseData response, long latencyMs) {
+        ReplayRecording recording = new ReplayRecording();
+        recording.setMethod(method);
+        recording.setPath(uri.getRawQuery() == null ? uri.getRawPath() : uri.getRawPath() + "?" + uri.getRawQuery());
+        recording.setStatus(response.getStatusCode());
+        recording.setContentType(response.getHeaders() == null ? null : response.getHeaders()
+            .getOrDefault("content-type", response.getHeaders()
+                .get("Content-Type")));
+        recording.setBody(bodyText(response));
+        recording.setLatencyMs(latencyMs);
+        if (!queue.offer(new Entry(ReplayRecording.hostKey(uri), recording))) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * 响应体文本；不调用 getBody()，它会把 JSON 序列化结果回写到响应对象，改变执行器的输出
+     */
+    private String bodyText(HttpResponseData response) {
+        if (response.hasRawBody()) {
+            return response.getBody();
+        }
+        try {
+            return response.getBodyObject() == null ? "" : objectMapper.writeValueAsString(response.getBodyObject());
+        } catch (Exception e) {
+            return "";
+        }
+    }
+
+    private void drain() {
+        try {
+            while (running || !queue.isEmpty()) {
+                Entry entry = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (entry == null) {
+                    flushAll();
+                    continue;
+                }
+                write(entry);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                .interrupt();
+        } finally {
+            writers.values()
+                .forEach(writer -> {
+                    try {
+                        writer.close();
+                    } catch (IOException ignored) {
+                        // 关闭失败忽略
+                    }
+                });
+        }
+    }
+
+    private void write(Entry entry) {
+        try {
+            BufferedWriter writer = writers.get(entry.host);
+            if (writer == null) {
+                writer = Files.newBufferedWriter(Path.of(replayProperties.getDir(), entry.host + ".jsonl"),
+                    StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                writers.put(entry.host, writer);
+            }
+            writer.write(objectMapper.writeValueAsString(entry.recording));
+            writer.newLine();
+            recorded.incrementAndGet();
+        } catch (IOException e) {
+            log.warn("写入录制文件失败 - host: {}, error: {}", entry.host, e.getMessage());
+        }
+    }
+
+    private void flushAll() {
+        writers.values()
+            .forEach(writer -> {
+                try {
+                    writer.flush();
+                } catch (IOException e) {
+                    log.warn("刷新录制文件失败 - error: {}", e.getMessage());
+                }
+            });
+    }
+
+    private record Entry(String host, ReplayRecording recording) {
+    }
+}
@@ -0,0 +1,47 @@
+package com.xiaodou.aiapp.replay;
+
+import lombok.Data;
+
+import java.net.URI;
+
+/**
+ * 一条录制的上游响应（录制文件中的一行 JSON）
+ *
+ * @author xiaodou V=>dddou117
+ * @version V1.0
+ * @since 2025/12/19
+ */
+@Data
+public class ReplayRecording {
+
+    private String method;
+    private String path;         // 路径 + 查询串，不含主机
+    private int status;
+    private String contentType;
+    private String body;
+    private long latencyMs;
+
+    /**
+     * 录制文件名使用的主机标识（端口以下划线连接）
+     */
+    public static String hostKey(URI uri) {
+        return uri.getPort() < 0 ? uri.getHost() : uri.getHost() + "_" + uri.getPort();
+    }
+
+    /**
+     * 精确匹配键
+     */
+    public static String exactKey(String method, String path) {
+        return method.toUpperCase() + " " + path;
+    }
+
+    /**
+     * 模糊匹配键：末段路径替换为 *（taskId 等每次不同的资源 ID），忽略查询串
+     */
+    public static String templateKey(String method, String path) {
+        int query = path.indexOf('?');
+        String pathOnly = query < 0 ? path : path.substring(0, query);
+        int slash = pathOnly.lastIndexOf('/');
+        return method.toUpperCase() + " " + (slash < 0 ? pathOnly : pathOnly.substring(0, slash + 1)) + "*";
+    }
+}
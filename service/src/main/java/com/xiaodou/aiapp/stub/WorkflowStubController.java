@@ -0,0 +1,175 @@
+package com.xiaodou.aiapp.stub;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xiaodou.aiapp.HttpClientUtil;
+import com.xiaodou.aiapp.WorkflowCallbackSigner;
+import com.xiaodou.config.WorkflowProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 牛马网站工作流 API 本地桩服务（仅 workflow-stub profile 启用）
+ * <p>
+ * 模拟 /workflow/v2/run/{workflowId} 与 /task-record/result/{taskId} 两个接口：
+ * 任务在随机时长后结束，按 failureRate 随机失败；请求带 X-Callback-Url 时到期主动推送签名回调，
+ * 并按 callbackDropRate 随机丢弃回调，用于离线压测回调与兜底轮询两条路径。
+ * </p>
+ * 使用方式：以 workflow-stub profile 启动，workflow.base-url 指向
+ * http://localhost:9910/act/api/plugin/workflow-stub（见 application-workflow-stub.yml）。
+ *
+ * @author xiaodou V=>dddou117
+ * @version V1.0
+ * @since 2025/12/9
+ */
+@Slf4j
+@Profile("workflow-stub")
+@RestController
+@RequestMapping("/api/plugin/workflow-stub")
+@RequiredArgsConstructor
+public class WorkflowStubController {
+
+    private final WorkflowProperties workflowProperties;
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, StubTask> tasks = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService callbackScheduler = Executors.newSingleThreadScheduledExecutor(
+        Thread.ofPlatform()
+            .name("workflow-stub-callback")
+            .daemon(true)
+            .factory());
+
+    private final AtomicLong runCount = new AtomicLong();
+    private final AtomicLong queryCount = new AtomicLong();
+    private final AtomicLong callbackSent = new AtomicLong();
+    private final AtomicLong callbackDropped = new AtomicLong();
+
+    @PostMapping("/workflow/v2/run/{workflowId}")
+    public Map<String, Object> run(@PathVariable String workflowId,
+        @RequestHeader(value = WorkflowCallbackSigner.HEADER_CALLBACK_URL, required = false) String callbackUrl,
+        @RequestBody(required = false) Map<String, Object> params) {
+        runCount.incrementAndGet();
+        WorkflowProperties.Stub stub = workflowProperties.getStub();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        long latency = stub.getMinLatencyMs() + (stub.getMaxLatencyMs() > stub.getMinLatencyMs() ?
+            random.nextLong(stub.getMaxLatencyMs() - stub.getMinLatencyMs()) : 0);
+        int finalStatus = random.nextDouble() < stub.getFailureRate() ? 2 : 1;
+        StubTask task = new StubTask(UUID.randomUUID()
+            .toString(), workflowId, System.currentTimeMillis() + latency, finalStatus);
+        tasks.put(task.taskId, task);
+        // 结束 10 分钟后清理，避免长时间压测内存增长
+        callbackScheduler.schedule(() -> tasks.remove(task.taskId), latency + TimeUnit.MINUTES.toMillis(10),
+            TimeUnit.MILLISECONDS);
+
+        if (callbackUrl != null) {
+            if (random.nextDouble() < stub.getCallbackDropRate()) {
+                callbackDropped.incrementAndGet();
+            } else {
+                callbackScheduler.schedule(() -> sendCallback(callbackUrl, task), latency, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", task.taskId);
+        response.put("message", "任务提交成功");
+        return response;
+    }
+
+    @GetMapping("/task-record/result/{taskId}")
+    public Map<String, Object> query(@PathVariable String taskId) {
+        queryCount.incrementAndGet();
+        StubTask task = tasks.get(taskId);
+
+        Map<String, Object> response = new HashMap<>();
+        if (task == null) {
+            response.put("success", false);
+            response.put("message", "任务不存在");
+            return response;
+        }
+        response.put("success", true);
+        response.put("data", task.toResultData());
+        response.put("message", "查询成功");
+        return response;
+    }
+
+    @GetMapping("/stats")
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("tasks", tasks.size());
+        stats.put("runCount", runCount.get());
+        stats.put("queryCount", queryCount.get());
+        stats.put("callbackSent", callbackSent.get());
+        stats.put("callbackDropped", callbackDropped.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        callbackScheduler.shutdownNow();
+    }
+
+    /**
+     * 推送签名回调（异步发出，不占用调度线程）
+     */
+    private void sendCallback(String callbackUrl, StubTask task) {
+        try {
+            String body = objectMapper.writeValueAsString(task.toResultData());
+            long timestamp = System.currentTimeMillis();
+            Map<String, String> headers = new HashMap<>();
+            headers.put(WorkflowCallbackSigner.HEADER_TIMESTAMP, String.valueOf(timestamp));
+            headers.put(WorkflowCallbackSigner.HEADER_SIGNATURE,
+                WorkflowCallbackSigner.sign(workflowProperties.getCallback()
+                    .getSecret(), timestamp, body));
+            HttpClientUtil.sendPostFullAsync(callbackUrl, headers, body)
+                .whenComplete((response, error) -> {
+                    if (error != null) {
+                        log.warn("桩服务回调失败 - taskId: {}, error: {}", task.taskId, error.getMessage());
+                    } else {
+                        callbackSent.incrementAndGet();
+                    }
+                });
+        } catch (Exception e) {
+            log.warn("桩服务回调失败 - taskId: {}, error: {}", task.taskId, e.getMessage());
+        }
+    }
+
+    private static final class StubTask {
+        private final String taskId;
+        private final String workflowId;
+        private final long finishAt;
+        private final int finalStatus;
+
+        private StubTask(String taskId, String workflowId, long finishAt, int finalStatus) {
+            this.taskId = taskId;
+            this.workflowId = workflowId;
+            this.finishAt = finishAt;
+            this.finalStatus = finalStatus;
+        }
+
+        private Map<String, Object> toResultData() {
+            boolean finished = System.currentTimeMillis() >= finishAt;
+            Map<String, Object> data = new HashMap<>();
+            data.put("taskId", taskId);
+            data.put("status", finished ? finalStatus : 3);
+            if (finished) {
+                data.put("data", Map.of("workflowId", workflowId, "output", "stub output for " + taskId));
+                data.put("message", finalStatus == 1 ? "执行成功" : "桩服务模拟失败");
+            }
+            return data;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.xiaodou.auth.config;
 import com.xiaodou.auth.handler.JwtAccessDeniedHandler;
 import com.xiaodou.auth.filter.JwtAuthenticationEntryPoint;
 import com.xiaodou.auth.filter.JwtAuthenticationFilter;
+import jakarta.servlet.DispatcherType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
@@ -108,6 +109,11 @@ public class SecurityConfig {
             // 配置请求授权规则
             .authorizeHttpRequests(auth -> auth
 
+                // 异步请求（返回 CompletableFuture）完成后的 ASYNC 分派不再经过 JWT 过滤器，
+                // 原始请求已完成认证，直接放行
+                .dispatcherTypeMatchers(DispatcherType.ASYNC)
+                .permitAll()
+
                 // 使用统一的白名单配置（已包含OPTIONS请求）
                 .requestMatchers(publicEndpoints)
                 .permitAll()
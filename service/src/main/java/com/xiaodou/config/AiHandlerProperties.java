@@ -0,0 +1,102 @@
+package com.xiaodou.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * AI 应用执行器隔离配置
+ * <p>
+ * 每个 handlerBean 拥有独立的并发上限与等待队列，某个上游变慢时只会占满自己的额度，
+ * 不会拖垮其他执行器。未单独配置的执行器使用 defaults。
+ * 另含相同请求合并（coalesce）与批量执行（batch）配置。
+ * </p>
+ *
+ * @author xiaodou V=>dddou117
+ * @version V1.0
+ * @since 2025/12/12
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "aiapp.handler")
+public class AiHandlerProperties {
+
+    /**
+     * 默认隔离配置
+     */
+    private Bulkhead defaults = new Bulkhead();
+
+    /**
+     * 按 handlerBean 覆盖的隔离配置，如 aiapp.handler.bulkheads.tikHubHandler.max-concurrent=20
+     */
+    private Map<String, Bulkhead> bulkheads = new HashMap<>();
+
+    /**
+     * 相同请求合并配置
+     */
+    private Coalesce coalesce = new Coalesce();
+
+    /**
+     * 批量执行配置
+     */
+    private Batch batch = new Batch();
+
+    /**
+     * 获取指定执行器的隔离配置
+     */
+    public Bulkhead resolve(String handlerBean) {
+        return bulkheads.getOrDefault(handlerBean, defaults);
+    }
+
+    @Data
+    public static class Bulkhead {
+        /**
+         * 最大并发执行数
+         */
+        private int maxConcurrent = 50;
+
+        /**
+         * 等待队列长度，队列满时立即拒绝
+         */
+        private int maxWaiting = 100;
+
+        /**
+         * 排队最长等待时间（毫秒），超时拒绝
+         */
+        private long maxWaitMs = 3_000;
+    }
+
+    @Data
+    public static class Coalesce {
+        /**
+         * 是否合并相同请求（同一应用 + 相同校验后参数，非确定性应用还需同一用户）
+         */
+        private boolean enabled = true;
+
+        /**
+         * 请求成功完成后继续复用其结果的时长（毫秒），用于吸收连点重复提交
+         */
+        private long windowMs = 3_000;
+    }
+
+    @Data
+    public static class Batch {
+        /**
+         * 单次批量执行的最大条数
+         */
+        private int maxItems = 100;
+
+        /**
+         * 单个批次的最大并发数（请求指定的并发数不能超过该值）
+         */
+        private int maxConcurrency = 5;
+
+        /**
+         * 请求未指定并发数时的默认值
+         */
+        private int defaultConcurrency = 3;
+    }
+}
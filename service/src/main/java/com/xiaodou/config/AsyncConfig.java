@@ -1,5 +1,8 @@
 package com.xiaodou.config;
 
+import com.xiaodou.aiapp.FairTaskScheduler;
+import com.xiaodou.aiapp.UserLaneResolver;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
@@ -42,28 +45,14 @@ public class AsyncConfig {
     }
 
     /**
-     * 工作流异步执行专用线程池
+     * 工作流异步执行专用调度器（轮询由 WorkflowPollScheduler 负责，此处仅执行任务结束后的记录更新等短任务）
+     * <p>
+     * 按用户公平调度：单个用户批量提交不会阻塞其他用户，付费租户可配置更高权重的通道。
+     * </p>
      */
     @Bean("workflowTaskExecutor")
-    public Executor workflowTaskExecutor() {
-        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        // 核心线程数
-        executor.setCorePoolSize(10);
-        // 最大线程数
-        executor.setMaxPoolSize(50);
-        // 队列容量
-        executor.setQueueCapacity(200);
-        // 线程活跃时间（秒）
-        executor.setKeepAliveSeconds(120);
-        // 线程名前缀
-        executor.setThreadNamePrefix("workflow-async-");
-        // 拒绝策略：由调用线程处理（保证任务不丢失）
-        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
-        // 等待所有任务结束后再关闭线程池
-        executor.setWaitForTasksToCompleteOnShutdown(true);
-        // 等待时间
-        executor.setAwaitTerminationSeconds(300);
-        executor.initialize();
-        return executor;
+    public FairTaskScheduler workflowTaskExecutor(FairSchedulerProperties fairSchedulerProperties,
+        UserLaneResolver userLaneResolver, MeterRegistry meterRegistry) {
+        return new FairTaskScheduler(fairSchedulerProperties, userLaneResolver, meterRegistry, "workflow-async-");
     }
-}
\ No newline at end of file
+}
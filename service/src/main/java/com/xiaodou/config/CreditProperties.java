@@ -0,0 +1,46 @@
+package com.xiaodou.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 付费AI应用积分账本配置
+ * <p>
+ * 余额与预扣在 Redis 中原子完成，流水先追加到 Redis 列表，再由定时任务批量写入 MySQL（credit_ledger）。
+ * </p>
+ *
+ * @author xiaodou V=>dddou117
+ * @version V1.0
+ * @since 2025/12/16
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "aiapp.credit")
+public class CreditProperties {
+
+    /**
+     * 是否对 price > 0 的应用扣积分
+     */
+    private boolean enabled = false;
+
+    /**
+     * 单次写入 MySQL 的流水条数
+     */
+    private int flushBatchSize = 1_000;
+
+    /**
+     * 单次定时任务最多写入的批数（超出留给下一轮）
+     */
+    private int flushMaxBatches = 20;
+
+    /**
+     * 预扣未绑定记录的最长保留时间（毫秒），超时视为执行方已丢失，自动退回
+     */
+    private long unboundHoldTimeoutMs = 30 * 60_000L;
+
+    /**
+     * 对账时是否以 MySQL 流水为准修正 Redis 余额
+     */
+    private boolean reconcileRepair = false;
+}
@@ -0,0 +1,67 @@
+package com.xiaodou.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 工作流任务公平调度配置
+ * <p>
+ * 任务按 userId 排队，用户之间按加权轮转（DRR）出队；用户所属租户决定其通道（lane），
+ * 通道权重即该通道下每个用户每轮可出队的任务数，付费租户可配置更高权重的通道。
+ * </p>
+ *
+ * @author xiaodou V=>dddou117
+ * @version V1.0
+ * @since 2025/12/15
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "aiapp.scheduler")
+public class FairSchedulerProperties {
+
+    /**
+     * 工作线程数
+     */
+    private int workers = 10;
+
+    /**
+     * 全局排队上限，超出时由提交线程直接执行（保证任务不丢失）
+     */
+    private int maxQueued = 2_000;
+
+    /**
+     * 单个用户同时执行的任务上限
+     */
+    private int perUserMaxInFlight = 4;
+
+    /**
+     * 关闭时等待队列清空的最长时间（秒）
+     */
+    private int awaitTerminationSeconds = 300;
+
+    /**
+     * 工作流作业监听的预取条数：预取的作业交给调度器按用户排队，越大跨用户重排的窗口越大
+     */
+    private int jobPrefetch = 50;
+
+    /**
+     * 通道权重，未配置的通道权重为 1
+     */
+    private Map<String, Integer> laneWeights = new HashMap<>(Map.of("default", 1, "paid", 4, "system", 2));
+
+    /**
+     * 租户 -> 通道，未配置的租户使用 default 通道
+     */
+    private Map<String, String> tenantLanes = new HashMap<>();
+
+    /**
+     * 获取通道权重
+     */
+    public int weightOf(String lane) {
+        return Math.max(1, laneWeights.getOrDefault(lane, 1));
+    }
+}
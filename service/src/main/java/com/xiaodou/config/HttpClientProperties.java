@@ -0,0 +1,39 @@
+package com.xiaodou.config;
+
+import com.xiaodou.aiapp.HttpClientUtil;
+import jakarta.annotation.PostConstruct;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 出站 HTTP 客户端配置（作用于 {@link HttpClientUtil}）
+ *
+ * @author xiaodou V=>dddou117
+ * @version V1.0
+ * @since 2025/12/13
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "aiapp.http")
+public class HttpClientProperties {
+
+    /**
+     * 单个响应体最大字节数，超出时请求失败（默认 10MB）
+     */
+    private long maxResponseBytes = HttpClientUtil.DEFAULT_MAX_RESPONSE_BYTES;
+
+    /**
+     * 单次请求默认超时（毫秒），带执行时限的请求取剩余时限与该值中较小者
+     */
+    private long requestTimeoutMs = HttpClientUtil.DEFAULT_REQUEST_TIMEOUT_MS;
+
+    /**
+     * 绑定完成后应用到静态工具类
+     */
+    @PostConstruct
+    public void apply() {
+        HttpClientUtil.setMaxResponseBytes(maxResponseBytes);
+        HttpClientUtil.setRequestTimeoutMs(requestTimeoutMs);
+    }
+}
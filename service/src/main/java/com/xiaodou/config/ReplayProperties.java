@@ -0,0 +1,75 @@
+package com.xiaodou.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 上游录制/回放配置（仅 replay-record、replay profile 使用，用于离线压测）
+ *
+ * @author xiaodou V=>dddou117
+ * @version V1.0
+ * @since 2025/12/19
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "aiapp.replay")
+public class ReplayProperties {
+
+    /**
+     * 录制文件目录，每个上游主机一个 {host}.jsonl 文件
+     */
+    private String dir = "replay-data";
+
+    /**
+     * 本地回放服务地址，回放时所有上游请求改写到 {baseUrl}/{host}/{path}
+     */
+    private String baseUrl = "http://localhost:9910/act/api/plugin/replay";
+
+    /**
+     * 回放延迟分布
+     */
+    private Latency latency = new Latency();
+
+    /**
+     * 注入错误的比例（0~1），命中时返回 errorStatus
+     */
+    private double errorRate = 0;
+
+    /**
+     * 注入错误的状态码
+     */
+    private int errorStatus = 503;
+
+    @Data
+    public static class Latency {
+        /**
+         * 分布：RECORDED（按录制时的实际耗时）、FIXED、UNIFORM、LOG_NORMAL
+         */
+        private Distribution distribution = Distribution.RECORDED;
+
+        /**
+         * FIXED 的延迟；UNIFORM 的下限
+         */
+        private long minMs = 50;
+
+        /**
+         * UNIFORM 的上限
+         */
+        private long maxMs = 500;
+
+        /**
+         * LOG_NORMAL 的中位数
+         */
+        private long medianMs = 200;
+
+        /**
+         * LOG_NORMAL 的 P99
+         */
+        private long p99Ms = 2_000;
+    }
+
+    public enum Distribution {
+        RECORDED, FIXED, UNIFORM, LOG_NORMAL
+    }
+}
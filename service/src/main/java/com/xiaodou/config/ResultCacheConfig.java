@@ -0,0 +1,28 @@
+package com.xiaodou.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xiaodou.aiapp.cache.TwoTierResultCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.RedisTemplate;
+
+/**
+ * AI 应用结果缓存配置
+ *
+ * @author xiaodou V=>dddou117
+ * @version V1.0
+ * @since 2025/12/13
+ */
+@Configuration
+public class ResultCacheConfig {
+
+    /**
+     * TikHub 响应缓存（Redis key 前缀 tikHub:response:）
+     */
+    @Bean
+    public TwoTierResultCache tikHubResultCache(ResultCacheProperties properties,
+        RedisTemplate<String, Object> redisTemplate, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        return new TwoTierResultCache("tikHub", properties.getTikHub(), redisTemplate, objectMapper, meterRegistry);
+    }
+}
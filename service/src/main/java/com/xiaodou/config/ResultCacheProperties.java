@@ -0,0 +1,81 @@
+package com.xiaodou.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * AI 应用结果缓存配置（本地 Caffeine L1 + Redis L2）
+ *
+ * @author xiaodou V=>dddou117
+ * @version V1.0
+ * @since 2025/12/13
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "aiapp.cache")
+public class ResultCacheProperties {
+
+    /**
+     * TikHub 响应缓存
+     */
+    private Spec tikHub = new Spec();
+
+    @Data
+    public static class Spec {
+        /**
+         * Redis 中的过期时间（毫秒），默认 12 小时
+         */
+        private long ttlMs = 12 * 60 * 60 * 1000L;
+
+        /**
+         * 软过期时间（毫秒），需小于 ttlMs：超过后仍返回旧值，同时后台刷新一次
+         */
+        private long softTtlMs = 10 * 60 * 60 * 1000L;
+
+        /**
+         * 本地缓存最大条目数
+         */
+        private long localMaxSize = 10_000;
+
+        /**
+         * 本地缓存过期时间（毫秒）
+         */
+        private long localTtlMs = 10 * 60 * 1000L;
+
+        /**
+         * 回源租约时长（毫秒）：同一 key 集群内只有持有租约的节点回源
+         */
+        private long leaseMs = 30_000;
+
+        /**
+         * 未拿到租约时等待其他节点写入结果的最长时间（毫秒），超时后自行回源
+         */
+        private long peerWaitMs = 15_000;
+
+        /**
+         * 等待其他节点时轮询 Redis 的初始间隔（毫秒），之后指数退避
+         */
+        private long peerPollIntervalMs = 100;
+
+        /**
+         * 序列化后超过该字节数才压缩（gzip）
+         */
+        private int compressMinBytes = 1024;
+
+        /**
+         * 提前刷新的热点 key 数量（按访问频率取前 N 个，0 表示关闭）
+         */
+        private int refreshAheadTopN = 100;
+
+        /**
+         * 提前刷新窗口（毫秒）：热点 key 距软过期不足该时长时提前刷新
+         */
+        private long refreshAheadWindowMs = 30 * 60 * 1000L;
+
+        /**
+         * 热度跟踪的 key 数量上限
+         */
+        private int trackedKeys = 5_000;
+    }
+}
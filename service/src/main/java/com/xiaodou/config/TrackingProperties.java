@@ -0,0 +1,150 @@
+package com.xiaodou.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 数据埋点配置
+ *
+ * @author xiaodou V=>dddou117
+ * @version V1.0
+ * @since 2025/12/19
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "tracking")
+public class TrackingProperties {
+
+    /**
+     * 埋点队列消费者
+     */
+    private Consumer consumer = new Consumer();
+
+    /**
+     * 批量上报接口
+     */
+    private Ingest ingest = new Ingest();
+
+    /**
+     * 上报接口到 Broker 的异步投递
+     */
+    private Publisher publisher = new Publisher();
+
+    /**
+     * Broker 不可用时的本地暂存
+     */
+    private Spool spool = new Spool();
+
+    @Data
+    public static class Consumer {
+        /**
+         * 单批最多消息数，凑满即写入（同时作为 prefetch）
+         */
+        private int batchSize = 500;
+
+        /**
+         * 凑批等待时间，超时后有多少写多少
+         */
+        private long receiveTimeoutMs = 200;
+
+        /**
+         * 单条 INSERT 的最大行数（批量上报的消息会展开成多行）
+         */
+        private int maxRowsPerInsert = 500;
+
+        /**
+         * 暂时性故障（数据库不可用等）后重新入队前的等待时间，连续失败时逐次翻倍
+         */
+        private long retryBackoffMs = 1_000;
+
+        /**
+         * 重新入队前等待时间的上限
+         */
+        private long maxRetryBackoffMs = 30_000;
+    }
+
+    @Data
+    public static class Ingest {
+        /**
+         * 单次批量上报的事件数上限
+         */
+        private int maxBatchEvents = 300;
+
+        /**
+         * 请求体（解压后）字节数上限
+         */
+        private int maxBodyBytes = 1024 * 1024;
+
+        /**
+         * 客户端时间超前服务端的容忍上限，超出则以服务端接收时间为准
+         */
+        private long maxClockSkewMs = 5 * 60 * 1000L;
+
+        /**
+         * 客户端时间的最大滞后（离线缓存后补报），超出则以服务端接收时间为准
+         */
+        private long maxEventAgeMs = 7 * 24 * 3600 * 1000L;
+    }
+
+    @Data
+    public static class Publisher {
+        /**
+         * 投递缓冲容量（向上取整为 2 的幂），满了直接丢弃
+         */
+        private int bufferSize = 16_384;
+
+        /**
+         * 合并为一条消息的最大事件数
+         */
+        private int maxBatch = 200;
+
+        /**
+         * 凑批等待时间
+         */
+        private long lingerMs = 20;
+
+        /**
+         * 未获发布确认的批次上限，达到后暂停投递（缓冲继续堆积）
+         */
+        private int maxInFlight = 32;
+
+        /**
+         * 等待发布确认的上限，超时的批次写入本地暂存
+         */
+        private long confirmTimeoutMs = 5_000;
+
+        /**
+         * 发送异常后暂停直接投递的时长，期间的批次直接写入本地暂存
+         */
+        private long retryBackoffMs = 1_000;
+    }
+
+    @Data
+    public static class Spool {
+        /**
+         * 是否启用；关闭时投递失败的批次直接丢弃
+         */
+        private boolean enabled = true;
+
+        /**
+         * 暂存目录
+         */
+        private String dir = "tracking-spool";
+
+        /**
+         * 单个段文件大小
+         */
+        private int segmentBytes = 16 * 1024 * 1024;
+
+        /**
+         * 暂存总大小上限，超出后丢弃
+         */
+        private long maxBytes = 512L * 1024 * 1024;
+
+        /**
+         * 暂存为空或重放失败后的检查间隔
+         */
+        private long replayIntervalMs = 1_000;
+    }
+}
@@ -0,0 +1,130 @@
+package com.xiaodou.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 牛马网站工作流配置
+ *
+ * @author xiaodou V=>dddou117
+ * @version V1.0
+ * @since 2025/12/9
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "workflow")
+public class WorkflowProperties {
+
+    /**
+     * 牛马网站 API 基础地址（压测时可指向本地桩服务）
+     */
+    private String baseUrl = "https://team-agent.luoxiaodou.cn/ai-team/api";
+
+    /**
+     * 工作流节点池（多个上游 API 地址）；为空时只使用 baseUrl
+     */
+    private List<String> endpoints = new ArrayList<>();
+
+    /**
+     * 多节点路由与熔断配置
+     */
+    private Routing routing = new Routing();
+
+    /**
+     * 同步工作流默认时限（毫秒），应用未配置 timeoutMs 时使用；超出后转为后台执行，0 表示不限制
+     */
+    private long defaultSyncBudgetMs = 60_000;
+
+    /**
+     * 后台调用工作流上游（运行工作流、未指定时限的结果查询）的时限（毫秒），包含读取响应体
+     */
+    private long runBudgetMs = 30_000;
+
+    /**
+     * 任务完成回调配置
+     */
+    private Callback callback = new Callback();
+
+    /**
+     * 本地桩服务配置（仅 workflow-stub profile 生效，用于离线压测）
+     */
+    private Stub stub = new Stub();
+
+    @Data
+    public static class Callback {
+        /**
+         * 是否启用回调；启用后轮询退化为兜底，间隔拉长为 fallbackPollIntervalMs
+         */
+        private boolean enabled = false;
+
+        /**
+         * 本服务对外暴露的回调地址，运行工作流时通过 X-Callback-Url 请求头告知上游
+         */
+        private String url;
+
+        /**
+         * 回调签名密钥（HMAC-SHA256）
+         */
+        private String secret;
+
+        /**
+         * 回调时间戳允许的最大偏差（毫秒），用于防重放
+         */
+        private long maxSkewMs = 300_000;
+
+        /**
+         * 启用回调时兜底轮询的间隔（毫秒）
+         */
+        private long fallbackPollIntervalMs = 15_000;
+    }
+
+    @Data
+    public static class Routing {
+        /**
+         * 延迟 EWMA 的衰减时间常数（毫秒），越小越偏重最近的请求
+         */
+        private long decayMs = 10_000;
+
+        /**
+         * 连续失败多少次后熔断（剔除）该节点
+         */
+        private int failureThreshold = 5;
+
+        /**
+         * 熔断时长（毫秒），到期后放行一个探测请求，成功即恢复
+         */
+        private long openMs = 30_000;
+
+        /**
+         * taskId 与受理节点绑定关系的保留时长（小时），查询结果时据此路由回原节点
+         */
+        private long pinTtlHours = 48;
+    }
+
+    @Data
+    public static class Stub {
+        /**
+         * 任务最短执行时间（毫秒）
+         */
+        private long minLatencyMs = 2_000;
+
+        /**
+         * 任务最长执行时间（毫秒）
+         */
+        private long maxLatencyMs = 20_000;
+
+        /**
+         * 任务失败比例（0~1）
+         */
+        private double failureRate = 0.05;
+
+        /**
+         * 故意丢弃回调的比例（0~1），用于验证兜底轮询
+         */
+        private double callbackDropRate = 0.1;
+    }
+}
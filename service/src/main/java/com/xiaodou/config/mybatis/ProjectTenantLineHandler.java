@@ -32,7 +32,8 @@ public class ProjectTenantLineHandler implements TenantLineHandler {
         "role_permission",
         "user_role",
         "sys_setting",
-        "wechat_user"
+        "wechat_user",
+        "credit_ledger"             // 积分流水按用户记账，无 tenant_id 列
         // 注意：我们新创建的 task, task_participation, task_target_user, ai_app_type
         // 都不在此列表中，因此它们会自动应用租户过滤。
     );
@@ -1,14 +1,29 @@
 package com.xiaodou.config.rabbitmq;
 
+import com.xiaodou.config.TrackingProperties;
+import com.xiaodou.tracking.TrackingMessageConverter;
+import org.springframework.amqp.core.AcknowledgeMode;
 import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
 import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.core.TopicExchange;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 /**
  * 数据埋点相关的 RabbitMQ 配置
+ * <p>
+ * 埋点消费者使用批量监听容器：凑满 batchSize 条或等待 receiveTimeoutMs 后整批交给监听器，
+ * 由监听器一次多行写入并批量确认（见 TrackingEventListener）。
+ * </p>
+ * <p>
+ * 埋点消息使用 {@link TrackingMessageConverter}（Smile）编码，该转换器同时作为全局转换器应用到
+ * RabbitTemplate 与所有监听容器，非埋点消息仍按 Java 序列化处理。
+ * </p>
  */
 @Configuration
 public class TrackingRabbitMQConfig {
@@ -16,6 +31,7 @@ public class TrackingRabbitMQConfig {
     public static final String EXCHANGE_NAME = "tracking.exchange";
     public static final String QUEUE_NAME = "tracking.event.queue";
     public static final String ROUTING_KEY = "tracking.event.record";
+    public static final String BATCH_CONTAINER_FACTORY = "trackingBatchContainerFactory";
 
     @Bean
     public TopicExchange trackingExchange() {
@@ -31,4 +47,32 @@ public class TrackingRabbitMQConfig {
     public Binding trackingBinding() {
         return BindingBuilder.bind(trackingQueue()).to(trackingExchange()).with(ROUTING_KEY);
     }
+
+    /**
+     * 全局消息转换器：埋点消息编码为 Smile，其余消息及存量 Java 序列化消息按原方式处理
+     */
+    @Bean
+    public MessageConverter rabbitMessageConverter() {
+        return new TrackingMessageConverter();
+    }
+
+    /**
+     * 埋点批量监听容器，其余配置（并发数等）沿用 spring.rabbitmq.listener.simple
+     */
+    @Bean(BATCH_CONTAINER_FACTORY)
+    public SimpleRabbitListenerContainerFactory trackingBatchContainerFactory(
+        SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory,
+        TrackingProperties trackingProperties) {
+        TrackingProperties.Consumer consumer = trackingProperties.getConsumer();
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(consumer.getBatchSize());
+        factory.setReceiveTimeout(consumer.getReceiveTimeoutMs());
+        // prefetch 不小于批大小，否则凑不满一批
+        factory.setPrefetchCount(consumer.getBatchSize());
+        return factory;
+    }
 }
@@ -0,0 +1,88 @@
+package com.xiaodou.config.rabbitmq;
+
+import com.xiaodou.config.FairSchedulerProperties;
+import org.springframework.amqp.core.AcknowledgeMode;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.DirectExchange;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.amqp.core.TopicExchange;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 工作流任务队列相关的 RabbitMQ 配置
+ * <p>
+ * 异步工作流的运行（RUN）与结果轮询（POLL）作业投递到持久化队列，由集群中任意节点消费；
+ * 无法处理的消息转入死信队列，便于排查。
+ * </p>
+ * <p>
+ * 作业监听容器预取 jobPrefetch 条，监听器把预取的作业交给公平调度器按用户排队处理后再确认，
+ * 单个用户集中提交的作业不会按 FIFO 挡住其他用户。
+ * </p>
+ */
+@Configuration
+public class WorkflowJobRabbitMQConfig {
+
+    public static final String EXCHANGE_NAME = "workflow.job.exchange";
+    public static final String QUEUE_NAME = "workflow.job.queue";
+    public static final String ROUTING_KEY = "workflow.job.dispatch";
+
+    public static final String DEAD_LETTER_EXCHANGE_NAME = "workflow.job.dlx";
+    public static final String DEAD_LETTER_QUEUE_NAME = "workflow.job.dead";
+    public static final String DEAD_LETTER_ROUTING_KEY = "workflow.job.dead";
+    public static final String JOB_CONTAINER_FACTORY = "workflowJobContainerFactory";
+
+    @Bean
+    public TopicExchange workflowJobExchange() {
+        return new TopicExchange(EXCHANGE_NAME, true, false);
+    }
+
+    @Bean
+    public Queue workflowJobQueue() {
+        return QueueBuilder.durable(QUEUE_NAME)
+            .deadLetterExchange(DEAD_LETTER_EXCHANGE_NAME)
+            .deadLetterRoutingKey(DEAD_LETTER_ROUTING_KEY)
+            .build();
+    }
+
+    @Bean
+    public Binding workflowJobBinding() {
+        return BindingBuilder.bind(workflowJobQueue()).to(workflowJobExchange()).with(ROUTING_KEY);
+    }
+
+    @Bean
+    public DirectExchange workflowJobDeadLetterExchange() {
+        return new DirectExchange(DEAD_LETTER_EXCHANGE_NAME, true, false);
+    }
+
+    @Bean
+    public Queue workflowJobDeadLetterQueue() {
+        return new Queue(DEAD_LETTER_QUEUE_NAME, true);
+    }
+
+    @Bean
+    public Binding workflowJobDeadLetterBinding() {
+        return BindingBuilder.bind(workflowJobDeadLetterQueue()).to(workflowJobDeadLetterExchange())
+            .with(DEAD_LETTER_ROUTING_KEY);
+    }
+
+    /**
+     * 工作流作业监听容器，其余配置（并发数等）沿用 spring.rabbitmq.listener.simple
+     */
+    @Bean(JOB_CONTAINER_FACTORY)
+    public SimpleRabbitListenerContainerFactory workflowJobContainerFactory(
+        SimpleRabbitListenerContainerFactoryConfigurer configurer, ConnectionFactory connectionFactory,
+        FairSchedulerProperties fairSchedulerProperties) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        // 预取的作业在公平调度器中排队，确认在处理完成后进行
+        factory.setPrefetchCount(Math.max(1, fairSchedulerProperties.getJobPrefetch()));
+        return factory;
+    }
+}
@@ -3,7 +3,9 @@ package com.xiaodou.controller;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.xiaodou.aiapp.AiAppExecutor;
+import com.xiaodou.aiapp.AppSchemaRegistry;
 import com.xiaodou.auth.util.UserContextHolder;
+import com.xiaodou.exception.AppException;
 import com.xiaodou.model.AiApplication;
 import com.xiaodou.model.AiApplicationUpdateDTO;
 import com.xiaodou.model.vo.AiApplicationVO;
@@ -15,6 +17,7 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * <p>
@@ -31,6 +34,7 @@ import java.util.Map;
 public class AiApplicationController {
     private final AiApplicationService aiApplicationService;
     private final AiAppExecutor aiAppExecutor;
+    private final AppSchemaRegistry appSchemaRegistry;
 
     /**
      * 分页查询AI应用列表（带筛选条件）
@@ -111,8 +115,11 @@ public class AiApplicationController {
         application.setEnabled(app.getEnabled());
         application.setTypeId(app.getTypeId());
         application.setTimeoutMs(app.getTimeoutMs());
+        // 置空后由自动填充写入当前时间，其他节点据此发现 Schema 变更并重新编译
+        application.setUpdatedAt(null);
 
         aiApplicationService.updateById(application);
+        appSchemaRegistry.invalidate(application.getId());
         return Result.success();
     }
 
@@ -127,6 +134,7 @@ public class AiApplicationController {
     public Result<Void> delete(@PathVariable Long id) {
         log.info("delete app:{}", id);
         aiApplicationService.removeById(id);
+        appSchemaRegistry.invalidate(String.valueOf(id));
         return Result.success();
     }
 
@@ -138,22 +146,27 @@ public class AiApplicationController {
      * @return 执行结果
      */
     @PostMapping({"/v1/run/{appId}"})
-    public Result<Object> runAiApp(@PathVariable Long appId, @RequestBody Map<String, Object> params) {
-        try {
-            String userId = UserContextHolder.getUserId(); // 从上下文获取
+    public CompletableFuture<Result<Object>> runAiApp(@PathVariable Long appId, @RequestBody Map<String, Object> params) {
+        String userId = UserContextHolder.getUserId(); // 从上下文获取
 
-            AiApplication application = aiApplicationService.getById(appId);
-            if (application == null) {
-                log.error("run app id {} not found", appId);
-                return Result.fail("app not found");
-            }
-
-            Object result = aiAppExecutor.execute(userId, appId, params);
-
-            return Result.success(result);
-        } catch (Exception e) {
-            log.error("执行 AI 应用失败，appId={}, userId={}", appId, UserContextHolder.getUserId(), e);
-            return Result.fail("执行失败: " + e.getMessage());
+        AiApplication application = aiApplicationService.getById(appId);
+        if (application == null) {
+            log.error("run app id {} not found", appId);
+            return CompletableFuture.completedFuture(Result.fail("app not found"));
         }
+
+        return aiAppExecutor.executeAsync(userId, appId, params)
+            .handle((result, error) -> {
+                if (error == null) {
+                    return Result.success(result);
+                }
+                Throwable cause = AiAppExecutor.unwrap(error);
+                if (cause instanceof AppException appException) {
+                    log.warn("执行AI应用被拒绝 - appId: {}, error: {}", appId, appException.getMessage());
+                    return appException.<Object>toResult();
+                }
+                log.error("执行 AI 应用失败，appId={}, userId={}", appId, userId, cause);
+                return Result.fail("执行失败: " + cause.getMessage());
+            });
     }
 }
@@ -1,11 +1,16 @@
 package com.xiaodou.controller;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.xiaodou.aiapp.AiAppBatchExecutor;
 import com.xiaodou.aiapp.AiAppExecutor;
+import com.xiaodou.aiapp.AppSchemaRegistry;
 import com.xiaodou.auth.util.UserContextHolder;
+import com.xiaodou.exception.AppException;
 import com.xiaodou.log.annotation.SystemLog;
 import com.xiaodou.model.AiAppType;
 import com.xiaodou.model.AiApplication;
+import com.xiaodou.model.dto.BatchExecuteDTO;
+import com.xiaodou.model.vo.BatchExecutionVO;
 import com.xiaodou.model.vo.AiAppTypeVO;
 import com.xiaodou.model.vo.AiApplicationVO;
 import com.xiaodou.result.Result;
@@ -20,6 +25,7 @@ import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 /**
@@ -28,7 +34,7 @@ import java.util.stream.Collectors;
  * 提供AI工坊功能的相关接口：
  * 1. 获取AI应用分类列表
  * 2. 根据分类获取AI应用列表
- * 3. 执行AI应用生成内容
+ * 3. 执行AI应用生成内容（单次 / 批量）
  * </p>
  *
  * @author luoxiaodou
@@ -44,6 +50,8 @@ public class AiWorkshopController {
     private final AiAppTypeService aiAppTypeService;
     private final AiApplicationService aiApplicationService;
     private final AiAppExecutor aiAppExecutor;
+    private final AiAppBatchExecutor aiAppBatchExecutor;
+    private final AppSchemaRegistry appSchemaRegistry;
 
     /**
      * 获取AI应用分类列表
@@ -118,13 +126,21 @@ public class AiWorkshopController {
             return Result.fail("应用不存在");
         }
 
-        return Result.success(AiApplicationVO.fromEntity(app));
+        AiApplicationVO vo = AiApplicationVO.fromEntity(app);
+        try {
+            vo.setParamFields(appSchemaRegistry.get(app)
+                .getMetadata());
+        } catch (IllegalArgumentException e) {
+            log.warn("应用入参 Schema 无法解析 - appId: {}, error: {}", appId, e.getMessage());
+        }
+        return Result.success(vo);
     }
 
     /**
      * 执行AI应用（生成内容）
      * <p>
-     * 调用指定的AI应用生成内容
+     * 调用指定的AI应用生成内容。返回 CompletableFuture，请求以异步方式处理，
+     * 等待上游 AI 服务期间 Tomcat 线程被释放，可继续服务其他请求。
      * </p>
      *
      * @param appId  AI应用ID
@@ -134,33 +150,99 @@ public class AiWorkshopController {
     @PostMapping("/execute/{appId}")
     @SystemLog(module = "AI工坊", action = "执行应用", recordResponse = true)
     @Operation(summary = "执行AI应用", description = "调用AI应用生成内容")
-    public Result<Object> execute(
+    public CompletableFuture<Result<Object>> execute(
         @Parameter(description = "应用ID") @PathVariable Long appId,
         @RequestBody Map<String, Object> params) {
         log.info("执行AI应用 - appId: {}, params: {}", appId, params);
 
-        try {
-            String userId = UserContextHolder.getUserId();
+        String userId = UserContextHolder.getUserId();
 
-            AiApplication application = aiApplicationService.getById(appId);
-            if (application == null) {
-                return Result.fail("应用不存在");
-            }
+        AiApplication application = aiApplicationService.getById(appId);
+        if (application == null) {
+            return CompletableFuture.completedFuture(Result.fail("应用不存在"));
+        }
 
-            if (application.getEnabled() != 1) {
-                return Result.fail("该应用已禁用");
-            }
+        if (application.getEnabled() != 1) {
+            return CompletableFuture.completedFuture(Result.fail("该应用已禁用"));
+        }
 
-            Object result = aiAppExecutor.execute(userId, appId, params);
-            return Result.success(result);
+        return aiAppExecutor.executeAsync(userId, appId, params)
+            .handle((result, error) -> {
+                if (error == null) {
+                    return Result.success(result);
+                }
+                Throwable cause = AiAppExecutor.unwrap(error);
+                if (cause instanceof AppException appException) {
+                    log.warn("执行AI应用被拒绝 - appId: {}, error: {}", appId, appException.getMessage());
+                    return appException.<Object>toResult();
+                }
+                if (cause instanceof IllegalArgumentException) {
+                    log.warn("参数校验失败 - appId: {}, error: {}", appId, cause.getMessage());
+                    return Result.fail("参数错误: " + cause.getMessage());
+                }
+                log.error("执行AI应用失败 - appId: {}", appId, cause);
+                return Result.fail("执行失败: " + cause.getMessage());
+            });
+    }
 
-        } catch (IllegalArgumentException e) {
-            log.warn("参数校验失败 - appId: {}, error: {}", appId, e.getMessage());
-            return Result.fail("参数错误: " + e.getMessage());
-        } catch (Exception e) {
-            log.error("执行AI应用失败 - appId: {}", appId, e);
-            return Result.fail("执行失败: " + e.getMessage());
+    /**
+     * 批量执行AI应用
+     * <p>
+     * 一次提交多组参数（如多个视频链接），服务端按批次并发上限逐条执行，立即返回批次进度；
+     * 之后通过 /batch/{batchId} 查询进度，/batch/{batchId}/cancel 取消尚未开始的条目。
+     * </p>
+     *
+     * @param appId   AI应用ID
+     * @param request 批量参数
+     * @return 批次进度
+     */
+    @PostMapping("/execute/{appId}/batch")
+    @SystemLog(module = "AI工坊", action = "批量执行应用")
+    @Operation(summary = "批量执行AI应用", description = "提交多组参数，按并发上限逐条执行")
+    public Result<BatchExecutionVO> executeBatch(
+        @Parameter(description = "应用ID") @PathVariable Long appId,
+        @RequestBody BatchExecuteDTO request) {
+        String userId = UserContextHolder.getUserId();
+
+        AiApplication application = aiApplicationService.getById(appId);
+        if (application == null) {
+            return Result.fail("应用不存在");
+        }
+
+        if (application.getEnabled() != 1) {
+            return Result.fail("该应用已禁用");
+        }
+
+        String batchId = aiAppBatchExecutor.submit(userId, appId, request);
+        return Result.success(aiAppBatchExecutor.progress(batchId, userId));
+    }
+
+    /**
+     * 查询批量执行进度
+     *
+     * @param batchId 批次ID（父记录ID）
+     * @return 批次进度
+     */
+    @GetMapping("/batch/{batchId}")
+    @Operation(summary = "查询批量执行进度", description = "汇总批次内各条目及子记录的状态")
+    public Result<BatchExecutionVO> getBatch(
+        @Parameter(description = "批次ID") @PathVariable String batchId) {
+        return Result.success(aiAppBatchExecutor.progress(batchId, UserContextHolder.getUserId()));
+    }
+
+    /**
+     * 取消批量执行（已开始的条目照常完成）
+     *
+     * @param batchId 批次ID（父记录ID）
+     */
+    @PostMapping("/batch/{batchId}/cancel")
+    @Operation(summary = "取消批量执行", description = "尚未开始的条目不再执行")
+    public Result<Boolean> cancelBatch(
+        @Parameter(description = "批次ID") @PathVariable String batchId) {
+        if (!aiAppBatchExecutor.cancel(batchId, UserContextHolder.getUserId())) {
+            return Result.fail("批次不存在");
         }
+        return Result.success(true);
     }
 
     /**
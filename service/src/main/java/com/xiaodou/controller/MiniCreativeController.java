@@ -12,6 +12,7 @@ import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @Tag(name = "小程序-创作助手", description = "AI文案助手：根据链接生成润色文案")
 @RestController
@@ -24,17 +25,18 @@ public class MiniCreativeController {
 
     @PostMapping("/rewrite")
     @Operation(summary = "根据链接生成文案")
-    public Result<Object> rewrite(@RequestBody RewriteDTO dto) {
+    public CompletableFuture<Result<Object>> rewrite(@RequestBody RewriteDTO dto) {
         String userId = UserContextHolder.getUserId();
         Long appId = pickAppId(dto.getUrl());
         if (appId == null) {
-            return Result.fail("未找到合适的AI应用，请先在后台配置xhsRewrite或webRewrite应用");
+            return CompletableFuture.completedFuture(Result.fail("未找到合适的AI应用，请先在后台配置xhsRewrite或webRewrite应用"));
         }
         Map<String, Object> params = new HashMap<>();
         params.put("url", dto.getUrl());
         params.put("text", dto.getText());
-        Object res = aiAppExecutor.execute(userId, appId, params);
-        return Result.success(res);
+        return aiAppExecutor.executeAsync(userId, appId, params)
+            .handle((res, error) -> error == null ? Result.success(res) :
+                Result.fail("生成失败: " + AiAppExecutor.unwrap(error).getMessage()));
     }
 
     private Long pickAppId(String url) {
@@ -2,20 +2,36 @@ package com.xiaodou.controller;
 
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.xiaodou.auth.util.UserContextHolder;
-import com.xiaodou.config.rabbitmq.TrackingRabbitMQConfig;
+import com.xiaodou.config.TrackingProperties;
+import com.xiaodou.exception.AppException;
 import com.xiaodou.model.TrackingEvent;
 import com.xiaodou.model.dto.tracking.EventMessage;
 import com.xiaodou.model.dto.tracking.TrackingEventDTO;
 import com.xiaodou.result.Result;
+import com.xiaodou.result.ResultCodeEnum;
 import com.xiaodou.service.TrackingEventService;
+import com.xiaodou.tracking.TrackingEventPublisher;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
 /**
  * <p>
  * 埋点事件前端控制器
@@ -24,22 +40,58 @@ import org.springframework.web.bind.annotation.*;
  * @author luoxiaodou
  * @since 2025-11-19
  */
+@Slf4j
 @Tag(name = "数据埋点", description = "C端上报接口与后台查询接口")
 @RestController
 @RequiredArgsConstructor
 public class TrackingEventController {
 
-    private final RabbitTemplate rabbitTemplate;
+    private static final TypeReference<List<TrackingEventDTO>> EVENT_LIST_TYPE = new TypeReference<>() {
+    };
+
+    private final TrackingEventPublisher trackingEventPublisher;
     private final TrackingEventService trackingEventService;
+    private final TrackingProperties trackingProperties;
+    private final ObjectMapper objectMapper;
 
-    @Operation(summary = "C端-上报埋点事件", description = "接收前端发送的埋点事件，并异步处理")
+    @Operation(summary = "C端-上报埋点事件",
+        description = "接收前端发送的埋点事件，写入投递缓冲后立即返回；缓冲已满时事件被丢弃，返回 202 且 dropped = 1")
     @PostMapping("/api/track")
-    public Result<Void> trackEvent(@Valid @RequestBody TrackingEventDTO eventDTO) {
+    public ResponseEntity<Result<Map<String, Integer>>> trackEvent(@Valid @RequestBody TrackingEventDTO eventDTO) {
+        String userId = UserContextHolder.getUserId();
+        String tenantId = UserContextHolder.getTenantId();
+        EventMessage message = new EventMessage(eventDTO.getEventName(), userId, tenantId, eventDTO.getProperties(),
+            resolveTimestamp(eventDTO.getTimestamp(), System.currentTimeMillis()));
+        return accepted(trackingEventPublisher.offer(message) ? 1 : 0, 1);
+    }
+
+    @Operation(summary = "C端-批量上报埋点事件",
+        description = "请求体为 TrackingEventDTO 的 JSON 数组，支持 Content-Encoding: gzip。"
+            + "事件名为空或投递缓冲已满的事件被丢弃，返回接收与丢弃条数；有丢弃时返回 202")
+    @PostMapping("/api/track/batch")
+    public ResponseEntity<Result<Map<String, Integer>>> trackEvents(HttpServletRequest request) {
+        TrackingProperties.Ingest ingest = trackingProperties.getIngest();
+        List<TrackingEventDTO> events = readEvents(request, ingest.getMaxBodyBytes());
+        if (events == null || events.isEmpty()) {
+            throw new AppException(ResultCodeEnum.PARAM_VALID_ERROR, "事件列表不能为空");
+        }
+        if (events.size() > ingest.getMaxBatchEvents()) {
+            throw new AppException(ResultCodeEnum.PARAM_VALID_ERROR,
+                "单次最多上报 " + ingest.getMaxBatchEvents() + " 条事件");
+        }
+
         String userId = UserContextHolder.getUserId();
         String tenantId = UserContextHolder.getTenantId();
-        EventMessage message = new EventMessage(eventDTO.getEventName(), userId, tenantId, eventDTO.getProperties());
-        rabbitTemplate.convertAndSend(TrackingRabbitMQConfig.EXCHANGE_NAME, TrackingRabbitMQConfig.ROUTING_KEY, message);
-        return Result.success();
+        long now = System.currentTimeMillis();
+        int accepted = 0;
+        for (TrackingEventDTO event : events) {
+            if (event != null && StringUtils.hasText(event.getEventName()) && trackingEventPublisher.offer(
+                new EventMessage(event.getEventName(), userId, tenantId, event.getProperties(),
+                    resolveTimestamp(event.getTimestamp(), now)))) {
+                accepted++;
+            }
+        }
+        return accepted(accepted, events.size());
     }
 
     @Operation(summary = "后台-查询原始埋点事件", description = "分页查询原始埋点事件明细")
@@ -53,4 +105,50 @@ public class TrackingEventController {
             .page(new Page<>(pageNum, pageSize));
         return Result.success(page);
     }
+
+    /**
+     * 全部接收返回 200；有事件被丢弃（含缓冲已满）时返回 202，调用方可据 dropped 决定是否稍后重报
+     */
+    private ResponseEntity<Result<Map<String, Integer>>> accepted(int accepted, int total) {
+        int dropped = total - accepted;
+        return ResponseEntity.status(dropped > 0 ? HttpStatus.ACCEPTED : HttpStatus.OK)
+            .body(Result.success(Map.of("accepted", accepted, "dropped", dropped)));
+    }
+
+    /**
+     * 读取请求体（按需 gzip 解压，限制解压后大小）并解析为事件数组
+     */
+    private List<TrackingEventDTO> readEvents(HttpServletRequest request, int maxBodyBytes) {
+        byte[] body;
+        try {
+            InputStream in = request.getInputStream();
+            if ("gzip".equalsIgnoreCase(request.getHeader(HttpHeaders.CONTENT_ENCODING))) {
+                in = new GZIPInputStream(in);
+            }
+            body = in.readNBytes(maxBodyBytes + 1);
+        } catch (IOException e) {
+            log.warn("读取批量埋点请求体失败: {}", e.getMessage());
+            throw new AppException(ResultCodeEnum.PARAM_FORMAT_ERROR, "请求体读取或解压失败");
+        }
+        if (body.length > maxBodyBytes) {
+            throw new AppException(ResultCodeEnum.PARAM_FORMAT_ERROR, "请求体超过 " + maxBodyBytes + " 字节");
+        }
+        try {
+            return objectMapper.readValue(body, EVENT_LIST_TYPE);
+        } catch (IOException e) {
+            throw new AppException(ResultCodeEnum.PARAM_FORMAT_ERROR, "请求体必须是埋点事件的 JSON 数组");
+        }
+    }
+
+    /**
+     * 客户端时间在容忍范围内时采用，否则（缺失、超前或过旧）以服务端接收时间为准
+     */
+    private Long resolveTimestamp(Long clientTimestamp, long now) {
+        TrackingProperties.Ingest ingest = trackingProperties.getIngest();
+        if (clientTimestamp == null || clientTimestamp > now + ingest.getMaxClockSkewMs()
+            || clientTimestamp < now - ingest.getMaxEventAgeMs()) {
+            return now;
+        }
+        return clientTimestamp;
+    }
 }
@@ -0,0 +1,102 @@
+package com.xiaodou.controller;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xiaodou.aiapp.WorkflowCallbackSigner;
+import com.xiaodou.aiapp.WorkflowPollScheduler;
+import com.xiaodou.config.WorkflowProperties;
+import com.xiaodou.result.Result;
+import com.xiaodou.result.ResultCodeEnum;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 牛马网站工作流任务完成回调
+ * <p>
+ * 上游在任务结束后主动推送结果，直接结束对应的 AI 应用记录，轮询仅作为丢失回调时的兜底。
+ * 路径位于 /api/plugin/** 白名单下，不走 JWT 认证，改用 HMAC-SHA256 签名 + 时间戳校验。
+ * </p>
+ *
+ * 回调请求体示例：
+ * {
+ *   "taskId": "task_456",
+ *   "status": 1,                // 1成功 2失败
+ *   "data": { ... },
+ *   "message": "执行成功"
+ * }
+ *
+ * @author xiaodou V=>dddou117
+ * @version V1.0
+ * @since 2025/12/9
+ */
+@Slf4j
+@Tag(name = "工作流回调", description = "牛马网站工作流任务完成回调")
+@RestController
+@RequiredArgsConstructor
+public class WorkflowCallbackController {
+
+    private final WorkflowPollScheduler workflowPollScheduler;
+    private final WorkflowProperties workflowProperties;
+    private final ObjectMapper objectMapper;
+
+    @Operation(summary = "工作流任务完成回调", description = "校验签名后结束对应的AI应用记录")
+    @PostMapping("/api/plugin/workflow/callback")
+    public Result<Map<String, Object>> callback(
+        @RequestHeader(value = WorkflowCallbackSigner.HEADER_TIMESTAMP, required = false) Long timestamp,
+        @RequestHeader(value = WorkflowCallbackSigner.HEADER_SIGNATURE, required = false) String signature,
+        @RequestBody String body) {
+        WorkflowProperties.Callback config = workflowProperties.getCallback();
+        if (!config.isEnabled()) {
+            return Result.fail(ResultCodeEnum.FORBIDDEN.getCode(), "工作流回调未启用");
+        }
+
+        // 1. 校验时间戳与签名
+        if (timestamp == null || Math.abs(System.currentTimeMillis() - timestamp) > config.getMaxSkewMs()) {
+            log.warn("工作流回调时间戳无效 - timestamp: {}", timestamp);
+            return Result.fail(ResultCodeEnum.FORBIDDEN.getCode(), "回调时间戳无效");
+        }
+        if (!WorkflowCallbackSigner.verify(config.getSecret(), timestamp, body, signature)) {
+            log.warn("工作流回调签名校验失败 - timestamp: {}", timestamp);
+            return Result.fail(ResultCodeEnum.FORBIDDEN.getCode(), "回调签名无效");
+        }
+
+        // 2. 解析回调内容
+        Map<String, Object> payload;
+        try {
+            payload = objectMapper.readValue(body, new TypeReference<Map<String, Object>>() {});
+        } catch (Exception e) {
+            return Result.fail(ResultCodeEnum.PARAM_FORMAT_ERROR.getCode(), "回调内容不是合法JSON");
+        }
+        Object taskIdObj = payload.get("taskId");
+        Object statusObj = payload.get("status");
+        if (taskIdObj == null || !(statusObj instanceof Integer status) || (status != 1 && status != 2)) {
+            return Result.fail(ResultCodeEnum.PARAM_VALID_ERROR.getCode(), "回调缺少 taskId 或 status 非法");
+        }
+        String taskId = taskIdObj.toString();
+
+        // 3. 与轮询结果保持相同结构后结束任务
+        Map<String, Object> finalResult = new HashMap<>();
+        finalResult.put("taskId", taskId);
+        finalResult.put("status", status);
+        finalResult.put("data", payload.get("data"));
+        finalResult.put("message", payload.getOrDefault("message", status == 1 ? "执行成功" : "任务执行失败"));
+        finalResult.put("source", "callback");
+
+        boolean accepted = workflowPollScheduler.complete(taskId, finalResult);
+        log.info("处理工作流回调 - taskId: {}, status: {}, accepted: {}", taskId, status, accepted);
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("taskId", taskId);
+        data.put("accepted", accepted);
+        return Result.success(data);
+    }
+}
@@ -0,0 +1,43 @@
+package com.xiaodou.controller.admin;
+
+import com.xiaodou.aiapp.credit.CreditWallet;
+import com.xiaodou.exception.AppException;
+import com.xiaodou.model.dto.CreditGrantDTO;
+import com.xiaodou.result.Result;
+import com.xiaodou.result.ResultCodeEnum;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * 用户积分管理后台控制器
+ */
+@RestController
+@RequestMapping("/admin/credits")
+@RequiredArgsConstructor
+@PreAuthorize("hasRole('ADMIN')") // 整个控制器都需要管理员权限
+public class CreditManagementController {
+
+    private final CreditWallet creditWallet;
+
+    /**
+     * 查询用户可用积分
+     */
+    @GetMapping("/{userId}")
+    public Result<Long> balance(@PathVariable String userId) {
+        return Result.success(creditWallet.balance(userId));
+    }
+
+    /**
+     * 发放或扣减用户积分
+     *
+     * @return 变动后的可用积分
+     */
+    @PostMapping("/{userId}/grant")
+    public Result<Long> grant(@PathVariable String userId, @RequestBody CreditGrantDTO dto) {
+        if (dto.getAmount() == null) {
+            throw new AppException(ResultCodeEnum.PARAM_MISSING, "积分变动不能为空");
+        }
+        return Result.success(creditWallet.grant(userId, dto.getAmount(), dto.getRemark()));
+    }
+}
@@ -0,0 +1,30 @@
+package com.xiaodou.exception;
+
+import com.xiaodou.result.ResultCodeEnum;
+import lombok.Getter;
+
+/**
+ * 执行时限已耗尽
+ * <p>
+ * 由调用链上任一环节在发现剩余时限不足时抛出，错误信息中注明超时环节、总时限与已用时间，便于定位耗时所在。
+ * </p>
+ *
+ * @author xiaodou V=>dddou117
+ * @version V1.0
+ * @since 2025/12/18
+ */
+@Getter
+public class DeadlineExceededException extends AppException {
+
+    /**
+     * 超时发生的环节（如执行器名称、上游地址）
+     */
+    private final String stage;
+
+    public DeadlineExceededException(String stage, long budgetMs, long elapsedMs) {
+        super(ResultCodeEnum.AI_TIMEOUT,
+            ResultCodeEnum.AI_TIMEOUT.getMessage() + "（环节: " + stage + "，时限 " + budgetMs + "ms，已用 " + elapsedMs
+                + "ms）");
+        this.stage = stage;
+    }
+}
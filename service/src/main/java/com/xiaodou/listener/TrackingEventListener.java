@@ -2,46 +2,210 @@ package com.xiaodou.listener;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rabbitmq.client.Channel;
+import com.xiaodou.config.TrackingProperties;
 import com.xiaodou.config.rabbitmq.TrackingRabbitMQConfig;
+import com.xiaodou.mapper.TrackingEventMapper;
 import com.xiaodou.model.TrackingEvent;
+import com.xiaodou.model.dto.tracking.EventBatchMessage;
 import com.xiaodou.model.dto.tracking.EventMessage;
-import com.xiaodou.service.TrackingEventService;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
 
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 埋点事件消费者
+ * <p>
+ * 批量消费（见 {@link TrackingRabbitMQConfig#BATCH_CONTAINER_FACTORY}）：批量上报的消息（{@link EventBatchMessage}）
+ * 展开为多条事件，与单条上报的事件一起按 maxRowsPerInsert 分段多行 INSERT 写入，全部成功时以最大 deliveryTag 一次批量确认（multiple = true）。
+ * </p>
+ * <p>
+ * 写入因数据本身出错（{@link DataIntegrityViolationException}，如字段超长）时将批次对半拆分重试，
+ * 直到定位出有问题的单条事件并丢弃；其他异常（数据库不可用等）视为暂时性故障，
+ * 仍有事件未写入的消息全部重新入队。重新入队前消费线程等待 retryBackoffMs（连续失败时逐次翻倍，
+ * 不超过 maxRetryBackoffMs），期间不拉取新消息，避免数据库故障时消息被立即重投而空转。
+ * 无法解析的消息直接拒绝（不重新入队）。
+ * </p>
+ */
 @Slf4j
 @Component
-@RequiredArgsConstructor
 public class TrackingEventListener {
 
-    private final TrackingEventService trackingEventService;
+    private static final ZoneId ZONE = ZoneId.of("Asia/Shanghai");
+
+    private final TrackingEventMapper trackingEventMapper;
+    private final TrackingProperties trackingProperties;
     private final ObjectMapper objectMapper;
+    private final MessageConverter messageConverter;
+    // 连续暂时性故障次数，写入成功后清零
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
 
-    @RabbitListener(queues = TrackingRabbitMQConfig.QUEUE_NAME)
-    public void handleTrackingEvent(EventMessage message) {
-        log.info("接收到埋点事件: {}", message);
-        try {
-            TrackingEvent event = new TrackingEvent();
-            event.setEventName(message.getEventName());
-            event.setUserId(message.getUserId());
-            event.setTenantId(message.getTenantId());
-
-            if (!CollectionUtils.isEmpty(message.getProperties())) {
-                try {
-                    event.setProperties(objectMapper.writeValueAsString(message.getProperties()));
-                } catch (JsonProcessingException e) {
-                    log.error("序列化埋点事件属性失败: {}", message.getProperties(), e);
-                    // 可以选择记录一个错误标记，或者丢弃该属性
-                    event.setProperties("{\"error\":\"properties serialization failed\"}");
+    public TrackingEventListener(TrackingEventMapper trackingEventMapper, TrackingProperties trackingProperties,
+        ObjectMapper objectMapper, RabbitTemplate rabbitTemplate) {
+        this.trackingEventMapper = trackingEventMapper;
+        this.trackingProperties = trackingProperties;
+        this.objectMapper = objectMapper;
+        // 与发送端使用同一个转换器
+        this.messageConverter = rabbitTemplate.getMessageConverter();
+    }
+
+    @RabbitListener(queues = TrackingRabbitMQConfig.QUEUE_NAME,
+        containerFactory = TrackingRabbitMQConfig.BATCH_CONTAINER_FACTORY)
+    public void handleTrackingEvents(List<Message> messages, Channel channel) throws IOException {
+        List<Delivery> deliveries = new ArrayList<>(messages.size());
+        List<Row> rows = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            Delivery delivery = new Delivery(message.getMessageProperties()
+                .getDeliveryTag());
+            deliveries.add(delivery);
+            try {
+                for (EventMessage event : unpack(messageConverter.fromMessage(message))) {
+                    rows.add(new Row(delivery, toEvent(event)));
+                    delivery.pending++;
                 }
+            } catch (Exception e) {
+                log.error("无法解析的埋点消息，已丢弃 - deliveryTag: {}, error: {}", delivery.tag, e.getMessage());
+                delivery.rejected = true;
             }
-            trackingEventService.save(event);
-        } catch (Exception e) {
-            log.error("处理埋点事件失败: {}", message, e);
-            // 此处可以加入重试或死信队列逻辑
         }
+
+        boolean failed = false;
+        if (!rows.isEmpty()) {
+            int maxRows = Math.max(1, trackingProperties.getConsumer()
+                .getMaxRowsPerInsert());
+            try {
+                for (int from = 0; from < rows.size(); from += maxRows) {
+                    insert(rows.subList(from, Math.min(from + maxRows, rows.size())));
+                }
+            } catch (Exception e) {
+                log.error("批量写入埋点事件失败，未写入的消息重新入队 - 消息数: {}, 事件数: {}", messages.size(),
+                    rows.size(), e);
+                failed = true;
+            }
+        }
+        if (failed) {
+            backoff();
+        } else {
+            consecutiveFailures.set(0);
+        }
+
+        if (deliveries.stream()
+            .allMatch(delivery -> !delivery.rejected && delivery.pending == 0)) {
+            channel.basicAck(messages.getLast()
+                .getMessageProperties()
+                .getDeliveryTag(), true);
+            log.debug("埋点事件批量写入完成 - 消息数: {}, 事件数: {}", messages.size(), rows.size());
+            return;
+        }
+        // 少见路径：逐条确认 / 拒绝 / 重新入队。批量消息可能已部分写入，重新入队后会重复写入这部分事件
+        for (Delivery delivery : deliveries) {
+            if (delivery.rejected) {
+                channel.basicNack(delivery.tag, false, false);
+            } else if (delivery.pending > 0) {
+                channel.basicNack(delivery.tag, false, true);
+            } else {
+                channel.basicAck(delivery.tag, false);
+            }
+        }
+    }
+
+    /**
+     * 暂时性故障后阻塞消费线程，等待后再重新入队
+     */
+    private void backoff() {
+        TrackingProperties.Consumer config = trackingProperties.getConsumer();
+        int failures = Math.min(consecutiveFailures.getAndIncrement(), 16);
+        long delayMs = Math.min(config.getRetryBackoffMs() << failures, config.getMaxRetryBackoffMs());
+        try {
+            Thread.sleep(delayMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                .interrupt();
+        }
+    }
+
+    /**
+     * 单条上报为 EventMessage，批量上报为 EventBatchMessage
+     */
+    private List<EventMessage> unpack(Object payload) {
+        if (payload instanceof EventBatchMessage batch) {
+            return batch.getEvents() == null ? List.of() : batch.getEvents();
+        }
+        return List.of((EventMessage)payload);
+    }
+
+    /**
+     * 多行写入；数据错误时对半拆分，定位到单条事件后丢弃。暂时性故障直接抛出，由调用方重新入队
+     */
+    private void insert(List<Row> rows) {
+        try {
+            trackingEventMapper.insertBatch(rows.stream()
+                .map(Row::event)
+                .toList());
+            rows.forEach(row -> row.delivery.pending--);
+        } catch (DataIntegrityViolationException e) {
+            if (rows.size() == 1) {
+                Row poison = rows.getFirst();
+                log.error("埋点事件写入失败，已丢弃 - deliveryTag: {}, event: {}, error: {}", poison.delivery.tag,
+                    poison.event, e.getMostSpecificCause()
+                        .getMessage());
+                poison.delivery.pending--;
+                return;
+            }
+            int middle = rows.size() / 2;
+            insert(rows.subList(0, middle));
+            insert(rows.subList(middle, rows.size()));
+        }
+    }
+
+    private TrackingEvent toEvent(EventMessage message) {
+        TrackingEvent event = new TrackingEvent();
+        event.setEventName(message.getEventName());
+        event.setUserId(message.getUserId());
+        event.setTenantId(message.getTenantId());
+        event.setCreatedAt(message.getTimestamp() == null ? LocalDateTime.now(ZONE) :
+            LocalDateTime.ofInstant(Instant.ofEpochMilli(message.getTimestamp()), ZONE));
+
+        if (!CollectionUtils.isEmpty(message.getProperties())) {
+            try {
+                event.setProperties(objectMapper.writeValueAsString(message.getProperties()));
+            } catch (JsonProcessingException e) {
+                log.error("序列化埋点事件属性失败: {}", message.getProperties(), e);
+                event.setProperties("{\"error\":\"properties serialization failed\"}");
+            }
+        }
+        return event;
+    }
+
+    /**
+     * 一条投递（可能包含多条事件）；pending 为尚未写入也未丢弃的事件数
+     */
+    private static final class Delivery {
+        private final long tag;
+        private int pending;
+        private boolean rejected;
+
+        Delivery(long tag) {
+            this.tag = tag;
+        }
+    }
+
+    /**
+     * 待写入的一行
+     */
+    private record Row(Delivery delivery, TrackingEvent event) {
     }
 }
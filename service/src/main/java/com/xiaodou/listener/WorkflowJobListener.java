@@ -0,0 +1,228 @@
+package com.xiaodou.listener;
+
+import com.rabbitmq.client.Channel;
+import com.xiaodou.aiapp.AiAppExecutor;
+import com.xiaodou.aiapp.FairTaskScheduler;
+import com.xiaodou.aiapp.WorkflowApiClient;
+import com.xiaodou.aiapp.WorkflowApiKeyResolver;
+import com.xiaodou.aiapp.WorkflowPollScheduler;
+import com.xiaodou.aiapp.model.Deadline;
+import com.xiaodou.config.WorkflowProperties;
+import com.xiaodou.config.rabbitmq.WorkflowJobRabbitMQConfig;
+import com.xiaodou.exception.DeadlineExceededException;
+import com.xiaodou.model.AiAppRecord;
+import com.xiaodou.model.dto.workflow.WorkflowJobMessage;
+import com.xiaodou.service.AiAppRecordService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 工作流作业消费者
+ * <p>
+ * RUN：运行工作流，回填 taskId 后登记到本节点的 {@link WorkflowPollScheduler}；
+ * POLL：直接登记轮询。记录已结束的作业直接确认丢弃。
+ * </p>
+ * <p>
+ * 监听线程只查询记录，作业处理交给公平调度器（workflowTaskExecutor）以记录所属用户的身份排队执行：
+ * 容器预取多条作业，单个用户集中提交的作业按用户轮转出队，不会按队列顺序挡住其他用户。
+ * 调度器线程只执行短操作，运行工作流的上游调用异步发出并受 workflow.run-budget-ms 时限约束，
+ * 上游变慢不会占满调度器线程；作业在上游调用完成后才确认。
+ * 作业登记到轮询调度器后即确认（ACK），后续轮询状态由 Redis 租约 + 恢复扫描兜底；
+ * RUN 首次失败重新入队一次，再次失败则将记录置为失败，无法解析的消息转入死信队列。
+ * 重新入队前等待 {@link #REQUEUE_DELAY_MS}，避免数据库不可用时消息被立即重投而空转
+ * （查询记录失败时阻塞监听线程等待，处理失败时延迟拒绝，不占用调度器线程）。
+ * </p>
+ * <p>
+ * API 密钥不随消息传递，消费时由 {@link WorkflowApiKeyResolver} 按记录解析。
+ * RUN 在调用上游前写入运行标记，回填 taskId 前宕机导致的重投看到标记时不再运行，直接将记录置为失败，
+ * 避免同一记录启动两次工作流。
+ * </p>
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class WorkflowJobListener {
+
+    private static final long REQUEUE_DELAY_MS = 1_000;
+    private static final String RUN_MARKER_PREFIX = "workflow:run:started:";
+    private static final Duration RUN_MARKER_TTL = Duration.ofDays(1);
+
+    private final WorkflowApiClient workflowApiClient;
+    private final WorkflowPollScheduler workflowPollScheduler;
+    private final AiAppRecordService aiAppRecordService;
+    private final WorkflowApiKeyResolver workflowApiKeyResolver;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final FairTaskScheduler workflowTaskExecutor;
+    private final WorkflowProperties workflowProperties;
+
+    @RabbitListener(queues = WorkflowJobRabbitMQConfig.QUEUE_NAME,
+        containerFactory = WorkflowJobRabbitMQConfig.JOB_CONTAINER_FACTORY)
+    public void handleWorkflowJob(WorkflowJobMessage message, Channel channel,
+        @Header(AmqpHeaders.DELIVERY_TAG) long deliveryTag,
+        @Header(AmqpHeaders.REDELIVERED) boolean redelivered) throws IOException {
+        log.info("接收到工作流作业 - type: {}, aiAppRecordId: {}, redelivered: {}", message.getType(),
+            message.getAiAppRecordId(), redelivered);
+
+        AiAppRecord record;
+        try {
+            record = aiAppRecordService.getById(message.getAiAppRecordId());
+        } catch (Exception e) {
+            // 数据库暂不可用，重新入队稍后处理
+            log.error("查询AI应用记录失败，作业重新入队 - aiAppRecordId: {}", message.getAiAppRecordId(), e);
+            requeueLater(channel, deliveryTag);
+            return;
+        }
+        if (record == null || !Integer.valueOf(3).equals(record.getStatus())) {
+            log.info("AI应用记录不存在或已结束，丢弃作业 - aiAppRecordId: {}", message.getAiAppRecordId());
+            channel.basicAck(deliveryTag, false);
+            return;
+        }
+
+        // 作业处理在公平调度器中以用户身份排队，处理完成后再确认
+        workflowTaskExecutor.execute(record.getUserId(), () -> process(message, record, channel, deliveryTag,
+            redelivered));
+    }
+
+    /**
+     * 处理作业（公平调度器线程）：调度器上只做密钥解析、标记与登记等短操作，
+     * 上游调用异步发出，完成后回到调度器写入记录并确认
+     */
+    private void process(WorkflowJobMessage message, AiAppRecord record, Channel channel, long deliveryTag,
+        boolean redelivered) {
+        CompletableFuture<Void> work;
+        try {
+            String apiKey = workflowApiKeyResolver.resolve(record);
+            if (apiKey == null) {
+                log.error("未配置工作流 API 密钥 - aiAppRecordId: {}", record.getId());
+                aiAppRecordService.updateAiAppFailed(record.getId(), "未配置工作流 API 密钥", null);
+                work = CompletableFuture.completedFuture(null);
+            } else if (WorkflowJobMessage.TYPE_RUN.equals(message.getType())) {
+                work = handleRun(message, record, apiKey);
+            } else if (WorkflowJobMessage.TYPE_POLL.equals(message.getType())) {
+                workflowPollScheduler.submit(record.getUserId(), record.getId(), message.getWorkflowId(),
+                    message.getTaskId(), apiKey);
+                work = CompletableFuture.completedFuture(null);
+            } else {
+                log.error("未知的工作流作业类型，转入死信队列 - type: {}", message.getType());
+                nack(channel, deliveryTag, false);
+                return;
+            }
+        } catch (RuntimeException e) {
+            work = CompletableFuture.failedFuture(e);
+        }
+
+        work.whenComplete((ignored, error) -> {
+            if (error == null) {
+                ack(channel, deliveryTag);
+                return;
+            }
+            Throwable cause = AiAppExecutor.unwrap(error);
+            if (!redelivered) {
+                log.warn("处理工作流作业失败，重新入队 - aiAppRecordId: {}, error: {}", record.getId(),
+                    cause.getMessage());
+                // 延迟重新入队，不占用调度器线程
+                CompletableFuture.delayedExecutor(REQUEUE_DELAY_MS, TimeUnit.MILLISECONDS)
+                    .execute(() -> nack(channel, deliveryTag, true));
+                return;
+            }
+            log.error("处理工作流作业再次失败 - aiAppRecordId: {}", record.getId(), cause);
+            try {
+                aiAppRecordService.updateAiAppFailed(record.getId(), "后台执行异常: " + cause.getMessage(), null);
+            } catch (RuntimeException e) {
+                log.error("更新AI应用记录失败 - aiAppRecordId: {}", record.getId(), e);
+            }
+            ack(channel, deliveryTag);
+        });
+    }
+
+    /**
+     * 运行工作流并登记轮询；记录已绑定 taskId（上次运行后未及确认）时跳过运行，避免重复提交。
+     * 存在运行标记而未绑定 taskId 说明上次运行后未及回填即中断，上游任务无法找回，记录置为失败。
+     * <p>
+     * 上游调用以 workflow.run-budget-ms 为时限异步发出，不占用调度器线程等待；
+     * 响应后回填 taskId 与登记轮询在调度器中以用户身份执行。
+     * </p>
+     */
+    private CompletableFuture<Void> handleRun(WorkflowJobMessage message, AiAppRecord record, String apiKey) {
+        String taskId = record.getExecuteId();
+        if (taskId != null) {
+            log.info("工作流已运行，仅登记轮询 - aiAppRecordId: {}, taskId: {}", record.getId(), taskId);
+            workflowPollScheduler.submit(record.getUserId(), record.getId(), message.getWorkflowId(), taskId,
+                apiKey);
+            return CompletableFuture.completedFuture(null);
+        }
+        String marker = RUN_MARKER_PREFIX + record.getId();
+        if (!Boolean.TRUE.equals(redisTemplate.opsForValue()
+            .setIfAbsent(marker, System.currentTimeMillis(), RUN_MARKER_TTL))) {
+            log.warn("工作流可能已启动但未回填 taskId，不再重复运行 - aiAppRecordId: {}", record.getId());
+            aiAppRecordService.updateAiAppFailed(record.getId(), "工作流启动后执行中断，请重新提交", null);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        Deadline deadline = Deadline.after(workflowProperties.getRunBudgetMs());
+        return workflowApiClient.runWorkflowAsync(message.getWorkflowId(), apiKey, message.getParams(), deadline)
+            .handleAsync((runResult, error) -> {
+                if (error != null) {
+                    Throwable cause = AiAppExecutor.unwrap(error);
+                    // 未拿到响应时允许重投后再次运行；超时则请求可能已被受理，保留标记，重投时不再运行
+                    if (!(cause instanceof DeadlineExceededException)) {
+                        redisTemplate.delete(marker);
+                    }
+                    throw new CompletionException(cause);
+                }
+                String runTaskId = (String)runResult.get("taskId");
+                if (runTaskId == null || runTaskId.trim()
+                    .isEmpty()) {
+                    // 上游明确拒绝，重试无意义
+                    aiAppRecordService.updateAiAppFailed(record.getId(),
+                        "工作流启动失败，未返回 taskId: " + runResult.get("message"), null);
+                    return null;
+                }
+                aiAppRecordService.bindExecuteId(record.getId(), runTaskId);
+                workflowPollScheduler.submit(record.getUserId(), record.getId(), message.getWorkflowId(), runTaskId,
+                    apiKey);
+                return null;
+            }, workflowTaskExecutor.forUser(record.getUserId()));
+    }
+
+    private void ack(Channel channel, long deliveryTag) {
+        try {
+            channel.basicAck(deliveryTag, false);
+        } catch (Exception e) {
+            // 通道已关闭时作业未被确认，由 Broker 重新投递
+            log.warn("确认工作流作业失败 - deliveryTag: {}, error: {}", deliveryTag, e.getMessage());
+        }
+    }
+
+    private void nack(Channel channel, long deliveryTag, boolean requeue) {
+        try {
+            channel.basicNack(deliveryTag, false, requeue);
+        } catch (Exception e) {
+            log.warn("拒绝工作流作业失败 - deliveryTag: {}, error: {}", deliveryTag, e.getMessage());
+        }
+    }
+
+    /**
+     * 等待片刻后重新入队（阻塞当前消费线程，期间不拉取新消息）
+     */
+    private void requeueLater(Channel channel, long deliveryTag) throws IOException {
+        try {
+            Thread.sleep(REQUEUE_DELAY_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                .interrupt();
+        }
+        channel.basicNack(deliveryTag, false, true);
+    }
+}
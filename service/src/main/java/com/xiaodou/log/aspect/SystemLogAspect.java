@@ -6,7 +6,11 @@ import com.xiaodou.log.api.LogBuilder;
 import com.xiaodou.log.api.SystemLogFactory;
 import com.xiaodou.log.api.SystemLogger;
 import com.xiaodou.log.annotation.SystemLog;
+import com.xiaodou.log.model.LogContext;
 import com.xiaodou.log.model.LogLevel;
+import com.xiaodou.log.model.LogUser;
+import com.xiaodou.log.strategy.context.HttpRequestContextStrategy;
+import com.xiaodou.log.strategy.userinfo.SecurityContextUserStrategy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
@@ -24,6 +28,8 @@ import org.springframework.stereotype.Component;
 import java.lang.reflect.Method;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
  * 系统日志切面 (System Log Aspect)。
@@ -52,6 +58,8 @@ import java.util.Map;
 public class SystemLogAspect {
     private final SystemLogFactory systemLogFactory;
     private final ObjectMapper objectMapper;
+    private final HttpRequestContextStrategy httpRequestContextStrategy;
+    private final SecurityContextUserStrategy securityContextUserStrategy;
     private final ExpressionParser expressionParser = new SpelExpressionParser();
 
     /**
@@ -97,10 +105,22 @@ public class SystemLogAspect {
         long startTime = System.currentTimeMillis();
         Object result = null;
         Throwable exception = null;
+        boolean deferred = false;
 
         try {
             // 执行目标方法
             result = joinPoint.proceed();
+            if (result instanceof CompletableFuture<?> future) {
+                // 异步返回：上下文与用户依赖请求线程，先在此解析，待结果完成后再记录日志
+                deferred = true;
+                LogContext context = httpRequestContextStrategy.resolveContext();
+                LogUser user = securityContextUserStrategy.resolveUser();
+                return future.whenComplete((value, error) -> {
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ?
+                        error.getCause() : error;
+                    recordLog(joinPoint, systemLog, logger, value, cause, startTime, context, user);
+                });
+            }
             return result;
         } catch (Exception e) {
             // 捕获目标方法抛出的异常
@@ -108,8 +128,10 @@ public class SystemLogAspect {
             // 重新抛出异常，不影响原有业务逻辑
             throw e;
         } finally {
-            // 无论方法执行成功还是失败，都记录日志
-            recordLog(joinPoint, systemLog, logger, result, exception, startTime);
+            // 无论方法执行成功还是失败，都记录日志（异步返回的在结果完成时记录）
+            if (!deferred) {
+                recordLog(joinPoint, systemLog, logger, result, exception, startTime, null, null);
+            }
         }
     }
 
@@ -139,9 +161,11 @@ public class SystemLogAspect {
      *
      * @param joinPoint 连接点，包含目标方法的信息
      * @param result 目标方法的执行结果
+     * @param context 预先解析的日志上下文，为 null 时由日志构建器在当前线程解析
+     * @param user 预先解析的用户信息，为 null 时由日志构建器在当前线程解析
      */
     private void recordLog(ProceedingJoinPoint joinPoint, SystemLog systemLog, SystemLogger logger, Object result,
-        Throwable exception, long startTime) {
+        Throwable exception, long startTime, LogContext context, LogUser user) {
         try {
             // 使用构建器模式
             LogBuilder builder = logger.builder()
@@ -149,6 +173,14 @@ public class SystemLogAspect {
                 .description(systemLog.description())
                 .level(systemLog.level());
 
+            // 异步返回时使用请求线程中预先解析的上下文与用户
+            if (context != null) {
+                builder.context(context);
+            }
+            if (user != null) {
+                builder.user(user.userId(), user.tenantId(), user.userType());
+            }
+
             // 设置目标对象
             setTargetInfo(joinPoint, systemLog, builder, result);
 
@@ -0,0 +1,51 @@
+package com.xiaodou.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.xiaodou.model.CreditLedger;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * 积分流水表 Mapper 接口
+ * </p>
+ *
+ * @author xiaodou V=>dddou117
+ * @since 2025-12-16
+ */
+public interface CreditLedgerMapper extends BaseMapper<CreditLedger> {
+
+    /**
+     * 批量写入流水，entry_id 已存在的行忽略（流水刷盘重试时保证幂等）
+     *
+     * @param entries 流水列表
+     * @return 实际写入行数
+     */
+    int insertIgnoreBatch(@Param("entries") List<CreditLedger> entries);
+
+    /**
+     * 计算用户余额（所有流水 amount 之和）
+     *
+     * @param userId 用户ID
+     * @return 余额，无流水时为 0
+     */
+    long sumAmountByUser(@Param("userId") String userId);
+
+    /**
+     * 批量计算用户余额
+     *
+     * @param userIds 用户ID集合
+     * @return 每行包含 user_id、balance
+     */
+    List<Map<String, Object>> sumAmountByUsers(@Param("userIds") Collection<String> userIds);
+
+    /**
+     * 统计仅由 entry_id 一列构成的唯一索引数量（insertIgnoreBatch 的去重依赖该索引）
+     *
+     * @return 索引数量，0 表示缺失
+     */
+    int countEntryIdUniqueIndexes();
+}
@@ -5,6 +5,7 @@ import com.xiaodou.model.TrackingEvent;
 import org.apache.ibatis.annotations.Param;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 /**
  * <p>
@@ -34,4 +35,11 @@ public interface TrackingEventMapper extends BaseMapper<TrackingEvent> {
      * @return 事件发生次数
      */
     Integer countEventsByNameAndTimeRange(@Param("eventName") String eventName, @Param("startTime") LocalDateTime startTime, @Param("endTime") LocalDateTime endTime, @Param("tenantId") String tenantId);
+
+    /**
+     * 多行插入埋点事件（单条 INSERT 语句，整体成功或整体失败）
+     * @param events 事件列表，createdAt 需预先填好（不经过自动填充）
+     * @return 插入行数
+     */
+    int insertBatch(@Param("events") List<TrackingEvent> events);
 }
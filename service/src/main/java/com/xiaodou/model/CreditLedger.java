@@ -0,0 +1,99 @@
+package com.xiaodou.model;
+
+import com.baomidou.mybatisplus.annotation.*;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * <p>
+ * 积分流水表（只追加，用户余额 = 该用户所有流水 amount 之和）
+ * </p>
+ * <p>
+ * 表结构见 db/credit_ledger.sql。entry_id 必须有唯一索引：刷盘以 INSERT IGNORE 写入，崩溃后重放依靠它去重，
+ * 缺失时会重复记账；启用积分时启动阶段会校验该索引。
+ * </p>
+ *
+ * @author xiaodou V=>dddou117
+ * @since 2025-12-16
+ */
+@Getter
+@Setter
+@ToString
+@TableName("credit_ledger")
+public class CreditLedger implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String TYPE_GRANT = "GRANT";
+    public static final String TYPE_RESERVE = "RESERVE";
+    public static final String TYPE_COMMIT = "COMMIT";
+    public static final String TYPE_REFUND = "REFUND";
+
+    /**
+     * 自增主键
+     */
+    @TableId(value = "id", type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 流水唯一ID（预扣ID:类型 或 发放ID），唯一索引 uk_entry_id，重复写入时忽略
+     */
+    private String entryId;
+
+    /**
+     * 用户ID
+     */
+    private String userId;
+
+    /**
+     * 流水类型：GRANT 发放、RESERVE 预扣、COMMIT 确认、REFUND 退回
+     */
+    private String entryType;
+
+    /**
+     * 余额变动（预扣为负数，退回/发放为正数，确认为 0）
+     */
+    private Long amount;
+
+    /**
+     * 预扣ID
+     */
+    private String reservationId;
+
+    /**
+     * AI应用ID
+     */
+    private String aiApplicationId;
+
+    /**
+     * AI应用记录ID
+     */
+    private String aiAppRecordId;
+
+    /**
+     * 变动后的 Redis 余额（仅供排查）
+     */
+    private Long balanceAfter;
+
+    /**
+     * 备注
+     */
+    private String remark;
+
+    /**
+     * 流水发生时间（Redis 中原子写入的时间）
+     */
+    private LocalDateTime occurredAt;
+
+    /**
+     * 入库时间
+     */
+    @TableField(fill = FieldFill.INSERT)
+    @Schema(description = "创建时间")
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,24 @@
+package com.xiaodou.model.dto;
+
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+public class BatchExecuteDTO {
+    /**
+     * 每条执行的参数（与单次执行的请求体相同）
+     */
+    private List<Map<String, Object>> items;
+
+    /**
+     * 本批次并发数，为空时使用默认值，超过上限时按上限执行
+     */
+    private Integer concurrency;
+
+    /**
+     * 出现失败时是否取消剩余未开始的条目
+     */
+    private boolean stopOnError;
+}
@@ -0,0 +1,16 @@
+package com.xiaodou.model.dto;
+
+import lombok.Data;
+
+@Data
+public class CreditGrantDTO {
+    /**
+     * 积分变动（正数发放，负数扣减）
+     */
+    private Long amount;
+
+    /**
+     * 备注
+     */
+    private String remark;
+}
@@ -0,0 +1,20 @@
+package com.xiaodou.model.dto.tracking;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 批量上报的埋点事件，作为一条消息投递，由消费者展开写入
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventBatchMessage implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private List<EventMessage> events;
+}
@@ -20,4 +20,5 @@ public class EventMessage implements Serializable {
     private String userId;
     private String tenantId;
     private Map<String, Object> properties;
+    private Long timestamp;       // 事件发生时间（毫秒时间戳），为空时以入库时间为准
 }
@@ -16,4 +16,7 @@ public class TrackingEventDTO {
 
     @Schema(description = "事件相关属性 (动态JSON对象)")
     private Map<String, Object> properties;
+
+    @Schema(description = "事件发生时间（客户端毫秒时间戳，可选；批量上报时用于离线补报）")
+    private Long timestamp;
 }
@@ -0,0 +1,40 @@
+package com.xiaodou.model.dto.workflow;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 在消息队列中传递的工作流作业消息体
+ * <p>
+ * RUN：运行工作流并登记轮询；POLL：已拿到 taskId，只需登记轮询（恢复扫描或 RUN 重投时使用）。
+ * 消息不携带 API 密钥，由消费者按记录解析（{@link com.xiaodou.aiapp.WorkflowApiKeyResolver}）。
+ * </p>
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WorkflowJobMessage implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public static final String TYPE_RUN = "RUN";
+    public static final String TYPE_POLL = "POLL";
+
+    private String type;
+    private String aiAppRecordId;
+    private String workflowId;
+    private String taskId;
+    private HashMap<String, Object> params;
+
+    public static WorkflowJobMessage run(String aiAppRecordId, String workflowId, Map<String, Object> params) {
+        return new WorkflowJobMessage(TYPE_RUN, aiAppRecordId, workflowId, null, new HashMap<>(params));
+    }
+
+    public static WorkflowJobMessage poll(String aiAppRecordId, String workflowId, String taskId) {
+        return new WorkflowJobMessage(TYPE_POLL, aiAppRecordId, workflowId, taskId, null);
+    }
+}
@@ -1,9 +1,12 @@
 package com.xiaodou.model.vo;
 
+import com.xiaodou.aiapp.PropertyMetadata;
 import com.xiaodou.model.AiApplication;
 import com.xiaodou.utils.DateTimeUtils;
 import lombok.Data;
 
+import java.util.List;
+
 /**
  * AI应用视图对象
  * <p>
@@ -48,6 +51,11 @@ public class AiApplicationVO {
      */
     private String paramSchema;
 
+    /**
+     * 入参字段元数据（由预编译 Schema 提供，用于表单渲染；仅详情接口返回）
+     */
+    private List<PropertyMetadata> paramFields;
+
     /**
      * 出参 JSON Schema
      */
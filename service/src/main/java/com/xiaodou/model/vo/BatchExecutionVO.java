@@ -0,0 +1,59 @@
+package com.xiaodou.model.vo;
+
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 批量执行进度视图对象
+ * <p>
+ * 父记录即一条 handlerBean 为 batchExecutor 的 AI 应用记录；
+ * 各条目的状态：0 等待/执行中，1 成功，2 失败，3 已提交（子记录进行中），4 已取消。
+ * 子记录进行中的条目按子记录当前状态汇总。
+ * </p>
+ *
+ * @author xiaodou V=>dddou117
+ * @version V1.0
+ * @since 2025/12/17
+ */
+@Data
+public class BatchExecutionVO {
+
+    /**
+     * 批次ID（父记录ID）
+     */
+    private String batchId;
+
+    /**
+     * AI应用ID
+     */
+    private String aiApplicationId;
+
+    /**
+     * 父记录状态：1成功 2失败 3进行中
+     */
+    private Integer status;
+
+    /**
+     * 是否已请求取消
+     */
+    private boolean cancelled;
+
+    private int total;
+
+    private int pending;
+
+    private int succeeded;
+
+    private int failed;
+
+    private int inProgress;
+
+    private int cancelledItems;
+
+    /**
+     * 各条目结果（index、status、aiAppRecordId、result、error）
+     */
+    private List<Map<String, Object>> items;
+}
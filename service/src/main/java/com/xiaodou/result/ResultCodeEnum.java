@@ -75,6 +75,9 @@ public enum ResultCodeEnum {
     AI_PROCESSING_ERROR(5003, "AI处理错误"),
     AI_API_LIMIT(5004, "AI API调用限制"),
     AI_API_ERROR(5005, "AI API调用错误"),
+    AI_HANDLER_BUSY(5006, "AI应用繁忙，请稍后重试"),
+    AI_CREDIT_INSUFFICIENT(5007, "积分不足"),
+    AI_TIMEOUT(5008, "AI应用执行超时"),
 
     /* ========== 系统错误 ========== */
     INTERNAL_SERVER_ERROR(9999, "服务器内部错误");
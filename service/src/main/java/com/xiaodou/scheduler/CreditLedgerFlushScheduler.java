@@ -0,0 +1,161 @@
+package com.xiaodou.scheduler;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xiaodou.aiapp.credit.CreditWallet;
+import com.xiaodou.config.CreditProperties;
+import com.xiaodou.mapper.CreditLedgerMapper;
+import com.xiaodou.model.CreditLedger;
+import com.xiaodou.utils.RedisLockUtils;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 积分流水刷盘任务
+ * <p>
+ * 从 Redis 流水列表头部批量读取，INSERT IGNORE 写入 credit_ledger 后再从列表中移除；
+ * 写入与移除之间宕机时下一轮会重复写入，依靠 entry_id 唯一键去重。
+ * 移除时按用户扣减 credit:pending 中的未刷盘合计（与移除在同一脚本内）；无法解析的流水原文移入
+ * credit:ledger:dead，不计为已刷盘，其金额留在未刷盘合计中。
+ * 多节点部署时通过 Redis 锁保证同一时刻只有一个节点刷盘（对账任务也持有同一把锁）。未启用积分时不执行。
+ * </p>
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CreditLedgerFlushScheduler {
+
+    public static final String LOCK_KEY = "credit:ledger:flush:lock";
+    private static final Duration LOCK_TTL = Duration.ofSeconds(30);
+
+    private final CreditWallet creditWallet;
+    private final CreditLedgerMapper creditLedgerMapper;
+    private final CreditProperties creditProperties;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final ObjectMapper objectMapper;
+
+    private final String nodeId = UUID.randomUUID()
+        .toString();
+
+    /**
+     * 启用积分时校验 credit_ledger.entry_id 的唯一索引，缺失则拒绝启动（否则崩溃后重放会重复记账）
+     */
+    @PostConstruct
+    public void verifySchema() {
+        if (!creditProperties.isEnabled()) {
+            return;
+        }
+        if (creditLedgerMapper.countEntryIdUniqueIndexes() == 0) {
+            throw new IllegalStateException(
+                "credit_ledger 缺少 entry_id 唯一索引，流水重放无法去重，请按 db/credit_ledger.sql 建表或补建索引");
+        }
+    }
+
+    /**
+     * 每 500ms 刷一次盘
+     */
+    @Scheduled(initialDelay = 5_000, fixedDelay = 500)
+    public void flush() {
+        if (!creditProperties.isEnabled()) {
+            return;
+        }
+        Boolean locked = redisTemplate.opsForValue()
+            .setIfAbsent(LOCK_KEY, nodeId, LOCK_TTL);
+        if (!Boolean.TRUE.equals(locked)) {
+            return;
+        }
+
+        try {
+            int flushed = 0;
+            for (int batch = 0; batch < creditProperties.getFlushMaxBatches(); batch++) {
+                List<String> raw = creditWallet.peekLedger(creditProperties.getFlushBatchSize());
+                if (raw.isEmpty()) {
+                    break;
+                }
+                List<CreditLedger> entries = new ArrayList<>(raw.size());
+                Map<String, Long> flushedByUser = new HashMap<>();
+                List<String> deadLetters = new ArrayList<>();
+                for (String json : raw) {
+                    CreditLedger entry = parse(json);
+                    if (entry != null) {
+                        entries.add(entry);
+                        flushedByUser.merge(entry.getUserId(), entry.getAmount(), Long::sum);
+                    } else {
+                        deadLetters.add(json);
+                    }
+                }
+                if (!entries.isEmpty()) {
+                    creditLedgerMapper.insertIgnoreBatch(entries);
+                }
+                creditWallet.trimLedger(raw.size(), flushedByUser, deadLetters);
+                flushed += raw.size();
+                if (raw.size() < creditProperties.getFlushBatchSize()) {
+                    break;
+                }
+            }
+            if (flushed > 0) {
+                log.debug("积分流水刷盘 - 条数: {}", flushed);
+            }
+        } catch (Exception e) {
+            // 列表保持不变，下一轮重试
+            log.error("积分流水刷盘失败 - error: {}", e.getMessage(), e);
+        } finally {
+            // 比较并删除为原子操作，执行超过锁 TTL 时不会误删其他节点重新获取的锁
+            RedisLockUtils.release(redisTemplate, LOCK_KEY, nodeId);
+        }
+    }
+
+    private CreditLedger parse(String json) {
+        try {
+            JsonNode node = objectMapper.readTree(json);
+            CreditLedger entry = new CreditLedger();
+            entry.setEntryId(node.path("id")
+                .asText());
+            entry.setUserId(node.path("user")
+                .asText());
+            entry.setEntryType(node.path("type")
+                .asText());
+            entry.setAmount(node.path("amount")
+                .asLong());
+            entry.setReservationId(textOrNull(node, "rsv"));
+            entry.setAiApplicationId(textOrNull(node, "app"));
+            entry.setAiAppRecordId(textOrNull(node, "record"));
+            entry.setBalanceAfter(node.path("balance")
+                .asLong());
+            entry.setRemark(textOrNull(node, "remark"));
+            entry.setOccurredAt(LocalDateTime.ofInstant(Instant.ofEpochMilli(node.path("ts")
+                .asLong()), ZoneId.systemDefault()));
+            if (entry.getEntryId()
+                .isEmpty() || entry.getUserId()
+                .isEmpty()) {
+                throw new IllegalArgumentException("缺少 id 或 user");
+            }
+            return entry;
+        } catch (Exception e) {
+            // 无法解析的流水不能阻塞后续刷盘，移入死信列表以便人工补录
+            log.error("积分流水格式错误，已移入 {} - raw: {}, error: {}", CreditWallet.LEDGER_DEAD_KEY, json,
+                e.getMessage());
+            return null;
+        }
+    }
+
+    private static String textOrNull(JsonNode node, String field) {
+        String value = node.path(field)
+            .asText("");
+        return value.isEmpty() ? null : value;
+    }
+}
@@ -0,0 +1,224 @@
+package com.xiaodou.scheduler;
+
+import com.xiaodou.aiapp.credit.CreditWallet;
+import com.xiaodou.config.CreditProperties;
+import com.xiaodou.mapper.CreditLedgerMapper;
+import com.xiaodou.model.AiAppRecord;
+import com.xiaodou.service.AiAppRecordService;
+import com.xiaodou.utils.RedisLockUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 积分对账任务
+ * <p>
+ * 1. 超时未结算的预扣：未绑定记录的直接退回；已绑定的按记录状态确认或退回，记录仍在进行中则跳过；
+ * 2. 余额对账：Redis 余额应等于 MySQL 流水合计 + 尚未刷盘的流水合计。比对期间持有刷盘锁，
+ * 保证两侧数据处于同一时点；发现偏差时告警，开启 reconcile-repair 后以 MySQL 流水为准修正 Redis。
+ * 多节点部署时通过 Redis 锁保证同一时刻只有一个节点执行。
+ * </p>
+ */
+@Slf4j
+@Component
+public class CreditReconciliationScheduler {
+
+    private static final String LOCK_KEY = "credit:reconcile:lock";
+    private static final Duration LOCK_TTL = Duration.ofMinutes(4);           // 小于执行间隔，节点宕机时锁自动释放
+    private static final Duration FLUSH_LOCK_TTL = Duration.ofSeconds(30);
+    private static final int FLUSH_LOCK_ATTEMPTS = 20;
+    private static final int HOLD_BATCH_SIZE = 500;
+    private static final int USER_BATCH_SIZE = 200;
+
+    private final CreditWallet creditWallet;
+    private final CreditLedgerMapper creditLedgerMapper;
+    private final CreditProperties creditProperties;
+    private final AiAppRecordService aiAppRecordService;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final Counter mismatches;
+
+    private final String nodeId = UUID.randomUUID()
+        .toString();
+
+    public CreditReconciliationScheduler(CreditWallet creditWallet, CreditLedgerMapper creditLedgerMapper,
+        CreditProperties creditProperties, AiAppRecordService aiAppRecordService,
+        RedisTemplate<String, Object> redisTemplate, StringRedisTemplate stringRedisTemplate,
+        MeterRegistry meterRegistry) {
+        this.creditWallet = creditWallet;
+        this.creditLedgerMapper = creditLedgerMapper;
+        this.creditProperties = creditProperties;
+        this.aiAppRecordService = aiAppRecordService;
+        this.redisTemplate = redisTemplate;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.mismatches = Counter.builder("aiapp.credit.reconcile.mismatch")
+            .description("对账发现的余额偏差用户数")
+            .register(meterRegistry);
+    }
+
+    /**
+     * 每 5 分钟对账一次
+     */
+    @Scheduled(initialDelay = 120_000, fixedDelay = 300_000)
+    public void reconcile() {
+        if (!creditProperties.isEnabled()) {
+            return;
+        }
+        Boolean locked = redisTemplate.opsForValue()
+            .setIfAbsent(LOCK_KEY, nodeId, LOCK_TTL);
+        if (!Boolean.TRUE.equals(locked)) {
+            return;
+        }
+
+        try {
+            settleStaleHolds();
+            reconcileBalances();
+        } catch (Exception e) {
+            log.error("积分对账任务执行失败", e);
+        } finally {
+            RedisLockUtils.release(redisTemplate, LOCK_KEY, nodeId);
+        }
+    }
+
+    /**
+     * 处理超时未结算的预扣
+     */
+    private void settleStaleHolds() {
+        Set<String> holds = creditWallet.staleHolds(creditProperties.getUnboundHoldTimeoutMs(), HOLD_BATCH_SIZE);
+        if (holds == null || holds.isEmpty()) {
+            return;
+        }
+
+        int committed = 0;
+        int refunded = 0;
+        for (String reservationId : holds) {
+            try {
+                String recordId = creditWallet.holdRecordId(reservationId);
+                if (recordId == null) {
+                    // 预扣哈希已过期，只剩索引
+                    creditWallet.dropHold(reservationId);
+                    continue;
+                }
+                if (recordId.isEmpty()) {
+                    // 执行方在结算前丢失（节点宕机等）
+                    refunded += creditWallet.refund(reservationId, null) ? 1 : 0;
+                    continue;
+                }
+                AiAppRecord record = aiAppRecordService.getById(recordId);
+                Integer status = record == null ? null : record.getStatus();
+                if (Integer.valueOf(1)
+                    .equals(status)) {
+                    committed += creditWallet.commit(reservationId, recordId) ? 1 : 0;
+                } else if (!Integer.valueOf(3)
+                    .equals(status)) {
+                    refunded += creditWallet.refund(reservationId, recordId) ? 1 : 0;
+                }
+            } catch (Exception e) {
+                log.warn("处理超时预扣失败 - reservationId: {}, error: {}", reservationId, e.getMessage());
+            }
+        }
+        if (committed > 0 || refunded > 0) {
+            log.info("超时预扣处理完成 - 扫描: {}, 确认: {}, 退回: {}", holds.size(), committed, refunded);
+        }
+    }
+
+    /**
+     * 逐批比对 Redis 余额与 MySQL 流水
+     */
+    private void reconcileBalances() throws InterruptedException {
+        ScanOptions options = ScanOptions.scanOptions()
+            .match(CreditWallet.BALANCE_KEY_PREFIX + "*")
+            .count(1_000)
+            .build();
+        int checked = 0;
+        int mismatched = 0;
+        List<String> batch = new ArrayList<>(USER_BATCH_SIZE);
+        try (Cursor<String> cursor = stringRedisTemplate.scan(options)) {
+            while (cursor.hasNext()) {
+                batch.add(cursor.next()
+                    .substring(CreditWallet.BALANCE_KEY_PREFIX.length()));
+                if (batch.size() == USER_BATCH_SIZE) {
+                    mismatched += reconcileBatch(batch);
+                    checked += batch.size();
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            mismatched += reconcileBatch(batch);
+            checked += batch.size();
+        }
+        log.info("积分余额对账完成 - 用户数: {}, 偏差: {}", checked, mismatched);
+    }
+
+    /**
+     * 持有刷盘锁，比对一批用户
+     *
+     * @return 偏差用户数
+     */
+    private int reconcileBatch(List<String> userIds) throws InterruptedException {
+        if (!acquireFlushLock()) {
+            log.warn("未能获取刷盘锁，跳过本批对账 - 用户数: {}", userIds.size());
+            return 0;
+        }
+
+        try {
+            Map<String, Long[]> snapshot = creditWallet.snapshot(userIds);
+            Map<String, Long> persisted = new HashMap<>();
+            for (Map<String, Object> row : creditLedgerMapper.sumAmountByUsers(userIds)) {
+                persisted.put(String.valueOf(row.get("user_id")), ((Number)row.get("balance")).longValue());
+            }
+
+            int mismatched = 0;
+            for (String userId : userIds) {
+                Long[] values = snapshot.get(userId);
+                if (values == null || values[0] == null) {
+                    continue;
+                }
+                long expected = persisted.getOrDefault(userId, 0L) + values[1];
+                long delta = expected - values[0];
+                if (delta == 0) {
+                    continue;
+                }
+                mismatched++;
+                mismatches.increment();
+                if (creditProperties.isReconcileRepair()) {
+                    long balance = creditWallet.adjustBalance(userId, delta);
+                    log.error("积分余额偏差，已按流水修正 - userId: {}, redis: {}, expected: {}, balance: {}", userId,
+                        values[0], expected, balance);
+                } else {
+                    log.error("积分余额偏差 - userId: {}, redis: {}, expected: {}", userId, values[0], expected);
+                }
+            }
+            return mismatched;
+        } finally {
+            // 刷盘锁可能已过期并被刷盘任务重新获取，只释放本节点持有的锁
+            RedisLockUtils.release(redisTemplate, CreditLedgerFlushScheduler.LOCK_KEY, nodeId);
+        }
+    }
+
+    private boolean acquireFlushLock() throws InterruptedException {
+        for (int attempt = 0; attempt < FLUSH_LOCK_ATTEMPTS; attempt++) {
+            if (Boolean.TRUE.equals(redisTemplate.opsForValue()
+                .setIfAbsent(CreditLedgerFlushScheduler.LOCK_KEY, nodeId, FLUSH_LOCK_TTL))) {
+                return true;
+            }
+            Thread.sleep(100);
+        }
+        return false;
+    }
+}
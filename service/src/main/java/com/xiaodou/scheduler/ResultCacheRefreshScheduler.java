@@ -0,0 +1,34 @@
+package com.xiaodou.scheduler;
+
+import com.xiaodou.aiapp.cache.TwoTierResultCache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 结果缓存热点提前刷新任务
+ * <p>
+ * 每个节点按本地访问热度挑选热点 key，在软过期前后台刷新；
+ * 多节点同时挑中同一 key 时由缓存的回源租约去重，只有一个节点回源。
+ * </p>
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ResultCacheRefreshScheduler {
+
+    private final TwoTierResultCache tikHubResultCache;
+
+    /**
+     * 每分钟检查一次热点 key
+     */
+    @Scheduled(initialDelay = 60_000, fixedDelay = 60_000)
+    public void refreshHotKeys() {
+        try {
+            tikHubResultCache.refreshAhead();
+        } catch (Exception e) {
+            log.warn("热点缓存提前刷新失败: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.xiaodou.scheduler;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xiaodou.aiapp.AiAppBatchExecutor;
+import com.xiaodou.aiapp.WorkflowJobPublisher;
+import com.xiaodou.aiapp.WorkflowPollScheduler;
+import com.xiaodou.aiapp.handler.PipelineHandler;
+import com.xiaodou.model.AiAppRecord;
+import com.xiaodou.service.AiAppRecordService;
+import com.xiaodou.utils.RedisLockUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 工作流孤儿记录恢复任务
+ * <p>
+ * 扫描仍处于进行中（3）的工作流记录：
+ * 1. 已绑定 taskId 但没有任何节点持有轮询租约（节点重启/宕机）→ 重新投递 POLL 作业，由任意节点继续轮询；
+ * 2. 长时间未绑定 taskId（RUN 作业丢失）或超过最长存活时间 → 直接置为失败；
+ * 3. 批量执行父记录（batchExecutor）的节点租约已过期 → 由本节点从 Redis 中的游标接手执行，超过最长存活时间则置为失败；
+ * 4. 流水线记录（pipelineHandler）的节点租约已过期 → DAG 状态随节点丢失，直接置为失败。
+ * 每次扫描按 (createdAt, id) 键集分页直到最后一页；多节点部署时通过 Redis 锁保证同一时刻只有一个节点执行扫描，
+ * 锁以比较并删除的方式释放；批次与流水线租约由各节点自行定时续期。
+ * </p>
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class WorkflowRecoveryScheduler {
+
+    private static final String LOCK_KEY = "workflow:recovery:lock";
+    private static final Duration LOCK_TTL = Duration.ofSeconds(50);          // 小于扫描间隔，节点宕机时锁自动释放
+    private static final Duration MIN_AGE = Duration.ofMinutes(2);            // 刚创建的记录交给正常流程处理
+    private static final Duration RUN_STALE_AGE = Duration.ofMinutes(15);     // 超过该时长仍未拿到 taskId 视为 RUN 作业丢失
+    private static final Duration MAX_AGE = Duration.ofHours(6);              // 超过该时长的任务不再恢复，直接置为失败
+    private static final long QUEUED_LEASE_MS = Duration.ofMinutes(5).toMillis(); // 投递后预占租约，等待消费者接手
+    private static final int BATCH_SIZE = 200;
+
+    private final AiAppRecordService aiAppRecordService;
+    private final WorkflowPollScheduler workflowPollScheduler;
+    private final WorkflowJobPublisher workflowJobPublisher;
+    private final AiAppBatchExecutor aiAppBatchExecutor;
+    private final PipelineHandler pipelineHandler;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final ObjectMapper objectMapper;
+
+    private final String nodeId = UUID.randomUUID()
+        .toString();
+
+    /**
+     * 每 30 秒续期本节点正在执行的批次与流水线租约（各节点都执行，不加锁）
+     */
+    @Scheduled(initialDelay = 30_000, fixedDelay = 30_000)
+    public void renewLeases() {
+        aiAppBatchExecutor.renewLeases();
+        pipelineHandler.renewLeases();
+    }
+
+    /**
+     * 每分钟扫描一次进行中的工作流记录
+     */
+    @Scheduled(initialDelay = 60_000, fixedDelay = 60_000)
+    public void recoverOrphanedRecords() {
+        Boolean locked = redisTemplate.opsForValue()
+            .setIfAbsent(LOCK_KEY, nodeId, LOCK_TTL);
+        if (!Boolean.TRUE.equals(locked)) {
+            return;
+        }
+
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            int scanned = 0;
+            int requeued = 0;
+            int failed = 0;
+            // 按 (createdAt, id) 键集分页扫描到最后一页，避免最早的一批健康记录挡住其后的孤儿记录
+            AiAppRecord cursor = null;
+            List<AiAppRecord> records;
+            do {
+                records = aiAppRecordService.list(pageQuery(now, cursor));
+                for (AiAppRecord record : records) {
+                    try {
+                        Duration age = Duration.between(record.getCreatedAt(), now);
+                        if (age.compareTo(MAX_AGE) > 0) {
+                            aiAppRecordService.updateAiAppFailed(record.getId(), "任务超过最长等待时间，已终止跟踪", null);
+                            failed++;
+                        } else if (PipelineHandler.HANDLER_BEAN.equals(record.getHandlerBean())) {
+                            if (!pipelineHandler.hasLease(record.getId())) {
+                                aiAppRecordService.updateAiAppFailed(record.getId(), "流水线执行中断（节点重启），请重新提交",
+                                    null);
+                                failed++;
+                            }
+                        } else if (AiAppBatchExecutor.HANDLER_BEAN.equals(record.getHandlerBean())) {
+                            if (!aiAppBatchExecutor.hasLease(record.getId()) && aiAppBatchExecutor.resume(record)) {
+                                requeued++;
+                            }
+                        } else if (record.getExecuteId() == null) {
+                            if (age.compareTo(RUN_STALE_AGE) > 0) {
+                                aiAppRecordService.updateAiAppFailed(record.getId(), "任务未能启动，请重新提交", null);
+                                failed++;
+                            }
+                        } else if (!workflowPollScheduler.hasLease(record.getExecuteId()) && requeuePoll(record)) {
+                            requeued++;
+                        }
+                    } catch (Exception e) {
+                        log.warn("恢复工作流记录失败 - aiAppRecordId: {}, error: {}", record.getId(), e.getMessage());
+                    }
+                }
+                scanned += records.size();
+                if (!records.isEmpty()) {
+                    cursor = records.get(records.size() - 1);
+                }
+            } while (records.size() == BATCH_SIZE);
+
+            if (requeued > 0 || failed > 0) {
+                log.info("工作流孤儿记录恢复完成 - 扫描: {}, 重新投递/接手: {}, 置为失败: {}", scanned, requeued, failed);
+            }
+        } catch (Exception e) {
+            log.error("工作流孤儿记录恢复任务执行失败", e);
+        } finally {
+            try {
+                RedisLockUtils.release(redisTemplate, LOCK_KEY, nodeId);
+            } catch (Exception e) {
+                log.warn("释放工作流恢复锁失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 进行中记录的一页：按 (createdAt, id) 升序，从上一页最后一条之后开始
+     */
+    private LambdaQueryWrapper<AiAppRecord> pageQuery(LocalDateTime now, AiAppRecord cursor) {
+        LambdaQueryWrapper<AiAppRecord> query = new LambdaQueryWrapper<>();
+        query.eq(AiAppRecord::getStatus, 3)
+            .in(AiAppRecord::getHandlerBean, "syncWorkflowHandler", "asyncWorkflowHandler",
+                AiAppBatchExecutor.HANDLER_BEAN, PipelineHandler.HANDLER_BEAN)
+            .lt(AiAppRecord::getCreatedAt, now.minus(MIN_AGE));
+        if (cursor != null) {
+            query.and(after -> after.gt(AiAppRecord::getCreatedAt, cursor.getCreatedAt())
+                .or(same -> same.eq(AiAppRecord::getCreatedAt, cursor.getCreatedAt())
+                    .gt(AiAppRecord::getId, cursor.getId())));
+        }
+        return query.orderByAsc(AiAppRecord::getCreatedAt)
+            .orderByAsc(AiAppRecord::getId)
+            .last("LIMIT " + BATCH_SIZE);
+    }
+
+    /**
+     * 从记录的输入参数中取出 workflowId，重新投递 POLL 作业（API 密钥由消费者解析）
+     */
+    private boolean requeuePoll(AiAppRecord record) throws Exception {
+        Map<String, Object> input = objectMapper.readValue(record.getInputParams(),
+            new TypeReference<Map<String, Object>>() {});
+        Object workflowId = input.get("workflowId");
+        if (workflowId == null) {
+            aiAppRecordService.updateAiAppFailed(record.getId(), "任务参数缺失，无法恢复轮询", null);
+            return false;
+        }
+
+        workflowPollScheduler.renewLease(record.getExecuteId(), QUEUED_LEASE_MS);
+        workflowJobPublisher.publishPoll(record.getId(), workflowId.toString(), record.getExecuteId());
+        return true;
+    }
+}
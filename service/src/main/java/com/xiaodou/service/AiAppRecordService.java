@@ -32,21 +32,41 @@ public interface AiAppRecordService extends IService<AiAppRecord> {
 
     /**
      * 更新AI应用记录为成功状态
+     * <p>
+     * 仅当记录仍处于进行中（3）时生效，轮询与回调可能同时到达，先到者生效
+     * </p>
      *
      * @param aiAppRecordId AI应用记录ID
      * @param outputResult 输出结果
      * @param executionTime 执行时间（毫秒）
+     * @return 是否实际更新了记录
      */
-    void updateAiAppSuccess(String aiAppRecordId, Map<String, Object> outputResult, Long executionTime);
+    boolean updateAiAppSuccess(String aiAppRecordId, Map<String, Object> outputResult, Long executionTime);
 
     /**
      * 更新AI应用记录为失败状态
+     * <p>
+     * 仅当记录仍处于进行中（3）时生效
+     * </p>
      *
      * @param aiAppRecordId AI应用记录ID
      * @param errorMessage 错误信息
      * @param executionTime 执行时间（毫秒）
+     * @return 是否实际更新了记录
      */
-    void updateAiAppFailed(String aiAppRecordId, String errorMessage, Long executionTime);
+    boolean updateAiAppFailed(String aiAppRecordId, String errorMessage, Long executionTime);
+
+    /**
+     * 为进行中的记录绑定执行ID（异步任务启动后回填 taskId）
+     * <p>
+     * 仅当记录仍处于进行中且尚未绑定执行ID时生效，作业重投时不会覆盖
+     * </p>
+     *
+     * @param aiAppRecordId AI应用记录ID
+     * @param executeId 执行ID
+     * @return 是否实际更新了记录
+     */
+    boolean bindExecuteId(String aiAppRecordId, String executeId);
 
     /**
      * 分页查询用户的AI应用记录
@@ -1,10 +1,12 @@
 package com.xiaodou.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xiaodou.aiapp.credit.CreditWallet;
 import com.xiaodou.mapper.AiAppRecordMapper;
 import com.xiaodou.model.AiAppRecord;
 import com.xiaodou.service.AiAppRecordService;
@@ -12,6 +14,8 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
 import java.util.Map;
@@ -31,6 +35,7 @@ public class AiAppRecordServiceImpl extends ServiceImpl<AiAppRecordMapper, AiApp
         implements AiAppRecordService {
 
     private final ObjectMapper objectMapper;
+    private final CreditWallet creditWallet;
 
     @Override
     @Transactional(rollbackFor = Exception.class)
@@ -65,7 +70,7 @@ public class AiAppRecordServiceImpl extends ServiceImpl<AiAppRecordMapper, AiApp
 
     @Override
     @Transactional(rollbackFor = Exception.class)
-    public void updateAiAppSuccess(String aiAppRecordId, Map<String, Object> outputResult, Long executionTime) {
+    public boolean updateAiAppSuccess(String aiAppRecordId, Map<String, Object> outputResult, Long executionTime) {
         AiAppRecord record = new AiAppRecord();
         record.setId(aiAppRecordId);
         record.setStatus(1); // 1-成功
@@ -81,13 +86,19 @@ public class AiAppRecordServiceImpl extends ServiceImpl<AiAppRecordMapper, AiApp
         }
 
         record.setUpdatedAt(LocalDateTime.now());
-        this.updateById(record);
-        log.info("更新AI应用记录为成功状态 - aiAppRecordId: {}, executionTime: {}ms", aiAppRecordId, executionTime);
+        boolean updated = updateIfInProgress(aiAppRecordId, record);
+        if (updated) {
+            log.info("更新AI应用记录为成功状态 - aiAppRecordId: {}, executionTime: {}ms", aiAppRecordId, executionTime);
+            settleCreditAfterCommit(aiAppRecordId, true);
+        } else {
+            log.info("AI应用记录已结束，忽略成功更新 - aiAppRecordId: {}", aiAppRecordId);
+        }
+        return updated;
     }
 
     @Override
     @Transactional(rollbackFor = Exception.class)
-    public void updateAiAppFailed(String aiAppRecordId, String errorMessage, Long executionTime) {
+    public boolean updateAiAppFailed(String aiAppRecordId, String errorMessage, Long executionTime) {
         AiAppRecord record = new AiAppRecord();
         record.setId(aiAppRecordId);
         record.setStatus(2); // 2-失败
@@ -95,8 +106,56 @@ public class AiAppRecordServiceImpl extends ServiceImpl<AiAppRecordMapper, AiApp
         record.setExecutionTime(executionTime);
         record.setUpdatedAt(LocalDateTime.now());
 
-        this.updateById(record);
-        log.warn("更新AI应用记录为失败状态 - aiAppRecordId: {}, error: {}", aiAppRecordId, errorMessage);
+        boolean updated = updateIfInProgress(aiAppRecordId, record);
+        if (updated) {
+            log.warn("更新AI应用记录为失败状态 - aiAppRecordId: {}, error: {}", aiAppRecordId, errorMessage);
+            settleCreditAfterCommit(aiAppRecordId, false);
+        } else {
+            log.info("AI应用记录已结束，忽略失败更新 - aiAppRecordId: {}", aiAppRecordId);
+        }
+        return updated;
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public boolean bindExecuteId(String aiAppRecordId, String executeId) {
+        LambdaUpdateWrapper<AiAppRecord> update = new LambdaUpdateWrapper<>();
+        update.set(AiAppRecord::getExecuteId, executeId)
+            .set(AiAppRecord::getUpdatedAt, LocalDateTime.now())
+            .eq(AiAppRecord::getId, aiAppRecordId)
+            .eq(AiAppRecord::getStatus, 3)
+            .isNull(AiAppRecord::getExecuteId);
+        boolean updated = this.update(update);
+        log.info("绑定AI应用记录执行ID - aiAppRecordId: {}, executeId: {}, updated: {}", aiAppRecordId, executeId,
+            updated);
+        return updated;
+    }
+
+    /**
+     * 条件更新：仅当记录仍为进行中（3）时写入终态，保证结果只落库一次
+     */
+    private boolean updateIfInProgress(String aiAppRecordId, AiAppRecord record) {
+        record.setId(null);
+        LambdaUpdateWrapper<AiAppRecord> update = new LambdaUpdateWrapper<>();
+        update.eq(AiAppRecord::getId, aiAppRecordId)
+            .eq(AiAppRecord::getStatus, 3);
+        return this.update(record, update);
+    }
+
+    /**
+     * 记录终态提交后再结算绑定的积分，事务回滚时不结算（由对账任务按记录状态处理）
+     */
+    private void settleCreditAfterCommit(String aiAppRecordId, boolean success) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            creditWallet.settleRecord(aiAppRecordId, success);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                creditWallet.settleRecord(aiAppRecordId, success);
+            }
+        });
     }
 
     @Override
@@ -0,0 +1,103 @@
+package com.xiaodou.tracking;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * 有界无锁环形缓冲（多生产者、单消费者）
+ * <p>
+ * 每个槽位带序号：生产者 CAS 抢占写入位置后写入元素并发布序号，消费者只读取序号已发布的槽位；
+ * 槽位未被消费时 {@link #offer} 立即返回 false，不阻塞、不加锁。{@link #poll}/{@link #drain} 只允许单线程调用。
+ * </p>
+ *
+ * @author xiaodou V=>dddou117
+ * @version V1.0
+ * @since 2025/12/19
+ */
+public final class MpscRingBuffer<E> {
+
+    private final int mask;
+    private final AtomicReferenceArray<E> slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    /**
+     * @param capacity 容量，向上取整为 2 的幂
+     */
+    public MpscRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * 写入元素，缓冲已满时返回 false
+     */
+    public boolean offer(E element) {
+        while (true) {
+            long position = tail.get();
+            int index = (int)position & mask;
+            long diff = sequences.get(index) - position;
+            if (diff == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots.lazySet(index, element);
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+            } else if (diff < 0) {
+                // 槽位仍未被消费：已满
+                return false;
+            }
+            // diff > 0：其他生产者已抢占该位置，重读 tail
+        }
+    }
+
+    /**
+     * 取出一个元素，没有可读元素时返回 null（仅消费线程调用）
+     */
+    public E poll() {
+        long position = head;
+        int index = (int)position & mask;
+        if (sequences.get(index) != position + 1) {
+            return null;
+        }
+        E element = slots.get(index);
+        slots.lazySet(index, null);
+        sequences.set(index, position + mask + 1);
+        head = position + 1;
+        return element;
+    }
+
+    /**
+     * 最多取出 limit 个元素交给 consumer（仅消费线程调用）
+     *
+     * @return 取出的元素数
+     */
+    public int drain(Consumer<E> consumer, int limit) {
+        int count = 0;
+        E element;
+        while (count < limit && (element = poll()) != null) {
+            consumer.accept(element);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * 当前元素数（近似值）
+     */
+    public int size() {
+        return (int)Math.max(0, tail.get() - head);
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,283 @@
+package com.xiaodou.tracking;
+
+import com.xiaodou.config.TrackingProperties;
+import com.xiaodou.config.rabbitmq.TrackingRabbitMQConfig;
+import com.xiaodou.model.dto.tracking.EventBatchMessage;
+import com.xiaodou.model.dto.tracking.EventMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 埋点事件异步批量投递
+ * <p>
+ * 请求线程只把事件写入有界无锁环形缓冲（{@link MpscRingBuffer}）即返回，不接触 Broker；
+ * 缓冲已满时直接丢弃并计数，由接口返回 202 告知调用方，不阻塞请求线程。
+ * </p>
+ * <p>
+ * 独立的投递线程从缓冲中取出事件，凑满 maxBatch 条或等待 lingerMs 后合并为一条 {@link EventBatchMessage} 投递。
+ * 发布确认（publisher confirm）在回调中异步处理：未确认的批次数受 maxInFlight 限制，
+ * 被 Broker 拒绝、无法路由或确认超时的批次交回投递线程写入本地暂存（{@link TrackingSpool}），Broker 恢复后按顺序重放；
+ * 确认回调运行在连接线程或超时线程上，不在回调中执行落盘。发送异常后的 retryBackoffMs 内，
+ * 以及暂存中仍有待重放的批次时，新批次也写入暂存排在其后，不越过更早的批次直接投递。
+ * Broker 变慢或宕机都不会传导为接口延迟。
+ * </p>
+ *
+ * @author xiaodou V=>dddou117
+ * @version V1.0
+ * @since 2025/12/19
+ */
+@Slf4j
+@Component
+public class TrackingEventPublisher {
+
+    private final RabbitTemplate rabbitTemplate;
+    private final TrackingSpool trackingSpool;
+    private final MessageConverter messageConverter;
+    private final TrackingProperties.Publisher config;
+    private final MpscRingBuffer<EventMessage> buffer;
+    private final Semaphore inFlight;
+    // 未获确认的批次，由投递线程写入暂存
+    private final Queue<Failed> failed = new ConcurrentLinkedQueue<>();
+    private final boolean confirms;
+
+    private final Counter published;
+    private final Counter dropped;
+    private final Counter rejected;
+    private final Counter spooled;
+
+    private volatile boolean running = true;
+    private volatile long brokerDownUntil;
+    private Thread drainer;
+
+    public TrackingEventPublisher(RabbitTemplate rabbitTemplate, TrackingSpool trackingSpool,
+        @Qualifier("rabbitMessageConverter") MessageConverter messageConverter, TrackingProperties trackingProperties,
+        MeterRegistry meterRegistry) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.trackingSpool = trackingSpool;
+        this.messageConverter = messageConverter;
+        this.config = trackingProperties.getPublisher();
+        this.buffer = new MpscRingBuffer<>(config.getBufferSize());
+        this.inFlight = new Semaphore(Math.max(1, config.getMaxInFlight()));
+        this.confirms = rabbitTemplate.getConnectionFactory()
+            .isPublisherConfirms();
+
+        Gauge.builder("tracking.publisher.buffered", buffer, MpscRingBuffer::size)
+            .description("埋点投递缓冲中的事件数")
+            .register(meterRegistry);
+        this.published = eventCounter(meterRegistry, "published");
+        this.dropped = eventCounter(meterRegistry, "dropped");
+        this.rejected = eventCounter(meterRegistry, "rejected");
+        this.spooled = eventCounter(meterRegistry, "spooled");
+    }
+
+    @PostConstruct
+    public void start() {
+        drainer = Thread.ofPlatform()
+            .name("tracking-publisher")
+            .daemon(true)
+            .start(this::drainLoop);
+        log.info("埋点投递线程已启动 - 缓冲容量: {}, maxBatch: {}, lingerMs: {}, 发布确认: {}", buffer.capacity(),
+            config.getMaxBatch(), config.getLingerMs(), confirms);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(drainer);
+        // 投递线程退出前会等待在途批次的确认
+        drainer.join(TimeUnit.SECONDS.toMillis(5) + config.getConfirmTimeoutMs());
+        if (buffer.size() > 0) {
+            log.warn("埋点投递线程退出时缓冲中仍有事件，已丢弃 - 条数: {}", buffer.size());
+        }
+    }
+
+    /**
+     * 写入投递缓冲（不阻塞）
+     *
+     * @return 缓冲已满、事件被丢弃时返回 false
+     */
+    public boolean offer(EventMessage event) {
+        if (buffer.offer(event)) {
+            return true;
+        }
+        dropped.increment();
+        return false;
+    }
+
+    private void drainLoop() {
+        long lingerNanos = TimeUnit.MILLISECONDS.toNanos(config.getLingerMs());
+        int maxBatch = Math.max(1, config.getMaxBatch());
+        List<EventMessage> batch = new ArrayList<>(maxBatch);
+        long firstAt = 0;
+        while (running || buffer.size() > 0 || !batch.isEmpty()) {
+            spoolFailed();
+            int drained = buffer.drain(batch::add, maxBatch - batch.size());
+            if (batch.isEmpty()) {
+                LockSupport.parkNanos(lingerNanos);
+                continue;
+            }
+            if (firstAt == 0) {
+                firstAt = System.nanoTime();
+            }
+            if (batch.size() >= maxBatch || System.nanoTime() - firstAt >= lingerNanos || !running) {
+                publish(batch);
+                batch = new ArrayList<>(maxBatch);
+                firstAt = 0;
+            } else if (drained == 0) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        }
+        awaitConfirms();
+        spoolFailed();
+    }
+
+    /**
+     * 等待在途批次的确认回调（最长 confirmTimeoutMs，超时由回调自身触发）
+     */
+    private void awaitConfirms() {
+        if (!confirms) {
+            return;
+        }
+        int permits = Math.max(1, config.getMaxInFlight());
+        try {
+            if (inFlight.tryAcquire(permits, config.getConfirmTimeoutMs() + 1_000, TimeUnit.MILLISECONDS)) {
+                inFlight.release(permits);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                .interrupt();
+        }
+    }
+
+    /**
+     * 把确认回调交回的失败批次写入本地暂存（投递线程）
+     */
+    private void spoolFailed() {
+        Failed batch;
+        while ((batch = failed.poll()) != null) {
+            spool(batch.body(), batch.events(), batch.reason());
+        }
+    }
+
+    /**
+     * 投递一批事件；发送异常、被拒绝、无法路由或确认超时的批次写入本地暂存，由 {@link TrackingSpoolReplayer} 重放
+     */
+    private void publish(List<EventMessage> batch) {
+        Message message;
+        try {
+            message = messageConverter.toMessage(new EventBatchMessage(batch), new MessageProperties());
+        } catch (Exception e) {
+            log.error("埋点批次编码失败，丢弃 - 条数: {}", batch.size(), e);
+            dropped.increment(batch.size());
+            return;
+        }
+        if (System.currentTimeMillis() < brokerDownUntil) {
+            spool(message.getBody(), batch.size(), "Broker 不可用");
+            return;
+        }
+        if (trackingSpool.pendingBytes() > 0) {
+            // 暂存中还有更早的批次，排在其后等待重放
+            spool(message.getBody(), batch.size(), "暂存重放中");
+            return;
+        }
+        if (confirms && !acquireInFlight()) {
+            spool(message.getBody(), batch.size(), "服务关闭时仍有批次未获确认");
+            return;
+        }
+
+        CorrelationData correlation = confirms ? new CorrelationData() : null;
+        try {
+            rabbitTemplate.send(TrackingRabbitMQConfig.EXCHANGE_NAME, TrackingRabbitMQConfig.ROUTING_KEY, message,
+                correlation);
+        } catch (Exception e) {
+            if (confirms) {
+                inFlight.release();
+            }
+            brokerDownUntil = System.currentTimeMillis() + config.getRetryBackoffMs();
+            spool(message.getBody(), batch.size(), e.getMessage());
+            return;
+        }
+        if (correlation == null) {
+            published.increment(batch.size());
+            return;
+        }
+        correlation.getFuture()
+            .orTimeout(config.getConfirmTimeoutMs(), TimeUnit.MILLISECONDS)
+            .whenComplete((confirm, error) -> onConfirm(message, batch.size(), correlation, confirm, error));
+    }
+
+    private boolean acquireInFlight() {
+        try {
+            while (!inFlight.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+                if (!running) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                .interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * 发布确认回调（连接线程或超时线程）：确认成功计数，否则交给投递线程写入本地暂存
+     */
+    private void onConfirm(Message message, int events, CorrelationData correlation, CorrelationData.Confirm confirm,
+        Throwable error) {
+        inFlight.release();
+        if (error == null && confirm.isAck() && correlation.getReturned() == null) {
+            published.increment(events);
+            return;
+        }
+        rejected.increment(events);
+        String reason = error instanceof TimeoutException ? "确认超时" : error != null ? error.getMessage() :
+            confirm.isAck() ? "无法路由" : confirm.getReason();
+        failed.add(new Failed(message.getBody(), events, reason));
+        LockSupport.unpark(drainer);
+    }
+
+    private void spool(byte[] body, int events, String reason) {
+        if (trackingSpool.append(body)) {
+            spooled.increment(events);
+            log.warn("埋点批次投递失败，已写入本地暂存 - 条数: {}, reason: {}", events, reason);
+        } else {
+            dropped.increment(events);
+            log.error("埋点批次投递失败且本地暂存不可用或已满，丢弃 - 条数: {}, reason: {}", events, reason);
+        }
+    }
+
+    private static Counter eventCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("tracking.publisher.events")
+            .description("埋点投递事件数")
+            .tag("result", result)
+            .register(meterRegistry);
+    }
+
+    /**
+     * 未获确认、待写入暂存的批次
+     */
+    private record Failed(byte[] body, int events, String reason) {
+    }
+}
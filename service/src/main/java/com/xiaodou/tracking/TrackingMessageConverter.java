@@ -0,0 +1,92 @@
+package com.xiaodou.tracking;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.xiaodou.model.dto.tracking.EventBatchMessage;
+import com.xiaodou.model.dto.tracking.EventMessage;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.amqp.support.converter.SimpleMessageConverter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * 埋点消息的紧凑二进制编码（Jackson Smile）
+ * <p>
+ * {@link EventMessage}、{@link EventBatchMessage} 编码为：1 字节格式版本 + Smile 文档，content-type 为
+ * {@value #CONTENT_TYPE}。Smile 在同一文档内复用字段名，批量消息中每条事件的字段名只写一次；
+ * 按字段名而非类结构解码，新增字段不影响旧消费者，比 Java 序列化更小、更快，也不再依赖类的序列化兼容性。
+ * </p>
+ * <p>
+ * 其他类型的消息（如工作流作业）以及升级前 Java 序列化的存量埋点消息交给 {@link SimpleMessageConverter}，
+ * 行为与未配置转换器时一致。未知的格式版本抛出 {@link MessageConversionException}，由消费者拒绝。
+ * </p>
+ *
+ * @author xiaodou V=>dddou117
+ * @version V1.0
+ * @since 2025/12/19
+ */
+public class TrackingMessageConverter implements MessageConverter {
+
+    public static final String CONTENT_TYPE = "application/x-tracking-smile";
+
+    private static final byte FORMAT_EVENT_V1 = 1;
+    private static final byte FORMAT_BATCH_V1 = 2;
+
+    private final ObjectMapper smileMapper = new ObjectMapper(new SmileFactory())
+        .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final MessageConverter fallback = new SimpleMessageConverter();
+
+    @Override
+    public Message toMessage(Object object, MessageProperties messageProperties) throws MessageConversionException {
+        byte format;
+        if (object instanceof EventBatchMessage) {
+            format = FORMAT_BATCH_V1;
+        } else if (object instanceof EventMessage) {
+            format = FORMAT_EVENT_V1;
+        } else {
+            return fallback.toMessage(object, messageProperties);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        out.write(format);
+        try {
+            smileMapper.writeValue(out, object);
+        } catch (IOException e) {
+            throw new MessageConversionException("埋点消息编码失败", e);
+        }
+        byte[] body = out.toByteArray();
+        messageProperties.setContentType(CONTENT_TYPE);
+        messageProperties.setContentLength(body.length);
+        return new Message(body, messageProperties);
+    }
+
+    @Override
+    public Object fromMessage(Message message) throws MessageConversionException {
+        if (!CONTENT_TYPE.equals(message.getMessageProperties()
+            .getContentType())) {
+            return fallback.fromMessage(message);
+        }
+
+        byte[] body = message.getBody();
+        if (body == null || body.length < 2) {
+            throw new MessageConversionException("埋点消息为空");
+        }
+        Class<?> type = switch (body[0]) {
+            case FORMAT_EVENT_V1 -> EventMessage.class;
+            case FORMAT_BATCH_V1 -> EventBatchMessage.class;
+            default -> throw new MessageConversionException("未知的埋点消息格式: " + body[0]);
+        };
+        try {
+            return smileMapper.readValue(body, 1, body.length - 1, type);
+        } catch (IOException e) {
+            throw new MessageConversionException("埋点消息解码失败", e);
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package com.xiaodou.tracking;
+
+import com.xiaodou.config.TrackingProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 埋点消息本地暂存（Broker 不可用时）
+ * <p>
+ * 追加写入的分段文件，每段 segmentBytes 字节，以内存映射方式读写，文件名为段号（{id}.seg）。
+ * 每条记录为 [长度 4 字节][CRC32 4 字节][消息体]，写入后立即 force 落盘；长度为 0 表示该段已无更多记录。
+ * 消费位置（段号 + 偏移）保存在 checkpoint 文件中，{@link #commit} 推进消费位置并删除已消费完的段。
+ * </p>
+ * <p>
+ * 启动时按段号恢复：最后一段为写入段，从头校验记录直到遇到空记录或 CRC 不符，其后的残留（写入中途宕机）清零；
+ * 读取时 CRC 不符的记录视为损坏，跳过该段剩余部分。总大小超过 maxBytes 时拒绝写入，由调用方丢弃并计数。
+ * 写入与读取均在同一把锁下进行（仅在 Broker 故障时使用，不在请求线程上）。
+ * </p>
+ *
+ * @author xiaodou V=>dddou117
+ * @version V1.0
+ * @since 2025/12/20
+ */
+@Slf4j
+@Component
+public class TrackingSpool {
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final int HEADER_BYTES = 8;
+
+    private final TrackingProperties.Spool config;
+    private final Path dir;
+    private final int segmentBytes;
+
+    // 段号 -> 段
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private Segment active;
+    private int writePosition;
+    private long readSegment;
+    private int readOffset;
+
+    private final Counter corrupted;
+
+    public TrackingSpool(TrackingProperties trackingProperties, MeterRegistry meterRegistry) {
+        this.config = trackingProperties.getSpool();
+        this.dir = Path.of(config.getDir());
+        this.segmentBytes = config.getSegmentBytes();
+
+        Gauge.builder("tracking.spool.bytes", this, TrackingSpool::pendingBytes)
+            .description("本地暂存中待重放的字节数")
+            .register(meterRegistry);
+        Gauge.builder("tracking.spool.segments", this, TrackingSpool::segmentCount)
+            .description("本地暂存的段文件数")
+            .register(meterRegistry);
+        this.corrupted = Counter.builder("tracking.spool.corrupted")
+            .description("本地暂存中校验失败而跳过的记录数")
+            .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public synchronized void open() throws IOException {
+        if (!config.isEnabled()) {
+            return;
+        }
+        Files.createDirectories(dir);
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.filter(f -> f.getFileName()
+                    .toString()
+                    .endsWith(SEGMENT_SUFFIX))
+                .toList()) {
+                String name = file.getFileName()
+                    .toString();
+                long id = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+                segments.put(id, Segment.map(file, id, segmentBytes));
+            }
+        }
+        readCheckpoint();
+
+        if (!segments.isEmpty()) {
+            active = segments.lastEntry()
+                .getValue();
+            writePosition = recover(active);
+        }
+        log.info("埋点本地暂存已打开 - dir: {}, 段数: {}, 待重放字节: {}", dir.toAbsolutePath(), segments.size(),
+            pendingBytes());
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        segments.values()
+            .forEach(Segment::close);
+        segments.clear();
+        active = null;
+    }
+
+    /**
+     * 追加一条记录
+     *
+     * @return 暂存未启用、已满或写入失败时返回 false
+     */
+    public synchronized boolean append(byte[] payload) {
+        if (!config.isEnabled()) {
+            return false;
+        }
+        int size = HEADER_BYTES + payload.length;
+        if (size > segmentBytes) {
+            log.error("埋点消息超过暂存段大小，无法暂存 - 字节数: {}", payload.length);
+            return false;
+        }
+        try {
+            if (active == null || writePosition + size > segmentBytes) {
+                if ((long)(segments.size() + 1) * segmentBytes > config.getMaxBytes()) {
+                    return false;
+                }
+                roll();
+            }
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            MappedByteBuffer buffer = active.buffer;
+            buffer.putInt(writePosition + 4, (int)crc.getValue());
+            buffer.put(writePosition + HEADER_BYTES, payload);
+            buffer.putInt(writePosition, payload.length);
+            buffer.force(writePosition, size);
+            writePosition += size;
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.error("写入埋点本地暂存失败: {}", e.getMessage(), e);
+            return false;
+        }
+    }
+
+    /**
+     * 读取消费位置上的下一条记录（不推进消费位置），没有记录时返回 null
+     */
+    public synchronized Record peek() {
+        while (true) {
+            Segment segment = segments.get(readSegment);
+            if (segment == null) {
+                Long next = segments.higherKey(readSegment);
+                if (next == null) {
+                    return null;
+                }
+                readSegment = next;
+                readOffset = 0;
+                continue;
+            }
+            int limit = segment == active ? writePosition : segmentBytes;
+            int length = readOffset + HEADER_BYTES <= limit ? segment.buffer.getInt(readOffset) : 0;
+            if (length == 0) {
+                if (segment == active) {
+                    return null;
+                }
+                skipSegment();
+                continue;
+            }
+            byte[] payload = length > 0 && readOffset + HEADER_BYTES + length <= limit ?
+                read(segment.buffer, readOffset, length) : null;
+            if (payload == null) {
+                corrupted.increment();
+                log.error("埋点本地暂存记录损坏，跳过该段剩余部分 - segment: {}, offset: {}", readSegment, readOffset);
+                if (segment == active) {
+                    // 写入段只会包含校验通过的记录，出现损坏说明文件被外部修改，丢弃剩余部分
+                    readOffset = writePosition;
+                    return null;
+                }
+                skipSegment();
+                continue;
+            }
+            return new Record(readSegment, readOffset + HEADER_BYTES + length, payload);
+        }
+    }
+
+    /**
+     * 记录已重放成功：推进消费位置，删除已消费完的段
+     */
+    public synchronized void commit(Record record) {
+        readSegment = record.segmentId();
+        readOffset = record.nextOffset();
+        try {
+            writeCheckpoint();
+        } catch (IOException e) {
+            log.warn("写入埋点暂存消费位置失败，重启后可能重复重放 - error: {}", e.getMessage());
+        }
+        while (!segments.isEmpty() && segments.firstKey() < readSegment) {
+            Segment drained = segments.pollFirstEntry()
+                .getValue();
+            drained.delete();
+        }
+    }
+
+    /**
+     * 待重放字节数（按段内已写入位置估算）
+     */
+    public synchronized long pendingBytes() {
+        long pending = 0;
+        for (Map.Entry<Long, Segment> entry : segments.tailMap(readSegment, true)
+            .entrySet()) {
+            pending += entry.getValue() == active ? writePosition : segmentBytes;
+            if (entry.getKey() == readSegment) {
+                pending -= readOffset;
+            }
+        }
+        return Math.max(0, pending);
+    }
+
+    public synchronized int segmentCount() {
+        return segments.size();
+    }
+
+    private void roll() throws IOException {
+        long id = segments.isEmpty() ? Math.max(readSegment, 0) : segments.lastKey() + 1;
+        active = Segment.map(dir.resolve(id + SEGMENT_SUFFIX), id, segmentBytes);
+        segments.put(id, active);
+        writePosition = 0;
+        if (segments.size() == 1) {
+            readSegment = id;
+            readOffset = 0;
+        }
+    }
+
+    private void skipSegment() {
+        Long next = segments.higherKey(readSegment);
+        readSegment = next == null ? readSegment + 1 : next;
+        readOffset = 0;
+    }
+
+    /**
+     * 校验写入段中的记录，返回第一个无效位置，并把其后的残留清零
+     */
+    private int recover(Segment segment) {
+        int position = 0;
+        while (position + HEADER_BYTES <= segmentBytes) {
+            int length = segment.buffer.getInt(position);
+            if (length <= 0 || position + HEADER_BYTES + length > segmentBytes
+                || read(segment.buffer, position, length) == null) {
+                break;
+            }
+            position += HEADER_BYTES + length;
+        }
+        byte[] zeros = new byte[8192];
+        for (int offset = position; offset < segmentBytes; offset += zeros.length) {
+            segment.buffer.put(offset, zeros, 0, Math.min(zeros.length, segmentBytes - offset));
+        }
+        segment.buffer.force();
+        return position;
+    }
+
+    /**
+     * 读取记录体并校验 CRC，不符时返回 null
+     */
+    private static byte[] read(MappedByteBuffer buffer, int offset, int length) {
+        byte[] payload = new byte[length];
+        buffer.get(offset + HEADER_BYTES, payload);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int)crc.getValue() == buffer.getInt(offset + 4) ? payload : null;
+    }
+
+    private void readCheckpoint() throws IOException {
+        Path file = dir.resolve(CHECKPOINT_FILE);
+        if (Files.exists(file)) {
+            ByteBuffer checkpoint = ByteBuffer.wrap(Files.readAllBytes(file));
+            if (checkpoint.remaining() >= Long.BYTES + Integer.BYTES) {
+                readSegment = checkpoint.getLong();
+                readOffset = checkpoint.getInt();
+                return;
+            }
+        }
+        readSegment = segments.isEmpty() ? 0 : segments.firstKey();
+        readOffset = 0;
+    }
+
+    private void writeCheckpoint() throws IOException {
+        Path temp = dir.resolve(CHECKPOINT_FILE + ".tmp");
+        Files.write(temp, ByteBuffer.allocate(Long.BYTES + Integer.BYTES)
+            .putLong(readSegment)
+            .putInt(readOffset)
+            .array());
+        Files.move(temp, dir.resolve(CHECKPOINT_FILE), StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 一条暂存记录
+     *
+     * @param segmentId 所在段
+     * @param nextOffset 下一条记录的偏移
+     * @param payload 消息体
+     */
+    public record Record(long segmentId, int nextOffset, byte[] payload) {
+    }
+
+    /**
+     * 一个段文件及其内存映射
+     */
+    private static final class Segment {
+        private final long id;
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+
+        private Segment(long id, Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        static Segment map(Path path, long id, int size) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+            try {
+                return new Segment(id, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        void close() {
+            try {
+                buffer.force();
+                channel.close();
+            } catch (IOException e) {
+                log.warn("关闭埋点暂存段失败 - segment: {}, error: {}", id, e.getMessage());
+            }
+        }
+
+        void delete() {
+            close();
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                log.warn("删除埋点暂存段失败 - segment: {}, error: {}", id, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.xiaodou.tracking;
+
+import com.xiaodou.config.TrackingProperties;
+import com.xiaodou.config.rabbitmq.TrackingRabbitMQConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 埋点本地暂存重放
+ * <p>
+ * 后台线程按写入顺序逐条取出 {@link TrackingSpool} 中的批次重新投递到埋点交换机，
+ * 获得发布确认后才推进消费位置；投递失败（Broker 仍不可用、拒绝或确认超时）时停在当前记录，
+ * 间隔 replayIntervalMs 后重试，保证顺序且不跳过记录。暂存为空时同样按该间隔检查。
+ * </p>
+ *
+ * @author xiaodou V=>dddou117
+ * @version V1.0
+ * @since 2025/12/20
+ */
+@Slf4j
+@Component
+public class TrackingSpoolReplayer {
+
+    private final TrackingSpool trackingSpool;
+    private final RabbitTemplate rabbitTemplate;
+    private final TrackingProperties trackingProperties;
+    private final boolean confirms;
+
+    private final Counter replayed;
+    private final Counter failed;
+
+    private volatile boolean running = true;
+    private Thread worker;
+
+    public TrackingSpoolReplayer(TrackingSpool trackingSpool, RabbitTemplate rabbitTemplate,
+        TrackingProperties trackingProperties, MeterRegistry meterRegistry) {
+        this.trackingSpool = trackingSpool;
+        this.rabbitTemplate = rabbitTemplate;
+        this.trackingProperties = trackingProperties;
+        this.confirms = rabbitTemplate.getConnectionFactory()
+            .isPublisherConfirms();
+        this.replayed = replayCounter(meterRegistry, "replayed");
+        this.failed = replayCounter(meterRegistry, "failed");
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!trackingProperties.getSpool()
+            .isEnabled()) {
+            return;
+        }
+        worker = Thread.ofPlatform()
+            .name("tracking-spool-replayer")
+            .daemon(true)
+            .start(this::replayLoop);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (worker != null) {
+            LockSupport.unpark(worker);
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    private void replayLoop() {
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(trackingProperties.getSpool()
+            .getReplayIntervalMs());
+        long drainedSinceIdle = 0;
+        while (running) {
+            TrackingSpool.Record record;
+            try {
+                record = trackingSpool.peek();
+            } catch (Exception e) {
+                log.error("读取埋点本地暂存失败", e);
+                record = null;
+            }
+            if (record == null) {
+                if (drainedSinceIdle > 0) {
+                    log.info("埋点本地暂存已重放完毕 - 批次数: {}", drainedSinceIdle);
+                    drainedSinceIdle = 0;
+                }
+                LockSupport.parkNanos(intervalNanos);
+                continue;
+            }
+            if (send(record.payload())) {
+                trackingSpool.commit(record);
+                replayed.increment();
+                drainedSinceIdle++;
+            } else {
+                failed.increment();
+                LockSupport.parkNanos(intervalNanos);
+            }
+        }
+    }
+
+    /**
+     * 投递一条暂存的批次并等待发布确认
+     */
+    private boolean send(byte[] payload) {
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(TrackingMessageConverter.CONTENT_TYPE);
+        properties.setContentLength(payload.length);
+        CorrelationData correlation = confirms ? new CorrelationData() : null;
+        try {
+            rabbitTemplate.send(TrackingRabbitMQConfig.EXCHANGE_NAME, TrackingRabbitMQConfig.ROUTING_KEY,
+                new Message(payload, properties), correlation);
+            if (correlation == null) {
+                return true;
+            }
+            CorrelationData.Confirm confirm = correlation.getFuture()
+                .get(trackingProperties.getPublisher()
+                    .getConfirmTimeoutMs(), TimeUnit.MILLISECONDS);
+            if (confirm.isAck() && correlation.getReturned() == null) {
+                return true;
+            }
+            log.warn("埋点暂存批次重放未被确认 - reason: {}", confirm.isAck() ? "无法路由" : confirm.getReason());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                .interrupt();
+            return false;
+        } catch (Exception e) {
+            log.debug("埋点暂存批次重放失败，稍后重试 - error: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    private static Counter replayCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("tracking.spool.replay")
+            .description("埋点本地暂存重放的批次数")
+            .tag("result", result)
+            .register(meterRegistry);
+    }
+}
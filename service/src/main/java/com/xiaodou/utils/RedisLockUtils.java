@@ -0,0 +1,47 @@
+package com.xiaodou.utils;
+
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.List;
+
+/**
+ * Redis 锁/租约释放工具
+ * <p>
+ * 持有者写入自己的标识（节点ID、租约令牌）后，释放时比较与删除在一个 Lua 脚本中原子完成：
+ * 执行时间超过 TTL 时，锁可能已被其他节点重新获取，先 GET 再 DEL 会误删他人的锁。
+ * 标识的序列化方式与写入时所用的模板一致（参数与返回值均经模板的值序列化器处理）。
+ * </p>
+ *
+ * @author xiaodou V=>dddou117
+ * @version V1.0
+ * @since 2025/12/20
+ */
+public final class RedisLockUtils {
+
+    private RedisLockUtils() {} // 禁止实例化
+
+    /**
+     * 仅当键的值仍为 ARGV[1] 时删除，返回删除的键数（0 表示锁已不属于调用方）
+     */
+    public static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>("""
+        if redis.call('GET', KEYS[1]) == ARGV[1] then
+          return redis.call('DEL', KEYS[1])
+        end
+        return 0
+        """, Long.class);
+
+    /**
+     * 释放本方持有的锁
+     *
+     * @param redisOperations 写入锁时使用的模板
+     * @param key 锁键
+     * @param owner 加锁时写入的持有者标识
+     * @return true 表示已删除；false 表示锁已过期或已被其他持有者获取
+     */
+    public static boolean release(RedisOperations<String, ?> redisOperations, String key, Object owner) {
+        Long deleted = redisOperations.execute(RELEASE_SCRIPT, List.of(key), owner);
+        return deleted != null && deleted > 0;
+    }
+}
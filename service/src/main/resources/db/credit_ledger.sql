@@ -0,0 +1,22 @@
+-- 积分流水表（只追加，用户余额 = 该用户所有流水 amount 之和）
+-- 刷盘使用 INSERT IGNORE，崩溃后重放依靠 uk_entry_id 去重；缺少该唯一键会重复记账，
+-- 启用积分（credit.enabled）时 CreditLedgerFlushScheduler 启动即校验，缺失则拒绝启动。
+CREATE TABLE IF NOT EXISTS credit_ledger
+(
+    id                BIGINT       NOT NULL AUTO_INCREMENT COMMENT '自增主键',
+    entry_id          VARCHAR(128) NOT NULL COMMENT '流水唯一ID（预扣ID:类型 或 发放ID）',
+    user_id           VARCHAR(64)  NOT NULL COMMENT '用户ID',
+    entry_type        VARCHAR(16)  NOT NULL COMMENT '流水类型：GRANT/RESERVE/COMMIT/REFUND',
+    amount            BIGINT       NOT NULL COMMENT '余额变动',
+    reservation_id    VARCHAR(64)           DEFAULT NULL COMMENT '预扣ID',
+    ai_application_id VARCHAR(64)           DEFAULT NULL COMMENT 'AI应用ID',
+    ai_app_record_id  VARCHAR(64)           DEFAULT NULL COMMENT 'AI应用记录ID',
+    balance_after     BIGINT                DEFAULT NULL COMMENT '变动后的 Redis 余额（仅供排查）',
+    remark            VARCHAR(255)          DEFAULT NULL COMMENT '备注',
+    occurred_at       DATETIME(3)  NOT NULL COMMENT '流水发生时间',
+    created_at        DATETIME     NOT NULL COMMENT '入库时间',
+    PRIMARY KEY (id),
+    UNIQUE KEY uk_entry_id (entry_id),
+    KEY idx_user_id (user_id)
+) ENGINE = InnoDB
+  DEFAULT CHARSET = utf8mb4 COMMENT ='积分流水表';
@@ -0,0 +1,123 @@
+package com.xiaodou.tracking;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 无锁环形缓冲：容量取整、满时拒绝、多生产者并发写入
+ *
+ * @author xiaodou V=>dddou117
+ * @version V1.0
+ * @since 2025/12/20
+ */
+class MpscRingBufferTest {
+
+    @Test
+    void capacityRoundsUpToPowerOfTwo() {
+        assertThat(new MpscRingBuffer<>(1000).capacity()).isEqualTo(1024);
+        assertThat(new MpscRingBuffer<>(1024).capacity()).isEqualTo(1024);
+        assertThat(new MpscRingBuffer<>(1025).capacity()).isEqualTo(2048);
+        assertThat(new MpscRingBuffer<>(3).capacity()).isEqualTo(4);
+        for (int requested = 1; requested <= 64; requested++) {
+            int capacity = new MpscRingBuffer<>(requested).capacity();
+            assertThat(Integer.bitCount(capacity)).isEqualTo(1);
+            assertThat(capacity).isGreaterThanOrEqualTo(requested);
+        }
+    }
+
+    @Test
+    void offerFailsWhenFullAndSucceedsAfterPoll() {
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(8);
+        for (int i = 0; i < buffer.capacity(); i++) {
+            assertThat(buffer.offer(i)).isTrue();
+        }
+
+        assertThat(buffer.offer(-1)).isFalse();
+        assertThat(buffer.size()).isEqualTo(buffer.capacity());
+
+        assertThat(buffer.poll()).isZero();
+        assertThat(buffer.offer(8)).isTrue();
+        assertThat(buffer.offer(9)).isFalse();
+
+        List<Integer> drained = new ArrayList<>();
+        assertThat(buffer.drain(drained::add, Integer.MAX_VALUE)).isEqualTo(buffer.capacity());
+        assertThat(drained).containsExactly(1, 2, 3, 4, 5, 6, 7, 8);
+        assertThat(buffer.poll()).isNull();
+        assertThat(buffer.size()).isZero();
+    }
+
+    @Test
+    void concurrentProducersWithSingleConsumer() throws InterruptedException {
+        int producers = 4;
+        int perProducer = 50_000;
+        MpscRingBuffer<long[]> buffer = new MpscRingBuffer<>(64);
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(producers);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            threads.add(Thread.ofPlatform()
+                .start(() -> {
+                    awaitQuietly(start);
+                    for (int i = 0; i < perProducer; i++) {
+                        if (buffer.offer(new long[] {producer, i})) {
+                            accepted.incrementAndGet();
+                        } else {
+                            rejected.incrementAndGet();
+                        }
+                    }
+                    done.countDown();
+                }));
+        }
+
+        // 每个生产者的元素按写入顺序被消费，且不重复
+        AtomicIntegerArray lastSeen = new AtomicIntegerArray(producers);
+        for (int p = 0; p < producers; p++) {
+            lastSeen.set(p, -1);
+        }
+        List<String> violations = new ArrayList<>();
+        int consumed = 0;
+        start.countDown();
+        while (done.getCount() > 0 || buffer.size() > 0) {
+            long[] element = buffer.poll();
+            if (element == null) {
+                Thread.onSpinWait();
+                continue;
+            }
+            int producer = (int)element[0];
+            int sequence = (int)element[1];
+            if (sequence <= lastSeen.get(producer)) {
+                violations.add(producer + ":" + sequence);
+            }
+            lastSeen.set(producer, sequence);
+            consumed++;
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(violations).isEmpty();
+        assertThat(consumed).isEqualTo(accepted.get());
+        assertThat(accepted.get() + rejected.get()).isEqualTo(producers * perProducer);
+        assertThat(buffer.poll()).isNull();
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                .interrupt();
+        }
+    }
+}
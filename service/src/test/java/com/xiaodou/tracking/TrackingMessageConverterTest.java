@@ -0,0 +1,100 @@
+package com.xiaodou.tracking;
+
+import com.xiaodou.model.dto.tracking.EventBatchMessage;
+import com.xiaodou.model.dto.tracking.EventMessage;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConversionException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 埋点消息 Smile 编码：体积对比与往返解码
+ *
+ * @author xiaodou V=>dddou117
+ * @version V1.0
+ * @since 2025/12/20
+ */
+class TrackingMessageConverterTest {
+
+    private final TrackingMessageConverter converter = new TrackingMessageConverter();
+
+    @Test
+    void batchIsSmallerThanJavaSerialization() throws IOException {
+        EventBatchMessage batch = batch(200);
+
+        byte[] smile = converter.toMessage(batch, new MessageProperties())
+            .getBody();
+        byte[] java = javaSerialize(batch);
+
+        assertThat(smile.length).isLessThan(java.length);
+    }
+
+    @Test
+    void eventRoundTrips() {
+        EventMessage event = event(1);
+
+        Message message = converter.toMessage(event, new MessageProperties());
+
+        assertThat(message.getMessageProperties()
+            .getContentType()).isEqualTo(TrackingMessageConverter.CONTENT_TYPE);
+        assertThat(converter.fromMessage(message)).isEqualTo(event);
+    }
+
+    @Test
+    void batchRoundTrips() {
+        EventBatchMessage batch = batch(50);
+
+        Object decoded = converter.fromMessage(converter.toMessage(batch, new MessageProperties()));
+
+        assertThat(decoded).isEqualTo(batch);
+    }
+
+    @Test
+    void otherPayloadsUseJavaSerialization() {
+        Message message = converter.toMessage("workflow-job", new MessageProperties());
+
+        assertThat(message.getMessageProperties()
+            .getContentType()).isNotEqualTo(TrackingMessageConverter.CONTENT_TYPE);
+        assertThat(converter.fromMessage(message)).isEqualTo("workflow-job");
+    }
+
+    @Test
+    void unknownFormatIsRejected() {
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(TrackingMessageConverter.CONTENT_TYPE);
+
+        assertThatThrownBy(() -> converter.fromMessage(new Message(new byte[] {9, 0}, properties)))
+            .isInstanceOf(MessageConversionException.class);
+    }
+
+    private static EventBatchMessage batch(int size) {
+        List<EventMessage> events = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            events.add(event(i));
+        }
+        return new EventBatchMessage(events);
+    }
+
+    private static EventMessage event(int i) {
+        return new EventMessage("page_view", "user-" + (i % 7), "tenant-001",
+            Map.of("page", "/ai-app/" + i, "referrer", "/home", "durationMs", 100 + i), 1_766_000_000_000L + i);
+    }
+
+    private static byte[] javaSerialize(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,203 @@
+package com.xiaodou.tracking;
+
+import com.xiaodou.config.TrackingProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 埋点本地暂存：写入中途宕机的恢复、段滚动与删除、消费位置重启后恢复
+ *
+ * @author xiaodou V=>dddou117
+ * @version V1.0
+ * @since 2025/12/20
+ */
+class TrackingSpoolTest {
+
+    private static final int SEGMENT_BYTES = 1024;
+    // 8 字节记录头 + 200 字节消息体，每段可容纳 4 条
+    private static final int PAYLOAD_BYTES = 200;
+    private static final int RECORD_BYTES = 8 + PAYLOAD_BYTES;
+
+    @TempDir
+    Path dir;
+
+    private TrackingSpool spool;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        spool = open();
+    }
+
+    @AfterEach
+    void tearDown() {
+        spool.close();
+    }
+
+    @Test
+    void recordsAreReadInOrderAndCommitted() {
+        assertThat(spool.append(payload(1))).isTrue();
+        assertThat(spool.append(payload(2))).isTrue();
+        assertThat(spool.pendingBytes()).isEqualTo(2L * RECORD_BYTES);
+
+        TrackingSpool.Record first = spool.peek();
+        assertThat(first.payload()).isEqualTo(payload(1));
+        // peek 不推进消费位置
+        assertThat(spool.peek()
+            .payload()).isEqualTo(payload(1));
+
+        spool.commit(first);
+        assertThat(spool.pendingBytes()).isEqualTo(RECORD_BYTES);
+        TrackingSpool.Record second = spool.peek();
+        assertThat(second.payload()).isEqualTo(payload(2));
+
+        spool.commit(second);
+        assertThat(spool.peek()).isNull();
+        assertThat(spool.pendingBytes()).isZero();
+    }
+
+    @Test
+    void segmentsRollAndAreDeletedOnceConsumed() {
+        for (int i = 0; i < 10; i++) {
+            assertThat(spool.append(payload(i))).isTrue();
+        }
+        assertThat(spool.segmentCount()).isEqualTo(3);
+        assertThat(dir.resolve("0.seg")).exists();
+
+        for (int i = 0; i < 4; i++) {
+            TrackingSpool.Record record = spool.peek();
+            assertThat(record.segmentId()).isZero();
+            assertThat(record.payload()).isEqualTo(payload(i));
+            spool.commit(record);
+        }
+        // 段 0 的记录已全部消费，但消费位置仍在段 0 内
+        assertThat(spool.segmentCount()).isEqualTo(3);
+
+        TrackingSpool.Record fifth = spool.peek();
+        assertThat(fifth.segmentId()).isEqualTo(1);
+        assertThat(fifth.payload()).isEqualTo(payload(4));
+        spool.commit(fifth);
+
+        assertThat(spool.segmentCount()).isEqualTo(2);
+        assertThat(dir.resolve("0.seg")).doesNotExist();
+        assertThat(dir.resolve("1.seg")).exists();
+    }
+
+    @Test
+    void appendIsRejectedWhenMaxBytesReached() {
+        int capacity = 4 * (SEGMENT_BYTES / RECORD_BYTES);
+        for (int i = 0; i < capacity; i++) {
+            assertThat(spool.append(payload(i))).isTrue();
+        }
+
+        assertThat(spool.append(payload(capacity))).isFalse();
+        assertThat(spool.append(new byte[SEGMENT_BYTES])).isFalse();
+    }
+
+    @Test
+    void consumePositionSurvivesRestart() throws IOException {
+        for (int i = 0; i < 6; i++) {
+            spool.append(payload(i));
+        }
+        for (int i = 0; i < 5; i++) {
+            spool.commit(spool.peek());
+        }
+        spool.close();
+
+        spool = open();
+        assertThat(spool.segmentCount()).isEqualTo(1);
+        assertThat(spool.pendingBytes()).isEqualTo(RECORD_BYTES);
+        TrackingSpool.Record record = spool.peek();
+        assertThat(record.payload()).isEqualTo(payload(5));
+        spool.commit(record);
+        assertThat(spool.peek()).isNull();
+
+        // 重启后继续在写入段追加
+        assertThat(spool.append(payload(6))).isTrue();
+        assertThat(spool.peek()
+            .payload()).isEqualTo(payload(6));
+    }
+
+    @Test
+    void tornWriteIsTruncatedOnRecovery() throws IOException {
+        spool.append(payload(1));
+        spool.append(payload(2));
+        spool.close();
+
+        // 模拟写入第三条记录中途宕机：长度已写入，CRC 与消息体不完整
+        try (FileChannel channel = FileChannel.open(dir.resolve("0.seg"), StandardOpenOption.WRITE)) {
+            ByteBuffer torn = ByteBuffer.allocate(8 + 16)
+                .putInt(PAYLOAD_BYTES)
+                .putInt(0x12345678)
+                .put(new byte[16]);
+            channel.write(torn.flip(), 2L * RECORD_BYTES);
+        }
+
+        spool = open();
+        assertThat(spool.pendingBytes()).isEqualTo(2L * RECORD_BYTES);
+        TrackingSpool.Record first = spool.peek();
+        assertThat(first.payload()).isEqualTo(payload(1));
+        spool.commit(first);
+        TrackingSpool.Record second = spool.peek();
+        assertThat(second.payload()).isEqualTo(payload(2));
+        spool.commit(second);
+        assertThat(spool.peek()).isNull();
+
+        // 残留已清零，新记录写在原位置
+        assertThat(spool.append(payload(3))).isTrue();
+        TrackingSpool.Record third = spool.peek();
+        assertThat(third.payload()).isEqualTo(payload(3));
+        assertThat(third.nextOffset()).isEqualTo(3 * RECORD_BYTES);
+    }
+
+    @Test
+    void disabledSpoolRejectsWrites() throws IOException {
+        TrackingProperties properties = properties();
+        properties.getSpool()
+            .setEnabled(false);
+        TrackingSpool disabled = new TrackingSpool(properties, new SimpleMeterRegistry());
+        disabled.open();
+
+        assertThat(disabled.append(payload(1))).isFalse();
+        assertThat(disabled.peek()).isNull();
+        try (Stream<Path> files = Files.list(dir)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    private TrackingSpool open() throws IOException {
+        TrackingSpool opened = new TrackingSpool(properties(), new SimpleMeterRegistry());
+        opened.open();
+        return opened;
+    }
+
+    private TrackingProperties properties() {
+        TrackingProperties properties = new TrackingProperties();
+        TrackingProperties.Spool config = properties.getSpool();
+        config.setEnabled(true);
+        config.setDir(dir.toString());
+        config.setSegmentBytes(SEGMENT_BYTES);
+        config.setMaxBytes(4L * SEGMENT_BYTES);
+        return properties;
+    }
+
+    private static byte[] payload(int seed) {
+        byte[] payload = new byte[PAYLOAD_BYTES];
+        Arrays.fill(payload, (byte)seed);
+        payload[0] = (byte)(seed >> 8);
+        return payload;
+    }
+}